@@ -3,14 +3,19 @@ import model.Stop;
 import javax.swing.*;
 import java.awt.event.*;
 import java.util.List;
-import java.util.ArrayList;
 
 /**
  * Az AutoCompleteComboBox osztály egy automatikus kiegészítést biztosító legördülő lista a megállókhoz.
  */
 public class AutoCompleteComboBox extends JComboBox<Stop> {
 
-    private final List<Stop> items;
+    /**
+     * A gépelés közben felajánlott találatok legnagyobb száma.
+     */
+    private static final int MAX_SUGGESTIONS = 50;
+
+    private DefaultComboBoxModel<Stop> allItemsModel;
+    private StopNameIndex index;
 
     /**
      * Konstruktor, amely inicializálja az input field-et.
@@ -19,11 +24,23 @@ public class AutoCompleteComboBox extends JComboBox<Stop> {
      */
     public AutoCompleteComboBox(List<Stop> items) {
         super(items.toArray(new Stop[0]));
-        this.items = items;
+        this.allItemsModel = (DefaultComboBoxModel<Stop>) getModel();
+        this.index = new StopNameIndex(items);
         setEditable(true);
         configureAutoComplete();
     }
 
+    /**
+     * A választható megállók cseréje (például egy új feed betöltése után). Az eseménykezelő szálon kell hívni.
+     *
+     * @param items Az új megállók listája.
+     */
+    public void setItems(List<Stop> items) {
+        this.allItemsModel = new DefaultComboBoxModel<>(items.toArray(new Stop[0]));
+        this.index = new StopNameIndex(items);
+        setModel(allItemsModel);
+    }
+
     /**
      * Az input field konfigurálása.
      */
@@ -46,16 +63,12 @@ public class AutoCompleteComboBox extends JComboBox<Stop> {
                 SwingUtilities.invokeLater(() -> {
                     String text = textField.getText();
                     if (text.isEmpty()) {
-                        setModel(new DefaultComboBoxModel<>(items.toArray(new Stop[0])));
+                        setModel(allItemsModel);
                         textField.setText(text);
                         hidePopup();
                     } else {
-                        List<Stop> filteredItems = new ArrayList<>();
-                        for (Stop item : items) {
-                            if (item.getStopName().toLowerCase().contains(text.toLowerCase())) {
-                                filteredItems.add(item);
-                            }
-                        }
+                        // Ékezetfüggetlen, rangsorolt keresés az előre felépített indexben
+                        List<Stop> filteredItems = index.search(text, MAX_SUGGESTIONS);
                         if (!filteredItems.isEmpty()) {
                             setModel(new DefaultComboBoxModel<>(filteredItems.toArray(new Stop[0])));
                             textField.setText(text);
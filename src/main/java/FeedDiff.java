@@ -0,0 +1,50 @@
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Két egymást követő feed különbsége járatszinten: az új, a törölt és a módosult járatok (megállóidők, vonal,
+ * szolgáltatás vagy szolgáltatási dátumok szerint), valamint a módosult szolgáltatási naptárak.
+ * Ha a megállók vagy az aluljárók változtak, a megállók indexe és a gyalogos kapcsolatok is változhatnak,
+ * ezért ilyenkor a tervezőt teljesen újra kell építeni.
+ *
+ * @param addedTrips       Az új járatok azonosítói.
+ * @param removedTrips     A törölt járatok azonosítói.
+ * @param changedTrips     A mindkét feedben meglévő, de módosult járatok azonosítói.
+ * @param changedServices  Azon szolgáltatások azonosítói, amelyek dátumai változtak.
+ * @param changedStopTimes A hozzáadott, törölt vagy módosult járatok megállóidőinek száma az új feedben.
+ * @param networkChanged   Igaz, ha a megállók vagy az aluljárók változtak.
+ */
+public record FeedDiff(Set<String> addedTrips, Set<String> removedTrips, Set<String> changedTrips,
+                       Set<String> changedServices, int changedStopTimes, boolean networkChanged) {
+
+    /**
+     * @return Igaz, ha a két feed útvonaltervezés szempontjából azonos.
+     */
+    public boolean isEmpty() {
+        return !networkChanged && addedTrips.isEmpty() && removedTrips.isEmpty() && changedTrips.isEmpty();
+    }
+
+    /**
+     * @return Igaz, ha a különbség nem alkalmazható lépésenként, és a tervezőt újra kell építeni.
+     */
+    public boolean requiresFullRebuild() {
+        return networkChanged;
+    }
+
+    /**
+     * @return Az összes érintett (új, törölt vagy módosult) járat azonosítója.
+     */
+    public Set<String> affectedTrips() {
+        Set<String> affected = new HashSet<>(addedTrips);
+        affected.addAll(removedTrips);
+        affected.addAll(changedTrips);
+        return affected;
+    }
+
+    @Override
+    public String toString() {
+        return "+" + addedTrips.size() + " -" + removedTrips.size() + " ~" + changedTrips.size() + " trips, "
+                + changedStopTimes + " stop times, " + changedServices.size() + " services"
+                + (networkChanged ? ", network changed" : "");
+    }
+}
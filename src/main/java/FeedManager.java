@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A FeedManager osztály az aktuális feedhez tartozó útvonaltervezőt tartja, és újraindítás nélkül cseréli le:
+ * az új feedet egy háttérszálon betölti, felépíti a tervező indexeit, ellenőrzi, majd egyetlen atomi lépésben
+ * lecseréli a hivatkozást. A kérések a kezdetükkor lekért tervezővel futnak végig, így a csere alatt futó
+ * kérések a régi változaton fejeződnek be. Sikertelen betöltés vagy ellenőrzés esetén a régi tervező marad.
+ * <p>
+ * Ha a megállók és az aluljárók nem változtak, az új tervező a régi indexeit a két feed különbsége alapján
+ * frissíti, így csak az érintett menetrendi minták és átszállások számolódnak újra.
+ */
+public class FeedManager implements AutoCloseable {
+
+    private final AtomicReference<TripPlanner> current = new AtomicReference<>();
+    private final PlannerMetrics metrics;
+    private final RealtimeOverlay realtime = new RealtimeOverlay();
+    private volatile FeedDiff lastDiff;
+    private volatile FeedValidationReport lastValidation;
+    private final FeedValidator validator = new FeedValidator();
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "feed-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService parsers = GtfsLoader.newLoadPool();
+    private final LoadMode loadMode;
+    private volatile Path footpathCacheFile;
+    private volatile double footpathRadius = FootpathCache.DEFAULT_RADIUS;
+    private volatile Path transferCacheFile;
+    private volatile boolean transferCacheMapped;
+
+    /**
+     * Konstruktor, amely minden oszlopot a beolvasáskor feldolgoz.
+     *
+     * @param metrics Az összesített mérések, amelyeken a feed cserék után is osztoznak a tervezők.
+     */
+    public FeedManager(PlannerMetrics metrics) {
+        this(metrics, LoadMode.EAGER);
+    }
+
+    /**
+     * Konstruktor a megadott betöltési móddal.
+     *
+     * @param metrics  Az összesített mérések, amelyeken a feed cserék után is osztoznak a tervezők.
+     * @param loadMode A ritkán használt oszlopok betöltési módja (lusta módban a feed fájljait csak átnevezéssel
+     *                 szabad cserélni).
+     */
+    public FeedManager(PlannerMetrics metrics, LoadMode loadMode) {
+        this.metrics = metrics;
+        this.loadMode = loadMode;
+    }
+
+    /**
+     * A megállók közötti séták gyorsítótár fájljának beállítása: a telepített feedek a sétákat innen töltik be,
+     * ha a fájl ugyanezekhez a megállókhoz és sugárhoz készült, egyébként kiszámolják és felülírják.
+     *
+     * @param cacheFile A gyorsítótár fájl, vagy null, ha a séták csak a memóriában készüljenek.
+     * @param radius    A legnagyobb séta távolság méterben.
+     */
+    public void setFootpathCache(Path cacheFile, double radius) {
+        this.footpathCacheFile = cacheFile;
+        this.footpathRadius = radius;
+    }
+
+    /**
+     * A Trip-Based átszállások gyorsítótár fájljának beállítása: a telepített feedek tervezői az átszállásokat innen
+     * töltik be, ha a fájl ugyanahhoz a menetrendhez készült, egyébként kiszámolják és felülírják.
+     *
+     * @param cacheFile A gyorsítótár fájl, vagy null, ha az átszállások csak a memóriában készüljenek.
+     */
+    public void setTransferCache(Path cacheFile) {
+        setTransferCache(cacheFile, false);
+    }
+
+    /**
+     * A Trip-Based átszállások gyorsítótár fájljának beállítása; leképezett módban a tervezők az átszállások
+     * tábláját nem olvassák a heapre, hanem a fájlra leképezett memóriából használják (nagy feedekhez).
+     *
+     * @param cacheFile A gyorsítótár fájl, vagy null, ha az átszállások csak a memóriában készüljenek.
+     * @param mapped    Igaz, ha az átszállások táblája a fájlra leképezve, a heapen kívül maradjon.
+     */
+    public void setTransferCache(Path cacheFile, boolean mapped) {
+        this.transferCacheFile = cacheFile;
+        this.transferCacheMapped = mapped;
+    }
+
+    /**
+     * @return A legutóbb telepítésre került feed ellenőrzési jelentése, vagy null, ha még nem volt ilyen.
+     */
+    public FeedValidationReport getLastValidation() {
+        return lastValidation;
+    }
+
+    /**
+     * @return Az összesített mérések.
+     */
+    public PlannerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return A valós idejű módosítások, amelyeken a feed cserék után is osztoznak a tervezők.
+     */
+    public RealtimeOverlay getRealtimeOverlay() {
+        return realtime;
+    }
+
+    /**
+     * @return Az utolsó telepítéskor a korábbi feedhez képest talált különbség, vagy null, ha nem volt korábbi feed.
+     */
+    public FeedDiff getLastDiff() {
+        return lastDiff;
+    }
+
+    /**
+     * @return Igaz, ha már van betöltött feed.
+     */
+    public boolean isLoaded() {
+        return current.get() != null;
+    }
+
+    /**
+     * Visszaadja az aktuális útvonaltervezőt. Egy kérés ezt egyszer kérje le, és végig ezt használja.
+     *
+     * @return Az útvonaltervező.
+     * @throws IllegalStateException Ha még nincs betöltött feed.
+     */
+    public TripPlanner current() {
+        TripPlanner planner = current.get();
+        if (planner == null) {
+            throw new IllegalStateException("No feed loaded");
+        }
+        return planner;
+    }
+
+    /**
+     * Egy már betöltött feed telepítése a hívó szálon: a feed ellenőrzése ({@link FeedValidator}, a hibás sorok
+     * kihagyásával vagy javításával), a tervező felépítése és cseréje. Ha csak járatok változtak, az új tervező a
+     * régi indexeit frissíti a különbség alapján, egyébként a megállók közötti sétákat a beállított gyorsítótár
+     * fájlból tölti be.
+     *
+     * @param loaded A betöltött feed.
+     * @return Az új útvonaltervező.
+     * @throws IllegalStateException Ha a feed nem használható.
+     */
+    public TripPlanner install(GtfsFeed loaded) {
+        FeedValidator.Result validation = validator.validate(loaded);
+        lastValidation = validation.report();
+        GtfsFeed feed = validation.feed();
+        TripPlanner previous = current.get();
+        FeedDiff diff = previous == null ? null : GtfsLoader.diff(previous.getFeed(), feed);
+        lastDiff = diff;
+        TripPlanner planner = feed.newPlanner(metrics);
+        planner.setRealtimeOverlay(realtime);
+        planner.setTransferCache(transferCacheFile, transferCacheMapped);
+        if (diff != null && !diff.requiresFullRebuild()) {
+            planner.applyDiff(previous, diff);
+        } else if (footpathCacheFile != null) {
+            try {
+                planner.loadFootpaths(footpathCacheFile, footpathRadius);
+            } catch (IOException e) {
+                System.err.println("Could not load or save footpath cache " + footpathCacheFile + ": " + e.getMessage());
+            }
+        }
+        planner.warmUp(previous != null && previous.hasTripBasedRouter());
+        current.set(planner);
+        return planner;
+    }
+
+    /**
+     * Egy feed könyvtár betöltése és telepítése a háttérszálon.
+     *
+     * @param folderPath A feed könyvtárának elérési útja.
+     * @param listener   A betöltési események figyelője.
+     * @return Az új útvonaltervező, vagy kivétellel záruló eredmény, ha a betöltés vagy az ellenőrzés nem sikerült.
+     */
+    public CompletableFuture<TripPlanner> reload(String folderPath, LoadProgressListener listener) {
+        return reload(() -> GtfsLoader.loadFeed(folderPath, listener, parsers, loadMode));
+    }
+
+    /**
+     * Egy feed betöltése a megadott forrásból és telepítése a háttérszálon. Az újratöltések egymás után futnak.
+     *
+     * @param source A feedet betöltő függvény.
+     * @return Az új útvonaltervező, vagy kivétellel záruló eredmény, ha a betöltés vagy az ellenőrzés nem sikerült.
+     */
+    public CompletableFuture<TripPlanner> reload(Callable<GtfsFeed> source) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return install(source.call());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, loader);
+    }
+
+    /**
+     * Egy feed könyvtár szakaszos, párhuzamos betöltése a betöltő szálkészleten: a megállók és a vonalak már a
+     * menetrend beolvasása előtt elérhetők. A teljes feedet {@link #installAsync(CompletableFuture)} telepíti.
+     *
+     * @param folderPath A feed könyvtárának elérési útja.
+     * @param listener   A betöltési események figyelője.
+     * @return A betöltés szakaszainak eredményei.
+     */
+    public GtfsLoader.StagedFeed loadAsync(String folderPath, LoadProgressListener listener) {
+        return GtfsLoader.loadFeedAsync(folderPath, listener, parsers, loadMode);
+    }
+
+    /**
+     * Egy még töltődő feed telepítése a háttérszálon, amint elkészült.
+     *
+     * @param feed A feed jövője.
+     * @return Az új útvonaltervező, vagy kivétellel záruló eredmény, ha a betöltés vagy az ellenőrzés nem sikerült.
+     */
+    public CompletableFuture<TripPlanner> installAsync(CompletableFuture<GtfsFeed> feed) {
+        return feed.thenApplyAsync(this::install, loader);
+    }
+
+    /**
+     * A háttérszál leállítása; a már telepített tervező használható marad.
+     */
+    @Override
+    public void close() {
+        loader.shutdownNow();
+        parsers.shutdownNow();
+    }
+}
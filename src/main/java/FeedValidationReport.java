@@ -0,0 +1,189 @@
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * A FeedValidationReport osztály egy feed ellenőrzésének eredménye: hibatípusonként a talált sorok száma és néhány
+ * minta, valamint a járatok szolgáltatási napjainak lefedett időszaka. A javított feedet a
+ * {@link FeedValidator} adja vissza mellette.
+ */
+public class FeedValidationReport {
+
+    /**
+     * Mi történik a hibás sorral.
+     */
+    public enum Action {
+        /**
+         * A sor kimarad a feedből.
+         */
+        PRUNED,
+        /**
+         * A sor javítva kerül a feedbe.
+         */
+        REPAIRED,
+        /**
+         * A sor változatlanul marad, csak a jelentésben szerepel.
+         */
+        REPORTED
+    }
+
+    /**
+     * Az ellenőrzött hibatípusok.
+     */
+    public enum Issue {
+        /**
+         * Ismételt megálló azonosító (a későbbi kimarad).
+         */
+        DUPLICATE_STOP(Action.PRUNED),
+        /**
+         * Ismeretlen szülő állomásra hivatkozó megálló.
+         */
+        UNKNOWN_PARENT_STATION(Action.REPORTED),
+        /**
+         * Ismételt vonal azonosító (a későbbi kimarad).
+         */
+        DUPLICATE_ROUTE(Action.PRUNED),
+        /**
+         * Ismételt járat azonosító (a későbbi kimarad).
+         */
+        DUPLICATE_TRIP(Action.PRUNED),
+        /**
+         * Ismeretlen vonalra hivatkozó járat.
+         */
+        UNKNOWN_ROUTE(Action.REPORTED),
+        /**
+         * Egyetlen szolgáltatási napon sem közlekedő járat (a naptár nem fedi le), a megállóidőivel együtt kimarad.
+         */
+        NO_SERVICE_DATES(Action.PRUNED),
+        /**
+         * Ismeretlen járatra hivatkozó megállóidő.
+         */
+        UNKNOWN_TRIP(Action.PRUNED),
+        /**
+         * Ismeretlen megállóra hivatkozó megállóidő.
+         */
+        UNKNOWN_STOP(Action.PRUNED),
+        /**
+         * Egy járaton belül ismételt megállási sorszám (a későbbi kimarad).
+         */
+        DUPLICATE_STOP_SEQUENCE(Action.PRUNED),
+        /**
+         * Csak érkezési vagy csak indulási idővel megadott megállóidő (a hiányzó a meglévővel egyezik meg).
+         */
+        MISSING_TIME(Action.REPAIRED),
+        /**
+         * Az érkezésnél korábbi indulás ugyanannál a megállónál (az indulás az érkezéssel egyezik meg).
+         */
+        DEPARTURE_BEFORE_ARRIVAL(Action.REPAIRED),
+        /**
+         * Az előző megálló indulásánál korábbi érkezés (nem éjfél átlépés).
+         */
+        NON_MONOTONIC_TIME(Action.PRUNED),
+        /**
+         * Ismeretlen megállóra hivatkozó aluljáró.
+         */
+        UNKNOWN_PATHWAY_STOP(Action.PRUNED);
+
+        private final Action action;
+
+        /**
+         * Konstruktor.
+         *
+         * @param action Mi történik a hibás sorral.
+         */
+        Issue(Action action) {
+            this.action = action;
+        }
+
+        /**
+         * @return Mi történik a hibás sorral.
+         */
+        public Action getAction() {
+            return action;
+        }
+    }
+
+    private final Map<Issue, Long> counts;
+    private final Map<Issue, List<String>> samples;
+    private final LocalDate firstServiceDate;
+    private final LocalDate lastServiceDate;
+
+    /**
+     * Konstruktor.
+     *
+     * @param counts           Hibatípusonként a talált sorok száma (csak az előforduló hibák).
+     * @param samples          Hibatípusonként néhány hibás sor leírása.
+     * @param firstServiceDate A legkorábbi szolgáltatási nap, vagy null, ha nincs.
+     * @param lastServiceDate  A legkésőbbi szolgáltatási nap, vagy null, ha nincs.
+     */
+    public FeedValidationReport(Map<Issue, Long> counts, Map<Issue, List<String>> samples,
+                                LocalDate firstServiceDate, LocalDate lastServiceDate) {
+        this.counts = counts.isEmpty() ? Map.of() : Collections.unmodifiableMap(new EnumMap<>(counts));
+        EnumMap<Issue, List<String>> copy = new EnumMap<>(Issue.class);
+        samples.forEach((issue, list) -> copy.put(issue, List.copyOf(list)));
+        this.samples = Collections.unmodifiableMap(copy);
+        this.firstServiceDate = firstServiceDate;
+        this.lastServiceDate = lastServiceDate;
+    }
+
+    /**
+     * @param issue A hibatípus.
+     * @return A talált sorok száma.
+     */
+    public long getCount(Issue issue) {
+        return counts.getOrDefault(issue, 0L);
+    }
+
+    /**
+     * @param issue A hibatípus.
+     * @return Néhány hibás sor leírása.
+     */
+    public List<String> getSamples(Issue issue) {
+        return samples.getOrDefault(issue, List.of());
+    }
+
+    /**
+     * @param action A művelet.
+     * @return Az adott módon kezelt sorok száma.
+     */
+    public long getCount(Action action) {
+        return counts.entrySet().stream().filter(entry -> entry.getKey().getAction() == action).mapToLong(Map.Entry::getValue).sum();
+    }
+
+    /**
+     * @return Igaz, ha a feedben nem volt hiba.
+     */
+    public boolean isClean() {
+        return counts.isEmpty();
+    }
+
+    /**
+     * @return A legkorábbi szolgáltatási nap, ha van.
+     */
+    public Optional<LocalDate> getFirstServiceDate() {
+        return Optional.ofNullable(firstServiceDate);
+    }
+
+    /**
+     * @return A legkésőbbi szolgáltatási nap, ha van.
+     */
+    public Optional<LocalDate> getLastServiceDate() {
+        return Optional.ofNullable(lastServiceDate);
+    }
+
+    /**
+     * A jelentés szöveges formája, hibatípusonként egy sorral és az első mintával.
+     *
+     * @return Az ellenőrzési jelentés.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("GTFS validation report:\n");
+        sb.append(String.format("  service dates: %s .. %s%n", firstServiceDate, lastServiceDate));
+        counts.forEach((issue, count) -> sb.append(String.format("  %-26s %10d %-8s e.g. %s%n",
+                issue.name().toLowerCase(Locale.ROOT), count, issue.getAction().name().toLowerCase(Locale.ROOT),
+                getSamples(issue).isEmpty() ? "-" : getSamples(issue).getFirst())));
+        sb.append(String.format("  total: %d pruned, %d repaired, %d reported",
+                getCount(Action.PRUNED), getCount(Action.REPAIRED), getCount(Action.REPORTED)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,291 @@
+import model.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A FeedValidator osztály a betöltött feed ellenőrzése és javítása a tervező felépítése előtt, hogy a hibás sorok a
+ * betöltéskor derüljenek ki, ne kérésenként (például egy ismeretlen megállóra hivatkozó megállóidő a gráf
+ * építésekor). Ellenőrzi a hivatkozások épségét, az azonosítók egyediségét, a járatokon belül a megállóidők
+ * sorrendjét és a szolgáltatási naptár lefedettségét. A hibás sorokat kihagyja vagy javítja, a többit érintetlenül
+ * hagyja; az eredményről hibatípusonkénti számokat és mintákat ad.
+ * <p>
+ * A megállóidők ellenőrzése járatonként párhuzamosan fut. Az éjfélt átlépő járatok idejei (24:00 után) a
+ * betöltés után a nap elejére esnek, ezért egy fél napnál nagyobb visszalépés éjfél átlépésnek, és nem hibának
+ * számít.
+ */
+public class FeedValidator {
+
+    /**
+     * Hibatípusonként a jelentésben megőrzött minták alapértelmezett száma.
+     */
+    public static final int DEFAULT_SAMPLE_LIMIT = 5;
+
+    private static final int SECONDS_PER_DAY = 86_400;
+    private static final int HALF_DAY = SECONDS_PER_DAY / 2;
+
+    private final int sampleLimit;
+
+    /**
+     * Egy ellenőrzés eredménye.
+     *
+     * @param feed   A javított feed (ha nem kellett sort kihagyni vagy javítani, maga az eredeti feed).
+     * @param report Az ellenőrzés jelentése.
+     */
+    public record Result(GtfsFeed feed, FeedValidationReport report) {
+    }
+
+    /**
+     * Konstruktor az alapértelmezett mintaszámmal.
+     */
+    public FeedValidator() {
+        this(DEFAULT_SAMPLE_LIMIT);
+    }
+
+    /**
+     * Konstruktor.
+     *
+     * @param sampleLimit Hibatípusonként a jelentésben megőrzött minták száma.
+     */
+    public FeedValidator(int sampleLimit) {
+        this.sampleLimit = sampleLimit;
+    }
+
+    /**
+     * A feed ellenőrzése és javítása.
+     *
+     * @param feed A betöltött feed.
+     * @return A javított feed és a jelentés.
+     * @throws IllegalStateException Ha a feed nem használható: nincsenek megállói, járatai vagy megállóidői, vagy a
+     *                               javítás után egy megállóidő sem marad.
+     */
+    public Result validate(GtfsFeed feed) {
+        if (feed.stops().isEmpty() || feed.trips().isEmpty() || feed.stopTimes().isEmpty()) {
+            throw new IllegalStateException("Feed has no stops, trips or stop times");
+        }
+        Findings findings = new Findings();
+
+        // Megállók és vonalak: egyedi azonosítók, ismert szülő állomások
+        Set<String> stopIds = new HashSet<>();
+        List<Stop> stops = keepFirst(feed.stops(), Stop::getStopId, stopIds, FeedValidationReport.Issue.DUPLICATE_STOP, findings);
+        for (Stop stop : stops) {
+            stop.getParentStation().filter(parent -> !stopIds.contains(parent)).ifPresent(parent ->
+                    findings.add(FeedValidationReport.Issue.UNKNOWN_PARENT_STATION, "stop " + stop.getStopId() + " (parent " + parent + ")"));
+        }
+        Set<String> routeIds = new HashSet<>();
+        List<Route> routes = keepFirst(feed.routes(), Route::getRouteId, routeIds, FeedValidationReport.Issue.DUPLICATE_ROUTE, findings);
+
+        // Járatok: egyedi azonosítók, ismert vonalak, a naptár lefedettsége
+        Set<String> tripIds = new HashSet<>();
+        List<Trip> uniqueTrips = keepFirst(feed.trips(), Trip::getTripId, tripIds, FeedValidationReport.Issue.DUPLICATE_TRIP, findings);
+        Set<String> knownTripIds = Set.copyOf(tripIds);
+        List<Trip> trips = new ArrayList<>(uniqueTrips.size());
+        LocalDate firstServiceDate = null;
+        LocalDate lastServiceDate = null;
+        for (Trip trip : uniqueTrips) {
+            if (!routeIds.contains(trip.getRouteId())) {
+                findings.add(FeedValidationReport.Issue.UNKNOWN_ROUTE, "trip " + trip.getTripId() + " (route " + trip.getRouteId() + ")");
+            }
+            List<LocalDate> serviceDates = trip.getServiceDates();
+            if (serviceDates == null || serviceDates.isEmpty()) {
+                findings.add(FeedValidationReport.Issue.NO_SERVICE_DATES, "trip " + trip.getTripId() + " (service " + trip.getServiceId() + ")");
+                tripIds.remove(trip.getTripId());
+                continue;
+            }
+            for (LocalDate date : serviceDates) {
+                firstServiceDate = firstServiceDate == null || date.isBefore(firstServiceDate) ? date : firstServiceDate;
+                lastServiceDate = lastServiceDate == null || date.isAfter(lastServiceDate) ? date : lastServiceDate;
+            }
+            trips.add(trip);
+        }
+
+        // Megállóidők: járatonként párhuzamosan
+        Set<StopTime> removed = ConcurrentHashMap.newKeySet();
+        Map<StopTime, StopTime> repaired = new ConcurrentHashMap<>();
+        Map<String, List<StopTime>> byTrip = new HashMap<>();
+        for (StopTime stopTime : feed.stopTimes()) {
+            if (tripIds.contains(stopTime.getTripId())) {
+                byTrip.computeIfAbsent(stopTime.getTripId(), _ -> new ArrayList<>()).add(stopTime);
+            } else {
+                removed.add(stopTime);
+                // A naptár hiánya miatt kihagyott járatok megállóidői nem külön hibák
+                if (!knownTripIds.contains(stopTime.getTripId())) {
+                    findings.add(FeedValidationReport.Issue.UNKNOWN_TRIP, describe(stopTime));
+                }
+            }
+        }
+        byTrip.values().parallelStream().forEach(tripStopTimes -> validateTrip(tripStopTimes, stopIds, removed, repaired, findings));
+
+        List<StopTime> stopTimes = removed.isEmpty() && repaired.isEmpty() ? feed.stopTimes()
+                : feed.stopTimes().stream().filter(stopTime -> !removed.contains(stopTime))
+                .map(stopTime -> repaired.getOrDefault(stopTime, stopTime)).toList();
+
+        // Aluljárók: ismert megállók
+        List<Pathway> pathways = new ArrayList<>(feed.pathways().size());
+        for (Pathway pathway : feed.pathways()) {
+            if (stopIds.contains(pathway.getFromStopId()) && stopIds.contains(pathway.getToStopId())) {
+                pathways.add(pathway);
+            } else {
+                findings.add(FeedValidationReport.Issue.UNKNOWN_PATHWAY_STOP,
+                        "pathway " + pathway.getPathwayId() + " (" + pathway.getFromStopId() + " -> " + pathway.getToStopId() + ")");
+            }
+        }
+
+        FeedValidationReport report = findings.report(firstServiceDate, lastServiceDate);
+        if (stopTimes.isEmpty()) {
+            throw new IllegalStateException("Feed has no usable stop times\n" + report);
+        }
+        boolean unchanged = report.getCount(FeedValidationReport.Action.PRUNED) == 0 && report.getCount(FeedValidationReport.Action.REPAIRED) == 0;
+        GtfsFeed validated = unchanged ? feed : new GtfsFeed(
+                stops.size() == feed.stops().size() ? feed.stops() : stops,
+                stopTimes,
+                pathways.size() == feed.pathways().size() ? feed.pathways() : pathways,
+                trips.size() == feed.trips().size() ? feed.trips() : trips,
+                routes.size() == feed.routes().size() ? feed.routes() : routes);
+        return new Result(validated, report);
+    }
+
+    /**
+     * Egy járat megállóidőinek ellenőrzése megállási sorrendben.
+     *
+     * @param tripStopTimes A járat megállóidői (helyben rendeződik).
+     * @param stopIds       Az ismert megállók azonosítói.
+     * @param removed       A kihagyandó megállóidők (több szálról bővül).
+     * @param repaired      A javított megállóidők az eredeti szerint (több szálról bővül).
+     * @param findings      A talált hibák.
+     */
+    private void validateTrip(List<StopTime> tripStopTimes, Set<String> stopIds, Set<StopTime> removed,
+                              Map<StopTime, StopTime> repaired, Findings findings) {
+        tripStopTimes.sort(Comparator.comparingInt(StopTime::getStopSequence));
+        int previousSequence = Integer.MIN_VALUE;
+        boolean first = true;
+        int previous = Integer.MIN_VALUE;
+        int dayOffset = 0;
+        for (StopTime stopTime : tripStopTimes) {
+            if (!stopIds.contains(stopTime.getStopId())) {
+                removed.add(stopTime);
+                findings.add(FeedValidationReport.Issue.UNKNOWN_STOP, describe(stopTime));
+                continue;
+            }
+            if (!first && stopTime.getStopSequence() == previousSequence) {
+                removed.add(stopTime);
+                findings.add(FeedValidationReport.Issue.DUPLICATE_STOP_SEQUENCE, describe(stopTime));
+                continue;
+            }
+            first = false;
+            previousSequence = stopTime.getStopSequence();
+
+            Optional<LocalTime> arrivalTime = stopTime.getArrivalTime();
+            Optional<LocalTime> departureTime = stopTime.getDepartureTime();
+            if (arrivalTime.isEmpty() && departureTime.isEmpty()) {
+                // Időpont nélküli megálló: a tervező kihagyja, nincs mit ellenőrizni
+                continue;
+            }
+            StopTime fixed = stopTime;
+            if (arrivalTime.isEmpty() || departureTime.isEmpty()) {
+                findings.add(FeedValidationReport.Issue.MISSING_TIME, describe(stopTime));
+                arrivalTime = arrivalTime.or(() -> stopTime.getDepartureTime());
+                departureTime = departureTime.or(() -> stopTime.getArrivalTime());
+                fixed = stopTime.withTimes(arrivalTime, departureTime);
+            }
+
+            int arrival = arrivalTime.get().toSecondOfDay() + dayOffset;
+            if (arrival < previous) {
+                if (previous - arrival < HALF_DAY) {
+                    removed.add(stopTime);
+                    findings.add(FeedValidationReport.Issue.NON_MONOTONIC_TIME, describe(stopTime) + " arrives " + arrivalTime.get());
+                    continue;
+                }
+                dayOffset += SECONDS_PER_DAY;
+                arrival += SECONDS_PER_DAY;
+            }
+            int departure = departureTime.get().toSecondOfDay() + dayOffset;
+            if (departure < arrival) {
+                if (arrival - departure < HALF_DAY) {
+                    findings.add(FeedValidationReport.Issue.DEPARTURE_BEFORE_ARRIVAL, describe(stopTime) + " departs " + departureTime.get());
+                    departureTime = arrivalTime;
+                    fixed = stopTime.withTimes(arrivalTime, departureTime);
+                    departure = arrival;
+                } else {
+                    dayOffset += SECONDS_PER_DAY;
+                    departure += SECONDS_PER_DAY;
+                }
+            }
+            if (fixed != stopTime) {
+                repaired.put(stopTime, fixed);
+            }
+            previous = departure;
+        }
+    }
+
+    /**
+     * Az első előfordulások megtartása azonosító szerint, a későbbi ismétlések jelentése.
+     *
+     * @param rows     A sorok.
+     * @param id       Az azonosító kiolvasása.
+     * @param ids      Az azonosítók halmaza (a megtartott sorokéval bővül).
+     * @param issue    Az ismétlés hibatípusa.
+     * @param findings A talált hibák.
+     * @param <T>      A sorok típusa.
+     * @return A megtartott sorok.
+     */
+    private static <T> List<T> keepFirst(List<T> rows, Function<T, String> id, Set<String> ids,
+                                         FeedValidationReport.Issue issue, Findings findings) {
+        List<T> kept = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            if (ids.add(id.apply(row))) {
+                kept.add(row);
+            } else {
+                findings.add(issue, id.apply(row));
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @param stopTime Egy megállóidő.
+     * @return A megállóidő rövid leírása a jelentéshez.
+     */
+    private static String describe(StopTime stopTime) {
+        return "trip " + stopTime.getTripId() + " seq " + stopTime.getStopSequence() + " (stop " + stopTime.getStopId() + ")";
+    }
+
+    /**
+     * A talált hibák szálbiztos gyűjtője.
+     */
+    private final class Findings {
+        private final Map<FeedValidationReport.Issue, LongAdder> counts = new ConcurrentHashMap<>();
+        private final Map<FeedValidationReport.Issue, List<String>> samples = new ConcurrentHashMap<>();
+
+        /**
+         * Egy hibás sor feljegyzése.
+         *
+         * @param issue  A hibatípus.
+         * @param sample A sor leírása.
+         */
+        void add(FeedValidationReport.Issue issue, String sample) {
+            counts.computeIfAbsent(issue, _ -> new LongAdder()).increment();
+            List<String> list = samples.computeIfAbsent(issue, _ -> new ArrayList<>());
+            synchronized (list) {
+                if (list.size() < sampleLimit) {
+                    list.add(sample);
+                }
+            }
+        }
+
+        /**
+         * @param firstServiceDate A legkorábbi szolgáltatási nap.
+         * @param lastServiceDate  A legkésőbbi szolgáltatási nap.
+         * @return A jelentés.
+         */
+        FeedValidationReport report(LocalDate firstServiceDate, LocalDate lastServiceDate) {
+            Map<FeedValidationReport.Issue, Long> totals = new EnumMap<>(FeedValidationReport.Issue.class);
+            counts.forEach((issue, count) -> totals.put(issue, count.sum()));
+            return new FeedValidationReport(totals, samples, firstServiceDate, lastServiceDate);
+        }
+    }
+}
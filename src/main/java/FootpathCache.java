@@ -0,0 +1,285 @@
+import model.Stop;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * A FootpathCache osztály a megállók közötti, adott sugáron belüli légvonalbeli séták előre kiszámolt halmaza
+ * tömörített (CSR) formában: megállónként a közeli megállók indexei és távolságuk. A séta ideje a távolságból a
+ * kérés profiljával számolódik, így ugyanaz a halmaz minden gyaloglási sebességhez használható.
+ * <p>
+ * A halmaz bináris fájlba menthető; a fájl fejléce a megállók (azonosító és koordináták az index sorrendjében) és a
+ * sugár SHA-256 kivonatát tartalmazza, így egy változatlan megállólistájú feed következő indításkor a számítás
+ * helyett csak beolvassa.
+ */
+public final class FootpathCache {
+
+    /**
+     * Az alapértelmezett sugár méterben: a Trip-Based átszállások sugara. A párok száma a sugár négyzetével nő, ezért
+     * a hosszabb séták a kéréskor, a releváns megállók között számolódnak.
+     */
+    public static final double DEFAULT_RADIUS = TripBasedRouter.DEFAULT_FOOTPATH_RADIUS;
+
+    private static final int MAGIC = 0x47574B50; // "GWKP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int KEY_BYTES = 32;
+
+    private final byte[] key;
+    private final double radius;
+    private final int[] offsets;
+    private final int[] targets;
+    private final float[] distances;
+
+    /**
+     * Konstruktor a kész tömbökből.
+     *
+     * @param key       A megállók és a sugár kivonata.
+     * @param radius    A sugár méterben.
+     * @param offsets   Megállónként az első pár indexe (hossza: megállók száma + 1).
+     * @param targets   A párok cél megállóinak indexei.
+     * @param distances A párok távolsága méterben.
+     */
+    private FootpathCache(byte[] key, double radius, int[] offsets, int[] targets, float[] distances) {
+        this.key = key;
+        this.radius = radius;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.distances = distances;
+    }
+
+    /**
+     * A sugáron belüli megállópárok párhuzamos kiszámítása a sugár méretű cellákra osztott térbeli indexszel.
+     * Minden pár mindkét irányban szerepel, megállónként távolság szerint növekvő sorrendben.
+     *
+     * @param stopIndex A megállók indexe.
+     * @param radius    A legnagyobb séta távolság méterben.
+     * @return A megállópárok halmaza.
+     * @throws IllegalArgumentException Ha a sugár nem pozitív.
+     */
+    public static FootpathCache compute(StopIndex stopIndex, double radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Footpath radius must be positive: " + radius);
+        }
+        int n = stopIndex.size();
+        StopSpatialIndex spatialIndex = new StopSpatialIndex(stopIndex, radius);
+        int[][] stopTargets = new int[n][];
+        float[][] stopDistances = new float[n][];
+        IntStream.range(0, n).parallel().forEach(a -> {
+            Stop stop = stopIndex.get(a);
+            List<StopSpatialIndex.Neighbor> neighbors = spatialIndex.within(stop.getStopLat(), stop.getStopLon(), radius);
+            int[] ownTargets = new int[neighbors.size()];
+            float[] ownDistances = new float[neighbors.size()];
+            int count = 0;
+            for (StopSpatialIndex.Neighbor neighbor : neighbors) {
+                if (neighbor.index() != a) {
+                    ownTargets[count] = neighbor.index();
+                    ownDistances[count++] = (float) neighbor.distance();
+                }
+            }
+            stopTargets[a] = Arrays.copyOf(ownTargets, count);
+            stopDistances[a] = Arrays.copyOf(ownDistances, count);
+        });
+
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + stopTargets[i].length;
+        }
+        int[] targets = new int[offsets[n]];
+        float[] distances = new float[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(stopTargets[i], 0, targets, offsets[i], stopTargets[i].length);
+            System.arraycopy(stopDistances[i], 0, distances, offsets[i], stopDistances[i].length);
+        }
+        return new FootpathCache(key(stopIndex, radius), radius, offsets, targets, distances);
+    }
+
+    /**
+     * A megállópárok betöltése a gyorsítótár fájlból, ha az ugyanezekhez a megállókhoz és sugárhoz készült;
+     * egyébként kiszámítás és a gyorsítótár felülírása.
+     *
+     * @param stopIndex A megállók indexe.
+     * @param radius    A legnagyobb séta távolság méterben.
+     * @param cacheFile A gyorsítótár fájl.
+     * @return A megállópárok halmaza.
+     * @throws IOException Ha a gyorsítótár nem írható.
+     */
+    public static FootpathCache loadOrCompute(StopIndex stopIndex, double radius, Path cacheFile) throws IOException {
+        byte[] key = key(stopIndex, radius);
+        if (Files.isRegularFile(cacheFile)) {
+            FootpathCache cached = read(cacheFile, key, stopIndex.size());
+            if (cached != null) {
+                return cached;
+            }
+        }
+        FootpathCache computed = compute(stopIndex, radius);
+        computed.save(cacheFile);
+        return computed;
+    }
+
+    /**
+     * A halmaz mentése bináris fájlba. A fájl egy ideiglenes fájlba íródik, majd átnevezéssel cseréli a régit,
+     * így egy megszakított mentés nem hagy félkész gyorsítótárat.
+     *
+     * @param file A cél fájl.
+     * @throws IOException Ha a fájl nem írható.
+     */
+    public void save(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.write(key);
+                out.writeDouble(radius);
+                out.writeInt(stopCount());
+                out.writeInt(size());
+                for (int offset : offsets) {
+                    out.writeInt(offset);
+                }
+                for (int target : targets) {
+                    out.writeInt(target);
+                }
+                for (float distance : distances) {
+                    out.writeFloat(distance);
+                }
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * A halmaz beolvasása, ha a fájl ugyanezekhez a megállókhoz és sugárhoz készült.
+     *
+     * @param file      A forrás fájl.
+     * @param key       A jelenlegi megállók és a sugár kivonata.
+     * @param stopCount A megállók száma.
+     * @return A megállópárok halmaza, vagy null, ha a fájl más feedhez tartozik vagy hibás.
+     */
+    private static FootpathCache read(Path file, byte[] key, int stopCount) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (buffer.remaining() < 8 + KEY_BYTES + 16 || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            byte[] fileKey = new byte[KEY_BYTES];
+            buffer.get(fileKey);
+            double radius = buffer.getDouble();
+            if (!Arrays.equals(fileKey, key) || buffer.getInt() != stopCount) {
+                return null;
+            }
+            int pairCount = buffer.getInt();
+            if (pairCount < 0 || buffer.remaining() != 4L * (stopCount + 1) + 8L * pairCount) {
+                return null;
+            }
+            int[] offsets = new int[stopCount + 1];
+            int[] targets = new int[pairCount];
+            float[] distances = new float[pairCount];
+            buffer.asIntBuffer().get(offsets);
+            buffer.position(buffer.position() + 4 * offsets.length);
+            buffer.asIntBuffer().get(targets);
+            buffer.position(buffer.position() + 4 * targets.length);
+            buffer.asFloatBuffer().get(distances);
+            if (offsets[0] != 0 || offsets[stopCount] != pairCount) {
+                return null;
+            }
+            return new FootpathCache(key, radius, offsets, targets, distances);
+        } catch (IOException e) {
+            System.err.println("Could not read footpath cache " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * A megállók (azonosító és koordináták az index sorrendjében) és a sugár SHA-256 kivonata. A párok a megállók
+     * indexeire hivatkoznak, ezért a kulcs a betöltött és ellenőrzött megállólistából készül, nem a fájl bájtjaiból.
+     *
+     * @param stopIndex A megállók indexe.
+     * @param radius    A sugár méterben.
+     * @return A kivonat.
+     */
+    static byte[] key(StopIndex stopIndex, double radius) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer numbers = ByteBuffer.allocate(16);
+        for (Stop stop : stopIndex.getStops()) {
+            digest.update(stop.getStopId().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            numbers.clear();
+            numbers.putDouble(stop.getStopLat()).putDouble(stop.getStopLon());
+            digest.update(numbers.array());
+        }
+        numbers.clear();
+        numbers.putDouble(radius).putInt(stopIndex.size());
+        digest.update(numbers.array(), 0, 12);
+        return digest.digest();
+    }
+
+    /**
+     * @return A sugár méterben: ennél távolabbi megállópár nincs a halmazban.
+     */
+    public double radius() {
+        return radius;
+    }
+
+    /**
+     * @return A megállók száma.
+     */
+    public int stopCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return Az összes megállópár száma (mindkét irányban).
+     */
+    public int size() {
+        return targets.length;
+    }
+
+    /**
+     * @param stop A megálló indexe.
+     * @return A megálló első párjának indexe.
+     */
+    public int start(int stop) {
+        return offsets[stop];
+    }
+
+    /**
+     * @param stop A megálló indexe.
+     * @return A megálló utolsó utáni párjának indexe.
+     */
+    public int end(int stop) {
+        return offsets[stop + 1];
+    }
+
+    /**
+     * @param k A pár indexe.
+     * @return A pár cél megállójának indexe.
+     */
+    public int target(int k) {
+        return targets[k];
+    }
+
+    /**
+     * @param k A pár indexe.
+     * @return A pár légvonalbeli távolsága méterben.
+     */
+    public double distance(int k) {
+        return distances[k];
+    }
+}
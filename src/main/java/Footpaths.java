@@ -0,0 +1,275 @@
+import model.Pathway;
+import model.Stop;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * A Footpaths osztály a megállók közötti gyalogos kapcsolatokat tárolja tömörített (CSR) formában:
+ * a megadott sugáron belüli megállópárok légvonalbeli sétáit és a GTFS aluljárókat.
+ */
+public class Footpaths {
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] durations;
+    private final int[] distances;
+
+    /**
+     * Konstruktor a kész tömbökből.
+     *
+     * @param offsets   Megállónként az első kapcsolat indexe (hossza: megállók száma + 1).
+     * @param targets   A kapcsolatok cél megállóinak indexei.
+     * @param durations A kapcsolatok időtartama másodpercben.
+     * @param distances A kapcsolatok hossza méterben.
+     */
+    Footpaths(int[] offsets, int[] targets, int[] durations, int[] distances) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.durations = durations;
+        this.distances = distances;
+    }
+
+    /**
+     * Gyalogos kapcsolatok számítása: a sugáron belüli megállópárok (rács alapú szomszédkereséssel) és az aluljárók.
+     * Ugyanazon megállópár közül a rövidebb idejű kapcsolat marad meg.
+     *
+     * @param stopIndex   A megállók indexe.
+     * @param pathways    Az aluljárók listája.
+     * @param radius      A legnagyobb séta távolság méterben.
+     * @param profile     A tervezési profil, amely a gyaloglási időt adja.
+     * @return A gyalogos kapcsolatok.
+     */
+    public static Footpaths build(StopIndex stopIndex, List<Pathway> pathways, double radius, RoutingProfile profile) {
+        return build(stopIndex, pathways, radius, profile, null);
+    }
+
+    /**
+     * Gyalogos kapcsolatok számítása; ha az előre kiszámolt megállópárok sugara elég nagy, a légvonalbeli séták
+     * azokból készülnek a rács alapú szomszédkeresés helyett.
+     *
+     * @param stopIndex   A megállók indexe.
+     * @param pathways    Az aluljárók listája.
+     * @param radius      A legnagyobb séta távolság méterben.
+     * @param profile     A tervezési profil, amely a gyaloglási időt adja.
+     * @param walks       Az előre kiszámolt megállópárok, vagy null.
+     * @return A gyalogos kapcsolatok.
+     */
+    public static Footpaths build(StopIndex stopIndex, List<Pathway> pathways, double radius, RoutingProfile profile,
+                                  FootpathCache walks) {
+        int n = stopIndex.size();
+        List<Map<Integer, int[]>> links = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            links.add(new HashMap<>());
+        }
+
+        if (walks != null && walks.stopCount() == n && walks.radius() >= radius) {
+            // Légvonalbeli séták az előre kiszámolt párokból
+            IntStream.range(0, n).parallel().forEach(a -> {
+                Map<Integer, int[]> own = links.get(a);
+                for (int k = walks.start(a); k < walks.end(a); k++) {
+                    double distance = walks.distance(k);
+                    if (distance <= radius) {
+                        own.put(walks.target(k), new int[]{(int) profile.walkingTime(distance), (int) Math.round(distance)});
+                    }
+                }
+            });
+        } else if (radius > 0 && n > 0) {
+            // Légvonalbeli séták rács alapú szomszédkereséssel
+            double maxAbsLat = 0;
+            for (Stop stop : stopIndex.getStops()) {
+                maxAbsLat = Math.max(maxAbsLat, Math.abs(stop.getStopLat()));
+            }
+            double cellLat = radius / 111_320.0;
+            double cellLon = cellLat / Math.max(0.01, Math.cos(Math.toRadians(maxAbsLat)));
+            Map<Long, List<Integer>> cells = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                Stop stop = stopIndex.get(i);
+                cells.computeIfAbsent(cellKey((long) Math.floor(stop.getStopLat() / cellLat), (long) Math.floor(stop.getStopLon() / cellLon)),
+                        _ -> new ArrayList<>()).add(i);
+            }
+            IntStream.range(0, n).parallel().forEach(a -> {
+                Stop stopA = stopIndex.get(a);
+                long cellX = (long) Math.floor(stopA.getStopLat() / cellLat);
+                long cellY = (long) Math.floor(stopA.getStopLon() / cellLon);
+                Map<Integer, int[]> own = links.get(a);
+                for (long dx = -1; dx <= 1; dx++) {
+                    for (long dy = -1; dy <= 1; dy++) {
+                        for (int b : cells.getOrDefault(cellKey(cellX + dx, cellY + dy), Collections.emptyList())) {
+                            if (a == b) {
+                                continue;
+                            }
+                            Stop stopB = stopIndex.get(b);
+                            double distance = TripPlanner.haversine(stopA.getStopLat(), stopA.getStopLon(), stopB.getStopLat(), stopB.getStopLon());
+                            if (distance <= radius) {
+                                own.put(b, new int[]{(int) profile.walkingTime(distance), (int) Math.round(distance)});
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        // Aluljárók
+        for (Pathway pathway : pathways) {
+            int from = stopIndex.indexOf(pathway.getFromStopId());
+            int to = stopIndex.indexOf(pathway.getToStopId());
+            if (from < 0 || to < 0 || from == to) {
+                continue;
+            }
+            Stop stopA = stopIndex.get(from);
+            Stop stopB = stopIndex.get(to);
+            int distance = (int) Math.round(TripPlanner.haversine(stopA.getStopLat(), stopA.getStopLon(), stopB.getStopLat(), stopB.getStopLon()));
+            int duration = pathway.getTraversalTime().orElse(0);
+            addShorter(links.get(from), to, duration, distance);
+            if (pathway.getIsBidirectional() == 1) {
+                addShorter(links.get(to), from, duration, distance);
+            }
+        }
+
+        return fromLinks(links);
+    }
+
+    /**
+     * A kapcsolatok megfordítása: a cél megállók felől kereshető változat.
+     *
+     * @return A fordított irányú kapcsolatok.
+     */
+    public Footpaths reversed() {
+        int n = offsets.length - 1;
+        List<Map<Integer, int[]>> links = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            links.add(new HashMap<>());
+        }
+        for (int from = 0; from < n; from++) {
+            for (int k = offsets[from]; k < offsets[from + 1]; k++) {
+                addShorter(links.get(targets[k]), from, durations[k], distances[k]);
+            }
+        }
+        return fromLinks(links);
+    }
+
+    /**
+     * @return A megállók száma.
+     */
+    public int stopCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * @return Az összes kapcsolat száma.
+     */
+    public int size() {
+        return targets.length;
+    }
+
+    /**
+     * A kapcsolatok ujjlenyomata: minden (kiinduló, cél, időtartam) hármas kivonata, a gyorsítótárak érvényességéhez.
+     *
+     * @return Az ujjlenyomat.
+     */
+    public long fingerprint() {
+        long hash = 1125899906842597L;
+        for (int from = 0; from < stopCount(); from++) {
+            for (int k = offsets[from]; k < offsets[from + 1]; k++) {
+                hash = 31 * hash + from;
+                hash = 31 * hash + targets[k];
+                hash = 31 * hash + durations[k];
+            }
+        }
+        return 31 * hash + stopCount();
+    }
+
+    /**
+     * @param stop A megálló indexe.
+     * @return A megálló első kapcsolatának indexe.
+     */
+    public int start(int stop) {
+        return offsets[stop];
+    }
+
+    /**
+     * @param stop A megálló indexe.
+     * @return A megálló utolsó utáni kapcsolatának indexe.
+     */
+    public int end(int stop) {
+        return offsets[stop + 1];
+    }
+
+    /**
+     * @param k A kapcsolat indexe.
+     * @return A kapcsolat cél megállójának indexe.
+     */
+    public int target(int k) {
+        return targets[k];
+    }
+
+    /**
+     * @param k A kapcsolat indexe.
+     * @return A kapcsolat időtartama másodpercben.
+     */
+    public int duration(int k) {
+        return durations[k];
+    }
+
+    /**
+     * @param k A kapcsolat indexe.
+     * @return A kapcsolat hossza méterben.
+     */
+    public int distance(int k) {
+        return distances[k];
+    }
+
+    /**
+     * Egy kapcsolat felvétele, ha még nincs, vagy rövidebb a meglévőnél.
+     *
+     * @param links    A megálló kapcsolatai cél szerint.
+     * @param to       A cél megálló indexe.
+     * @param duration Az időtartam másodpercben.
+     * @param distance A hossz méterben.
+     */
+    private static void addShorter(Map<Integer, int[]> links, int to, int duration, int distance) {
+        int[] existing = links.get(to);
+        if (existing == null || existing[0] > duration) {
+            links.put(to, new int[]{duration, distance});
+        }
+    }
+
+    /**
+     * CSR tömbök összeállítása a megállónkénti kapcsolatokból, cél index szerint rendezve.
+     *
+     * @param links Megállónként a kapcsolatok.
+     * @return A gyalogos kapcsolatok.
+     */
+    private static Footpaths fromLinks(List<Map<Integer, int[]>> links) {
+        int n = links.size();
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + links.get(i).size();
+        }
+        int[] targets = new int[offsets[n]];
+        int[] durations = new int[offsets[n]];
+        int[] distances = new int[offsets[n]];
+        for (int i = 0; i < n; i++) {
+            int k = offsets[i];
+            for (Map.Entry<Integer, int[]> link : new TreeMap<>(links.get(i)).entrySet()) {
+                targets[k] = link.getKey();
+                durations[k] = link.getValue()[0];
+                distances[k] = link.getValue()[1];
+                k++;
+            }
+        }
+        return new Footpaths(offsets, targets, durations, distances);
+    }
+
+    /**
+     * Rácscella kulcs két cellakoordinátából.
+     *
+     * @param x Az első koordináta.
+     * @param y A második koordináta.
+     * @return A cella kulcsa.
+     */
+    private static long cellKey(long x, long y) {
+        return (x << 32) ^ (y & 0xFFFFFFFFL);
+    }
+}
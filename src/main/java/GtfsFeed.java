@@ -0,0 +1,25 @@
+import model.*;
+
+import java.util.List;
+
+/**
+ * Egy betöltött GTFS feed útvonaltervezéshez szükséges adatai, a járatokhoz már hozzárendelt szolgáltatási dátumokkal.
+ *
+ * @param stops     A megállók listája.
+ * @param stopTimes A megállóidők listája.
+ * @param pathways  Az aluljárók listája.
+ * @param trips     A járatok listája.
+ * @param routes    A vonalak listája.
+ */
+public record GtfsFeed(List<Stop> stops, List<StopTime> stopTimes, List<Pathway> pathways, List<Trip> trips, List<Route> routes) {
+
+    /**
+     * Útvonaltervező létrehozása a feed adataiból.
+     *
+     * @param metrics Az összesített mérések, amelyekbe a tervező a kéréseit rögzíti.
+     * @return Az útvonaltervező.
+     */
+    public TripPlanner newPlanner(PlannerMetrics metrics) {
+        return new TripPlanner(stops, stopTimes, pathways, trips, routes, metrics);
+    }
+}
@@ -1,8 +1,12 @@
-import java.io.FileReader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import com.opencsv.CSVReader;
 import model.*;
@@ -12,6 +16,20 @@ import model.*;
  */
 public class GtfsLoader {
 
+    /**
+     * A feed egymástól függetlenül betölthető fájljainak száma.
+     */
+    private static final int FEED_FILE_COUNT = 6;
+
+    /**
+     * A koordináták fixpontos beolvasásának tizedesjegyei (centiméteres pontosság). A távolságok tetszőleges
+     * pontosságúak lehetnek, ezért azok double értékként olvasódnak.
+     */
+    private static final int COORDINATE_DECIMALS = 7;
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
     /**
      * Megállók betöltése a megadott fájlból.
      *
@@ -20,37 +38,45 @@ public class GtfsLoader {
      * @throws Exception Ha hiba történik a fájl olvasása során.
      */
     public static List<Stop> loadStops(String filePath) throws Exception {
-        List<Stop> stops = new ArrayList<>();
-
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            String[] line;
-            // Fejléc átugrása
-            reader.readNext();
+        return loadStops(filePath, LoadProgressListener.NONE);
+    }
 
-            while ((line = reader.readNext()) != null) {
-                String stopId = line[0];                      // stop_id
-                String stopName = line[1];                    // stop_name
-                Stop stop = getStop(line, stopId, stopName);
-                stops.add(stop);
-            }
-        }
+    /**
+     * {@link #loadStops(String)} változat, amely a betöltés előrehaladását jelzi.
+     *
+     * @param filePath A fájl elérési útja.
+     * @param listener A betöltési események figyelője.
+     * @return A megállók listája.
+     * @throws Exception Ha hiba történik a fájl olvasása során.
+     */
+    public static List<Stop> loadStops(String filePath, LoadProgressListener listener) throws Exception {
+        ProgressTracker progress = new ProgressTracker(filePath, listener);
+        List<Stop> stops = new ArrayList<>();
+        progress.openTokenizer().forEachRow(row -> {
+            String stopId = row.getString(0);                 // stop_id
+            String stopName = row.getString(1);               // stop_name
+            Stop stop = getStop(row, stopId, stopName);
+            stops.add(stop);
+            progress.rowParsed();
+        });
+        progress.finish();
         return stops;
     }
 
     /**
      * Egy megálló objektum létrehozása az olvasott adatokból.
      *
-     * @param line     Az aktuális sor adatai.
+     * @param row      Az aktuális sor.
      * @param stopId   A megálló azonosítója.
      * @param stopName A megálló neve.
      * @return A létrehozott Stop objektum.
      */
-    private static Stop getStop(String[] line, String stopId, String stopName) {
-        double stopLat = Double.parseDouble(line[2]); // stop_lat
-        double stopLon = Double.parseDouble(line[3]); // stop_lon
-        Optional<String> stopCode = Optional.ofNullable(line[4].isEmpty() ? null : line[4]); // stop_code
-        Optional<Integer> locationType = Optional.ofNullable(line[5].isEmpty() ? null : Integer.parseInt(line[5])); // location_type
-        Optional<String> parentStation = Optional.ofNullable(line[7].isEmpty() ? null : line[7]); // parent_station
+    private static Stop getStop(GtfsTokenizer.Row row, String stopId, String stopName) {
+        double stopLat = row.getFixed(2, COORDINATE_DECIMALS) / COORDINATE_SCALE; // stop_lat
+        double stopLon = row.getFixed(3, COORDINATE_DECIMALS) / COORDINATE_SCALE; // stop_lon
+        Optional<String> stopCode = row.isEmpty(4) ? Optional.empty() : Optional.of(row.getString(4)); // stop_code
+        Optional<Integer> locationType = row.isEmpty(5) ? Optional.empty() : Optional.of(row.getInt(5)); // location_type
+        Optional<String> parentStation = row.isEmpty(7) ? Optional.empty() : Optional.of(row.getString(7)); // parent_station
 
         // Stop objektum létrehozása és hozzáadása a listához
         return new Stop(stopId, stopName, stopLat, stopLon, stopCode, locationType, Optional.empty(), parentStation, Optional.empty());
@@ -64,27 +90,59 @@ public class GtfsLoader {
      * @throws Exception Ha hiba történik a fájl olvasása során.
      */
     public static List<Trip> loadTrips(String filePath) throws Exception {
+        return loadTrips(filePath, LoadProgressListener.NONE);
+    }
+
+    /**
+     * {@link #loadTrips(String)} változat, amely a betöltés előrehaladását jelzi.
+     *
+     * @param filePath A fájl elérési útja.
+     * @param listener A betöltési események figyelője.
+     * @return A járatok listája.
+     * @throws Exception Ha hiba történik a fájl olvasása során.
+     */
+    public static List<Trip> loadTrips(String filePath, LoadProgressListener listener) throws Exception {
+        return loadTrips(filePath, listener, LoadMode.EAGER);
+    }
+
+    /**
+     * {@link #loadTrips(String, LoadProgressListener)} változat a megadott betöltési móddal: lusta módban a blokk
+     * azonosító és a kerékpárszállítás nem dolgozódik fel.
+     *
+     * @param filePath A fájl elérési útja.
+     * @param listener A betöltési események figyelője.
+     * @param mode     A ritkán használt oszlopok betöltési módja.
+     * @return A járatok listája.
+     * @throws Exception Ha hiba történik a fájl olvasása során.
+     */
+    public static List<Trip> loadTrips(String filePath, LoadProgressListener listener, LoadMode mode) throws Exception {
+        ProgressTracker progress = new ProgressTracker(filePath, listener);
         List<Trip> trips = new ArrayList<>();
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            String[] line;
-            // Fejléc átugrása
-            reader.readNext();
-            while ((line = reader.readNext()) != null) {
-                String routeId = line[0];                          // route_id
-                String tripId = line[1];                           // trip_id
-                String serviceId = line[2];                        // service_id
-                Optional<String> tripHeadsign = Optional.ofNullable(line[3].isEmpty() ? null : line[3]);  // trip_headsign
-                Optional<Integer> directionId = Optional.ofNullable(line[4].isEmpty() ? null : Integer.parseInt(line[4]));  // direction_id
-                Optional<String> blockId = Optional.ofNullable(line[5].isEmpty() ? null : line[5]);  // block_id
-                Optional<String> shapeId = Optional.ofNullable(line[6].isEmpty() ? null : line[6]);  // shape_id
-                Optional<Integer> wheelchairAccessible = Optional.ofNullable(line[7].isEmpty() ? null : Integer.parseInt(line[7]));  // wheelchair_accessible
-                Optional<Integer> bikesAllowed = Optional.ofNullable(line[8].isEmpty() ? null : Integer.parseInt(line[8]));  // bikes_allowed
+        GtfsTokenizer tokenizer = progress.openTokenizer();
+        LazyColumns columns = mode == LoadMode.LAZY ? LazyColumns.wrap(tokenizer.buffer()) : null;
 
-                // Trip objektum létrehozása és hozzáadása a listához
-                Trip trip = new Trip(routeId, tripId, serviceId, tripHeadsign, directionId, blockId, shapeId, wheelchairAccessible, bikesAllowed);
-                trips.add(trip);
+        tokenizer.forEachRow(row -> {
+            String routeId = row.getString(0);                     // route_id
+            String tripId = row.getString(1);                      // trip_id
+            String serviceId = row.getString(2);                   // service_id
+            Optional<String> tripHeadsign = row.isEmpty(3) ? Optional.empty() : Optional.of(row.getString(3));  // trip_headsign
+            Optional<Integer> directionId = row.isEmpty(4) ? Optional.empty() : Optional.of(row.getInt(4));  // direction_id
+            Optional<String> shapeId = row.isEmpty(6) ? Optional.empty() : Optional.of(row.getString(6));  // shape_id
+            Optional<Integer> wheelchairAccessible = row.isEmpty(7) ? Optional.empty() : Optional.of(row.getInt(7));  // wheelchair_accessible
+
+            // Trip objektum létrehozása és hozzáadása a listához
+            Trip trip;
+            if (columns != null) {
+                trip = new Trip(routeId, tripId, serviceId, tripHeadsign, directionId, shapeId, wheelchairAccessible, columns, row.offset());
+            } else {
+                Optional<String> blockId = row.isEmpty(5) ? Optional.empty() : Optional.of(row.getString(5));  // block_id
+                Optional<Integer> bikesAllowed = row.isEmpty(8) ? Optional.empty() : Optional.of(row.getInt(8));  // bikes_allowed
+                trip = new Trip(routeId, tripId, serviceId, tripHeadsign, directionId, blockId, shapeId, wheelchairAccessible, bikesAllowed);
             }
-        }
+            trips.add(trip);
+            progress.rowParsed();
+        });
+        progress.finish();
         return trips;
     }
 
@@ -96,10 +154,23 @@ public class GtfsLoader {
      * @throws Exception Ha hiba történik a fájl olvasása során.
      */
     public static Map<String, List<LocalDate>> loadCalendarDates(String filePath) throws Exception {
+        return loadCalendarDates(filePath, LoadProgressListener.NONE);
+    }
+
+    /**
+     * {@link #loadCalendarDates(String)} változat, amely a betöltés előrehaladását jelzi.
+     *
+     * @param filePath A fájl elérési útja.
+     * @param listener A betöltési események figyelője.
+     * @return A service date-ek listája.
+     * @throws Exception Ha hiba történik a fájl olvasása során.
+     */
+    public static Map<String, List<LocalDate>> loadCalendarDates(String filePath, LoadProgressListener listener) throws Exception {
+        ProgressTracker progress = new ProgressTracker(filePath, listener);
         Map<String, List<LocalDate>> serviceDatesMap = new HashMap<>();
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
 
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
+        try (CSVReader reader = progress.openReader()) {
             String[] line;
             // Fejléc átugrása
             reader.readNext();
@@ -113,8 +184,10 @@ public class GtfsLoader {
                 if (exceptionType == 1) {
                     serviceDatesMap.computeIfAbsent(serviceId, _ -> new ArrayList<>()).add(date);
                 }
+                progress.rowParsed();
             }
         }
+        progress.finish();
         return serviceDatesMap;
     }
 
@@ -126,39 +199,79 @@ public class GtfsLoader {
      * @throws Exception Ha hiba történik a fájl olvasása során.
      */
     public static List<StopTime> loadStopTimes(String filePath) throws Exception {
-        List<StopTime> stopTimes = new ArrayList<>();
+        return loadStopTimes(filePath, LoadProgressListener.NONE);
+    }
 
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            String[] line;
-            // Fejléc átugrása
-            reader.readNext();
+    /**
+     * {@link #loadStopTimes(String)} változat, amely a betöltés előrehaladását jelzi.
+     *
+     * @param filePath A fájl elérési útja.
+     * @param listener A betöltési események figyelője.
+     * @return A megállóidők listája.
+     * @throws Exception Ha hiba történik a fájl olvasása során.
+     */
+    public static List<StopTime> loadStopTimes(String filePath, LoadProgressListener listener) throws Exception {
+        return loadStopTimes(filePath, listener, LoadMode.EAGER);
+    }
 
-            while ((line = reader.readNext()) != null) {
-                String tripId = line[0];                               // trip_id
-                String stopId = line[1];                               // stop_id
+    /**
+     * {@link #loadStopTimes(String, LoadProgressListener)} változat a megadott betöltési móddal: lusta módban a
+     * megálló fejléce és a megtett távolság nem dolgozódik fel.
+     *
+     * @param filePath A fájl elérési útja.
+     * @param listener A betöltési események figyelője.
+     * @param mode     A ritkán használt oszlopok betöltési módja.
+     * @return A megállóidők listája.
+     * @throws Exception Ha hiba történik a fájl olvasása során.
+     */
+    public static List<StopTime> loadStopTimes(String filePath, LoadProgressListener listener, LoadMode mode) throws Exception {
+        ProgressTracker progress = new ProgressTracker(filePath, listener);
+        List<StopTime> stopTimes = new ArrayList<>();
+        GtfsTokenizer tokenizer = progress.openTokenizer();
+        LazyColumns columns = mode == LoadMode.LAZY ? LazyColumns.wrap(tokenizer.buffer()) : null;
 
-                // arrival_time kezelése (lehet 24:00:00 feletti is)
-                Optional<String> arrivalTimeStr = Optional.ofNullable(line[2].isEmpty() ? null : line[2]);
-                Optional<LocalTime> arrivalTime = arrivalTimeStr.map(TimeHelper::parseGtfsTime).map(result -> result.time());
+        tokenizer.forEachRow(row -> {
+            // A járat sorai egymás után jönnek: az előző sor azonosítója újrahasznosítható
+            String previousTripId = stopTimes.isEmpty() ? null : stopTimes.getLast().getTripId();
+            String tripId = row.contentEquals(0, previousTripId) ? previousTripId : row.getString(0);  // trip_id
+            String stopId = row.getString(1);                      // stop_id
 
-                // departure_time kezelése
-                Optional<String> departureTimeStr = Optional.ofNullable(line[3].isEmpty() ? null : line[3]);
-                Optional<LocalTime> departureTime = departureTimeStr.map(TimeHelper::parseGtfsTime).map(result -> result.time());
+            // arrival_time és departure_time (lehet 24:00:00 feletti is)
+            Optional<LocalTime> arrivalTime = gtfsTime(row, 2);
+            Optional<LocalTime> departureTime = gtfsTime(row, 3);
 
-                int stopSequence = Integer.parseInt(line[4]);           // stop_sequence
-                Optional<String> stopHeadsign = Optional.ofNullable(line[5].isEmpty() ? null : line[5]);
-                Optional<Integer> pickupType = Optional.ofNullable(line[6].isEmpty() ? null : Integer.parseInt(line[6]));
-                Optional<Integer> dropOffType = Optional.ofNullable(line[7].isEmpty() ? null : Integer.parseInt(line[7]));
-                Optional<Double> shapeDistTraveled = Optional.ofNullable(line[8].isEmpty() ? null : Double.parseDouble(line[8]));
+            int stopSequence = row.getInt(4);                      // stop_sequence
+            Optional<Integer> pickupType = row.isEmpty(6) ? Optional.empty() : Optional.of(row.getInt(6));
+            Optional<Integer> dropOffType = row.isEmpty(7) ? Optional.empty() : Optional.of(row.getInt(7));
 
-                // StopTime objektum létrehozása és hozzáadása a listához
-                StopTime stopTime = new StopTime(tripId, stopId, arrivalTime, departureTime, stopSequence, stopHeadsign, pickupType, dropOffType, shapeDistTraveled);
-                stopTimes.add(stopTime);
+            // StopTime objektum létrehozása és hozzáadása a listához
+            StopTime stopTime;
+            if (columns != null) {
+                stopTime = new StopTime(tripId, stopId, arrivalTime, departureTime, stopSequence, pickupType, dropOffType, columns, row.offset());
+            } else {
+                Optional<String> stopHeadsign = row.isEmpty(5) ? Optional.empty() : Optional.of(row.getString(5));
+                Optional<Double> shapeDistTraveled = row.isEmpty(8) ? Optional.empty()
+                        : Optional.of(Double.parseDouble(row.getString(8)));
+                stopTime = new StopTime(tripId, stopId, arrivalTime, departureTime, stopSequence, stopHeadsign, pickupType, dropOffType, shapeDistTraveled);
             }
-        }
+            stopTimes.add(stopTime);
+            progress.rowParsed();
+        });
+        progress.finish();
         return stopTimes;
     }
 
+    /**
+     * Egy GTFS idő mező (a 24 óra feletti idők a következő nap idejeként).
+     *
+     * @param row    Az aktuális sor.
+     * @param column Az oszlop indexe.
+     * @return Az idő, ha meg van adva.
+     */
+    private static Optional<LocalTime> gtfsTime(GtfsTokenizer.Row row, int column) {
+        return row.isEmpty(column) ? Optional.empty() : Optional.of(LocalTime.ofSecondOfDay(row.getTime(column) % SECONDS_PER_DAY));
+    }
+
     /**
      * Aluljárók betöltése a megadott fájlból.
      *
@@ -167,8 +280,21 @@ public class GtfsLoader {
      * @throws Exception Ha hiba történik a fájl olvasása során.
      */
     public static List<Pathway> loadPathways(String filePath) throws Exception {
+        return loadPathways(filePath, LoadProgressListener.NONE);
+    }
+
+    /**
+     * {@link #loadPathways(String)} változat, amely a betöltés előrehaladását jelzi.
+     *
+     * @param filePath A fájl elérési útja.
+     * @param listener A betöltési események figyelője.
+     * @return Az aluljárók listája.
+     * @throws Exception Ha hiba történik a fájl olvasása során.
+     */
+    public static List<Pathway> loadPathways(String filePath, LoadProgressListener listener) throws Exception {
+        ProgressTracker progress = new ProgressTracker(filePath, listener);
         List<Pathway> pathways = new ArrayList<>();
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
+        try (CSVReader reader = progress.openReader()) {
             String[] line;
             // Fejléc átugrása
             reader.readNext();
@@ -176,8 +302,10 @@ public class GtfsLoader {
                 String pathwayId = line[0];                          // pathway_id
                 Pathway pathway = getPathway(line, pathwayId);
                 pathways.add(pathway);
+                progress.rowParsed();
             }
         }
+        progress.finish();
         return pathways;
     }
 
@@ -207,27 +335,498 @@ public class GtfsLoader {
      * @throws Exception Ha hiba történik a fájl olvasása során.
      */
     public static List<Route> loadRoutes(String filePath) throws Exception {
+        return loadRoutes(filePath, LoadProgressListener.NONE);
+    }
+
+    /**
+     * {@link #loadRoutes(String)} változat, amely a betöltés előrehaladását jelzi.
+     *
+     * @param filePath A fájl elérési útja.
+     * @param listener A betöltési események figyelője.
+     * @return A vonalak listája.
+     * @throws Exception Ha hiba történik a fájl olvasása során.
+     */
+    public static List<Route> loadRoutes(String filePath, LoadProgressListener listener) throws Exception {
+        return loadRoutes(filePath, listener, LoadMode.EAGER);
+    }
+
+    /**
+     * {@link #loadRoutes(String, LoadProgressListener)} változat a megadott betöltési móddal: lusta módban a vonal
+     * leírása nem dolgozódik fel.
+     *
+     * @param filePath A fájl elérési útja.
+     * @param listener A betöltési események figyelője.
+     * @param mode     A ritkán használt oszlopok betöltési módja.
+     * @return A vonalak listája.
+     * @throws Exception Ha hiba történik a fájl olvasása során.
+     */
+    public static List<Route> loadRoutes(String filePath, LoadProgressListener listener, LoadMode mode) throws Exception {
+        ProgressTracker progress = new ProgressTracker(filePath, listener);
         List<Route> routes = new ArrayList<>();
-        try (CSVReader reader = new CSVReader(new FileReader(filePath))) {
-            String[] line;
-            // Fejléc átugrása
-            reader.readNext();
-            while ((line = reader.readNext()) != null) {
-                Optional<String> agencyId = Optional.ofNullable(line[0].isEmpty() ? null : line[0]);  // agency_id
-                String routeId = line[1];                          // route_id
-                String routeShortName = line[2];                   // route_short_name
-                Optional<String> routeLongName = Optional.ofNullable(line[3].isEmpty() ? null : line[3]);  // route_long_name
-                int routeType = Integer.parseInt(line[4]);          // route_type
-                Optional<String> routeDesc = Optional.ofNullable(line[5].isEmpty() ? null : line[5]);  // route_desc
-                Optional<String> routeColor = Optional.ofNullable(line[6].isEmpty() ? null : line[6]);  // route_color
-                Optional<String> routeTextColor = Optional.ofNullable(line[7].isEmpty() ? null : line[7]);  // route_text_color
-                Optional<Integer> routeSortOrder = Optional.ofNullable(line[8].isEmpty() ? null : Integer.parseInt(line[8]));  // route_sort_order
+        GtfsTokenizer tokenizer = progress.openTokenizer();
+        LazyColumns columns = mode == LoadMode.LAZY ? LazyColumns.wrap(tokenizer.buffer()) : null;
+
+        tokenizer.forEachRow(row -> {
+            Optional<String> agencyId = row.isEmpty(0) ? Optional.empty() : Optional.of(row.getString(0));  // agency_id
+            String routeId = row.getString(1);                     // route_id
+            String routeShortName = row.getString(2);              // route_short_name
+            Optional<String> routeLongName = row.isEmpty(3) ? Optional.empty() : Optional.of(row.getString(3));  // route_long_name
+            int routeType = row.getInt(4);                         // route_type
+            Optional<String> routeColor = row.isEmpty(6) ? Optional.empty() : Optional.of(row.getString(6));  // route_color
+            Optional<String> routeTextColor = row.isEmpty(7) ? Optional.empty() : Optional.of(row.getString(7));  // route_text_color
+            Optional<Integer> routeSortOrder = row.isEmpty(8) ? Optional.empty() : Optional.of(row.getInt(8));  // route_sort_order
 
-                // Route objektum létrehozása és hozzáadása a listához
-                Route route = new Route(agencyId, routeId, routeShortName, routeLongName, routeType, routeDesc, routeColor, routeTextColor, routeSortOrder);
-                routes.add(route);
+            // Route objektum létrehozása és hozzáadása a listához
+            Route route;
+            if (columns != null) {
+                route = new Route(agencyId, routeId, routeShortName, routeLongName, routeType, routeColor, routeTextColor, routeSortOrder, columns, row.offset());
+            } else {
+                Optional<String> routeDesc = row.isEmpty(5) ? Optional.empty() : Optional.of(row.getString(5));  // route_desc
+                route = new Route(agencyId, routeId, routeShortName, routeLongName, routeType, routeDesc, routeColor, routeTextColor, routeSortOrder);
             }
-        }
+            routes.add(route);
+            progress.rowParsed();
+        });
+        progress.finish();
         return routes;
     }
+
+    /**
+     * A teljes feed betöltése egy könyvtárból, és a szolgáltatási dátumok hozzárendelése a járatokhoz.
+     * A független fájlok egy erre a hívásra létrehozott, korlátos szálkészleten párhuzamosan töltődnek.
+     *
+     * @param folderPath A feed könyvtárának elérési útja.
+     * @param listener   A betöltési események figyelője (több szálról is hívódhat).
+     * @return A betöltött feed.
+     * @throws Exception Ha hiba történik valamelyik fájl olvasása során.
+     */
+    public static GtfsFeed loadFeed(String folderPath, LoadProgressListener listener) throws Exception {
+        ExecutorService pool = newLoadPool();
+        try {
+            return loadFeed(folderPath, listener, pool);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * A teljes feed betöltése a megadott végrehajtón, a hívó szál a feed elkészültéig vár. A végrehajtó nem lehet
+     * a hívó szál egyetlen szála, különben a várakozás nem ér véget.
+     *
+     * @param folderPath A feed könyvtárának elérési útja.
+     * @param listener   A betöltési események figyelője (több szálról is hívódhat).
+     * @param executor   A fájlokat betöltő végrehajtó.
+     * @return A betöltött feed.
+     * @throws Exception Ha hiba történik valamelyik fájl olvasása során (az eredeti kivétel).
+     */
+    public static GtfsFeed loadFeed(String folderPath, LoadProgressListener listener, Executor executor) throws Exception {
+        return loadFeed(folderPath, listener, executor, LoadMode.EAGER);
+    }
+
+    /**
+     * {@link #loadFeed(String, LoadProgressListener, Executor)} változat a megadott betöltési móddal.
+     *
+     * @param folderPath A feed könyvtárának elérési útja.
+     * @param listener   A betöltési események figyelője (több szálról is hívódhat).
+     * @param executor   A fájlokat betöltő végrehajtó.
+     * @param mode       A ritkán használt oszlopok betöltési módja.
+     * @return A betöltött feed.
+     * @throws Exception Ha hiba történik valamelyik fájl olvasása során (az eredeti kivétel).
+     */
+    public static GtfsFeed loadFeed(String folderPath, LoadProgressListener listener, Executor executor, LoadMode mode) throws Exception {
+        try {
+            return loadFeedAsync(folderPath, listener, executor, mode).feed().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Korlátos szálkészlet a feed fájljainak párhuzamos betöltéséhez: legfeljebb annyi szál, ahány független fájl
+     * van, és ahány processzor elérhető.
+     *
+     * @return A szálkészlet (démon szálakkal).
+     */
+    public static ExecutorService newLoadPool() {
+        int threads = Math.max(1, Math.min(FEED_FILE_COUNT, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gtfs-loader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Egy szakaszosan betöltött feed részeredményei.
+     *
+     * @param stops  A megállók, amint a stops.txt beolvasva (a megállóválasztókhoz már elég).
+     * @param routes A vonalak, amint a routes.txt beolvasva.
+     * @param feed   A teljes feed, amint minden fájl beolvasva és a szolgáltatási dátumok hozzárendelve.
+     */
+    public record StagedFeed(CompletableFuture<List<Stop>> stops, CompletableFuture<List<Route>> routes,
+                             CompletableFuture<GtfsFeed> feed) {
+    }
+
+    /**
+     * A teljes feed aszinkron betöltése: a független fájlok külön feladatként, a megállókkal és a vonalakkal
+     * kezdve, majd a legnagyobb stop_times.txt-vel, így többszálú végrehajtón a betöltés ideje közel a legnagyobb
+     * fájlé, egyszálún pedig a megállók készülnek el először. A szolgáltatási dátumok hozzárendelése a járatok és
+     * a naptár beolvasása után azonnal, a megállóidők beolvasásával párhuzamosan fut. A hívó nem vár; a
+     * részeredmények külön jövőkben érhetők el.
+     *
+     * @param folderPath A feed könyvtárának elérési útja.
+     * @param listener   A betöltési események figyelője (a végrehajtó szálain, akár egyszerre több szálról hívódik).
+     * @param executor   A betöltést végző végrehajtó.
+     * @return A betöltés szakaszainak eredményei; hiba esetén a hibás szakasz és a feed is kivétellel zárul.
+     */
+    public static StagedFeed loadFeedAsync(String folderPath, LoadProgressListener listener, Executor executor) {
+        return loadFeedAsync(folderPath, listener, executor, LoadMode.EAGER);
+    }
+
+    /**
+     * {@link #loadFeedAsync(String, LoadProgressListener, Executor)} változat a megadott betöltési móddal.
+     *
+     * @param folderPath A feed könyvtárának elérési útja.
+     * @param listener   A betöltési események figyelője (a végrehajtó szálain, akár egyszerre több szálról hívódik).
+     * @param executor   A betöltést végző végrehajtó.
+     * @param mode       A ritkán használt oszlopok betöltési módja.
+     * @return A betöltés szakaszainak eredményei; hiba esetén a hibás szakasz és a feed is kivétellel zárul.
+     */
+    public static StagedFeed loadFeedAsync(String folderPath, LoadProgressListener listener, Executor executor, LoadMode mode) {
+        File folder = new File(folderPath);
+        CompletableFuture<List<Stop>> stops = CompletableFuture.supplyAsync(
+                unchecked(() -> loadStops(new File(folder, "stops.txt").getPath(), listener)), executor);
+        CompletableFuture<List<Route>> routes = CompletableFuture.supplyAsync(
+                unchecked(() -> loadRoutes(new File(folder, "routes.txt").getPath(), listener, mode)), executor);
+        CompletableFuture<List<StopTime>> stopTimes = CompletableFuture.supplyAsync(
+                unchecked(() -> loadStopTimes(new File(folder, "stop_times.txt").getPath(), listener, mode)), executor);
+        CompletableFuture<List<Trip>> loadedTrips = CompletableFuture.supplyAsync(
+                unchecked(() -> loadTrips(new File(folder, "trips.txt").getPath(), listener, mode)), executor);
+        CompletableFuture<Map<String, List<LocalDate>>> serviceDates = CompletableFuture.supplyAsync(
+                unchecked(() -> loadCalendarDates(new File(folder, "calendar_dates.txt").getPath(), listener)), executor);
+        CompletableFuture<List<Pathway>> pathways = CompletableFuture.supplyAsync(
+                unchecked(() -> loadPathways(new File(folder, "pathways.txt").getPath(), listener)), executor);
+        CompletableFuture<List<Trip>> trips = loadedTrips.thenCombine(serviceDates, GtfsLoader::assignServiceDates);
+
+        CompletableFuture<GtfsFeed> feed = CompletableFuture.allOf(stops, routes, stopTimes, trips, pathways)
+                .thenApply(_ -> new GtfsFeed(stops.join(), stopTimes.join(), pathways.join(), trips.join(), routes.join()));
+        return new StagedFeed(stops, routes, feed);
+    }
+
+    /**
+     * Szolgáltatási dátumok hozzárendelése a járatokhoz.
+     *
+     * @param trips           A járatok listája.
+     * @param serviceDatesMap Szolgáltatásonként a szolgáltatási dátumok.
+     * @return Ugyanaz a lista, a dátumokkal kiegészített járatokkal.
+     */
+    private static List<Trip> assignServiceDates(List<Trip> trips, Map<String, List<LocalDate>> serviceDatesMap) {
+        for (Trip trip : trips) {
+            List<LocalDate> serviceDates = serviceDatesMap.getOrDefault(trip.getServiceId(), new ArrayList<>());
+            trip.setServiceDates(serviceDates);
+        }
+        return trips;
+    }
+
+    /**
+     * Kivételt dobó betöltés becsomagolása jövőkhöz: az ellenőrzött kivétel CompletionException okaként jelenik meg.
+     *
+     * @param callable A betöltés.
+     * @param <T>      Az eredmény típusa.
+     * @return A becsomagolt betöltés.
+     */
+    private static <T> Supplier<T> unchecked(Callable<T> callable) {
+        return () -> {
+            try {
+                return callable.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    /**
+     * Két feed különbségének kiszámítása járatszinten. Egy járat akkor módosult, ha a vonala, a szolgáltatása,
+     * a szolgáltatási dátumai, a célfelirata vagy bármelyik megállóideje eltér. A megállókat és az aluljárókat
+     * sorrendhelyesen hasonlítja, mert a megállók indexe a sorrendjüktől függ.
+     *
+     * @param previous A korábbi feed.
+     * @param next     Az új feed.
+     * @return A különbség.
+     */
+    public static FeedDiff diff(GtfsFeed previous, GtfsFeed next) {
+        boolean networkChanged = !sameStops(previous.stops(), next.stops()) || !samePathways(previous.pathways(), next.pathways());
+
+        Map<String, List<StopTime>> previousStopTimes = stopTimesByTrip(previous.stopTimes());
+        Map<String, List<StopTime>> nextStopTimes = stopTimesByTrip(next.stopTimes());
+        Map<String, Trip> previousTrips = new HashMap<>();
+        for (Trip trip : previous.trips()) {
+            previousTrips.put(trip.getTripId(), trip);
+        }
+
+        Set<String> added = new HashSet<>();
+        Set<String> changed = new HashSet<>();
+        Set<String> changedServices = new HashSet<>();
+        int changedStopTimes = 0;
+        for (Trip trip : next.trips()) {
+            Trip old = previousTrips.remove(trip.getTripId());
+            List<StopTime> tripStopTimes = nextStopTimes.getOrDefault(trip.getTripId(), List.of());
+            if (old == null) {
+                added.add(trip.getTripId());
+                changedStopTimes += tripStopTimes.size();
+                continue;
+            }
+            boolean sameService = old.getServiceId().equals(trip.getServiceId());
+            boolean sameDates = Objects.equals(old.getServiceDates(), trip.getServiceDates());
+            if (sameService && !sameDates) {
+                changedServices.add(trip.getServiceId());
+            }
+            boolean sameStopTimes = sameStopTimes(previousStopTimes.getOrDefault(trip.getTripId(), List.of()), tripStopTimes);
+            if (!sameStopTimes) {
+                changedStopTimes += tripStopTimes.size();
+            }
+            if (!sameStopTimes || !sameService || !sameDates || !old.getRouteId().equals(trip.getRouteId())
+                    || !old.getTripHeadsign().equals(trip.getTripHeadsign())) {
+                changed.add(trip.getTripId());
+            }
+        }
+        Set<String> removed = new HashSet<>(previousTrips.keySet());
+        return new FeedDiff(added, removed, changed, changedServices, changedStopTimes, networkChanged);
+    }
+
+    /**
+     * Megállóidők csoportosítása járatonként, megállási sorrendben.
+     *
+     * @param stopTimes A megállóidők listája.
+     * @return A járatonkénti megállóidők.
+     */
+    private static Map<String, List<StopTime>> stopTimesByTrip(List<StopTime> stopTimes) {
+        Map<String, List<StopTime>> byTrip = new HashMap<>();
+        for (StopTime stopTime : stopTimes) {
+            byTrip.computeIfAbsent(stopTime.getTripId(), _ -> new ArrayList<>()).add(stopTime);
+        }
+        byTrip.values().forEach(list -> list.sort(Comparator.comparingInt(StopTime::getStopSequence)));
+        return byTrip;
+    }
+
+    /**
+     * Két járat megállóidőinek összehasonlítása (megállási sorrendben).
+     *
+     * @param previous A korábbi megállóidők.
+     * @param next     Az új megállóidők.
+     * @return Igaz, ha a megállók, az idők és a fel- és leszállási szabályok azonosak.
+     */
+    private static boolean sameStopTimes(List<StopTime> previous, List<StopTime> next) {
+        if (previous.size() != next.size()) {
+            return false;
+        }
+        for (int i = 0; i < next.size(); i++) {
+            StopTime a = previous.get(i);
+            StopTime b = next.get(i);
+            if (a.getStopSequence() != b.getStopSequence() || !a.getStopId().equals(b.getStopId())
+                    || !a.getArrivalTime().equals(b.getArrivalTime()) || !a.getDepartureTime().equals(b.getDepartureTime())
+                    || !a.getPickupType().equals(b.getPickupType()) || !a.getDropOffType().equals(b.getDropOffType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Két megállólista összehasonlítása sorrendhelyesen.
+     *
+     * @param previous A korábbi megállók.
+     * @param next     Az új megállók.
+     * @return Igaz, ha az azonosítók, nevek, koordináták és szülő állomások azonosak.
+     */
+    private static boolean sameStops(List<Stop> previous, List<Stop> next) {
+        if (previous.size() != next.size()) {
+            return false;
+        }
+        for (int i = 0; i < next.size(); i++) {
+            Stop a = previous.get(i);
+            Stop b = next.get(i);
+            if (!a.getStopId().equals(b.getStopId()) || !a.getStopName().equals(b.getStopName())
+                    || a.getStopLat() != b.getStopLat() || a.getStopLon() != b.getStopLon()
+                    || !a.getParentStation().equals(b.getParentStation())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Két aluljáró lista összehasonlítása sorrendhelyesen.
+     *
+     * @param previous A korábbi aluljárók.
+     * @param next     Az új aluljárók.
+     * @return Igaz, ha a végpontok, az irányítottság és a bejárási idők azonosak.
+     */
+    private static boolean samePathways(List<Pathway> previous, List<Pathway> next) {
+        if (previous.size() != next.size()) {
+            return false;
+        }
+        for (int i = 0; i < next.size(); i++) {
+            Pathway a = previous.get(i);
+            Pathway b = next.get(i);
+            if (!a.getFromStopId().equals(b.getFromStopId()) || !a.getToStopId().equals(b.getToStopId())
+                    || a.getIsBidirectional() != b.getIsBidirectional() || a.getPathwayMode() != b.getPathwayMode()
+                    || !a.getTraversalTime().equals(b.getTraversalTime())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Egy fájl betöltésének követése: bájtok és sorok számlálása, ritkított események küldése.
+     */
+    static class ProgressTracker {
+        /**
+         * Ennyi soronként ellenőrizzük, hogy esedékes-e új esemény.
+         */
+        private static final int CHECK_INTERVAL_ROWS = 4096;
+
+        /**
+         * Két köztes esemény közötti minimális idő nanoszekundumban.
+         */
+        private static final long EMIT_INTERVAL_NANOS = 200_000_000L;
+
+        private final String filePath;
+        private final LoadProgressListener listener;
+        private final long totalBytes;
+        private final long startNanos = System.nanoTime();
+        private long lastEmitNanos = startNanos;
+        private long rows;
+        private CountingInputStream input;
+        private GtfsTokenizer tokenizer;
+
+        /**
+         * Konstruktor.
+         *
+         * @param filePath A betöltött fájl elérési útja.
+         * @param listener A figyelő.
+         */
+        ProgressTracker(String filePath, LoadProgressListener listener) {
+            this.filePath = filePath;
+            this.listener = listener;
+            this.totalBytes = new File(filePath).length();
+        }
+
+        /**
+         * Megnyitja a fájlt olyan olvasóval, amely számolja a beolvasott bájtokat.
+         *
+         * @return A CSV olvasó.
+         * @throws IOException Ha a fájl nem nyitható meg.
+         */
+        CSVReader openReader() throws IOException {
+            input = new CountingInputStream(new FileInputStream(filePath));
+            emit(false);
+            return new CSVReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Leképezi a fájlt a bájtszintű feldolgozóhoz, amelynek pozíciója adja a beolvasott bájtokat.
+         *
+         * @return A feldolgozó.
+         * @throws IOException Ha a fájl nem olvasható vagy túl nagy a leképezéshez.
+         */
+        GtfsTokenizer openTokenizer() throws IOException {
+            tokenizer = GtfsTokenizer.map(filePath);
+            emit(false);
+            return tokenizer;
+        }
+
+        /**
+         * Egy feldolgozott sor jelzése.
+         */
+        void rowParsed() {
+            rows++;
+            if (rows % CHECK_INTERVAL_ROWS == 0 && listener != LoadProgressListener.NONE) {
+                long now = System.nanoTime();
+                if (now - lastEmitNanos >= EMIT_INTERVAL_NANOS) {
+                    lastEmitNanos = now;
+                    emit(false);
+                }
+            }
+        }
+
+        /**
+         * A fájl végének jelzése, záró esemény küldése.
+         */
+        void finish() {
+            emit(true);
+        }
+
+        /**
+         * Esemény összeállítása és elküldése a figyelőnek.
+         *
+         * @param finished Igaz, ha ez a záró esemény.
+         */
+        private void emit(boolean finished) {
+            if (listener == LoadProgressListener.NONE) {
+                return;
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            double rowsPerSecond = elapsed == 0 ? 0.0 : rows * 1_000_000_000.0 / elapsed;
+            Runtime runtime = Runtime.getRuntime();
+            long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+            long bytesRead = input != null ? input.getCount() : tokenizer != null ? tokenizer.position() : 0;
+            listener.onProgress(new LoadProgressEvent(filePath, bytesRead, totalBytes, rows, rowsPerSecond, heapUsed, elapsed, finished));
+        }
+    }
+
+    /**
+     * Bemeneti folyam, amely számolja a rajta keresztül beolvasott bájtokat.
+     */
+    static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        /**
+         * Konstruktor.
+         *
+         * @param in A becsomagolt folyam.
+         */
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * @return Az eddig beolvasott bájtok száma.
+         */
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
 }
@@ -0,0 +1,454 @@
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A GtfsTokenizer osztály a GTFS CSV fájlok bájtszintű feldolgozója. Közvetlenül egy (memóriába leképezett)
+ * {@link ByteBuffer} bájtjain dolgozik: soronként csak a mezők határait jegyzi fel egy újrahasznosított tömbbe,
+ * és az egész számokat, a fixpontos tizedeseket (koordinátákat) és a HH:MM:SS időket közvetlenül a bájtokból
+ * számolja, így a sorok feldolgozása nem hoz létre köztes szövegeket. Szöveg csak akkor készül, ha a hívó kéri.
+ * <p>
+ * Kezeli az UTF-8 BOM-ot, az idézőjeles mezőket (bennük vesszővel, sortöréssel és kettőzött idézőjellel), a CRLF
+ * sorvégeket és az üres sorokat. A sorokhoz tartozó hiányzó mezők üresnek számítanak.
+ */
+public class GtfsTokenizer {
+
+    /**
+     * Egy sor feldolgozója.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * Egy sor feldolgozása. A sor objektum a következő sornál újrahasznosul, nem szabad eltárolni.
+         *
+         * @param row Az aktuális sor.
+         */
+        void row(Row row);
+    }
+
+    /**
+     * A fixpontos értékek felső korlátja (így a következő számjegy sem csordul túl).
+     */
+    private static final long MAX_FIXED = Long.MAX_VALUE / 10 - 9;
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final Row row = new Row();
+    private int position;
+
+    /**
+     * Konstruktor, amely átlépi az esetleges UTF-8 BOM-ot.
+     *
+     * @param buffer A fájl tartalma (a pozíciójától a határáig); a feldolgozás nem módosítja.
+     */
+    public GtfsTokenizer(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.position = buffer.position();
+        if (limit - position >= 3 && (buffer.get(position) & 0xFF) == 0xEF
+                && (buffer.get(position + 1) & 0xFF) == 0xBB && (buffer.get(position + 2) & 0xFF) == 0xBF) {
+            position += 3;
+        }
+    }
+
+    /**
+     * Egy fájl csak olvasható leképezése és feldolgozója.
+     *
+     * @param filePath A fájl elérési útja.
+     * @return A feldolgozó.
+     * @throws FileNotFoundException Ha a fájl nem létezik (mint a folyamként olvasott fájloknál).
+     * @throws IOException           Ha a fájl nem olvasható, vagy nagyobb, mint amit egy leképezés címezhet (2 GB).
+     */
+    public static GtfsTokenizer map(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + filePath + " (" + size + " bytes)");
+            }
+            return new GtfsTokenizer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filePath);
+        }
+    }
+
+    /**
+     * @return A feldolgozott bájtok (a sorok kezdetei erre vonatkoznak).
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return Az eddig feldolgozott bájtok száma (a BOM-mal együtt).
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * A fejléc átugrása, majd minden további sor átadása a feldolgozónak.
+     *
+     * @param handler A sorok feldolgozója.
+     */
+    public void forEachRow(RowHandler handler) {
+        if (nextRow()) {
+            while (nextRow()) {
+                handler.row(row);
+            }
+        }
+    }
+
+    /**
+     * A következő nem üres sor mezőhatárainak feljegyzése.
+     *
+     * @return Igaz, ha volt még sor.
+     */
+    private boolean nextRow() {
+        // Üres sorok átlépése
+        while (position < limit && isLineBreak(buffer.get(position))) {
+            position++;
+        }
+        if (position >= limit) {
+            return false;
+        }
+        row.offset = position;
+        row.size = 0;
+        int i = position;
+        while (true) {
+            int field = row.size;
+            row.ensureCapacity(field + 1);
+            row.escaped[field] = false;
+            if (i < limit && buffer.get(i) == '"') {
+                // Idézőjeles mező: a záró idézőjelig, a kettőzött idézőjel a tartalom része
+                row.starts[field] = ++i;
+                while (i < limit) {
+                    if (buffer.get(i) == '"') {
+                        if (i + 1 < limit && buffer.get(i + 1) == '"') {
+                            row.escaped[field] = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                row.ends[field] = i;
+                // A záró idézőjel után a mező végéig minden figyelmen kívül marad
+                while (i < limit && buffer.get(i) != ',' && !isLineBreak(buffer.get(i))) {
+                    i++;
+                }
+            } else {
+                row.starts[field] = i;
+                while (i < limit && buffer.get(i) != ',' && !isLineBreak(buffer.get(i))) {
+                    i++;
+                }
+                row.ends[field] = i;
+            }
+            row.size++;
+            if (i < limit && buffer.get(i) == ',') {
+                i++;
+                continue;
+            }
+            break;
+        }
+        if (i < limit && buffer.get(i) == '\r') {
+            i++;
+        }
+        if (i < limit && buffer.get(i) == '\n') {
+            i++;
+        }
+        position = i;
+        return true;
+    }
+
+    /**
+     * @param b Egy bájt.
+     * @return Igaz, ha sorvége karakter.
+     */
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Az aktuális sor: a mezők a bájtokból olvashatók ki. A kiolvasó metódusok hiányzó oszlopra üres mezőt látnak.
+     */
+    public final class Row {
+        private int offset;
+        private int size;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private boolean[] escaped = new boolean[16];
+
+        /**
+         * Konstruktor.
+         */
+        private Row() {
+        }
+
+        /**
+         * A mezőtömbök bővítése.
+         *
+         * @param capacity A szükséges mezőszám.
+         */
+        private void ensureCapacity(int capacity) {
+            if (capacity > starts.length) {
+                starts = Arrays.copyOf(starts, capacity * 2);
+                ends = Arrays.copyOf(ends, capacity * 2);
+                escaped = Arrays.copyOf(escaped, capacity * 2);
+            }
+        }
+
+        /**
+         * @return A sor kezdete a bájtokban.
+         */
+        public int offset() {
+            return offset;
+        }
+
+        /**
+         * @return A sor mezőinek száma.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param column Az oszlop indexe.
+         * @return Igaz, ha a mező üres vagy hiányzik.
+         */
+        public boolean isEmpty(int column) {
+            return column >= size || starts[column] == ends[column];
+        }
+
+        /**
+         * A mező szövegként (a kettőzött idézőjeleket egyre cserélve).
+         *
+         * @param column Az oszlop indexe.
+         * @return A mező szövege, hiányzó mezőre üres szöveg.
+         */
+        public String getString(int column) {
+            if (isEmpty(column)) {
+                return "";
+            }
+            int start = starts[column];
+            int length = ends[column] - start;
+            byte[] bytes = new byte[length];
+            buffer.get(start, bytes);
+            if (escaped[column]) {
+                int n = 0;
+                for (int k = 0; k < length; k++) {
+                    bytes[n++] = bytes[k];
+                    if (bytes[k] == '"') {
+                        k++;
+                    }
+                }
+                length = n;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Szöveg nélküli összehasonlítás, például az előző sor azonosítójának újrahasznosításához.
+         *
+         * @param column Az oszlop indexe.
+         * @param text   Az összehasonlítandó szöveg.
+         * @return Igaz, ha a mező biztosan ugyanezt a szöveget tartalmazza (nem ASCII tartalomra mindig hamis).
+         */
+        public boolean contentEquals(int column, String text) {
+            if (text == null || column < size && escaped[column]) {
+                return false;
+            }
+            int start = column < size ? starts[column] : 0;
+            int length = column < size ? ends[column] - start : 0;
+            if (length != text.length()) {
+                return false;
+            }
+            for (int k = 0; k < length; k++) {
+                byte b = buffer.get(start + k);
+                if (b < 0 || b != text.charAt(k)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * A mező egész számként.
+         *
+         * @param column Az oszlop indexe.
+         * @return A mező értéke.
+         * @throws NumberFormatException Ha a mező üres, nem egész szám, vagy nem fér el int-ben.
+         */
+        public int getInt(int column) {
+            if (isEmpty(column)) {
+                throw new NumberFormatException("Empty integer field in column " + column);
+            }
+            int i = starts[column];
+            int end = ends[column];
+            boolean negative = buffer.get(i) == '-';
+            if (negative || buffer.get(i) == '+') {
+                i++;
+            }
+            if (i == end) {
+                throw invalid(column);
+            }
+            long value = 0;
+            for (; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw invalid(column);
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw invalid(column);
+                }
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw invalid(column);
+            }
+            return (int) value;
+        }
+
+        /**
+         * A mező fixpontos tizedes számként: az érték 10^decimals-szorosa, a további tizedesjegyek levágva. Hét
+         * tizedesjeggyel a koordináták centiméteresek, és az érték 10^7-nel osztva pontosan a szöveg szerinti double.
+         * Az exponenses alak (pl. 4.75e1) ritka, ezért az a {@link Double#parseDouble} értelmezésén át számolódik.
+         *
+         * @param column   Az oszlop indexe.
+         * @param decimals A megtartott tizedesjegyek száma (legfeljebb 18).
+         * @return Az érték fixpontosan.
+         * @throws NumberFormatException Ha a mező üres vagy nem tizedes szám.
+         */
+        public long getFixed(int column, int decimals) {
+            if (isEmpty(column)) {
+                throw new NumberFormatException("Empty decimal field in column " + column);
+            }
+            int i = starts[column];
+            int end = ends[column];
+            boolean negative = buffer.get(i) == '-';
+            if (negative || buffer.get(i) == '+') {
+                i++;
+            }
+            long value = 0;
+            int digits = 0;
+            int fraction = -1;
+            for (; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b == '.' && fraction < 0) {
+                    fraction = 0;
+                    continue;
+                }
+                if (b == 'e' || b == 'E') {
+                    return getFixedFromDouble(column, decimals);
+                }
+                int digit = b - '0';
+                if (digit < 0 || digit > 9) {
+                    throw invalid(column);
+                }
+                digits++;
+                if (fraction >= 0) {
+                    if (fraction == decimals) {
+                        continue;
+                    }
+                    fraction++;
+                }
+                value = value * 10 + digit;
+                if (value > MAX_FIXED) {
+                    throw invalid(column);
+                }
+            }
+            if (digits == 0) {
+                throw invalid(column);
+            }
+            for (int k = Math.max(fraction, 0); k < decimals; k++) {
+                if (value > MAX_FIXED / 10) {
+                    throw invalid(column);
+                }
+                value *= 10;
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * A mező fixpontos értéke a {@link Double#parseDouble} értelmezésével, az exponenses alakhoz. A double
+         * legrövidebb tizedes alakjából számol, így a levágás nem függ a bináris kerekítéstől.
+         *
+         * @param column   Az oszlop indexe.
+         * @param decimals A megtartott tizedesjegyek száma.
+         * @return Az érték fixpontosan.
+         * @throws NumberFormatException Ha a mező nem szám, vagy az érték nem fér el.
+         */
+        private long getFixedFromDouble(int column, int decimals) {
+            try {
+                return BigDecimal.valueOf(Double.parseDouble(getString(column)))
+                        .movePointRight(decimals).setScale(0, RoundingMode.DOWN).longValueExact();
+            } catch (NumberFormatException | ArithmeticException e) {
+                throw invalid(column);
+            }
+        }
+
+        /**
+         * A mező GTFS időként (H:MM:SS vagy HH:MM:SS, az óra 24 fölötti is lehet).
+         *
+         * @param column Az oszlop indexe.
+         * @return Az idő a szolgáltatási nap kezdetétől másodpercben.
+         * @throws NumberFormatException Ha a mező üres vagy nem érvényes idő.
+         */
+        public int getTime(int column) {
+            if (isEmpty(column)) {
+                throw new NumberFormatException("Empty time field in column " + column);
+            }
+            int i = starts[column];
+            int end = ends[column];
+            int hours = 0;
+            int hourDigits = 0;
+            for (; i < end && buffer.get(i) != ':'; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9 || ++hourDigits > 3) {
+                    throw invalid(column);
+                }
+                hours = hours * 10 + digit;
+            }
+            if (hourDigits == 0 || end - i != 6 || buffer.get(i + 3) != ':') {
+                throw invalid(column);
+            }
+            int minutes = twoDigits(i + 1, column);
+            int seconds = twoDigits(i + 4, column);
+            if (minutes > 59 || seconds > 59) {
+                throw invalid(column);
+            }
+            return hours * 3600 + minutes * 60 + seconds;
+        }
+
+        /**
+         * @param index  Az első számjegy pozíciója.
+         * @param column Az oszlop indexe (a hibaüzenethez).
+         * @return A kétjegyű szám.
+         */
+        private int twoDigits(int index, int column) {
+            int high = buffer.get(index) - '0';
+            int low = buffer.get(index + 1) - '0';
+            if (high < 0 || high > 9 || low < 0 || low > 9) {
+                throw invalid(column);
+            }
+            return high * 10 + low;
+        }
+
+        /**
+         * @param column Az oszlop indexe.
+         * @return A mező hibás formátumát jelző kivétel.
+         */
+        private NumberFormatException invalid(int column) {
+            return new NumberFormatException("Invalid value in column " + column + ": \"" + getString(column) + "\"");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+/**
+ * Az IndexedMinHeap osztály egy indexelt bináris min-kupac 0 és kapacitás-1 közötti egész elemekre (megálló indexekre),
+ * egész kulcsokkal. Minden elem legfeljebb egyszer szerepel benne; a kulcs csökkentése helyben történik, így nem
+ * keletkeznek elavult bejegyzések, és a műveletek nem foglalnak objektumot.
+ */
+public class IndexedMinHeap {
+
+    private final int[] heap;
+    private final int[] positions;
+    private final long[] keys;
+    private int size;
+
+    /**
+     * Konstruktor.
+     *
+     * @param capacity Az elemek száma (a legnagyobb elem + 1).
+     */
+    public IndexedMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.positions = new int[capacity];
+        this.keys = new long[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * @return Igaz, ha a kupac üres.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Az elemek száma a kupacban.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param item Az elem.
+     * @return Igaz, ha az elem a kupacban van.
+     */
+    public boolean contains(int item) {
+        return positions[item] >= 0;
+    }
+
+    /**
+     * Elem beszúrása, vagy ha már benne van és az új kulcs kisebb, a kulcs csökkentése.
+     *
+     * @param item Az elem.
+     * @param key  A kulcs.
+     * @return Igaz, ha az elem bekerült vagy a kulcsa csökkent.
+     */
+    public boolean insertOrDecrease(int item, long key) {
+        int position = positions[item];
+        if (position < 0) {
+            position = size++;
+            heap[position] = item;
+            positions[item] = position;
+        } else if (key >= keys[item]) {
+            return false;
+        }
+        keys[item] = key;
+        siftUp(position);
+        return true;
+    }
+
+    /**
+     * A legkisebb kulcsú elem kivétele.
+     *
+     * @return Az elem.
+     * @throws IllegalStateException Ha a kupac üres.
+     */
+    public int poll() {
+        if (size == 0) {
+            throw new IllegalStateException("Heap is empty");
+        }
+        int min = heap[0];
+        positions[min] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * A kupac kiürítése; csak a benne lévő elemeket érinti, így újrahasznosításkor olcsó.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Elem mozgatása a gyökér felé, amíg a szülője nagyobb kulcsú.
+     *
+     * @param position A kiinduló pozíció.
+     */
+    private void siftUp(int position) {
+        int item = heap[position];
+        long key = keys[item];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentItem = heap[parent];
+            if (keys[parentItem] <= key) {
+                break;
+            }
+            heap[position] = parentItem;
+            positions[parentItem] = position;
+            position = parent;
+        }
+        heap[position] = item;
+        positions[item] = position;
+    }
+
+    /**
+     * Elem mozgatása a levelek felé, amíg valamelyik gyereke kisebb kulcsú.
+     *
+     * @param position A kiinduló pozíció.
+     */
+    private void siftDown(int position) {
+        int item = heap[position];
+        long key = keys[item];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            if (keys[heap[child]] >= key) {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[child]] = position;
+            position = child;
+        }
+        heap[position] = item;
+        positions[item] = position;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A LatencyHistogram osztály késleltetési értékeket gyűjt kettő hatványai szerinti vödrökben.
+ * Szálbiztos, zárolás nélkül rögzít, így a párhuzamosan futó tervezések is írhatják.
+ */
+public class LatencyHistogram {
+
+    /**
+     * A vödrök száma: az i. vödör a [2^i, 2^(i+1)) nanoszekundumos tartományt fedi le.
+     */
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Egy mérés rögzítése.
+     *
+     * @param nanos Az eltelt idő nanoszekundumban.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        totalNanos.addAndGet(value);
+        maxNanos.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Visszaadja a rögzített mérések számát.
+     *
+     * @return A mérések száma.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Visszaadja a mérések átlagát milliszekundumban.
+     *
+     * @return Az átlagos idő milliszekundumban, vagy 0, ha még nincs mérés.
+     */
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0.0 : totalNanos.get() / (double) n / 1_000_000.0;
+    }
+
+    /**
+     * Visszaadja a leghosszabb mérést milliszekundumban.
+     *
+     * @return A maximális idő milliszekundumban.
+     */
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Becsüli az adott percentilist a vödrök felső határa alapján.
+     *
+     * @param percentile A percentilis 0 és 100 között.
+     * @return A becsült érték milliszekundumban (legfeljebb kétszeres felülbecslés).
+     */
+    public double getPercentileMillis(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0.0;
+        }
+        long rank = (long) Math.ceil(n * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                long upper = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                return Math.min(upper, maxNanos.get()) / 1_000_000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Az összes mérés törlése.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    /**
+     * Meghatározza, melyik vödörbe esik az érték.
+     *
+     * @param nanos Az érték nanoszekundumban.
+     * @return A vödör indexe.
+     */
+    private static int bucketOf(long nanos) {
+        return nanos == 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+    }
+}
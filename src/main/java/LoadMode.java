@@ -0,0 +1,16 @@
+/**
+ * A LoadMode enum a GTFS fájlok ritkán használt, a tervezéshez nem szükséges oszlopainak betöltési módját definiálja
+ * (megállóidők fejléce és megtett távolsága, vonalak leírása, járatok blokkja és kerékpárszállítása).
+ */
+public enum LoadMode {
+    /**
+     * Minden oszlop a beolvasáskor feldolgozódik.
+     */
+    EAGER,
+    /**
+     * A ritkán használt oszlopok a memóriába leképezett fájlban maradnak, a modell objektumok csak a soruk kezdetét
+     * tárolják, és az értéket lekérdezéskor dekódolják. Rövidebb betöltés és kevesebb memória a tervező
+     * szervereken; a feed fájljait a használat közben nem szabad helyben felülírni.
+     */
+    LAZY
+}
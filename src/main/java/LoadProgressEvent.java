@@ -0,0 +1,27 @@
+/**
+ * Egy GTFS fájl betöltésének állapotát leíró esemény.
+ *
+ * @param file          A betöltött fájl elérési útja.
+ * @param bytesRead     Az eddig beolvasott bájtok száma.
+ * @param totalBytes    A fájl teljes mérete bájtban.
+ * @param rowsParsed    Az eddig feldolgozott sorok száma.
+ * @param rowsPerSecond A feldolgozás sebessége sor/másodpercben.
+ * @param heapUsedBytes A használt heap mérete bájtban az esemény pillanatában.
+ * @param elapsedNanos  A fájl betöltése óta eltelt idő nanoszekundumban.
+ * @param finished      Igaz, ha a fájl betöltése befejeződött.
+ */
+public record LoadProgressEvent(String file, long bytesRead, long totalBytes, long rowsParsed,
+                                double rowsPerSecond, long heapUsedBytes, long elapsedNanos, boolean finished) {
+
+    /**
+     * Visszaadja a betöltés készültségét.
+     *
+     * @return A beolvasott bájtok aránya 0 és 1 között.
+     */
+    public double fraction() {
+        if (finished) {
+            return 1.0;
+        }
+        return totalBytes <= 0 ? 0.0 : Math.min(1.0, bytesRead / (double) totalBytes);
+    }
+}
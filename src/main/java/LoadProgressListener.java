@@ -0,0 +1,33 @@
+/**
+ * A LoadProgressListener interfész a GTFS betöltés folyamatának követésére szolgál.
+ */
+@FunctionalInterface
+public interface LoadProgressListener {
+
+    /**
+     * Figyelő, amely minden eseményt figyelmen kívül hagy.
+     */
+    LoadProgressListener NONE = _ -> {
+    };
+
+    /**
+     * A betöltés előrehaladásakor, illetve egy fájl végén hívódik meg a betöltő szálon. A teljes feed párhuzamos
+     * betöltésekor több fájl eseményei egyszerre, különböző szálakról is érkezhetnek.
+     *
+     * @param event A betöltés állapota.
+     */
+    void onProgress(LoadProgressEvent event);
+
+    /**
+     * Két figyelő összefűzése.
+     *
+     * @param other A másik figyelő.
+     * @return Egy figyelő, amely mindkettőt értesíti.
+     */
+    default LoadProgressListener andThen(LoadProgressListener other) {
+        return event -> {
+            onProgress(event);
+            other.onProgress(event);
+        };
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A LoadReport osztály a befejezett fájlbetöltések összesítését gyűjti.
+ * Figyelőként átadható a GtfsLoader metódusainak.
+ */
+public class LoadReport implements LoadProgressListener {
+
+    private final List<LoadProgressEvent> files = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void onProgress(LoadProgressEvent event) {
+        if (event.finished()) {
+            files.add(event);
+        }
+    }
+
+    /**
+     * Visszaadja a befejezett fájlok záró eseményeit.
+     *
+     * @return A fájlonkénti összesítések.
+     */
+    public List<LoadProgressEvent> getFiles() {
+        synchronized (files) {
+            return List.copyOf(files);
+        }
+    }
+
+    /**
+     * @return Az összes feldolgozott sor száma.
+     */
+    public long getTotalRows() {
+        return getFiles().stream().mapToLong(LoadProgressEvent::rowsParsed).sum();
+    }
+
+    /**
+     * @return Az összes beolvasott bájt száma.
+     */
+    public long getTotalBytes() {
+        return getFiles().stream().mapToLong(LoadProgressEvent::bytesRead).sum();
+    }
+
+    /**
+     * @return A fájlok betöltésére fordított idő összege milliszekundumban.
+     */
+    public double getTotalMillis() {
+        return getFiles().stream().mapToLong(LoadProgressEvent::elapsedNanos).sum() / 1_000_000.0;
+    }
+
+    /**
+     * @return A betöltések végén mért legnagyobb heap használat bájtban.
+     */
+    public long getPeakHeapBytes() {
+        return getFiles().stream().mapToLong(LoadProgressEvent::heapUsedBytes).max().orElse(0);
+    }
+
+    /**
+     * A jelentés szöveges formája, fájlonként egy sorral.
+     *
+     * @return A betöltési jelentés.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("GTFS load report:\n");
+        for (LoadProgressEvent file : getFiles()) {
+            sb.append(String.format("  %-40s %10d rows %8.1f MB %9.0f ms %10.0f rows/s%n",
+                    file.file(), file.rowsParsed(), file.bytesRead() / 1_048_576.0,
+                    file.elapsedNanos() / 1_000_000.0, file.rowsPerSecond()));
+        }
+        sb.append(String.format("  total: %d rows, %.1f MB, %.0f ms, peak heap %.0f MB",
+                getTotalRows(), getTotalBytes() / 1_048_576.0, getTotalMillis(), getPeakHeapBytes() / 1_048_576.0));
+        return sb.toString();
+    }
+}
@@ -2,32 +2,59 @@ import javax.swing.*;
 import java.awt.*;
 
 /**
- * A LoadingDialog osztály egy töltő ablakot jelenít meg az útvonal tervezése közben.
+ * A LoadingDialog osztály egy töltő ablakot jelenít meg az útvonal tervezése, illetve az adatok betöltése közben.
  */
 public class LoadingDialog extends JDialog {
 
+    private final JLabel loadingLabel;
+    private final JProgressBar progressBar;
+
     /**
      * Konstruktor, amely inicializálja a töltő ablakot.
      *
      * @param parent A szülő JFrame ablak.
      */
     public LoadingDialog(JFrame parent) {
+        this(parent, "Planning your trip, please wait...", false);
+    }
+
+    /**
+     * Konstruktor egyedi üzenettel és választható, százalékos folyamatjelzővel.
+     *
+     * @param parent      A szülő JFrame ablak (lehet null).
+     * @param message     A megjelenített üzenet.
+     * @param determinate Igaz, ha a folyamatjelző a tényleges készültséget mutatja.
+     */
+    public LoadingDialog(JFrame parent, String message, boolean determinate) {
         super(parent, "Loading..", false); // Non-modal dialog
 
-        JLabel loadingLabel = new JLabel("Planning your trip, please wait...");
+        loadingLabel = new JLabel(message);
         loadingLabel.setHorizontalAlignment(SwingConstants.CENTER);
 
-        JProgressBar progressBar = new JProgressBar();
-        progressBar.setIndeterminate(true);
+        progressBar = new JProgressBar(0, 1000);
+        progressBar.setIndeterminate(!determinate);
+        progressBar.setStringPainted(determinate);
 
         JPanel contentPanel = new JPanel(new BorderLayout());
         contentPanel.add(loadingLabel, BorderLayout.NORTH);
         contentPanel.add(progressBar, BorderLayout.CENTER);
 
         add(contentPanel);
-        setSize(300, 100);
+        setSize(determinate ? 420 : 300, 100);
         setLocationRelativeTo(parent);
         setResizable(false);
         setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
     }
+
+    /**
+     * A készültség és az üzenet frissítése. Az eseménykezelő szálon kell hívni.
+     *
+     * @param fraction A készültség 0 és 1 között.
+     * @param message  Az új üzenet.
+     */
+    public void setProgress(double fraction, String message) {
+        progressBar.setValue((int) Math.round(Math.min(1.0, Math.max(0.0, fraction)) * 1000));
+        progressBar.setString(String.format("%.0f%%", fraction * 100));
+        loadingLabel.setText(message);
+    }
 }
@@ -0,0 +1,263 @@
+import java.util.*;
+
+/**
+ * A ParetoSearch osztály többszempontú, címkekorrigáló keresést végez a tervezési gráfon.
+ * Minden megállóban egy "zsákban" tartja az egymást nem domináló címkéket
+ * (érkezési idő, felszállások száma, gyaloglási távolság), így egyetlen futással több alternatívát talál.
+ */
+public class ParetoSearch {
+
+    /**
+     * Egy megálló zsákjában tartott címkék legnagyobb száma.
+     */
+    static final int MAX_BAG_SIZE = 8;
+
+    /**
+     * A visszaadott alternatívák legnagyobb száma.
+     */
+    static final int MAX_RESULTS = 5;
+
+    /**
+     * Súlyok az általánosított költséghez, amely alapján a megtelt zsákból a legrosszabb címke kiesik.
+     */
+    private static final long BOARDING_PENALTY_SECONDS = 300;
+    private static final double WALK_PENALTY_SECONDS_PER_METER = 1.5;
+
+    /**
+     * Gyaloglási távolság tűrés méterben a dominancia vizsgálatnál.
+     */
+    private static final double WALK_EPSILON = 1.0;
+
+    private final Map<String, List<TripPlanner.Edge>> graph;
+    private final RoutingProfile profile;
+    private final Map<String, List<Label>> bags = new HashMap<>();
+    private long latestArrival;
+    private long labelsSettled;
+    private long queuePushes;
+
+    /**
+     * Konstruktor.
+     *
+     * @param graph   A kéréshez felépített gráf.
+     * @param profile A tervezési profil (átszállási idők, átszállások száma, időablak).
+     */
+    public ParetoSearch(Map<String, List<TripPlanner.Edge>> graph, RoutingProfile profile) {
+        this.graph = graph;
+        this.profile = profile;
+    }
+
+    /**
+     * A keresés futtatása.
+     *
+     * @param startStopId      Az induló megálló azonosítója.
+     * @param endStopId        Az érkező megálló azonosítója.
+     * @param departureSeconds Az indulási idő a nap kezdetétől másodpercben.
+     * @return A cél megálló Pareto-optimális címkéi érkezési idő szerint rendezve, legfeljebb {@link #MAX_RESULTS} darab.
+     */
+    List<TripPlanner.NodeEntry> run(String startStopId, String endStopId, long departureSeconds) {
+        latestArrival = departureSeconds + profile.getSearchHorizon().getSeconds();
+        PriorityQueue<Label> queue = new PriorityQueue<>(Comparator.comparingLong(label -> label.earliestArrivalTime));
+        Label origin = new Label(startStopId, departureSeconds, null, 0, null, null, 0, 0.0);
+        insert(origin, endStopId);
+        queue.add(origin);
+        queuePushes++;
+
+        while (!queue.isEmpty()) {
+            Label current = queue.poll();
+            if (current.removed) {
+                continue; // Időközben egy jobb címke kiszorította
+            }
+            labelsSettled++;
+
+            if (current.stopId.equals(endStopId) || dominatedByTarget(current, endStopId)) {
+                continue;
+            }
+
+            for (TripPlanner.Edge edge : graph.getOrDefault(current.stopId, Collections.emptyList())) {
+                Label next = extend(current, edge);
+                if (next == null || dominatedByTarget(next, endStopId)) {
+                    continue;
+                }
+                if (insert(next, endStopId)) {
+                    queue.add(next);
+                    queuePushes++;
+                }
+            }
+        }
+
+        List<Label> targetBag = new ArrayList<>(bags.getOrDefault(endStopId, Collections.emptyList()));
+        targetBag.sort(Comparator.<Label>comparingLong(label -> label.earliestArrivalTime)
+                .thenComparingInt(label -> label.transfers)
+                .thenComparingDouble(label -> label.walkDistance));
+        return new ArrayList<>(targetBag.subList(0, Math.min(MAX_RESULTS, targetBag.size())));
+    }
+
+    /**
+     * @return A keresés során véglegesített címkék száma.
+     */
+    long getLabelsSettled() {
+        return labelsSettled;
+    }
+
+    /**
+     * @return A prioritási sorba tett címkék száma.
+     */
+    long getQueuePushes() {
+        return queuePushes;
+    }
+
+    /**
+     * Egy címke kiterjesztése egy élen, ugyanazokkal az átszállási szabályokkal, mint a legrövidebb út keresésnél.
+     *
+     * @param current Az aktuális címke.
+     * @param edge    Az él.
+     * @return Az új címke, vagy null, ha az él nem használható.
+     */
+    private Label extend(Label current, TripPlanner.Edge edge) {
+        Label next = extendUnbounded(current, edge);
+        return next == null || next.earliestArrivalTime > latestArrival ? null : next;
+    }
+
+    /**
+     * Egy címke kiterjesztése az időablak figyelembevétele nélkül.
+     *
+     * @param current Az aktuális címke.
+     * @param edge    Az él.
+     * @return Az új címke, vagy null, ha az él nem használható.
+     */
+    private Label extendUnbounded(Label current, TripPlanner.Edge edge) {
+        if (edge.type == EdgeType.TRANSIT) {
+            if (edge.departureTime == null) {
+                return null;
+            }
+            long departure = edge.departureTime.toSecondOfDay();
+            if (departure < current.earliestArrivalTime) {
+                return null;
+            }
+            long arrival = departure + edge.travelTime;
+            if (current.tripId != null && current.tripId.equals(edge.tripId)) {
+                // Ugyanazon a járaton folytatás
+                return new Label(edge.toStopId, arrival, current, current.transfers, current.tripId, edge, 0, current.walkDistance);
+            }
+            long waitTime = departure - current.earliestArrivalTime;
+            if (waitTime < profile.getMinTransferTime() || waitTime > profile.getMaxTransferTime()
+                    || current.transfers > profile.getMaxTransfers()) {
+                return null;
+            }
+            return new Label(edge.toStopId, arrival, current, current.transfers + 1, edge.tripId, edge, waitTime, current.walkDistance);
+        }
+
+        // Séta és aluljáró élek
+        long arrival = current.earliestArrivalTime + edge.travelTime;
+        return new Label(edge.toStopId, arrival, current, current.transfers, null, edge, 0, current.walkDistance + edge.distance);
+    }
+
+    /**
+     * Címke beszúrása a megálló zsákjába, a dominált címkék eltávolításával és a zsákméret korlátozásával.
+     *
+     * @param label     Az új címke.
+     * @param endStopId A cél megálló azonosítója.
+     * @return Igaz, ha a címke bekerült a zsákba.
+     */
+    private boolean insert(Label label, String endStopId) {
+        boolean atTarget = label.stopId.equals(endStopId);
+        List<Label> bag = bags.computeIfAbsent(label.stopId, _ -> new ArrayList<>());
+        for (Label other : bag) {
+            if (dominates(other, label, atTarget)) {
+                return false;
+            }
+        }
+        bag.removeIf(other -> {
+            if (dominates(label, other, atTarget)) {
+                other.removed = true;
+                return true;
+            }
+            return false;
+        });
+        bag.add(label);
+
+        if (bag.size() > MAX_BAG_SIZE) {
+            Label worst = Collections.max(bag, Comparator.comparingDouble(ParetoSearch::generalizedCost));
+            worst.removed = true;
+            bag.remove(worst);
+            return worst != label;
+        }
+        return true;
+    }
+
+    /**
+     * Megvizsgálja, hogy a cél megálló valamelyik címkéje dominálja-e az adott címkét.
+     * Mivel minden kiterjesztés csak rontja a szempontokat, az ilyen címkét nem érdemes tovább vinni.
+     *
+     * @param label     A vizsgált címke.
+     * @param endStopId A cél megálló azonosítója.
+     * @return Igaz, ha a címke elhagyható.
+     */
+    private boolean dominatedByTarget(Label label, String endStopId) {
+        List<Label> targetBag = bags.get(endStopId);
+        if (targetBag == null) {
+            return false;
+        }
+        for (Label target : targetBag) {
+            if (target != label && dominates(target, label, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Dominancia vizsgálat. Egy járaton ülő címkét csak ugyanazon a járaton ülő (vagy célba ért) címke dominálhat,
+     * mert a járaton maradás átszállás nélkül is lehetséges.
+     *
+     * @param a          A domináló jelölt.
+     * @param b          A dominált jelölt.
+     * @param ignoreTrip Igaz, ha a járat állapotot figyelmen kívül hagyjuk (cél megállóban).
+     * @return Igaz, ha a legalább olyan jó minden szempontból, mint b.
+     */
+    private static boolean dominates(Label a, Label b, boolean ignoreTrip) {
+        if (a.earliestArrivalTime > b.earliestArrivalTime
+                || a.transfers > b.transfers
+                || a.walkDistance > b.walkDistance + WALK_EPSILON) {
+            return false;
+        }
+        return ignoreTrip || b.tripId == null || b.tripId.equals(a.tripId);
+    }
+
+    /**
+     * Általánosított költség a zsák túlcsordulásának kezeléséhez.
+     *
+     * @param label A címke.
+     * @return A költség másodpercben kifejezve.
+     */
+    private static double generalizedCost(Label label) {
+        return label.earliestArrivalTime + label.transfers * BOARDING_PENALTY_SECONDS + label.walkDistance * WALK_PENALTY_SECONDS_PER_METER;
+    }
+
+    /**
+     * Egy címke: csomópont bejegyzés a gyaloglási távolsággal kiegészítve.
+     * A transfers mező itt a felszállások számát tárolja.
+     */
+    static class Label extends TripPlanner.NodeEntry {
+        double walkDistance;
+        boolean removed;
+
+        /**
+         * Címke konstruktor.
+         *
+         * @param stopId              A megálló azonosítója.
+         * @param earliestArrivalTime Az érkezési idő.
+         * @param previous            Az előző címke.
+         * @param boardings           A felszállások száma.
+         * @param tripId              Az aktuális járat azonosítója.
+         * @param edge                Az él, amelyen a címke keletkezett.
+         * @param waitTimeBefore      Várakozási idő az él előtt.
+         * @param walkDistance        Az eddigi gyaloglási távolság méterben.
+         */
+        Label(String stopId, long earliestArrivalTime, Label previous, int boardings, String tripId,
+              TripPlanner.Edge edge, long waitTimeBefore, double walkDistance) {
+            super(stopId, earliestArrivalTime, previous, boardings, tripId, edge, waitTimeBefore);
+            this.walkDistance = walkDistance;
+        }
+    }
+}
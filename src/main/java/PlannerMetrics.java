@@ -0,0 +1,166 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A PlannerMetrics osztály a tervezési kérések méréseit összesíti fázisonkénti hisztogramokba és számlálókba.
+ */
+public class PlannerMetrics implements PlannerMetricsMXBean {
+
+    private final Map<PlannerPhase, LatencyHistogram> phaseHistograms = new EnumMap<>(PlannerPhase.class);
+    private final LongAdder queryCount = new LongAdder();
+    private final LongAdder edgesBuilt = new LongAdder();
+    private final LongAdder nodesSettled = new LongAdder();
+    private final LongAdder queuePushes = new LongAdder();
+    private final LongAdder resultLegs = new LongAdder();
+    private final List<PlannerMetricsListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Konstruktor, amely minden fázishoz létrehoz egy üres hisztogramot.
+     */
+    public PlannerMetrics() {
+        for (PlannerPhase phase : PlannerPhase.values()) {
+            phaseHistograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Egy befejezett kérés méréseinek hozzáadása az összesítéshez, majd a figyelők értesítése.
+     *
+     * @param trace A kérés mérési adatai.
+     */
+    void record(QueryTrace trace) {
+        trace.getPhaseNanos().forEach((phase, nanos) -> phaseHistograms.get(phase).record(nanos));
+        queryCount.increment();
+        edgesBuilt.add(trace.getEdgesBuilt());
+        nodesSettled.add(trace.getNodesSettled());
+        queuePushes.add(trace.getQueuePushes());
+        resultLegs.add(trace.getResultLegs());
+
+        for (PlannerMetricsListener listener : listeners) {
+            try {
+                listener.onQueryCompleted(trace);
+            } catch (RuntimeException e) {
+                // Egy hibás figyelő nem akaszthatja meg a tervezést
+                System.err.println("Metrics listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Figyelő hozzáadása.
+     *
+     * @param listener A figyelő.
+     */
+    public void addListener(PlannerMetricsListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Figyelő eltávolítása.
+     *
+     * @param listener A figyelő.
+     */
+    public void removeListener(PlannerMetricsListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Visszaadja egy fázis hisztogramját.
+     *
+     * @param phase A fázis.
+     * @return A fázis hisztogramja.
+     */
+    public LatencyHistogram getHistogram(PlannerPhase phase) {
+        return phaseHistograms.get(phase);
+    }
+
+    /**
+     * Regisztrálja a méréseket a platform MBean szerveren.
+     *
+     * @param name A példány neve az ObjectName-ben.
+     * @return A regisztrált objektum neve.
+     * @throws JMException Ha a regisztráció nem sikerül.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName("hu.gyulakiri.nhf:type=TripPlanner,name=" + ObjectName.quote(name));
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public long getQueryCount() {
+        return queryCount.sum();
+    }
+
+    @Override
+    public long getTotalEdgesBuilt() {
+        return edgesBuilt.sum();
+    }
+
+    @Override
+    public long getTotalNodesSettled() {
+        return nodesSettled.sum();
+    }
+
+    @Override
+    public long getTotalQueuePushes() {
+        return queuePushes.sum();
+    }
+
+    @Override
+    public long getTotalResultLegs() {
+        return resultLegs.sum();
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMeanMillis() {
+        return perPhase(LatencyHistogram::getMeanMillis);
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP50Millis() {
+        return perPhase(histogram -> histogram.getPercentileMillis(50));
+    }
+
+    @Override
+    public Map<String, Double> getPhaseP99Millis() {
+        return perPhase(histogram -> histogram.getPercentileMillis(99));
+    }
+
+    @Override
+    public Map<String, Double> getPhaseMaxMillis() {
+        return perPhase(LatencyHistogram::getMaxMillis);
+    }
+
+    @Override
+    public void reset() {
+        phaseHistograms.values().forEach(LatencyHistogram::reset);
+        queryCount.reset();
+        edgesBuilt.reset();
+        nodesSettled.reset();
+        queuePushes.reset();
+        resultLegs.reset();
+    }
+
+    /**
+     * Fázisonkénti értékek kigyűjtése a JMX számára.
+     *
+     * @param value A hisztogramból számolt érték.
+     * @return Fázisnév szerinti értékek.
+     */
+    private Map<String, Double> perPhase(ToDoubleFunction<LatencyHistogram> value) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        phaseHistograms.forEach((phase, histogram) -> result.put(phase.name(), value.applyAsDouble(histogram)));
+        return result;
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * A PlannerMetricsListener interfész lehetővé teszi a tervezési mérések külső rendszerbe továbbítását.
+ */
+public interface PlannerMetricsListener {
+
+    /**
+     * Minden befejezett tervezési kérés után meghívódik a kérést kiszolgáló szálon.
+     *
+     * @param trace A kérés mérési adatai.
+     */
+    void onQueryCompleted(QueryTrace trace);
+}
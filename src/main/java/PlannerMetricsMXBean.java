@@ -0,0 +1,57 @@
+import java.util.Map;
+
+/**
+ * A PlannerMetricsMXBean interfész a tervező összesített méréseit teszi elérhetővé JMX-en keresztül.
+ */
+public interface PlannerMetricsMXBean {
+
+    /**
+     * @return A kiszolgált tervezési kérések száma.
+     */
+    long getQueryCount();
+
+    /**
+     * @return Az összes kérés során felépített élek száma.
+     */
+    long getTotalEdgesBuilt();
+
+    /**
+     * @return Az összes kérés során véglegesített csomópontok száma.
+     */
+    long getTotalNodesSettled();
+
+    /**
+     * @return Az összes kérés során a prioritási sorba tett bejegyzések száma.
+     */
+    long getTotalQueuePushes();
+
+    /**
+     * @return Az összes kérés eredményében szereplő szakaszok száma.
+     */
+    long getTotalResultLegs();
+
+    /**
+     * @return Fázisonként az átlagos időtartam milliszekundumban.
+     */
+    Map<String, Double> getPhaseMeanMillis();
+
+    /**
+     * @return Fázisonként a becsült medián milliszekundumban.
+     */
+    Map<String, Double> getPhaseP50Millis();
+
+    /**
+     * @return Fázisonként a becsült 99. percentilis milliszekundumban.
+     */
+    Map<String, Double> getPhaseP99Millis();
+
+    /**
+     * @return Fázisonként a leghosszabb mért időtartam milliszekundumban.
+     */
+    Map<String, Double> getPhaseMaxMillis();
+
+    /**
+     * Az összes összesített mérés nullázása.
+     */
+    void reset();
+}
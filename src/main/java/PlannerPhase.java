@@ -0,0 +1,21 @@
+/**
+ * A PlannerPhase enum az útvonaltervezés mérhető fázisait definiálja.
+ */
+public enum PlannerPhase {
+    /**
+     * Az adott napon közlekedő járatok kiválasztása.
+     */
+    ACTIVE_TRIPS,
+    /**
+     * A megállóidők szűrése az időablakra.
+     */
+    FILTER_STOP_TIMES,
+    /**
+     * A gráf felépítése.
+     */
+    BUILD_GRAPH,
+    /**
+     * A legrövidebb út keresése és az utazási terv összeállítása.
+     */
+    SHORTEST_PATH
+}
@@ -0,0 +1,127 @@
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A QueryTrace osztály egyetlen tervezési kérés mérési adatait tartalmazza.
+ * Egy példányt mindig csak a kérést kiszolgáló szál ír.
+ */
+public class QueryTrace {
+    private final Map<PlannerPhase, Long> phaseNanos = new EnumMap<>(PlannerPhase.class);
+    private long edgesBuilt;
+    private long nodesSettled;
+    private long queuePushes;
+    private int resultLegs;
+
+    /**
+     * Egy fázis időtartamának rögzítése.
+     *
+     * @param phase A fázis.
+     * @param nanos Az eltelt idő nanoszekundumban.
+     */
+    void recordPhase(PlannerPhase phase, long nanos) {
+        phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Visszaadja a fázisonkénti időtartamokat nanoszekundumban.
+     *
+     * @return A fázisok időtartamai.
+     */
+    public Map<PlannerPhase, Long> getPhaseNanos() {
+        return Collections.unmodifiableMap(phaseNanos);
+    }
+
+    /**
+     * Visszaadja egy fázis időtartamát milliszekundumban.
+     *
+     * @param phase A fázis.
+     * @return Az időtartam milliszekundumban, vagy 0, ha a fázis nem futott.
+     */
+    public double getPhaseMillis(PlannerPhase phase) {
+        return phaseNanos.getOrDefault(phase, 0L) / 1_000_000.0;
+    }
+
+    /**
+     * Visszaadja a teljes kérés időtartamát nanoszekundumban.
+     *
+     * @return Az összes fázis együttes ideje.
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos.values()) {
+            total += nanos;
+        }
+        return total;
+    }
+
+    /**
+     * Visszaadja a felépített élek számát.
+     *
+     * @return A gráf éleinek száma.
+     */
+    public long getEdgesBuilt() {
+        return edgesBuilt;
+    }
+
+    void setEdgesBuilt(long edgesBuilt) {
+        this.edgesBuilt = edgesBuilt;
+    }
+
+    /**
+     * Visszaadja a keresés során véglegesített csomópontok számát.
+     *
+     * @return A véglegesített csomópontok száma.
+     */
+    public long getNodesSettled() {
+        return nodesSettled;
+    }
+
+    void setNodesSettled(long nodesSettled) {
+        this.nodesSettled = nodesSettled;
+    }
+
+    /**
+     * Visszaadja a prioritási sorba tett bejegyzések számát.
+     *
+     * @return A sorba tett bejegyzések száma.
+     */
+    public long getQueuePushes() {
+        return queuePushes;
+    }
+
+    void setQueuePushes(long queuePushes) {
+        this.queuePushes = queuePushes;
+    }
+
+    /**
+     * Visszaadja az eredményül kapott utazási terv szakaszainak számát.
+     *
+     * @return A szakaszok száma.
+     */
+    public int getResultLegs() {
+        return resultLegs;
+    }
+
+    void setResultLegs(int resultLegs) {
+        this.resultLegs = resultLegs;
+    }
+
+    /**
+     * Szöveges összefoglaló a naplózáshoz.
+     *
+     * @return A mérések rövid leírása.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("QueryTrace{");
+        for (PlannerPhase phase : PlannerPhase.values()) {
+            sb.append(phase).append('=').append(String.format("%.2f ms", getPhaseMillis(phase))).append(", ");
+        }
+        return sb.append("edges=").append(edgesBuilt)
+                .append(", settled=").append(nodesSettled)
+                .append(", pushes=").append(queuePushes)
+                .append(", legs=").append(resultLegs)
+                .append('}').toString();
+    }
+}
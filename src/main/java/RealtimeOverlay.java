@@ -0,0 +1,135 @@
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A RealtimeOverlay osztály a menetrend fölé helyezett valós idejű módosításokat (késések, törlések, kihagyott
+ * megállók) tartja. A módosítások egy megváltoztathatatlan pillanatképben vannak, amelyet a frissítés egy új
+ * pillanatkép összeállítása után egyetlen atomi cserével tesz közzé; az olvasók (a tervezési kérések) zárolás
+ * nélkül, a kérés elején egyszer kérik le, így egy kérésen belül mindig ugyanazt az állapotot látják.
+ * <p>
+ * A teljes adathalmaz (FULL_DATASET) felülírja a korábbi állapotot; a különbségi (DIFFERENTIAL) frissítés csak
+ * az érintett napok táblázatait másolja, és a benne szereplő járatok korábbi módosítását cseréli le. Az új
+ * pillanatképből a már elmúlt forgalmi napok módosításai kimaradnak, így a folyamatosan futó figyelő mellett sem
+ * gyűlnek fel.
+ */
+public class RealtimeOverlay {
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    private final Clock clock;
+
+    /**
+     * Konstruktor a rendszer órájával.
+     */
+    public RealtimeOverlay() {
+        this(Clock.systemDefaultZone());
+    }
+
+    /**
+     * Konstruktor megadott órával, amely az aktuális forgalmi napot adja.
+     *
+     * @param clock Az óra.
+     */
+    public RealtimeOverlay(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * @return Az aktuális pillanatkép.
+     */
+    public Snapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Módosítások alkalmazása. Az aktuális forgalmi napnál korábbi napok módosításai az új pillanatképből kimaradnak.
+     *
+     * @param updates     A járatok módosításai.
+     * @param fullDataset Igaz, ha a módosítások a teljes állapotot írják le, és a korábbiakat el kell dobni.
+     * @return Az új pillanatkép.
+     */
+    public Snapshot apply(Collection<TripUpdate> updates, boolean fullDataset) {
+        LocalDate today = LocalDate.now(clock);
+        return snapshot.updateAndGet(previous -> (fullDataset ? Snapshot.EMPTY : previous).with(updates).since(today));
+    }
+
+    /**
+     * Az összes módosítás eldobása.
+     */
+    public void clear() {
+        snapshot.set(Snapshot.EMPTY);
+    }
+
+    /**
+     * A valós idejű módosítások egy megváltoztathatatlan állapota, forgalmi naponként járat szerint indexelve.
+     *
+     * @param updatesByDate Forgalmi naponként a járatok módosításai.
+     */
+    public record Snapshot(Map<LocalDate, Map<String, TripUpdate>> updatesByDate) {
+
+        /**
+         * Az üres pillanatkép.
+         */
+        public static final Snapshot EMPTY = new Snapshot(Map.of());
+
+        /**
+         * Egy forgalmi nap módosításai.
+         *
+         * @param date A forgalmi nap.
+         * @return A járatok módosításai azonosító szerint (üres, ha aznapra nincs módosítás).
+         */
+        public Map<String, TripUpdate> updatesOn(LocalDate date) {
+            return updatesByDate.getOrDefault(date, Map.of());
+        }
+
+        /**
+         * @return A módosítások száma az összes napon.
+         */
+        public int size() {
+            return updatesByDate.values().stream().mapToInt(Map::size).sum();
+        }
+
+        /**
+         * Új pillanatkép a módosításokkal kiegészítve; csak az érintett napok táblázatai másolódnak.
+         *
+         * @param updates A járatok módosításai.
+         * @return Az új pillanatkép.
+         */
+        Snapshot with(Collection<TripUpdate> updates) {
+            if (updates.isEmpty()) {
+                return this;
+            }
+            Map<LocalDate, Map<String, TripUpdate>> byDate = new HashMap<>(updatesByDate);
+            Set<LocalDate> copied = new HashSet<>();
+            for (TripUpdate update : updates) {
+                LocalDate date = update.serviceDate();
+                Map<String, TripUpdate> day = byDate.get(date);
+                if (copied.add(date)) {
+                    day = day == null ? new HashMap<>() : new HashMap<>(day);
+                    byDate.put(date, day);
+                }
+                day.put(update.tripId(), update);
+            }
+            for (LocalDate date : copied) {
+                byDate.put(date, Collections.unmodifiableMap(byDate.get(date)));
+            }
+            return new Snapshot(Collections.unmodifiableMap(byDate));
+        }
+
+        /**
+         * Pillanatkép a megadott naptól kezdődő forgalmi napok módosításaival.
+         *
+         * @param date Az első megtartott forgalmi nap.
+         * @return Az új pillanatkép, vagy ez a példány, ha nincs korábbi nap.
+         */
+        Snapshot since(LocalDate date) {
+            if (updatesByDate.keySet().stream().noneMatch(day -> day.isBefore(date))) {
+                return this;
+            }
+            Map<LocalDate, Map<String, TripUpdate>> byDate = new HashMap<>(updatesByDate);
+            byDate.keySet().removeIf(day -> day.isBefore(date));
+            return new Snapshot(Collections.unmodifiableMap(byDate));
+        }
+    }
+}
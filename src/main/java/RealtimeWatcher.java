@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A RealtimeWatcher osztály egy helyi fájlt vagy könyvtárat figyel, és a bennük megjelenő GTFS-Realtime JSON
+ * üzeneteket a {@link RealtimeOverlay}-re alkalmazza. Könyvtár esetén minden .json fájl egy üzenet, módosítási
+ * sorrendben. A figyelés egy háttérszálon fut; a félig kiírt vagy hibás fájlt kihagyja, és a következő
+ * módosításkor újra megpróbálja. A figyelő a {@link #start(Path, RealtimeOverlay)} metódussal indul, így a szál
+ * csak a teljesen felépült objektumot látja.
+ */
+public final class RealtimeWatcher implements AutoCloseable {
+
+    private final Path path;
+    private final RealtimeOverlay overlay;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * Konstruktor, amely regisztrálja a figyelést, de még nem alkalmaz üzenetet és nem indít szálat.
+     *
+     * @param path    A figyelt fájl vagy könyvtár.
+     * @param overlay A módosítások célja.
+     * @throws IOException Ha a könyvtár nem figyelhető.
+     */
+    private RealtimeWatcher(Path path, RealtimeOverlay overlay) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.overlay = overlay;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        Path directory = Files.isDirectory(this.path) ? this.path : this.path.getParent();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "realtime-watcher");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Figyelő létrehozása, amely a már meglévő üzeneteket azonnal alkalmazza, majd elindítja a figyelést.
+     *
+     * @param path    A figyelt fájl vagy könyvtár.
+     * @param overlay A módosítások célja.
+     * @return A futó figyelő, amelyet a {@link #close()} állít le.
+     * @throws IOException Ha a könyvtár nem figyelhető.
+     */
+    public static RealtimeWatcher start(Path path, RealtimeOverlay overlay) throws IOException {
+        RealtimeWatcher watcher = new RealtimeWatcher(path, overlay);
+        watcher.refresh();
+        watcher.thread.start();
+        return watcher;
+    }
+
+    /**
+     * Az összes figyelt üzenet beolvasása és alkalmazása módosítási sorrendben.
+     *
+     * @return Az alkalmazott üzenetek száma.
+     */
+    public int refresh() {
+        int applied = 0;
+        for (Path file : messageFiles()) {
+            if (apply(file)) {
+                applied++;
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * A figyelés ciklusa, amely a szál megszakításáig vagy a figyelő bezárásáig fut.
+     */
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path name && isMessageFile(directory.resolve(name))) {
+                        apply(directory.resolve(name));
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Egy üzenet beolvasása és alkalmazása.
+     *
+     * @param file Az üzenet fájlja.
+     * @return Igaz, ha az üzenet alkalmazva lett.
+     */
+    private boolean apply(Path file) {
+        try {
+            TripUpdateReader.Message message = TripUpdateReader.read(file);
+            overlay.apply(message.updates(), message.fullDataset());
+            if (message.droppedStopUpdates() > 0) {
+                System.err.println("Skipped " + message.droppedStopUpdates() + " stop time updates without stop_sequence in " + file);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not read realtime updates " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return A figyelt üzenetfájlok módosítási sorrendben.
+     */
+    private List<Path> messageFiles() {
+        if (!Files.isDirectory(path)) {
+            return Files.isRegularFile(path) ? List.of(path) : List.of();
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(path)) {
+            entries.filter(this::isMessageFile).forEach(files::add);
+        } catch (IOException e) {
+            System.err.println("Could not list realtime updates " + path + ": " + e.getMessage());
+        }
+        files.sort(Comparator.comparingLong(RealtimeWatcher::lastModified));
+        return files;
+    }
+
+    /**
+     * @param file Egy fájl a figyelt könyvtárban.
+     * @return Igaz, ha a fájl figyelt üzenet.
+     */
+    private boolean isMessageFile(Path file) {
+        return Files.isDirectory(path) ? file.getFileName().toString().endsWith(".json") && Files.isRegularFile(file) : file.equals(path);
+    }
+
+    /**
+     * @param file A fájl.
+     * @return A fájl utolsó módosításának ideje, vagy 0, ha nem olvasható.
+     */
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A figyelés leállítása; a már alkalmazott módosítások megmaradnak.
+     *
+     * @throws IOException Ha a figyelő nem zárható le.
+     */
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+}
@@ -0,0 +1,235 @@
+import java.util.*;
+
+/**
+ * A ReverseSearch osztály visszafelé keres a tervezési gráfon: a cél megállótól és a legkésőbbi érkezési időtől
+ * indulva megkeresi azt az útvonalat, amellyel a legkésőbb lehet elindulni a kiinduló megállóból.
+ * Ugyanazokat az átszállási szabályokat alkalmazza, mint az előre irányuló keresés.
+ * <p>
+ * A járaton ülő címkék megállónként és járatonként külön tárolódnak: egy másik járat későbbi indulása nem szorítja
+ * ki őket, így a járaton maradás lehetősége nem vész el akkor sem, ha a későbbi járatra már nem lehet átszállni
+ * (az előre irányuló keresés felülírt járatos címkéinek tükörképe).
+ */
+public class ReverseSearch {
+
+    private final Map<String, List<ReverseEdge>> reverseGraph = new HashMap<>();
+    private final RoutingProfile profile;
+    private long labelsSettled;
+    private long queuePushes;
+
+    /**
+     * Konstruktor, amely felépíti a gráf fordított szomszédsági listáit.
+     *
+     * @param graph   A kéréshez felépített (előre irányuló) gráf.
+     * @param profile A tervezési profil.
+     */
+    public ReverseSearch(Map<String, List<TripPlanner.Edge>> graph, RoutingProfile profile) {
+        this.profile = profile;
+        graph.forEach((fromStopId, edges) -> {
+            for (TripPlanner.Edge edge : edges) {
+                reverseGraph.computeIfAbsent(edge.toStopId, _ -> new ArrayList<>()).add(new ReverseEdge(fromStopId, edge));
+            }
+        });
+    }
+
+    /**
+     * A keresés futtatása.
+     *
+     * @param startStopId    Az induló megálló azonosítója.
+     * @param endStopId      Az érkező megálló azonosítója.
+     * @param arrivalSeconds A legkésőbbi érkezési idő a nap kezdetétől másodpercben.
+     * @return Az előre irányuló csomópont lánc utolsó (cél) eleme, vagy null, ha nincs útvonal.
+     */
+    TripPlanner.NodeEntry run(String startStopId, String endStopId, long arrivalSeconds) {
+        long earliestDeparture = arrivalSeconds - profile.getSearchHorizon().getSeconds();
+
+        PriorityQueue<Label> queue = new PriorityQueue<>(Comparator.comparingLong((Label label) -> label.time).reversed());
+        Map<LabelKey, Long> latestTimes = new HashMap<>();
+        Label target = new Label(endStopId, arrivalSeconds, null, false, 0, null, null);
+        queue.add(target);
+        latestTimes.put(target.key(), arrivalSeconds);
+        queuePushes++;
+
+        Label origin = null;
+        while (!queue.isEmpty()) {
+            Label current = queue.poll();
+            if (current.time < latestTimes.getOrDefault(current.key(), Long.MIN_VALUE)) {
+                continue; // Elavult bejegyzés
+            }
+            labelsSettled++;
+            if (current.stopId.equals(startStopId)) {
+                origin = current;
+                break;
+            }
+
+            for (ReverseEdge reverseEdge : reverseGraph.getOrDefault(current.stopId, Collections.emptyList())) {
+                Label previous = relax(current, reverseEdge);
+                if (previous == null) {
+                    continue;
+                }
+                if (previous.stopId.equals(startStopId) && (previous.tripId != null || previous.boardsNext)) {
+                    // Az előre irányuló keresés az első felszállás előtt is megköveteli a minimális átszállási időt
+                    previous.time -= profile.getMinTransferTime();
+                }
+                if (previous.time < earliestDeparture) {
+                    continue;
+                }
+                if (previous.time > latestTimes.getOrDefault(previous.key(), Long.MIN_VALUE)) {
+                    latestTimes.put(previous.key(), previous.time);
+                    queue.add(previous);
+                    queuePushes++;
+                }
+            }
+        }
+
+        return origin == null ? null : toForwardPath(origin);
+    }
+
+    /**
+     * @return A keresés során véglegesített címkék száma.
+     */
+    long getLabelsSettled() {
+        return labelsSettled;
+    }
+
+    /**
+     * @return A prioritási sorba tett címkék száma.
+     */
+    long getQueuePushes() {
+        return queuePushes;
+    }
+
+    /**
+     * Egy fordított él feldolgozása: kiszámolja, legkésőbb mikor kell az él kiinduló megállójában lenni.
+     *
+     * @param current     A címke az él cél megállójában.
+     * @param reverseEdge A fordított él.
+     * @return Az új címke az él kiinduló megállójában, vagy null, ha az él nem használható.
+     */
+    private Label relax(Label current, ReverseEdge reverseEdge) {
+        TripPlanner.Edge edge = reverseEdge.edge;
+        if (edge.type != EdgeType.TRANSIT) {
+            // Séta: a gyaloglás az érkezés után azonnal indul, a várakozás a következő felszálláskor jelentkezik
+            boolean boardsNext = current.tripId != null || current.boardsNext;
+            return new Label(reverseEdge.fromStopId, current.time - edge.travelTime, current, boardsNext, current.boardings, null, edge);
+        }
+
+        if (edge.departureTime == null) {
+            return null;
+        }
+        long departure = edge.departureTime.toSecondOfDay();
+        long arrival = departure + edge.travelTime;
+        if (arrival > current.time) {
+            return null;
+        }
+
+        if (current.tripId != null && current.tripId.equals(edge.tripId)) {
+            // Ugyanazon a járaton folytatás
+            return new Label(reverseEdge.fromStopId, departure, current, false, current.boardings, edge.tripId, edge);
+        }
+
+        if (current.tripId != null || current.boardsNext) {
+            // Leszállás után (esetleg séta után) átszállás egy másik járatra
+            long waitTime = current.time - arrival;
+            if (waitTime < profile.getMinTransferTime() || waitTime > profile.getMaxTransferTime()) {
+                return null;
+            }
+        }
+        if (current.boardings > profile.getMaxTransfers()) {
+            return null;
+        }
+        return new Label(reverseEdge.fromStopId, departure, current, false, current.boardings + 1, edge.tripId, edge);
+    }
+
+    /**
+     * A visszafelé talált címkelánc átalakítása előre irányuló csomópont bejegyzésekké,
+     * hogy a szokásos utazási terv összeállítás használható legyen. Az első felszállás előtti várakozás legalább a
+     * minimális átszállási idő, így az indulási időtől futtatott előre irányuló keresés ugyanazt a járatot éri el.
+     *
+     * @param origin A kiinduló megálló címkéje.
+     * @return A cél megálló csomópont bejegyzése.
+     */
+    private TripPlanner.NodeEntry toForwardPath(Label origin) {
+        long time = origin.time; // Az első felszállás előtti minimális tartalékkal együtt
+        TripPlanner.NodeEntry node = new TripPlanner.NodeEntry(origin.stopId, time, null, 0, null, null, 0);
+        String currentTripId = null;
+        int boardings = 0;
+
+        for (Label label = origin; label.next != null; label = label.next) {
+            TripPlanner.Edge edge = label.edge;
+            long waitTime = 0;
+            if (edge.type == EdgeType.TRANSIT) {
+                long departure = edge.departureTime.toSecondOfDay();
+                if (!edge.tripId.equals(currentTripId)) {
+                    waitTime = departure - time;
+                    currentTripId = edge.tripId;
+                    boardings++;
+                }
+                time = departure + edge.travelTime;
+            } else {
+                time += edge.travelTime;
+                currentTripId = null;
+            }
+            node = new TripPlanner.NodeEntry(label.next.stopId, time, node, boardings, currentTripId, edge, waitTime);
+        }
+        return node;
+    }
+
+    /**
+     * Egy fordított él: az eredeti él a kiinduló megálló azonosítójával.
+     *
+     * @param fromStopId Az eredeti él kiinduló megállója.
+     * @param edge       Az eredeti él.
+     */
+    private record ReverseEdge(String fromStopId, TripPlanner.Edge edge) {
+    }
+
+    /**
+     * Egy címke kulcsa: a megálló, járaton ülő címkénél a járattal együtt.
+     *
+     * @param stopId A megálló azonosítója.
+     * @param tripId A továbbhaladó járat azonosítója, vagy null.
+     */
+    private record LabelKey(String stopId, String tripId) {
+    }
+
+    /**
+     * Visszafelé keresési címke.
+     */
+    private static class Label {
+        String stopId;
+        long time;              // Legkésőbbi indulás (járaton: a járat indulása) a megállóból
+        Label next;             // A következő címke a cél felé
+        boolean boardsNext;     // Séta után később még felszállás következik
+        int boardings;          // Felszállások száma a címkétől a célig
+        String tripId;          // A járat, amellyel a megállóból továbbhaladunk
+        TripPlanner.Edge edge;  // Az él, amellyel a megállóból továbbhaladunk
+
+        /**
+         * Címke konstruktor.
+         *
+         * @param stopId     A megálló azonosítója.
+         * @param time       A legkésőbbi indulási idő.
+         * @param next       A következő címke.
+         * @param boardsNext Séta után később még felszállás következik.
+         * @param boardings  Felszállások száma a célig.
+         * @param tripId     A továbbhaladó járat azonosítója.
+         * @param edge       A továbbhaladó él.
+         */
+        Label(String stopId, long time, Label next, boolean boardsNext, int boardings, String tripId, TripPlanner.Edge edge) {
+            this.stopId = stopId;
+            this.time = time;
+            this.next = next;
+            this.boardsNext = boardsNext;
+            this.boardings = boardings;
+            this.tripId = tripId;
+            this.edge = edge;
+        }
+
+        /**
+         * @return A címke kulcsa a legkésőbbi idők táblázatában.
+         */
+        LabelKey key() {
+            return new LabelKey(stopId, tripId);
+        }
+    }
+}
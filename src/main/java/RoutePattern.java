@@ -0,0 +1,153 @@
+import model.Trip;
+
+/**
+ * A RoutePattern osztály azonos megállósorrendű és azonos fel- és leszállási szabályú járatok csoportja
+ * (menetrendi minta). Az idők járat × megálló mátrixban tárolódnak, a járatok indulási sorrendben; mivel
+ * a mintán belül egyik járat sem előzi meg a másikat, minden megálló oszlopa is rendezett.
+ * <p>
+ * Az idők a forgalmi nap kezdetétől mért másodpercek; az éjfél utáni idők 86400-nál nagyobbak.
+ */
+public class RoutePattern {
+
+    private final int id;
+    private final String routeId;
+    private final int[] stops;
+    private final boolean[] pickup;
+    private final boolean[] dropOff;
+    private final Trip[] trips;
+    private final int[] arrivals;
+    private final int[] departures;
+
+    /**
+     * Konstruktor a kész mátrixokból.
+     *
+     * @param id         A minta indexe.
+     * @param routeId    A vonal azonosítója.
+     * @param stops      A megállók indexei a megállási sorrendben.
+     * @param pickup     Megállónként, hogy lehet-e felszállni.
+     * @param dropOff    Megállónként, hogy lehet-e leszállni.
+     * @param trips      A járatok indulási sorrendben.
+     * @param arrivals   Érkezési idők járatonként egymás után (járatok × megállók).
+     * @param departures Indulási idők járatonként egymás után (járatok × megállók).
+     */
+    RoutePattern(int id, String routeId, int[] stops, boolean[] pickup, boolean[] dropOff, Trip[] trips, int[] arrivals, int[] departures) {
+        this.id = id;
+        this.routeId = routeId;
+        this.stops = stops;
+        this.pickup = pickup;
+        this.dropOff = dropOff;
+        this.trips = trips;
+        this.arrivals = arrivals;
+        this.departures = departures;
+    }
+
+    /**
+     * A minta másolata új indexszel és a járatok új példányaival; a megállók és az idők tömbjein osztoznak.
+     *
+     * @param id    Az új index.
+     * @param trips A járatok ugyanabban a sorrendben.
+     * @return A másolat.
+     */
+    RoutePattern withTrips(int id, Trip[] trips) {
+        return new RoutePattern(id, routeId, stops, pickup, dropOff, trips, arrivals, departures);
+    }
+
+    /**
+     * @return A minta indexe.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return A vonal azonosítója.
+     */
+    public String getRouteId() {
+        return routeId;
+    }
+
+    /**
+     * @return A megállók száma a mintában.
+     */
+    public int stopCount() {
+        return stops.length;
+    }
+
+    /**
+     * @return A járatok száma a mintában.
+     */
+    public int tripCount() {
+        return trips.length;
+    }
+
+    /**
+     * @param position A megálló pozíciója.
+     * @return A megálló indexe.
+     */
+    public int stop(int position) {
+        return stops[position];
+    }
+
+    /**
+     * @param position A megálló pozíciója.
+     * @return Igaz, ha a megállóban fel lehet szállni.
+     */
+    public boolean canBoard(int position) {
+        return pickup[position];
+    }
+
+    /**
+     * @param position A megálló pozíciója.
+     * @return Igaz, ha a megállóban le lehet szállni.
+     */
+    public boolean canAlight(int position) {
+        return dropOff[position];
+    }
+
+    /**
+     * @param trip A járat sorszáma a mintán belül.
+     * @return A járat.
+     */
+    public Trip trip(int trip) {
+        return trips[trip];
+    }
+
+    /**
+     * @param trip     A járat sorszáma a mintán belül.
+     * @param position A megálló pozíciója.
+     * @return Az érkezési idő másodpercben.
+     */
+    public int arrival(int trip, int position) {
+        return arrivals[trip * stops.length + position];
+    }
+
+    /**
+     * @param trip     A járat sorszáma a mintán belül.
+     * @param position A megálló pozíciója.
+     * @return Az indulási idő másodpercben.
+     */
+    public int departure(int trip, int position) {
+        return departures[trip * stops.length + position];
+    }
+
+    /**
+     * Az első járat, amely a megadott pozíción legkorábban a megadott időben indul (bináris kereséssel).
+     *
+     * @param position A megálló pozíciója.
+     * @param time     A legkorábbi indulási idő másodpercben.
+     * @return A járat sorszáma a mintán belül, vagy -1, ha nincs ilyen.
+     */
+    public int earliestTrip(int position, int time) {
+        int low = 0;
+        int high = trips.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departures[mid * stops.length + position] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < trips.length ? low : -1;
+    }
+}
@@ -0,0 +1,484 @@
+import model.StopTime;
+import model.Trip;
+
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * A RoutePatternIndex osztály a járatokat menetrendi mintákba csoportosítja: azonos vonal, azonos megállósorrend
+ * és azonos fel- és leszállási szabályok. Ha egy járat megelőzné a minta egy korábban induló járatát, külön mintába
+ * kerül, így minden minta minden megállójában az indulások rendezettek.
+ * <p>
+ * A járatok a minták sorrendjében folytonos, 0-tól kezdődő globális sorszámot is kapnak.
+ */
+public class RoutePatternIndex {
+
+    private final StopIndex stopIndex;
+    private final List<RoutePattern> patterns;
+    private final int[] tripOffsets;
+    private final int[][] stopPatterns;
+    private final int[][] stopPositions;
+    private final Map<String, Integer> globalTripById;
+    private final long fingerprint;
+
+    /**
+     * Konstruktor a kész mintákból.
+     *
+     * @param stopIndex A megállók indexe.
+     * @param patterns  A minták.
+     */
+    private RoutePatternIndex(StopIndex stopIndex, List<RoutePattern> patterns) {
+        this.stopIndex = stopIndex;
+        this.patterns = List.copyOf(patterns);
+        this.tripOffsets = new int[patterns.size() + 1];
+        this.globalTripById = new HashMap<>();
+        List<List<int[]>> patternsAtStop = new ArrayList<>(stopIndex.size());
+        for (int s = 0; s < stopIndex.size(); s++) {
+            patternsAtStop.add(new ArrayList<>());
+        }
+        long hash = 1125899906842597L;
+        for (RoutePattern pattern : patterns) {
+            int p = pattern.getId();
+            tripOffsets[p + 1] = tripOffsets[p] + pattern.tripCount();
+            for (int j = 0; j < pattern.stopCount(); j++) {
+                patternsAtStop.get(pattern.stop(j)).add(new int[]{p, j});
+                hash = 31 * hash + stopIndex.get(pattern.stop(j)).getStopId().hashCode();
+                hash = 31 * hash + (pattern.canBoard(j) ? 1 : 0) + (pattern.canAlight(j) ? 2 : 0);
+            }
+            for (int k = 0; k < pattern.tripCount(); k++) {
+                globalTripById.put(pattern.trip(k).getTripId(), tripOffsets[p] + k);
+                hash = 31 * hash + pattern.trip(k).getTripId().hashCode();
+                for (int j = 0; j < pattern.stopCount(); j++) {
+                    hash = 31 * hash + pattern.arrival(k, j);
+                    hash = 31 * hash + pattern.departure(k, j);
+                }
+            }
+        }
+        this.fingerprint = hash;
+        this.stopPatterns = new int[stopIndex.size()][];
+        this.stopPositions = new int[stopIndex.size()][];
+        for (int s = 0; s < stopIndex.size(); s++) {
+            List<int[]> refs = patternsAtStop.get(s);
+            stopPatterns[s] = new int[refs.size()];
+            stopPositions[s] = new int[refs.size()];
+            for (int k = 0; k < refs.size(); k++) {
+                stopPatterns[s][k] = refs.get(k)[0];
+                stopPositions[s][k] = refs.get(k)[1];
+            }
+        }
+    }
+
+    /**
+     * A minták felépítése a megállóidőkből. A legalább két ismert megállóval rendelkező járatok kerülnek be.
+     *
+     * @param stopIndex A megállók indexe.
+     * @param stopTimes A megállóidők listája.
+     * @param trips     A járatok listája.
+     * @return A minták indexe.
+     */
+    public static RoutePatternIndex build(StopIndex stopIndex, List<StopTime> stopTimes, List<Trip> trips) {
+        Map<String, List<StopTime>> stopTimesByTrip = new HashMap<>();
+        for (StopTime stopTime : stopTimes) {
+            stopTimesByTrip.computeIfAbsent(stopTime.getTripId(), _ -> new ArrayList<>()).add(stopTime);
+        }
+
+        // Járatok csoportosítása vonal, megállósorrend és fel- és leszállási szabályok szerint
+        Map<String, List<TripTimetable>> groups = new LinkedHashMap<>();
+        for (Trip trip : trips) {
+            TripTimetable timetable = TripTimetable.of(trip, stopTimesByTrip.getOrDefault(trip.getTripId(), Collections.emptyList()), stopIndex);
+            if (timetable != null) {
+                groups.computeIfAbsent(timetable.key(), _ -> new ArrayList<>()).add(timetable);
+            }
+        }
+
+        List<RoutePattern> patterns = new ArrayList<>();
+        for (List<TripTimetable> group : groups.values()) {
+            addPatterns(group, patterns);
+        }
+        return new RoutePatternIndex(stopIndex, patterns);
+    }
+
+    /**
+     * A minták frissítése egy feed különbség alapján: csak az érintett járatokat tartalmazó csoportok (vonal,
+     * megállósorrend, szabályok) épülnek újra, a többi minta változatlan időtáblával, új sorszámmal kerül át.
+     * A megállók indexének változatlannak kell lennie.
+     *
+     * @param previous      A korábbi minták.
+     * @param stopTimes     Az új feed megállóidői.
+     * @param trips         Az új feed járatai.
+     * @param affectedTrips Az új, törölt vagy módosult járatok azonosítói.
+     * @return Az új minták és a megtartott minták korábbi sorszámai.
+     */
+    public static Update update(RoutePatternIndex previous, List<StopTime> stopTimes, List<Trip> trips, Set<String> affectedTrips) {
+        StopIndex stopIndex = previous.stopIndex;
+        Map<String, Trip> tripsById = new HashMap<>();
+        for (Trip trip : trips) {
+            tripsById.put(trip.getTripId(), trip);
+        }
+        Map<String, List<StopTime>> stopTimesByTrip = new HashMap<>();
+        for (StopTime stopTime : stopTimes) {
+            if (affectedTrips.contains(stopTime.getTripId())) {
+                stopTimesByTrip.computeIfAbsent(stopTime.getTripId(), _ -> new ArrayList<>()).add(stopTime);
+            }
+        }
+
+        // Az érintett járatok új időtáblái, és azok a csoportok, amelyekben érintett járat volt vagy lesz
+        Map<String, List<TripTimetable>> groups = new LinkedHashMap<>();
+        for (String tripId : affectedTrips) {
+            Trip trip = tripsById.get(tripId);
+            if (trip == null) {
+                continue;
+            }
+            TripTimetable timetable = TripTimetable.of(trip, stopTimesByTrip.getOrDefault(tripId, Collections.emptyList()), stopIndex);
+            if (timetable != null) {
+                groups.computeIfAbsent(timetable.key(), _ -> new ArrayList<>()).add(timetable);
+            }
+        }
+        for (RoutePattern pattern : previous.patterns) {
+            for (int k = 0; k < pattern.tripCount(); k++) {
+                if (affectedTrips.contains(pattern.trip(k).getTripId())) {
+                    groups.computeIfAbsent(key(pattern), _ -> new ArrayList<>());
+                    break;
+                }
+            }
+        }
+
+        List<RoutePattern> patterns = new ArrayList<>();
+        List<Integer> previousIds = new ArrayList<>();
+        for (RoutePattern pattern : previous.patterns) {
+            List<TripTimetable> group = groups.get(key(pattern));
+            if (group == null) {
+                Trip[] patternTrips = new Trip[pattern.tripCount()];
+                for (int k = 0; k < patternTrips.length; k++) {
+                    patternTrips[k] = tripsById.get(pattern.trip(k).getTripId());
+                }
+                patterns.add(pattern.withTrips(patterns.size(), patternTrips));
+                previousIds.add(pattern.getId());
+                continue;
+            }
+            for (int k = 0; k < pattern.tripCount(); k++) {
+                Trip trip = pattern.trip(k);
+                if (!affectedTrips.contains(trip.getTripId())) {
+                    group.add(TripTimetable.of(pattern, k, tripsById.get(trip.getTripId())));
+                }
+            }
+        }
+        for (List<TripTimetable> group : groups.values()) {
+            int first = patterns.size();
+            addPatterns(group, patterns);
+            for (int p = first; p < patterns.size(); p++) {
+                previousIds.add(-1);
+            }
+        }
+        return new Update(new RoutePatternIndex(stopIndex, patterns), previousIds.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Egy frissítés eredménye.
+     *
+     * @param index       Az új minták indexe.
+     * @param previousIds Új minta sorszám szerint a változatlanul átvett minta korábbi sorszáma, vagy -1, ha újraépült.
+     */
+    public record Update(RoutePatternIndex index, int[] previousIds) {
+
+        /**
+         * @return Az újraépült minták száma.
+         */
+        public int rebuiltCount() {
+            return (int) Arrays.stream(previousIds).filter(id -> id < 0).count();
+        }
+    }
+
+    /**
+     * @return A megállók indexe.
+     */
+    public StopIndex getStopIndex() {
+        return stopIndex;
+    }
+
+    /**
+     * @return A minták listája, index sorrendben.
+     */
+    public List<RoutePattern> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * @param id A minta indexe.
+     * @return A minta.
+     */
+    public RoutePattern getPattern(int id) {
+        return patterns.get(id);
+    }
+
+    /**
+     * @return A minták száma.
+     */
+    public int patternCount() {
+        return patterns.size();
+    }
+
+    /**
+     * @return Az összes járat száma.
+     */
+    public int tripCount() {
+        return tripOffsets[patterns.size()];
+    }
+
+    /**
+     * @param pattern A minta indexe.
+     * @return A minta első járatának globális sorszáma.
+     */
+    public int tripOffset(int pattern) {
+        return tripOffsets[pattern];
+    }
+
+    /**
+     * @param stop A megálló indexe.
+     * @return A megállót érintő minták indexei.
+     */
+    public int[] patternsAt(int stop) {
+        return stopPatterns[stop];
+    }
+
+    /**
+     * @param stop A megálló indexe.
+     * @return A megálló pozíciója a {@link #patternsAt(int)} által visszaadott mintákban.
+     */
+    public int[] positionsAt(int stop) {
+        return stopPositions[stop];
+    }
+
+    /**
+     * Visszaadja egy járat globális sorszámát.
+     *
+     * @param tripId A járat azonosítója.
+     * @return A globális sorszám, vagy -1, ha a járat nincs egyik mintában sem.
+     */
+    public int globalTrip(String tripId) {
+        Integer trip = globalTripById.get(tripId);
+        return trip == null ? -1 : trip;
+    }
+
+    /**
+     * Visszaadja a globális sorszámú járat mintáját (bináris kereséssel a minták eltolásai között).
+     *
+     * @param globalTrip A járat globális sorszáma.
+     * @return A minta indexe.
+     */
+    public int patternOf(int globalTrip) {
+        int low = 0;
+        int high = patterns.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (tripOffsets[mid] <= globalTrip) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return A menetrend ujjlenyomata (megállók, szabályok, járatok és idők alapján), gyorsítótárak érvényesítéséhez.
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Egy csoport járatainak mintákba osztása indulási sorrendben úgy, hogy egyik minta járatai se előzzék meg egymást.
+     *
+     * @param group    A csoport járatainak időtáblái.
+     * @param patterns A minták listája, amelynek végére az új minták kerülnek.
+     */
+    private static void addPatterns(List<TripTimetable> group, List<RoutePattern> patterns) {
+        group.sort(Comparator.comparingInt((TripTimetable timetable) -> timetable.departures[0])
+                .thenComparingInt(timetable -> timetable.arrivals[timetable.arrivals.length - 1]));
+        List<List<TripTimetable>> fifoGroups = new ArrayList<>();
+        for (TripTimetable timetable : group) {
+            List<TripTimetable> target = null;
+            for (List<TripTimetable> fifoGroup : fifoGroups) {
+                if (!timetable.overtakes(fifoGroup.getLast())) {
+                    target = fifoGroup;
+                    break;
+                }
+            }
+            if (target == null) {
+                target = new ArrayList<>();
+                fifoGroups.add(target);
+            }
+            target.add(timetable);
+        }
+        for (List<TripTimetable> fifoGroup : fifoGroups) {
+            patterns.add(toPattern(patterns.size(), fifoGroup));
+        }
+    }
+
+    /**
+     * A csoportosítás kulcsa: vonal, megállósorrend és fel- és leszállási szabályok.
+     *
+     * @param pattern A minta.
+     * @return A kulcs.
+     */
+    private static String key(RoutePattern pattern) {
+        int[] stops = new int[pattern.stopCount()];
+        boolean[] pickup = new boolean[stops.length];
+        boolean[] dropOff = new boolean[stops.length];
+        for (int j = 0; j < stops.length; j++) {
+            stops[j] = pattern.stop(j);
+            pickup[j] = pattern.canBoard(j);
+            dropOff[j] = pattern.canAlight(j);
+        }
+        return key(pattern.getRouteId(), stops, pickup, dropOff);
+    }
+
+    /**
+     * A csoportosítás kulcsa a vonalból, a megállósorrendből és a szabályokból.
+     *
+     * @param routeId A vonal azonosítója.
+     * @param stops   A megállók indexei.
+     * @param pickup  Megállónként, hogy lehet-e felszállni.
+     * @param dropOff Megállónként, hogy lehet-e leszállni.
+     * @return A kulcs.
+     */
+    private static String key(String routeId, int[] stops, boolean[] pickup, boolean[] dropOff) {
+        return routeId + '|' + Arrays.toString(stops) + '|' + Arrays.toString(pickup) + '|' + Arrays.toString(dropOff);
+    }
+
+    /**
+     * Egy minta összeállítása a járatok időtábláiból.
+     *
+     * @param id         A minta indexe.
+     * @param timetables A járatok időtáblái indulási sorrendben.
+     * @return A minta.
+     */
+    private static RoutePattern toPattern(int id, List<TripTimetable> timetables) {
+        TripTimetable first = timetables.getFirst();
+        int stopCount = first.stops.length;
+        Trip[] trips = new Trip[timetables.size()];
+        int[] arrivals = new int[timetables.size() * stopCount];
+        int[] departures = new int[timetables.size() * stopCount];
+        for (int k = 0; k < timetables.size(); k++) {
+            TripTimetable timetable = timetables.get(k);
+            trips[k] = timetable.trip;
+            System.arraycopy(timetable.arrivals, 0, arrivals, k * stopCount, stopCount);
+            System.arraycopy(timetable.departures, 0, departures, k * stopCount, stopCount);
+        }
+        return new RoutePattern(id, first.trip.getRouteId(), first.stops, first.pickup, first.dropOff, trips, arrivals, departures);
+    }
+
+    /**
+     * Egy járat megállói és idői a megállási sorrendben.
+     *
+     * @param trip       A járat.
+     * @param stops      A megállók indexei.
+     * @param pickup     Megállónként, hogy lehet-e felszállni.
+     * @param dropOff    Megállónként, hogy lehet-e leszállni.
+     * @param arrivals   Az érkezési idők.
+     * @param departures Az indulási idők.
+     */
+    private record TripTimetable(Trip trip, int[] stops, boolean[] pickup, boolean[] dropOff, int[] arrivals, int[] departures) {
+
+        /**
+         * Egy járat időtáblája a megállóidőiből; az éjfélen átnyúló időket 24 órával eltolja.
+         *
+         * @param trip      A járat.
+         * @param stopTimes A járat megállóidői.
+         * @param stopIndex A megállók indexe.
+         * @return Az időtábla, vagy null, ha a járatnak kevesebb mint két használható megállója van.
+         */
+        static TripTimetable of(Trip trip, List<StopTime> stopTimes, StopIndex stopIndex) {
+            List<StopTime> sorted = new ArrayList<>(stopTimes);
+            sorted.sort(Comparator.comparingInt(StopTime::getStopSequence));
+            int[] stops = new int[sorted.size()];
+            boolean[] pickup = new boolean[sorted.size()];
+            boolean[] dropOff = new boolean[sorted.size()];
+            int[] arrivals = new int[sorted.size()];
+            int[] departures = new int[sorted.size()];
+            int n = 0;
+            int dayOffset = 0;
+            int previous = -1;
+            for (StopTime stopTime : sorted) {
+                int stop = stopIndex.indexOf(stopTime.getStopId());
+                Optional<LocalTime> arrival = stopTime.getArrivalTime().or(stopTime::getDepartureTime);
+                Optional<LocalTime> departure = stopTime.getDepartureTime().or(stopTime::getArrivalTime);
+                if (stop < 0 || arrival.isEmpty()) {
+                    continue;
+                }
+                int arrivalSeconds = arrival.get().toSecondOfDay() + dayOffset;
+                while (arrivalSeconds < previous) {
+                    arrivalSeconds += 86400;
+                    dayOffset += 86400;
+                }
+                int departureSeconds = departure.get().toSecondOfDay() + dayOffset;
+                while (departureSeconds < arrivalSeconds) {
+                    departureSeconds += 86400;
+                    dayOffset += 86400;
+                }
+                stops[n] = stop;
+                pickup[n] = stopTime.getPickupType().orElse(0) != 1;
+                dropOff[n] = stopTime.getDropOffType().orElse(0) != 1;
+                arrivals[n] = arrivalSeconds;
+                departures[n] = departureSeconds;
+                previous = departureSeconds;
+                n++;
+            }
+            if (n < 2) {
+                return null;
+            }
+            return new TripTimetable(trip, Arrays.copyOf(stops, n), Arrays.copyOf(pickup, n), Arrays.copyOf(dropOff, n),
+                    Arrays.copyOf(arrivals, n), Arrays.copyOf(departures, n));
+        }
+
+        /**
+         * Egy minta járatának időtáblája, a járat új példányával.
+         *
+         * @param pattern A minta.
+         * @param k       A járat sorszáma a mintán belül.
+         * @param trip    A járat az új feedből.
+         * @return Az időtábla.
+         */
+        static TripTimetable of(RoutePattern pattern, int k, Trip trip) {
+            int stopCount = pattern.stopCount();
+            int[] stops = new int[stopCount];
+            boolean[] pickup = new boolean[stopCount];
+            boolean[] dropOff = new boolean[stopCount];
+            int[] arrivals = new int[stopCount];
+            int[] departures = new int[stopCount];
+            for (int j = 0; j < stopCount; j++) {
+                stops[j] = pattern.stop(j);
+                pickup[j] = pattern.canBoard(j);
+                dropOff[j] = pattern.canAlight(j);
+                arrivals[j] = pattern.arrival(k, j);
+                departures[j] = pattern.departure(k, j);
+            }
+            return new TripTimetable(trip, stops, pickup, dropOff, arrivals, departures);
+        }
+
+        /**
+         * A csoportosítás kulcsa: vonal, megállósorrend és fel- és leszállási szabályok.
+         *
+         * @return A kulcs.
+         */
+        String key() {
+            return RoutePatternIndex.key(trip.getRouteId(), stops, pickup, dropOff);
+        }
+
+        /**
+         * Megvizsgálja, hogy a járat valamelyik megállóban korábban érkezik vagy indul-e, mint a másik.
+         *
+         * @param previous A korábban induló járat.
+         * @return Igaz, ha a járat megelőzi a másikat.
+         */
+        boolean overtakes(TripTimetable previous) {
+            for (int i = 0; i < stops.length; i++) {
+                if (arrivals[i] < previous.arrivals[i] || departures[i] < previous.departures[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
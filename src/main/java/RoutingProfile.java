@@ -0,0 +1,218 @@
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A RoutingProfile osztály egy tervezési kérés paramétereit fogja össze.
+ * Megváltoztathatatlan; a with... metódusok módosított másolatot adnak vissza.
+ */
+public class RoutingProfile {
+
+    /**
+     * Az alapértelmezett profil: 5 km/h gyaloglás, legfeljebb 3000 m séta, 1-20 perc átszállási idő, 2 órás időablak,
+     * az átszállások számának korlátja nélkül.
+     */
+    public static final RoutingProfile DEFAULT = new RoutingProfile(5.0, 3000, 60, 1200, Integer.MAX_VALUE, Duration.ofHours(2));
+
+    /**
+     * Gyaloglási sebesség km/h-ban.
+     */
+    private final double walkSpeedKmh;
+
+    /**
+     * Egy séta szakasz legnagyobb hossza méterben.
+     */
+    private final double maxWalkDistance;
+
+    /**
+     * A legrövidebb átszállási (felszállás előtti várakozási) idő másodpercben.
+     */
+    private final long minTransferTime;
+
+    /**
+     * A leghosszabb átszállási (felszállás előtti várakozási) idő másodpercben.
+     */
+    private final long maxTransferTime;
+
+    /**
+     * A megengedett átszállások legnagyobb száma (a felszállások száma mínusz egy); {@link Integer#MAX_VALUE}, ha nincs korlát.
+     */
+    private final int maxTransfers;
+
+    /**
+     * A keresési időablak az indulási időtől számítva.
+     */
+    private final Duration searchHorizon;
+
+    /**
+     * A legrövidebb út keresés módja.
+     */
+    private final SearchAlgorithm searchAlgorithm;
+
+    /**
+     * Konstruktor, amely minden paramétert inicializál.
+     *
+     * @param walkSpeedKmh    Gyaloglási sebesség km/h-ban.
+     * @param maxWalkDistance Egy séta szakasz legnagyobb hossza méterben.
+     * @param minTransferTime A legrövidebb átszállási idő másodpercben.
+     * @param maxTransferTime A leghosszabb átszállási idő másodpercben.
+     * @param maxTransfers    A megengedett átszállások legnagyobb száma.
+     * @param searchHorizon   A keresési időablak.
+     * @throws IllegalArgumentException Ha valamelyik paraméter érvénytelen.
+     */
+    public RoutingProfile(double walkSpeedKmh, double maxWalkDistance, long minTransferTime, long maxTransferTime,
+                          int maxTransfers, Duration searchHorizon) {
+        this(walkSpeedKmh, maxWalkDistance, minTransferTime, maxTransferTime, maxTransfers, searchHorizon, SearchAlgorithm.DIJKSTRA);
+    }
+
+    /**
+     * Konstruktor, amely a keresés módját is megadja.
+     *
+     * @param walkSpeedKmh    Gyaloglási sebesség km/h-ban.
+     * @param maxWalkDistance Egy séta szakasz legnagyobb hossza méterben.
+     * @param minTransferTime A legrövidebb átszállási idő másodpercben.
+     * @param maxTransferTime A leghosszabb átszállási idő másodpercben.
+     * @param maxTransfers    A megengedett átszállások legnagyobb száma.
+     * @param searchHorizon   A keresési időablak.
+     * @param searchAlgorithm A legrövidebb út keresés módja.
+     * @throws IllegalArgumentException Ha valamelyik paraméter érvénytelen.
+     */
+    public RoutingProfile(double walkSpeedKmh, double maxWalkDistance, long minTransferTime, long maxTransferTime,
+                          int maxTransfers, Duration searchHorizon, SearchAlgorithm searchAlgorithm) {
+        if (walkSpeedKmh <= 0) {
+            throw new IllegalArgumentException("Walk speed must be positive: " + walkSpeedKmh);
+        }
+        if (maxWalkDistance < 0) {
+            throw new IllegalArgumentException("Max walk distance must not be negative: " + maxWalkDistance);
+        }
+        if (minTransferTime < 0 || maxTransferTime < minTransferTime) {
+            throw new IllegalArgumentException("Invalid transfer window: " + minTransferTime + "-" + maxTransferTime);
+        }
+        if (maxTransfers < 0) {
+            throw new IllegalArgumentException("Max transfers must not be negative: " + maxTransfers);
+        }
+        if (searchHorizon.isNegative() || searchHorizon.isZero()) {
+            throw new IllegalArgumentException("Search horizon must be positive: " + searchHorizon);
+        }
+        this.walkSpeedKmh = walkSpeedKmh;
+        this.maxWalkDistance = maxWalkDistance;
+        this.minTransferTime = minTransferTime;
+        this.maxTransferTime = maxTransferTime;
+        this.maxTransfers = maxTransfers;
+        this.searchHorizon = searchHorizon;
+        this.searchAlgorithm = Objects.requireNonNull(searchAlgorithm);
+    }
+
+    /**
+     * @return Gyaloglási sebesség km/h-ban.
+     */
+    public double getWalkSpeedKmh() {
+        return walkSpeedKmh;
+    }
+
+    /**
+     * @return Egy séta szakasz legnagyobb hossza méterben.
+     */
+    public double getMaxWalkDistance() {
+        return maxWalkDistance;
+    }
+
+    /**
+     * @return A legrövidebb átszállási idő másodpercben.
+     */
+    public long getMinTransferTime() {
+        return minTransferTime;
+    }
+
+    /**
+     * @return A leghosszabb átszállási idő másodpercben.
+     */
+    public long getMaxTransferTime() {
+        return maxTransferTime;
+    }
+
+    /**
+     * @return A megengedett átszállások legnagyobb száma.
+     */
+    public int getMaxTransfers() {
+        return maxTransfers;
+    }
+
+    /**
+     * @return A keresési időablak.
+     */
+    public Duration getSearchHorizon() {
+        return searchHorizon;
+    }
+
+    /**
+     * @return A legrövidebb út keresés módja.
+     */
+    public SearchAlgorithm getSearchAlgorithm() {
+        return searchAlgorithm;
+    }
+
+    /**
+     * Gyaloglási idő becslése egy távolsághoz.
+     *
+     * @param distance A távolság méterben.
+     * @return A gyaloglási idő másodpercben.
+     */
+    public long walkingTime(double distance) {
+        return (long) ((distance / 1000) / walkSpeedKmh * 3600);
+    }
+
+    /**
+     * @param walkSpeedKmh Az új gyaloglási sebesség km/h-ban.
+     * @return Másolat a módosított értékkel.
+     */
+    public RoutingProfile withWalkSpeedKmh(double walkSpeedKmh) {
+        return new RoutingProfile(walkSpeedKmh, maxWalkDistance, minTransferTime, maxTransferTime, maxTransfers, searchHorizon, searchAlgorithm);
+    }
+
+    /**
+     * @param maxWalkDistance Az új legnagyobb séta távolság méterben.
+     * @return Másolat a módosított értékkel.
+     */
+    public RoutingProfile withMaxWalkDistance(double maxWalkDistance) {
+        return new RoutingProfile(walkSpeedKmh, maxWalkDistance, minTransferTime, maxTransferTime, maxTransfers, searchHorizon, searchAlgorithm);
+    }
+
+    /**
+     * @param minTransferTime Az új legrövidebb átszállási idő másodpercben.
+     * @param maxTransferTime Az új leghosszabb átszállási idő másodpercben.
+     * @return Másolat a módosított értékekkel.
+     */
+    public RoutingProfile withTransferWindow(long minTransferTime, long maxTransferTime) {
+        return new RoutingProfile(walkSpeedKmh, maxWalkDistance, minTransferTime, maxTransferTime, maxTransfers, searchHorizon, searchAlgorithm);
+    }
+
+    /**
+     * @param maxTransfers Az átszállások új legnagyobb száma.
+     * @return Másolat a módosított értékkel.
+     */
+    public RoutingProfile withMaxTransfers(int maxTransfers) {
+        return new RoutingProfile(walkSpeedKmh, maxWalkDistance, minTransferTime, maxTransferTime, maxTransfers, searchHorizon, searchAlgorithm);
+    }
+
+    /**
+     * @param searchHorizon Az új keresési időablak.
+     * @return Másolat a módosított értékkel.
+     */
+    public RoutingProfile withSearchHorizon(Duration searchHorizon) {
+        return new RoutingProfile(walkSpeedKmh, maxWalkDistance, minTransferTime, maxTransferTime, maxTransfers, searchHorizon, searchAlgorithm);
+    }
+
+    /**
+     * @param searchAlgorithm Az új keresési mód.
+     * @return Másolat a módosított értékkel.
+     */
+    public RoutingProfile withSearchAlgorithm(SearchAlgorithm searchAlgorithm) {
+        return new RoutingProfile(walkSpeedKmh, maxWalkDistance, minTransferTime, maxTransferTime, maxTransfers, searchHorizon, searchAlgorithm);
+    }
+
+    @Override
+    public String toString() {
+        return "RoutingProfile{walk=" + walkSpeedKmh + " km/h, maxWalk=" + maxWalkDistance + " m, transfer="
+                + minTransferTime + "-" + maxTransferTime + " s, maxTransfers=" + maxTransfers + ", horizon=" + searchHorizon + ", algorithm=" + searchAlgorithm + '}';
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * A SearchAlgorithm enum a legrövidebb út keresés módját definiálja.
+ */
+public enum SearchAlgorithm {
+    /**
+     * Dijkstra: az érkezési idő szerint egyenletesen terjeszkedik a kiinduló megálló körül.
+     */
+    DIJKSTRA,
+    /**
+     * A*: az érkezési idő és a célig hátralévő idő alsó becslésének összege szerint halad,
+     * így a cél irányába eső megállókat dolgozza fel előbb.
+     */
+    A_STAR
+}
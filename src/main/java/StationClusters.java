@@ -0,0 +1,189 @@
+import model.Stop;
+
+import java.util.*;
+
+/**
+ * A StationClusters osztály a megállókat állomásokba csoportosítja: a szülő állomás nélküli, azonos (normalizált)
+ * nevű és egymáshoz közeli megállókból egy állomás lesz, amelyhez a szülő állomásukon keresztül a peronok is
+ * tartoznak. Az állomást az első ilyen megálló képviseli.
+ * <p>
+ * A közeli megállók keresése név szerinti csoportokon belül egy rácsra osztott térbeli vödrökkel történik (a rács
+ * cellája legalább akkora, mint a sugár), így egy megállóhoz csak a szomszédos cellák képviselőit kell
+ * megvizsgálni; a felépítés a megállók számában közel lineáris.
+ */
+public class StationClusters {
+
+    /**
+     * Az azonos nevű megállók összevonásának alapértelmezett legnagyobb távolsága méterben.
+     */
+    public static final double DEFAULT_RADIUS = 200;
+
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private final List<Station> stations;
+    private final Map<String, Station> stationByStopId;
+
+    /**
+     * Egy állomás.
+     *
+     * @param representative Az állomást képviselő megálló.
+     * @param members        Az állomáshoz tartozó megállók (a képviselővel, az összevont megállókkal és a peronokkal).
+     */
+    public record Station(Stop representative, List<Stop> members) {
+
+        /**
+         * @return Az állomáshoz tartozó megállók azonosítói.
+         */
+        public List<String> memberIds() {
+            return members.stream().map(Stop::getStopId).toList();
+        }
+    }
+
+    /**
+     * Konstruktor a kész állomásokból.
+     *
+     * @param stations        Az állomások név szerint rendezve.
+     * @param stationByStopId Megálló azonosító szerint az állomás.
+     */
+    private StationClusters(List<Station> stations, Map<String, Station> stationByStopId) {
+        this.stations = stations;
+        this.stationByStopId = stationByStopId;
+    }
+
+    /**
+     * Az állomások felépítése az alapértelmezett sugárral.
+     *
+     * @param stops A megállók listája.
+     * @return Az állomások.
+     */
+    public static StationClusters build(List<Stop> stops) {
+        return build(stops, DEFAULT_RADIUS);
+    }
+
+    /**
+     * Az állomások felépítése.
+     *
+     * @param stops  A megállók listája.
+     * @param radius Az azonos nevű megállók összevonásának legnagyobb távolsága méterben.
+     * @return Az állomások.
+     */
+    public static StationClusters build(List<Stop> stops, double radius) {
+        double maxLatitude = 0;
+        for (Stop stop : stops) {
+            maxLatitude = Math.max(maxLatitude, Math.abs(stop.getStopLat()));
+        }
+        // A hosszúsági cella a legészakibb megállónál is legalább a sugárnyi
+        double latitudeCell = radius / METERS_PER_DEGREE;
+        double longitudeCell = radius / (METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(Math.min(maxLatitude, 89))), 1e-6));
+
+        Map<String, Map<Long, List<Integer>>> bucketsByName = new HashMap<>();
+        List<Stop> representatives = new ArrayList<>();
+        List<List<Stop>> members = new ArrayList<>();
+        Map<String, Integer> clusterByStopId = new HashMap<>();
+        for (Stop stop : stops) {
+            if (stop.getParentStation().isPresent()) {
+                continue;
+            }
+            Map<Long, List<Integer>> buckets = bucketsByName.computeIfAbsent(StopNameIndex.normalize(stop.getStopName()), _ -> new HashMap<>());
+            long row = (long) Math.floor(stop.getStopLat() / latitudeCell);
+            long column = (long) Math.floor(stop.getStopLon() / longitudeCell);
+            int cluster = nearbyCluster(buckets, row, column, stop, representatives, radius);
+            if (cluster < 0) {
+                cluster = representatives.size();
+                representatives.add(stop);
+                members.add(new ArrayList<>());
+                buckets.computeIfAbsent(cell(row, column), _ -> new ArrayList<>()).add(cluster);
+            }
+            members.get(cluster).add(stop);
+            clusterByStopId.put(stop.getStopId(), cluster);
+        }
+
+        // Peronok: a szülő állomásuk csoportjába
+        for (Stop stop : stops) {
+            Integer cluster = stop.getParentStation().map(clusterByStopId::get).orElse(null);
+            if (cluster != null) {
+                members.get(cluster).add(stop);
+            }
+        }
+
+        List<Station> stations = new ArrayList<>(representatives.size());
+        Map<String, Station> stationByStopId = new HashMap<>();
+        for (int c = 0; c < representatives.size(); c++) {
+            Station station = new Station(representatives.get(c), List.copyOf(members.get(c)));
+            stations.add(station);
+            for (Stop member : station.members()) {
+                stationByStopId.put(member.getStopId(), station);
+            }
+        }
+        stations.sort(Comparator.comparing((Station station) -> station.representative().getStopName(), String.CASE_INSENSITIVE_ORDER));
+        return new StationClusters(List.copyOf(stations), stationByStopId);
+    }
+
+    /**
+     * A megálló közelében (a szomszédos cellákban) lévő azonos nevű állomás keresése.
+     *
+     * @param buckets         Az azonos nevű állomások cellánként.
+     * @param row             A megálló cellájának sora.
+     * @param column          A megálló cellájának oszlopa.
+     * @param stop            A megálló.
+     * @param representatives Az állomások képviselői.
+     * @param radius          A legnagyobb távolság méterben.
+     * @return Az első (legkorábban létrejött) közeli állomás indexe, vagy -1, ha nincs ilyen.
+     */
+    private static int nearbyCluster(Map<Long, List<Integer>> buckets, long row, long column, Stop stop,
+                                     List<Stop> representatives, double radius) {
+        int best = -1;
+        for (long r = row - 1; r <= row + 1; r++) {
+            for (long c = column - 1; c <= column + 1; c++) {
+                for (int cluster : buckets.getOrDefault(cell(r, c), List.of())) {
+                    Stop representative = representatives.get(cluster);
+                    if ((best < 0 || cluster < best) && TripPlanner.haversine(representative.getStopLat(), representative.getStopLon(),
+                            stop.getStopLat(), stop.getStopLon()) < radius) {
+                        best = cluster;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param row    A cella sora.
+     * @param column A cella oszlopa.
+     * @return A cella kulcsa.
+     */
+    private static long cell(long row, long column) {
+        return (row << 32) ^ (column & 0xffffffffL);
+    }
+
+    /**
+     * @return Az állomások a képviselő neve szerint rendezve.
+     */
+    public List<Station> stations() {
+        return stations;
+    }
+
+    /**
+     * @return Az állomásokat képviselő megállók a nevük szerint rendezve (a megállóválasztókhoz).
+     */
+    public List<Stop> representatives() {
+        return stations.stream().map(Station::representative).toList();
+    }
+
+    /**
+     * @param stopId Egy megálló azonosítója.
+     * @return A megálló állomása, vagy null, ha a megálló egyik állomáshoz sem tartozik.
+     */
+    public Station stationOf(String stopId) {
+        return stationByStopId.get(stopId);
+    }
+
+    /**
+     * @param stopId Egy megálló azonosítója.
+     * @return A megálló állomásához tartozó megállók, vagy csak maga a megálló azonosítója, ha nincs állomása.
+     */
+    public List<String> memberIds(String stopId) {
+        Station station = stationByStopId.get(stopId);
+        return station == null ? List.of(stopId) : station.memberIds();
+    }
+}
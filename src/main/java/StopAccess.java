@@ -0,0 +1,33 @@
+/**
+ * Egy kiinduló vagy cél megálló a hozzá tartozó eljutási idővel: kiinduló megállónál az indulástól a megállóig,
+ * cél megállónál a megállótól a tényleges célig tartó idő. Több ilyen megálló együtt adja egy állomás vagy egy
+ * pont környékének összes megállóját, amelyeket a keresés egyszerre indít, illetve egyszerre céloz.
+ *
+ * @param stopId     A megálló azonosítója.
+ * @param accessTime Az eljutási idő másodpercben.
+ */
+public record StopAccess(String stopId, long accessTime) {
+
+    /**
+     * Konstruktor, amely ellenőrzi az eljutási időt.
+     *
+     * @param stopId     A megálló azonosítója.
+     * @param accessTime Az eljutási idő másodpercben.
+     * @throws IllegalArgumentException Ha az eljutási idő negatív.
+     */
+    public StopAccess {
+        if (accessTime < 0) {
+            throw new IllegalArgumentException("Access time must not be negative: " + accessTime);
+        }
+    }
+
+    /**
+     * Eljutási idő nélküli megálló (a megállóból indulunk, vagy a megálló a cél).
+     *
+     * @param stopId A megálló azonosítója.
+     * @return A megálló nulla eljutási idővel.
+     */
+    public static StopAccess at(String stopId) {
+        return new StopAccess(stopId, 0);
+    }
+}
@@ -0,0 +1,61 @@
+import model.Stop;
+
+import java.util.*;
+
+/**
+ * A StopIndex osztály a megállókhoz sűrű, 0-tól kezdődő egész indexeket rendel,
+ * hogy a tömb alapú adatszerkezetek és keresések azonosító helyett indexet használhassanak.
+ */
+public class StopIndex {
+
+    private final List<Stop> stops;
+    private final Map<String, Integer> indexById;
+
+    /**
+     * Konstruktor, amely a megállókat a lista sorrendjében indexeli.
+     *
+     * @param stops A megállók listája.
+     */
+    public StopIndex(List<Stop> stops) {
+        this.stops = List.copyOf(stops);
+        this.indexById = new HashMap<>(stops.size() * 2);
+        for (int i = 0; i < this.stops.size(); i++) {
+            indexById.put(this.stops.get(i).getStopId(), i);
+        }
+    }
+
+    /**
+     * @return A megállók száma.
+     */
+    public int size() {
+        return stops.size();
+    }
+
+    /**
+     * Visszaadja az adott indexű megállót.
+     *
+     * @param index A megálló indexe.
+     * @return A megálló.
+     */
+    public Stop get(int index) {
+        return stops.get(index);
+    }
+
+    /**
+     * Visszaadja a megálló indexét.
+     *
+     * @param stopId A megálló azonosítója.
+     * @return A megálló indexe, vagy -1, ha ismeretlen.
+     */
+    public int indexOf(String stopId) {
+        Integer index = indexById.get(stopId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return Az indexelt megállók listája index sorrendben.
+     */
+    public List<Stop> getStops() {
+        return stops;
+    }
+}
@@ -0,0 +1,247 @@
+import model.Stop;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * A StopNameIndex osztály előre felépített keresőindex a megállónevekhez, automatikus kiegészítéshez.
+ * A nevek ékezet- és kisbetű-függetlenül kereshetők ("szell kalman" megtalálja a "Széll Kálmán tér"-t).
+ * <p>
+ * Két szerkezetből áll: a nevek szavainak kezdetétől induló utótagjai rendezett tömbben (szókezdet keresés
+ * bináris kereséssel, rövid kérésekhez is), és a nevek karakterhármasainak (trigramok) indexe, amelynek
+ * listáinak metszete adja a névben bárhol előforduló, legalább háromkarakteres kérések jelöltjeit.
+ * Az eredmény rangsorolt: teljes egyezés, névkezdet, szókezdet, majd egyéb előfordulás, azon belül a rövidebb név.
+ * Felépítés után nem változik, így több szálból is használható.
+ */
+public class StopNameIndex {
+
+    private static final int EXACT = 0;
+    private static final int NAME_PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+
+    private final List<Stop> stops;
+    private final String[] names;
+
+    /**
+     * A szavak kezdetétől induló névutótagok rendezve, és hogy melyik megállóhoz tartoznak.
+     */
+    private final String[] wordSuffixes;
+    private final int[] wordSuffixStops;
+
+    /**
+     * Trigramonként a nevükben azt tartalmazó megállók növekvő indexei.
+     */
+    private final Map<Long, int[]> trigrams;
+
+    /**
+     * A találatok rangsora (egyezés típusa, név hossza, index) hármasokon: típus, hossz, majd a név ábécérendje.
+     */
+    private final Comparator<int[]> ranking;
+
+    /**
+     * Konstruktor, amely felépíti az indexet.
+     *
+     * @param stops A kereshető megállók (ebben a sorrendben indexelve).
+     */
+    public StopNameIndex(List<Stop> stops) {
+        this.stops = List.copyOf(stops);
+        this.names = new String[stops.size()];
+        List<String> suffixes = new ArrayList<>();
+        List<Integer> suffixStops = new ArrayList<>();
+        Map<Long, List<Integer>> postings = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            String name = normalize(stops.get(i).getStopName());
+            names[i] = name;
+            for (int c = 0; c < name.length(); c++) {
+                if (name.charAt(c) != ' ' && (c == 0 || !Character.isLetterOrDigit(name.charAt(c - 1)))) {
+                    suffixes.add(name.substring(c));
+                    suffixStops.add(i);
+                }
+            }
+            Set<Long> seen = new HashSet<>();
+            for (int c = 0; c + 3 <= name.length(); c++) {
+                long trigram = trigram(name, c);
+                if (seen.add(trigram)) {
+                    postings.computeIfAbsent(trigram, _ -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+
+        Integer[] order = new Integer[suffixes.size()];
+        for (int k = 0; k < order.length; k++) {
+            order[k] = k;
+        }
+        Arrays.sort(order, Comparator.comparing(suffixes::get));
+        this.wordSuffixes = new String[order.length];
+        this.wordSuffixStops = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            wordSuffixes[k] = suffixes.get(order[k]);
+            wordSuffixStops[k] = suffixStops.get(order[k]);
+        }
+
+        this.trigrams = new HashMap<>();
+        postings.forEach((trigram, list) -> trigrams.put(trigram, list.stream().mapToInt(Integer::intValue).toArray()));
+
+        this.ranking = Comparator.<int[]>comparingInt(entry -> entry[0])
+                .thenComparingInt(entry -> entry[1])
+                .thenComparing(entry -> names[entry[2]])
+                .thenComparingInt(entry -> entry[2]);
+    }
+
+    /**
+     * A név keresési alakja: ékezetek nélkül, kisbetűsen, az egymást követő szóközök összevonásával.
+     *
+     * @param text A szöveg.
+     * @return A normalizált szöveg.
+     */
+    public static String normalize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder builder = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                if (!builder.isEmpty() && builder.charAt(builder.length() - 1) != ' ') {
+                    builder.append(' ');
+                }
+                continue;
+            }
+            builder.append(Character.toLowerCase(c));
+        }
+        int end = builder.length();
+        return end > 0 && builder.charAt(end - 1) == ' ' ? builder.substring(0, end - 1) : builder.toString();
+    }
+
+    /**
+     * @return Az indexelt megállók száma.
+     */
+    public int size() {
+        return stops.size();
+    }
+
+    /**
+     * A kéréshez illeszkedő legjobb megállók rangsor szerint.
+     *
+     * @param query A keresett szöveg (ékezetekkel vagy anélkül).
+     * @param limit A legfeljebb visszaadott találatok száma.
+     * @return A találatok, a legjobbal kezdve (üres kérésre üres lista).
+     */
+    public List<Stop> search(String query, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        // Jelöltek: szókezdet egyezések, és hosszabb kérésnél a trigramok metszete
+        Map<Integer, Integer> ranks = new HashMap<>();
+        int from = lowerBound(normalized);
+        for (int k = from; k < wordSuffixes.length && wordSuffixes[k].startsWith(normalized); k++) {
+            ranks.merge(wordSuffixStops[k], WORD_PREFIX, Math::min);
+        }
+        if (normalized.length() >= 3) {
+            for (int stop : trigramCandidates(normalized)) {
+                if (!ranks.containsKey(stop) && names[stop].contains(normalized)) {
+                    ranks.put(stop, SUBSTRING);
+                }
+            }
+        }
+
+        PriorityQueue<int[]> best = new PriorityQueue<>(ranking.reversed());
+        for (Map.Entry<Integer, Integer> entry : ranks.entrySet()) {
+            int stop = entry.getKey();
+            int rank = names[stop].equals(normalized) ? EXACT : names[stop].startsWith(normalized) ? NAME_PREFIX : entry.getValue();
+            best.add(new int[]{rank, names[stop].length(), stop});
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<int[]> ordered = new ArrayList<>(best);
+        ordered.sort(ranking);
+        List<Stop> result = new ArrayList<>(ordered.size());
+        for (int[] entry : ordered) {
+            result.add(stops.get(entry[2]));
+        }
+        return result;
+    }
+
+    /**
+     * Azok a megállók, amelyek nevében a kérés összes trigramja előfordul (a legrövidebb listából szűrve).
+     *
+     * @param normalized A normalizált, legalább háromkarakteres kérés.
+     * @return A jelöltek indexei.
+     */
+    private int[] trigramCandidates(String normalized) {
+        List<int[]> lists = new ArrayList<>();
+        for (int c = 0; c + 3 <= normalized.length(); c++) {
+            int[] list = trigrams.get(trigram(normalized, c));
+            if (list == null) {
+                return new int[0];
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+        int[] candidates = lists.getFirst();
+        for (int l = 1; l < lists.size() && candidates.length > 0; l++) {
+            candidates = intersect(candidates, lists.get(l));
+        }
+        return candidates;
+    }
+
+    /**
+     * Két növekvő tömb metszete.
+     *
+     * @param a Az egyik tömb.
+     * @param b A másik tömb.
+     * @return A közös elemek növekvő sorrendben.
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Az első utótag, amely nem kisebb a kérésnél (bináris kereséssel).
+     *
+     * @param prefix A kérés.
+     * @return Az utótag indexe.
+     */
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = wordSuffixes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (wordSuffixes[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Három egymást követő karakter egy számba csomagolva.
+     *
+     * @param text  A szöveg.
+     * @param start Az első karakter pozíciója.
+     * @return A trigram kulcsa.
+     */
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+}
@@ -0,0 +1,235 @@
+import model.Stop;
+
+import java.util.*;
+
+/**
+ * A StopSpatialIndex osztály rácsos térbeli index a megállókhoz, koordinátás kérések megállóhoz illesztéséhez.
+ * A megállók egyenlő (méterben adott) méretű cellákba kerülnek; a cellák kulcsai rendezett tömbben, a megállók
+ * cellánként folytonosan (CSR) tárolódnak, így egy keresés csak a pont körüli néhány cellát nézi végig, és nem foglal
+ * a találatokon kívül semmit. Felépítés után nem változik, így több szálból is használható.
+ */
+public class StopSpatialIndex {
+
+    /**
+     * Az alapértelmezett cellaméret méterben.
+     */
+    public static final double DEFAULT_CELL_SIZE = 250;
+
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    private final StopIndex stopIndex;
+    private final double cellSize;
+    private final double latitudeCell;
+    private final double longitudeCell;
+
+    /**
+     * A nem üres cellák kulcsai növekvő sorrendben, és hogy a cella megállói hol kezdődnek a megállótömbben.
+     */
+    private final long[] cellKeys;
+    private final int[] cellStarts;
+    private final int[] cellStops;
+
+    /**
+     * A rács kiterjedése cellában (a gyűrűs keresés felső korlátjához).
+     */
+    private final long minRow;
+    private final long maxRow;
+    private final long minColumn;
+    private final long maxColumn;
+
+    /**
+     * Egy találat.
+     *
+     * @param stop     A megálló.
+     * @param index    A megálló indexe.
+     * @param distance A megálló távolsága a keresett ponttól méterben.
+     */
+    public record Neighbor(Stop stop, int index, double distance) {
+    }
+
+    /**
+     * Konstruktor az alapértelmezett cellamérettel.
+     *
+     * @param stopIndex A megállók indexe.
+     */
+    public StopSpatialIndex(StopIndex stopIndex) {
+        this(stopIndex, DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Konstruktor, amely felépíti az indexet.
+     *
+     * @param stopIndex A megállók indexe (a találatok ezeket az indexeket adják).
+     * @param cellSize  A cellák legkisebb mérete méterben.
+     * @throws IllegalArgumentException Ha a cellaméret nem pozitív.
+     */
+    public StopSpatialIndex(StopIndex stopIndex, double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.stopIndex = stopIndex;
+        this.cellSize = cellSize;
+        double maxLatitude = 0;
+        for (Stop stop : stopIndex.getStops()) {
+            maxLatitude = Math.max(maxLatitude, Math.abs(stop.getStopLat()));
+        }
+        // A hosszúsági cella a legészakibb megállónál is legalább cellSize méter széles
+        this.latitudeCell = cellSize / METERS_PER_DEGREE;
+        this.longitudeCell = latitudeCell / Math.max(0.01, Math.cos(Math.toRadians(Math.min(maxLatitude, 89))));
+
+        int n = stopIndex.size();
+        long[] keys = new long[n];
+        Integer[] order = new Integer[n];
+        long rowLow = Long.MAX_VALUE, rowHigh = Long.MIN_VALUE, columnLow = Long.MAX_VALUE, columnHigh = Long.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            Stop stop = stopIndex.get(i);
+            long row = row(stop.getStopLat());
+            long column = column(stop.getStopLon());
+            rowLow = Math.min(rowLow, row);
+            rowHigh = Math.max(rowHigh, row);
+            columnLow = Math.min(columnLow, column);
+            columnHigh = Math.max(columnHigh, column);
+            keys[i] = cell(row, column);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> keys[i]));
+        this.minRow = rowLow;
+        this.maxRow = rowHigh;
+        this.minColumn = columnLow;
+        this.maxColumn = columnHigh;
+
+        this.cellStops = new int[n];
+        long[] distinctKeys = new long[n];
+        int[] starts = new int[n + 1];
+        int cells = 0;
+        for (int k = 0; k < n; k++) {
+            cellStops[k] = order[k];
+            if (k == 0 || keys[order[k]] != keys[order[k - 1]]) {
+                distinctKeys[cells] = keys[order[k]];
+                starts[cells++] = k;
+            }
+        }
+        starts[cells] = n;
+        this.cellKeys = Arrays.copyOf(distinctKeys, cells);
+        this.cellStarts = Arrays.copyOf(starts, cells + 1);
+    }
+
+    /**
+     * A ponttól adott távolságon belüli megállók.
+     *
+     * @param latitude  A pont szélessége.
+     * @param longitude A pont hosszúsága.
+     * @param radius    A legnagyobb távolság méterben.
+     * @return A megállók távolság szerint növekvő sorrendben.
+     */
+    public List<Neighbor> within(double latitude, double longitude, double radius) {
+        List<Neighbor> result = new ArrayList<>();
+        if (cellKeys.length == 0 || radius < 0) {
+            return result;
+        }
+        long row = row(latitude);
+        long column = column(longitude);
+        long rings = (long) Math.ceil(radius / cellSize);
+        for (long r = Math.max(row - rings, minRow); r <= Math.min(row + rings, maxRow); r++) {
+            for (long c = Math.max(column - rings, minColumn); c <= Math.min(column + rings, maxColumn); c++) {
+                collect(r, c, latitude, longitude, radius, result);
+            }
+        }
+        result.sort(Comparator.comparingDouble(Neighbor::distance));
+        return result;
+    }
+
+    /**
+     * A ponthoz legközelebbi legfeljebb count megálló adott távolságon belül. A keresés a pont cellájától
+     * gyűrűnként halad kifelé, és megáll, ha a még nem vizsgált cellák már nem lehetnek közelebb a meglévő
+     * találatoknál.
+     *
+     * @param latitude  A pont szélessége.
+     * @param longitude A pont hosszúsága.
+     * @param count     A legfeljebb visszaadott megállók száma.
+     * @param radius    A legnagyobb távolság méterben.
+     * @return A megállók távolság szerint növekvő sorrendben.
+     */
+    public List<Neighbor> nearest(double latitude, double longitude, int count, double radius) {
+        List<Neighbor> result = new ArrayList<>();
+        if (cellKeys.length == 0 || count <= 0 || radius < 0) {
+            return result;
+        }
+        long row = row(latitude);
+        long column = column(longitude);
+        long maxRings = Math.max(Math.max(row - minRow, maxRow - row), Math.max(column - minColumn, maxColumn - column));
+        maxRings = Math.min(maxRings, (long) Math.ceil(radius / cellSize));
+        for (long ring = 0; ring <= maxRings; ring++) {
+            for (long r = row - ring; r <= row + ring; r++) {
+                if (r < minRow || r > maxRow) {
+                    continue;
+                }
+                // A gyűrű felső és alsó sora teljes, a köztes sorokból csak a két szélső cella
+                long step = r == row - ring || r == row + ring ? 1 : Math.max(1, 2 * ring);
+                for (long c = column - ring; c <= column + ring; c += step) {
+                    if (c >= minColumn && c <= maxColumn) {
+                        collect(r, c, latitude, longitude, radius, result);
+                    }
+                }
+            }
+            // A következő gyűrű megállói legalább ring cellányira vannak
+            if (result.size() >= count) {
+                result.sort(Comparator.comparingDouble(Neighbor::distance));
+                if (result.get(count - 1).distance() <= ring * cellSize) {
+                    break;
+                }
+            }
+        }
+        result.sort(Comparator.comparingDouble(Neighbor::distance));
+        return result.size() > count ? new ArrayList<>(result.subList(0, count)) : result;
+    }
+
+    /**
+     * Egy cella adott távolságon belüli megállóinak hozzáadása.
+     *
+     * @param row       A cella sora.
+     * @param column    A cella oszlopa.
+     * @param latitude  A pont szélessége.
+     * @param longitude A pont hosszúsága.
+     * @param radius    A legnagyobb távolság méterben.
+     * @param result    A találatok listája.
+     */
+    private void collect(long row, long column, double latitude, double longitude, double radius, List<Neighbor> result) {
+        int cell = Arrays.binarySearch(cellKeys, cell(row, column));
+        if (cell < 0) {
+            return;
+        }
+        for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+            Stop stop = stopIndex.get(cellStops[k]);
+            double distance = TripPlanner.haversine(latitude, longitude, stop.getStopLat(), stop.getStopLon());
+            if (distance <= radius) {
+                result.add(new Neighbor(stop, cellStops[k], distance));
+            }
+        }
+    }
+
+    /**
+     * @param latitude A szélesség.
+     * @return A rács sora.
+     */
+    private long row(double latitude) {
+        return (long) Math.floor(latitude / latitudeCell);
+    }
+
+    /**
+     * @param longitude A hosszúság.
+     * @return A rács oszlopa.
+     */
+    private long column(double longitude) {
+        return (long) Math.floor(longitude / longitudeCell);
+    }
+
+    /**
+     * @param row    A cella sora.
+     * @param column A cella oszlopa.
+     * @return A cella kulcsa.
+     */
+    private static long cell(long row, long column) {
+        return (row << 32) ^ (column & 0xFFFFFFFFL);
+    }
+}
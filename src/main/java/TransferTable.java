@@ -0,0 +1,174 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A TransferTable osztály a Trip-Based útvonaltervező előre kiszámolt átszállásait tárolja CSR formában:
+ * megállási eseményenként egy tartomány (cél járat, felszállási pozíció) párokból.
+ * <p>
+ * A tábla a heapen lévő tömbökre vagy a gyorsítótár fájlra leképezett, heapen kívüli memóriára épülhet. Leképezve
+ * a tábla mérete nem terheli a szemétgyűjtőt, és az operációs rendszer ugyanazokat a lapokat osztja meg az ugyanazt
+ * a fájlt leképező JVM-ek között. A leképezés az automatikus arénához tartozik, így a táblával együtt szabadul fel.
+ * <p>
+ * A fájlban a számok nagy endiánú (a {@link DataOutputStream} szerinti) sorrendben vannak: az eltolások száma,
+ * az eltolások, majd a párok egymás után.
+ */
+public class TransferTable {
+
+    private static final ValueLayout.OfInt FILE_INT = ValueLayout.JAVA_INT.withOrder(ByteOrder.BIG_ENDIAN);
+
+    private final MemorySegment offsets;
+    private final MemorySegment pairs;
+    private final ValueLayout.OfInt layout;
+    private final int eventCount;
+    private final boolean mapped;
+
+    /**
+     * Konstruktor a kész szegmensekből.
+     *
+     * @param offsets Eseményenként az első átszállás indexe (események száma + 1 elem).
+     * @param pairs   Az átszállások (cél járat, felszállási pozíció) párjai.
+     * @param layout  Az egészek elrendezése a szegmensekben.
+     * @param mapped  Igaz, ha a szegmensek fájlra leképezett memóriában vannak.
+     */
+    private TransferTable(MemorySegment offsets, MemorySegment pairs, ValueLayout.OfInt layout, boolean mapped) {
+        this.offsets = offsets;
+        this.pairs = pairs;
+        this.layout = layout;
+        this.eventCount = (int) (offsets.byteSize() / Integer.BYTES) - 1;
+        this.mapped = mapped;
+    }
+
+    /**
+     * Tábla a heapen lévő tömbökből.
+     *
+     * @param offsets Eseményenként az első átszállás indexe (események száma + 1 elem).
+     * @param pairs   Az átszállások cél járatai és felszállási pozíciói felváltva.
+     * @return A tábla.
+     */
+    public static TransferTable onHeap(int[] offsets, int[] pairs) {
+        return new TransferTable(MemorySegment.ofArray(offsets), MemorySegment.ofArray(pairs), ValueLayout.JAVA_INT, false);
+    }
+
+    /**
+     * Tábla beolvasása a heapre egy folyamból, amely a {@link #write(DataOutputStream)} által írt adatnál áll.
+     *
+     * @param in         A forrás folyam.
+     * @param eventCount A várt események száma.
+     * @return A tábla, vagy null, ha az események száma eltér.
+     * @throws IOException Ha a folyam nem olvasható.
+     */
+    public static TransferTable read(DataInputStream in, int eventCount) throws IOException {
+        int offsetCount = in.readInt();
+        if (offsetCount != eventCount + 1) {
+            return null;
+        }
+        int[] offsets = new int[offsetCount];
+        for (int e = 0; e < offsetCount; e++) {
+            offsets[e] = in.readInt();
+        }
+        int[] pairs = new int[offsets[eventCount] * 2];
+        for (int k = 0; k < pairs.length; k++) {
+            pairs[k] = in.readInt();
+        }
+        return onHeap(offsets, pairs);
+    }
+
+    /**
+     * Tábla leképezése egy fájlból, csak olvasásra.
+     *
+     * @param file       A fájl.
+     * @param position   A {@link #write(DataOutputStream)} által írt adat kezdete a fájlban (4-gyel osztható).
+     * @param eventCount A várt események száma.
+     * @return A tábla, vagy null, ha az események száma vagy a fájl mérete eltér.
+     * @throws IOException Ha a fájl nem képezhető le.
+     */
+    public static TransferTable map(Path file, long position, int eventCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MemorySegment segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), Arena.ofAuto());
+            if (segment.byteSize() < position + Integer.BYTES || segment.get(FILE_INT, position) != eventCount + 1) {
+                return null;
+            }
+            long offsetsStart = position + Integer.BYTES;
+            long offsetsSize = (long) (eventCount + 1) * Integer.BYTES;
+            if (segment.byteSize() < offsetsStart + offsetsSize) {
+                return null;
+            }
+            MemorySegment offsets = segment.asSlice(offsetsStart, offsetsSize);
+            long pairsSize = (long) offsets.getAtIndex(FILE_INT, eventCount) * 2 * Integer.BYTES;
+            if (segment.byteSize() != offsetsStart + offsetsSize + pairsSize) {
+                return null;
+            }
+            return new TransferTable(offsets, segment.asSlice(offsetsStart + offsetsSize, pairsSize), FILE_INT, true);
+        }
+    }
+
+    /**
+     * A tábla kiírása: az eltolások száma, az eltolások, majd a párok.
+     *
+     * @param out A cél folyam.
+     * @throws IOException Ha a folyam nem írható.
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(eventCount + 1);
+        for (int e = 0; e <= eventCount; e++) {
+            out.writeInt(offsets.getAtIndex(layout, e));
+        }
+        for (long k = 0; k < 2L * size(); k++) {
+            out.writeInt(pairs.getAtIndex(layout, k));
+        }
+    }
+
+    /**
+     * @return Az átszállások száma.
+     */
+    public int size() {
+        return offsets.getAtIndex(layout, eventCount);
+    }
+
+    /**
+     * @return Igaz, ha a tábla fájlra leképezett, heapen kívüli memóriában van.
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+
+    /**
+     * @param event A megállási esemény indexe.
+     * @return Az esemény első átszállásának indexe.
+     */
+    public int start(int event) {
+        return offsets.getAtIndex(layout, event);
+    }
+
+    /**
+     * @param event A megállási esemény indexe.
+     * @return Az esemény utolsó átszállása utáni index.
+     */
+    public int end(int event) {
+        return offsets.getAtIndex(layout, event + 1);
+    }
+
+    /**
+     * @param transfer Az átszállás indexe.
+     * @return A cél járat globális sorszáma.
+     */
+    public int trip(int transfer) {
+        return pairs.getAtIndex(layout, 2L * transfer);
+    }
+
+    /**
+     * @param transfer Az átszállás indexe.
+     * @return A felszállási pozíció a cél járaton.
+     */
+    public int position(int transfer) {
+        return pairs.getAtIndex(layout, 2L * transfer + 1);
+    }
+}
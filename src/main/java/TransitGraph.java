@@ -0,0 +1,531 @@
+import model.StopTime;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * A TransitGraph osztály a keresési gráf tömörített (CSR) formája: az élek megállónként folytonosan,
+ * primitív tömbökben tárolódnak (cél megálló, indulás, időtartam, járat), így a keresés objektumok és
+ * azonosító szövegek helyett indexekkel dolgozik.
+ * <p>
+ * A gráf két rétegből áll. A menetrendi réteg egy megálló élei közül elöl tartja a menetrendi mintába tartozó járatok
+ * éleit, mintánként és következő megállónként csoportosítva, a csoporton belül indulási idő szerint rendezve; utánuk a
+ * minta nélküli járat élek állnak. Egy csoporton belül a járatok nem előzik meg egymást, így felszálláskor elég a
+ * csoport első elérhető indulását bináris kereséssel megtalálni. A gyalogos (séta és aluljáró) élek külön rétegben,
+ * a menetrendi élek után számozva tárolódnak, így egy szolgálati nap menetrendi rétege több kérés között megosztható,
+ * és kérésenként csak a gyalogos réteg épül újra ({@link #withFootEdges}).
+ */
+public class TransitGraph {
+
+    private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+
+    private final StopIndex stopIndex;
+    private final String[] tripIds;
+    private final int[] offsets;
+    private final int[] otherOffsets;
+    private final int[] targets;
+    private final int[] departures;
+    private final int[] durations;
+    private final int[] trips;
+    private final int[] nextInTrip;
+    private final int[] groupEnds;
+    private final int firstFootEdge;
+    private final int[] footOffsets;
+    private final int[] footTargets;
+    private final int[] footDurations;
+    private final byte[] footTypes;
+    private final double[] footDistances;
+    private final int maxDegree;
+
+    /**
+     * Konstruktor a kész tömbökből.
+     *
+     * @param stopIndex    A megállók indexe.
+     * @param tripIds      A járatok azonosítói járatszám szerint.
+     * @param offsets      Megállónként az első járat él indexe (hossza: megállók száma + 1).
+     * @param otherOffsets Megállónként az első csoportba nem sorolt járat él indexe.
+     * @param targets      A járat élek cél megállóinak indexei.
+     * @param departures   A járat élek indulási ideje másodpercben.
+     * @param durations    A járat élek időtartama másodpercben.
+     * @param trips        A járat élek járatszáma.
+     * @param nextInTrip   Ugyanazon járat következő élének indexe (-1, ha nincs).
+     * @param groupEnds    A csoportos élek csoportjának vége (kizárólagos).
+     * @param footLayer    A gyalogos élek rétege.
+     */
+    private TransitGraph(StopIndex stopIndex, String[] tripIds, int[] offsets, int[] otherOffsets, int[] targets, int[] departures,
+                         int[] durations, int[] trips, int[] nextInTrip, int[] groupEnds, FootLayer footLayer) {
+        this.stopIndex = stopIndex;
+        this.tripIds = tripIds;
+        this.offsets = offsets;
+        this.otherOffsets = otherOffsets;
+        this.targets = targets;
+        this.departures = departures;
+        this.durations = durations;
+        this.trips = trips;
+        this.nextInTrip = nextInTrip;
+        this.groupEnds = groupEnds;
+        this.firstFootEdge = targets.length;
+        this.footOffsets = footLayer.offsets();
+        this.footTargets = footLayer.targets();
+        this.footDurations = footLayer.durations();
+        this.footTypes = footLayer.types();
+        this.footDistances = footLayer.distances();
+        int degree = 0;
+        for (int s = 0; s + 1 < offsets.length; s++) {
+            degree = Math.max(degree, offsets[s + 1] - offsets[s] + footOffsets[s + 1] - footOffsets[s]);
+        }
+        this.maxDegree = degree;
+    }
+
+    /**
+     * A gráf a megadott gyalogos élekkel: a menetrendi réteg tömbjei közösek, a gyalogos réteg helyére az építő
+     * gyalogos élei kerülnek (az építő járat élei figyelmen kívül maradnak).
+     *
+     * @param footEdges A gyalogos éleket tartalmazó építő.
+     * @return Az új gráf.
+     */
+    public TransitGraph withFootEdges(Builder footEdges) {
+        return new TransitGraph(stopIndex, tripIds, offsets, otherOffsets, targets, departures, durations, trips, nextInTrip, groupEnds,
+                footEdges.buildFootLayer());
+    }
+
+    /**
+     * @return A megállók indexe.
+     */
+    public StopIndex getStopIndex() {
+        return stopIndex;
+    }
+
+    /**
+     * @return Az élek száma.
+     */
+    public int edgeCount() {
+        return targets.length + footTargets.length;
+    }
+
+    /**
+     * @return Egy megálló éleinek legnagyobb száma (a jelöltek pufferének mérete).
+     */
+    public int maxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * @param edge Az él indexe.
+     * @return A cél megálló indexe.
+     */
+    public int target(int edge) {
+        return edge < firstFootEdge ? targets[edge] : footTargets[edge - firstFootEdge];
+    }
+
+    /**
+     * @param edge Az él indexe.
+     * @return Az indulási idő másodpercben, vagy -1, ha az él nem menetrend szerinti.
+     */
+    public int departure(int edge) {
+        return edge < firstFootEdge ? departures[edge] : -1;
+    }
+
+    /**
+     * @param edge Az él indexe.
+     * @return Az él időtartama másodpercben.
+     */
+    public int duration(int edge) {
+        return edge < firstFootEdge ? durations[edge] : footDurations[edge - firstFootEdge];
+    }
+
+    /**
+     * @param edge Az él indexe.
+     * @return A járatszám, vagy -1, ha az él nem menetrend szerinti.
+     */
+    public int trip(int edge) {
+        return edge < firstFootEdge ? trips[edge] : -1;
+    }
+
+    /**
+     * @param edge Az él indexe.
+     * @return A járat azonosítója, vagy null, ha az él nem menetrend szerinti.
+     */
+    public String tripId(int edge) {
+        return edge < firstFootEdge ? tripIds[trips[edge]] : null;
+    }
+
+    /**
+     * @param edge Az él indexe.
+     * @return Az él típusa.
+     */
+    public EdgeType type(int edge) {
+        return edge < firstFootEdge ? EdgeType.TRANSIT : EDGE_TYPES[footTypes[edge - firstFootEdge]];
+    }
+
+    /**
+     * @param edge Az él indexe.
+     * @return Ugyanazon járat következő élének indexe, vagy -1, ha nincs.
+     */
+    public int nextInTrip(int edge) {
+        return edge < firstFootEdge ? nextInTrip[edge] : -1;
+    }
+
+    /**
+     * Az él objektummá alakítása az útvonal visszafejtéséhez.
+     *
+     * @param edge Az él indexe.
+     * @return Az él.
+     */
+    public TripPlanner.Edge edge(int edge) {
+        String toStopId = stopIndex.get(target(edge)).getStopId();
+        if (edge < firstFootEdge) {
+            return new TripPlanner.Edge(toStopId, durations[edge], EdgeType.TRANSIT, LocalTime.ofSecondOfDay(departures[edge]), tripId(edge));
+        }
+        int foot = edge - firstFootEdge;
+        return new TripPlanner.Edge(toStopId, footDurations[foot], type(edge), footDistances[foot]);
+    }
+
+    /**
+     * Összegyűjti egy megállóból érdemben vizsgálandó éleket: a jelenlegi járat következő élét, csoportonként az első
+     * legalább a megadott időben induló élt, valamint a csoportba nem sorolt és a gyalogos éleket.
+     *
+     * @param stop             A megálló indexe.
+     * @param arrivalEdge      Az él indexe, amelyen a megállóba érkeztünk (-1, ha nem járaton).
+     * @param earliestBoarding A legkorábbi felszállási idő másik járatra (érkezés + legrövidebb átszállási idő).
+     * @param candidates       A puffer, amelybe az élek indexei kerülnek (legalább {@link #maxDegree()} + 1 méretű).
+     * @return A jelöltek száma.
+     */
+    public int collectCandidates(int stop, int arrivalEdge, long earliestBoarding, int[] candidates) {
+        int count = 0;
+        int next = arrivalEdge >= 0 ? nextInTrip(arrivalEdge) : -1;
+        if (next >= 0) {
+            candidates[count++] = next;
+        }
+        int group = offsets[stop];
+        while (group < otherOffsets[stop]) {
+            int end = groupEnds[group];
+            int first = firstDeparture(group, end, earliestBoarding);
+            if (first >= 0 && first != next) {
+                candidates[count++] = first;
+            }
+            group = end;
+        }
+        for (int edge = otherOffsets[stop]; edge < offsets[stop + 1]; edge++) {
+            candidates[count++] = edge;
+        }
+        for (int foot = footOffsets[stop]; foot < footOffsets[stop + 1]; foot++) {
+            candidates[count++] = firstFootEdge + foot;
+        }
+        return count;
+    }
+
+    /**
+     * Az első legalább a megadott időben induló él egy csoporton belül (bináris kereséssel).
+     *
+     * @param from A csoport első élének indexe.
+     * @param to   A csoport vége (kizárólagos).
+     * @param time A legkorábbi indulási idő másodpercben.
+     * @return Az él indexe, vagy -1, ha nincs ilyen.
+     */
+    private int firstDeparture(int from, int to, long time) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departures[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < to ? low : -1;
+    }
+
+    /**
+     * A gyalogos élek rétege: megállónként folytonosan, a menetrendi élek után számozva.
+     *
+     * @param offsets   Megállónként az első gyalogos él indexe a rétegen belül (hossza: megállók száma + 1).
+     * @param targets   A cél megállók indexei.
+     * @param durations Az időtartamok másodpercben.
+     * @param types     Az élek típusa ({@link EdgeType} sorszáma).
+     * @param distances A gyaloglási távolságok méterben.
+     */
+    private record FootLayer(int[] offsets, int[] targets, int[] durations, byte[] types, double[] distances) {
+    }
+
+    /**
+     * A TransitGraph építője: az éleket hozzáadási sorrendben gyűjti, majd megállónként rendezve tömöríti.
+     * A gyalogos élek hozzáadása szálbiztos, mert a séta élek párhuzamosan készülnek.
+     */
+    public static class Builder {
+
+        private final StopIndex stopIndex;
+        private final Map<String, Integer> tripNumbers = new HashMap<>();
+        private final List<String> tripIds = new ArrayList<>();
+        private int size;
+        private int[] froms = new int[16];
+        private int[] targets = new int[16];
+        private int[] departures = new int[16];
+        private int[] durations = new int[16];
+        private int[] trips = new int[16];
+        private byte[] types = new byte[16];
+        private double[] distances = new double[16];
+        private int[] nextInTrip = new int[16];
+
+        /**
+         * Konstruktor.
+         *
+         * @param stopIndex A megállók indexe.
+         */
+        public Builder(StopIndex stopIndex) {
+            this.stopIndex = stopIndex;
+        }
+
+        /**
+         * Menetrend szerinti élek hozzáadása a megállóidőkből: egy járat egymást követő megállói között,
+         * ha az indulási és az érkezési idő is ismert. Az ismeretlen megállót érintő szakaszok kimaradnak.
+         *
+         * @param filteredStopTimes A szűrt megállóidők.
+         * @return Az építő.
+         */
+        public Builder addStopTimes(List<StopTime> filteredStopTimes) {
+            for (List<StopTime> tripStopTimes : TripPlanner.stopTimesByTrip(filteredStopTimes)) {
+                int previousEdge = -1;
+                for (int i = 0; i < tripStopTimes.size() - 1; i++) {
+                    StopTime currentStopTime = tripStopTimes.get(i);
+                    StopTime nextStopTime = tripStopTimes.get(i + 1);
+                    int from = stopIndex.indexOf(currentStopTime.getStopId());
+                    int to = stopIndex.indexOf(nextStopTime.getStopId());
+                    if (from < 0 || to < 0 || currentStopTime.getDepartureTime().isEmpty() || nextStopTime.getArrivalTime().isEmpty()) {
+                        previousEdge = -1;
+                        continue;
+                    }
+                    LocalTime departure = currentStopTime.getDepartureTime().get();
+                    long travelTime = Duration.between(departure, nextStopTime.getArrivalTime().get()).getSeconds();
+                    int trip = tripNumbers.computeIfAbsent(currentStopTime.getTripId(), tripId -> {
+                        tripIds.add(tripId);
+                        return tripIds.size() - 1;
+                    });
+                    int edge = add(from, to, departure.toSecondOfDay(), (int) travelTime, trip, EdgeType.TRANSIT, 0);
+                    if (previousEdge >= 0) {
+                        nextInTrip[previousEdge] = edge;
+                    }
+                    previousEdge = edge;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Gyalogos (séta vagy aluljáró) él hozzáadása; ismeretlen megálló esetén nem történik semmi.
+         *
+         * @param fromStopId A kiinduló megálló azonosítója.
+         * @param toStopId   A cél megálló azonosítója.
+         * @param travelTime Az időtartam másodpercben.
+         * @param type       Az él típusa.
+         * @param distance   A gyaloglási távolság méterben.
+         */
+        public synchronized void addFootEdge(String fromStopId, String toStopId, long travelTime, EdgeType type, double distance) {
+            int from = stopIndex.indexOf(fromStopId);
+            int to = stopIndex.indexOf(toStopId);
+            if (from >= 0 && to >= 0) {
+                add(from, to, -1, (int) travelTime, -1, type, distance);
+            }
+        }
+
+        /**
+         * Egy él felvétele a gyűjtő tömbökbe.
+         *
+         * @param from      A kiinduló megálló indexe.
+         * @param to        A cél megálló indexe.
+         * @param departure Az indulási idő másodpercben (-1, ha nem menetrend szerinti).
+         * @param duration  Az időtartam másodpercben.
+         * @param trip      A járatszám (-1, ha nem menetrend szerinti).
+         * @param type      Az él típusa.
+         * @param distance  A gyaloglási távolság méterben.
+         * @return Az él ideiglenes indexe.
+         */
+        private int add(int from, int to, int departure, int duration, int trip, EdgeType type, double distance) {
+            if (size == froms.length) {
+                int capacity = size * 2;
+                froms = Arrays.copyOf(froms, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                departures = Arrays.copyOf(departures, capacity);
+                durations = Arrays.copyOf(durations, capacity);
+                trips = Arrays.copyOf(trips, capacity);
+                types = Arrays.copyOf(types, capacity);
+                distances = Arrays.copyOf(distances, capacity);
+                nextInTrip = Arrays.copyOf(nextInTrip, capacity);
+            }
+            froms[size] = from;
+            targets[size] = to;
+            departures[size] = departure;
+            durations[size] = duration;
+            trips[size] = trip;
+            types[size] = (byte) type.ordinal();
+            distances[size] = distance;
+            nextInTrip[size] = -1;
+            return size++;
+        }
+
+        /**
+         * A gráf tömörítése: megállónként elöl a mintánként és következő megállónként csoportosított,
+         * indulás szerint rendezett járat élek, utánuk a minta nélküli járat élek; a gyalogos élek külön rétegbe kerülnek.
+         * A rendezés két primitív kulcstömbön történik: előbb a (megálló, minta, következő megálló) csoportkulcsok
+         * sorszámozása, majd a csoport sorszámából, az indulásból és az él sorszámából összeállított kulcsok rendezése.
+         *
+         * @param patternOfTrip A járat menetrendi mintájának indexe (negatív, ha a járat nincs mintában).
+         * @return A gráf.
+         */
+        public synchronized TransitGraph build(ToIntFunction<String> patternOfTrip) {
+            int stopCount = stopIndex.size();
+            int[] tripPatterns = new int[tripIds.size()];
+            int maxPattern = -1;
+            for (int trip = 0; trip < tripPatterns.length; trip++) {
+                tripPatterns[trip] = patternOfTrip.applyAsInt(tripIds.get(trip));
+                maxPattern = Math.max(maxPattern, tripPatterns[trip]);
+            }
+            int[] tripEdges = new int[size];
+            int tripEdgeCount = 0;
+            int maxDeparture = 0;
+            for (int edge = 0; edge < size; edge++) {
+                if (trips[edge] >= 0) {
+                    tripEdges[tripEdgeCount++] = edge;
+                    maxDeparture = Math.max(maxDeparture, departures[edge]);
+                }
+            }
+
+            // Csoportkulcsok: megálló, minta (a minta nélküli élek a megálló végére), következő megálló
+            int stopBits = bits(stopCount);
+            int ungrouped = maxPattern + 1;
+            int patternBits = bits(ungrouped);
+            checkKeyBits(2 * stopBits + patternBits);
+            long[] groupKeys = new long[tripEdgeCount];
+            for (int i = 0; i < tripEdgeCount; i++) {
+                int edge = tripEdges[i];
+                int pattern = tripPatterns[trips[edge]];
+                long group = pattern < 0 ? ungrouped : pattern;
+                groupKeys[i] = ((long) froms[edge] << (patternBits + stopBits)) | (group << stopBits) | (pattern < 0 ? 0 : targets[edge]);
+            }
+            long[] groups = groupKeys.clone();
+            Arrays.sort(groups);
+            int groupCount = 0;
+            for (int i = 0; i < groups.length; i++) {
+                if (i == 0 || groups[i] != groups[i - 1]) {
+                    groups[groupCount++] = groups[i];
+                }
+            }
+
+            // Rendezési kulcsok: csoport sorszáma, indulás (csak csoportos élnél), az él sorszáma
+            int edgeBits = bits(tripEdgeCount);
+            int departureBits = bits(maxDeparture);
+            checkKeyBits(bits(groupCount) + departureBits + edgeBits);
+            long[] sortKeys = new long[tripEdgeCount];
+            for (int i = 0; i < tripEdgeCount; i++) {
+                int edge = tripEdges[i];
+                long rank = Arrays.binarySearch(groups, 0, groupCount, groupKeys[i]);
+                long departure = tripPatterns[trips[edge]] < 0 ? 0 : departures[edge];
+                sortKeys[i] = (rank << (departureBits + edgeBits)) | (departure << edgeBits) | i;
+            }
+            Arrays.sort(sortKeys);
+
+            int[] order = new int[tripEdgeCount];
+            int[] newIndex = new int[size];
+            int[] offsets = new int[stopCount + 1];
+            for (int k = 0; k < tripEdgeCount; k++) {
+                order[k] = tripEdges[(int) (sortKeys[k] & ((1L << edgeBits) - 1))];
+                newIndex[order[k]] = k;
+                offsets[froms[order[k]] + 1]++;
+            }
+            for (int s = 0; s < stopCount; s++) {
+                offsets[s + 1] += offsets[s];
+            }
+            int[] sortedTargets = new int[tripEdgeCount];
+            int[] sortedDepartures = new int[tripEdgeCount];
+            int[] sortedDurations = new int[tripEdgeCount];
+            int[] sortedTrips = new int[tripEdgeCount];
+            int[] sortedNextInTrip = new int[tripEdgeCount];
+            for (int k = 0; k < tripEdgeCount; k++) {
+                int edge = order[k];
+                sortedTargets[k] = targets[edge];
+                sortedDepartures[k] = departures[edge];
+                sortedDurations[k] = durations[edge];
+                sortedTrips[k] = trips[edge];
+                sortedNextInTrip[k] = nextInTrip[edge] >= 0 ? newIndex[nextInTrip[edge]] : -1;
+            }
+
+            // Csoporthatárok és a csoportba nem sorolt élek kezdete megállónként
+            int[] otherOffsets = new int[stopCount];
+            int[] groupEnds = new int[tripEdgeCount];
+            for (int s = 0; s < stopCount; s++) {
+                int k = offsets[s];
+                while (k < offsets[s + 1] && tripPatterns[sortedTrips[k]] >= 0) {
+                    int end = k + 1;
+                    while (end < offsets[s + 1] && tripPatterns[sortedTrips[end]] == tripPatterns[sortedTrips[k]]
+                            && sortedTargets[end] == sortedTargets[k]) {
+                        end++;
+                    }
+                    Arrays.fill(groupEnds, k, end, end);
+                    k = end;
+                }
+                otherOffsets[s] = k;
+            }
+            return new TransitGraph(stopIndex, tripIds.toArray(new String[0]), offsets, otherOffsets, sortedTargets, sortedDepartures,
+                    sortedDurations, sortedTrips, sortedNextInTrip, groupEnds, buildFootLayer());
+        }
+
+        /**
+         * A gyalogos élek rétegének tömörítése megállónként (számláló rendezéssel, a megállón belül hozzáadási sorrendben).
+         *
+         * @return A gyalogos élek rétege.
+         */
+        private synchronized FootLayer buildFootLayer() {
+            int stopCount = stopIndex.size();
+            int[] offsets = new int[stopCount + 1];
+            for (int edge = 0; edge < size; edge++) {
+                if (trips[edge] < 0) {
+                    offsets[froms[edge] + 1]++;
+                }
+            }
+            for (int s = 0; s < stopCount; s++) {
+                offsets[s + 1] += offsets[s];
+            }
+            int footEdgeCount = offsets[stopCount];
+            int[] footTargets = new int[footEdgeCount];
+            int[] footDurations = new int[footEdgeCount];
+            byte[] footTypes = new byte[footEdgeCount];
+            double[] footDistances = new double[footEdgeCount];
+            int[] fill = Arrays.copyOf(offsets, stopCount);
+            for (int edge = 0; edge < size; edge++) {
+                if (trips[edge] < 0) {
+                    int k = fill[froms[edge]]++;
+                    footTargets[k] = targets[edge];
+                    footDurations[k] = durations[edge];
+                    footTypes[k] = types[edge];
+                    footDistances[k] = distances[edge];
+                }
+            }
+            return new FootLayer(offsets, footTargets, footDurations, footTypes, footDistances);
+        }
+
+        /**
+         * A nemnegatív érték ábrázolásához szükséges bitek száma.
+         *
+         * @param maxValue A legnagyobb ábrázolandó érték.
+         * @return A bitek száma.
+         */
+        private static int bits(int maxValue) {
+            return 32 - Integer.numberOfLeadingZeros(maxValue);
+        }
+
+        /**
+         * Ellenőrzi, hogy a rendezési kulcs elfér-e egy előjel nélkül rendezhető long értékben.
+         *
+         * @param keyBits A kulcs bitjeinek száma.
+         * @throws IllegalStateException Ha a kulcs nem fér el.
+         */
+        private static void checkKeyBits(int keyBits) {
+            if (keyBits > 63) {
+                throw new IllegalStateException("Transit graph too large for packed sort keys");
+            }
+        }
+    }
+}
@@ -0,0 +1,863 @@
+import model.Pathway;
+import model.StopTime;
+import model.Trip;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * A TripBasedRouter osztály a Trip-Based útvonaltervezést valósítja meg: előre kiszámolja minden járat minden
+ * megállási eseményéhez a hasznos átszállásokat más járatokra, majd a kéréseket a járatszakaszok szélességi
+ * bejárásával (átszállásonként egy szint) válaszolja meg. A vonalakat a {@link RoutePatternIndex} mintái adják,
+ * a járatokat azok globális sorszámával azonosítja.
+ * <p>
+ * Az átszállások szűrése: ugyanazon vonal későbbi járatára csak visszafelé, visszaforduló (U-turn) átszállást nem, és olyat sem
+ * tárolunk, amely semmilyen megállóba nem juttat korábban, mint ha az utas a saját járatán maradna. Mivel az
+ * átszállások a forgalmi naptól függetlenül készülnek, kéréskor a célvonal első aznap közlekedő járatára szállunk át.
+ */
+public class TripBasedRouter {
+
+    /**
+     * A gyalogos átszállások alapértelmezett legnagyobb távolsága méterben.
+     */
+    public static final double DEFAULT_FOOTPATH_RADIUS = 400;
+
+    private static final int MAGIC = 0x54425452;
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * A gyorsítótár fejlécének mérete bájtban (azonosító, verzió, ujjlenyomat); utána következik az átszállások táblája.
+     */
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+
+    private final StopIndex stopIndex;
+    private final RoutePatternIndex patterns;
+    private final Footpaths footpaths;
+    private final Footpaths incomingFootpaths;
+    private final int minTransferTime;
+
+    /**
+     * A felépítéshez használt profil (gyaloglási sebesség, séta távolság és legrövidebb átszállási idő).
+     */
+    private final RoutingProfile buildProfile;
+    private final long fingerprint;
+
+    /**
+     * Globális járat sorszám szerint a járat mintája.
+     */
+    private final int[] tripPattern;
+
+    /**
+     * Járatonként az első megállási esemény indexe (hossza: járatok száma + 1).
+     */
+    private final int[] eventOffsets;
+    private TransferTable transfers;
+
+    /**
+     * Az átszállások utolsó számításakor újraszámolt járatok száma (a többi egy korábbi útvonaltervezőből került át).
+     */
+    private int recomputedTrips;
+
+    private final Map<LocalDate, BitSet> activeTripsByDate = new ConcurrentHashMap<>();
+
+    /**
+     * Konstruktor, amely a minták alapján indexeli a megállási eseményeket. Az átszállásokat külön kell kiszámolni vagy betölteni.
+     *
+     * @param patterns     A menetrendi minták.
+     * @param footpaths    A gyalogos kapcsolatok.
+     * @param buildProfile A felépítéshez használt profil (gyaloglási sebesség és legrövidebb átszállási idő).
+     */
+    private TripBasedRouter(RoutePatternIndex patterns, Footpaths footpaths, RoutingProfile buildProfile) {
+        this.stopIndex = patterns.getStopIndex();
+        this.patterns = patterns;
+        this.footpaths = footpaths;
+        this.incomingFootpaths = footpaths.reversed();
+        this.buildProfile = buildProfile;
+        this.minTransferTime = (int) buildProfile.getMinTransferTime();
+
+        int tripCount = patterns.tripCount();
+        this.tripPattern = new int[tripCount];
+        this.eventOffsets = new int[tripCount + 1];
+        for (RoutePattern pattern : patterns.getPatterns()) {
+            int offset = patterns.tripOffset(pattern.getId());
+            for (int k = 0; k < pattern.tripCount(); k++) {
+                tripPattern[offset + k] = pattern.getId();
+                eventOffsets[offset + k + 1] = eventOffsets[offset + k] + pattern.stopCount();
+            }
+        }
+        // Az átszállások a mintáktól, a gyalogos kapcsolatoktól és a profil felépítéskor használt mezőitől függenek
+        long hash = patterns.fingerprint();
+        hash = 31 * hash + minTransferTime;
+        hash = 31 * hash + Double.hashCode(buildProfile.getWalkSpeedKmh());
+        hash = 31 * hash + Double.hashCode(footpathRadius(buildProfile));
+        this.fingerprint = 31 * hash + footpaths.fingerprint();
+    }
+
+    /**
+     * Az útvonaltervező felépítése és az átszállások kiszámítása.
+     *
+     * @param stopIndex A megállók indexe.
+     * @param stopTimes A megállóidők listája.
+     * @param trips     A járatok listája.
+     * @param pathways  Az aluljárók listája.
+     * @param profile   A tervezési profil (gyaloglási sebesség és legrövidebb átszállási idő).
+     * @return Az útvonaltervező.
+     */
+    public static TripBasedRouter build(StopIndex stopIndex, List<StopTime> stopTimes, List<Trip> trips, List<Pathway> pathways,
+                                        RoutingProfile profile) {
+        return build(RoutePatternIndex.build(stopIndex, stopTimes, trips), pathways, profile);
+    }
+
+    /**
+     * Az útvonaltervező felépítése már kiszámolt menetrendi mintákból.
+     *
+     * @param patterns A menetrendi minták.
+     * @param pathways Az aluljárók listája.
+     * @param profile  A tervezési profil (gyaloglási sebesség és legrövidebb átszállási idő).
+     * @return Az útvonaltervező.
+     */
+    public static TripBasedRouter build(RoutePatternIndex patterns, List<Pathway> pathways, RoutingProfile profile) {
+        return build(patterns, pathways, profile, null);
+    }
+
+    /**
+     * Az útvonaltervező felépítése már kiszámolt menetrendi mintákból és megállópárokból.
+     *
+     * @param patterns A menetrendi minták.
+     * @param pathways Az aluljárók listája.
+     * @param profile  A tervezési profil (gyaloglási sebesség és legrövidebb átszállási idő).
+     * @param walks    Az előre kiszámolt megállópárok, vagy null, ha a sétákat a tervezőnek kell kiszámolnia.
+     * @return Az útvonaltervező.
+     */
+    public static TripBasedRouter build(RoutePatternIndex patterns, List<Pathway> pathways, RoutingProfile profile,
+                                        FootpathCache walks) {
+        TripBasedRouter router = new TripBasedRouter(patterns, footpaths(patterns.getStopIndex(), pathways, profile, walks), profile);
+        router.computeTransfers();
+        return router;
+    }
+
+    /**
+     * Az útvonaltervező betöltése a gyorsítótár fájlból, ha az a jelenlegi menetrendhez készült;
+     * egyébként felépítés és a gyorsítótár felülírása.
+     *
+     * @param stopIndex A megállók indexe.
+     * @param stopTimes A megállóidők listája.
+     * @param trips     A járatok listája.
+     * @param pathways  Az aluljárók listája.
+     * @param profile   A tervezési profil.
+     * @param cacheFile Az átszállások gyorsítótár fájlja.
+     * @return Az útvonaltervező.
+     * @throws IOException Ha a gyorsítótár nem írható.
+     */
+    public static TripBasedRouter buildOrLoad(StopIndex stopIndex, List<StopTime> stopTimes, List<Trip> trips, List<Pathway> pathways,
+                                              RoutingProfile profile, Path cacheFile) throws IOException {
+        return buildOrLoad(stopIndex, stopTimes, trips, pathways, profile, cacheFile, false);
+    }
+
+    /**
+     * Az útvonaltervező betöltése vagy felépítése a gyorsítótár fájllal; leképezett módban az átszállások táblája
+     * nem kerül a heapre, hanem a fájlra leképezett memóriából olvasódik (frissen számolt táblánál mentés után).
+     *
+     * @param stopIndex A megállók indexe.
+     * @param stopTimes A megállóidők listája.
+     * @param trips     A járatok listája.
+     * @param pathways  Az aluljárók listája.
+     * @param profile   A tervezési profil.
+     * @param cacheFile Az átszállások gyorsítótár fájlja.
+     * @param mapped    Igaz, ha az átszállások tábláját a fájlra kell leképezni.
+     * @return Az útvonaltervező.
+     * @throws IOException Ha a gyorsítótár nem írható vagy nem képezhető le.
+     */
+    public static TripBasedRouter buildOrLoad(StopIndex stopIndex, List<StopTime> stopTimes, List<Trip> trips, List<Pathway> pathways,
+                                              RoutingProfile profile, Path cacheFile, boolean mapped) throws IOException {
+        return buildOrLoad(RoutePatternIndex.build(stopIndex, stopTimes, trips), pathways, profile, null, cacheFile, mapped);
+    }
+
+    /**
+     * Az útvonaltervező betöltése vagy felépítése már kiszámolt menetrendi mintákból és megállópárokból,
+     * a gyorsítótár fájllal.
+     *
+     * @param patterns  A menetrendi minták.
+     * @param pathways  Az aluljárók listája.
+     * @param profile   A tervezési profil.
+     * @param walks     Az előre kiszámolt megállópárok, vagy null.
+     * @param cacheFile Az átszállások gyorsítótár fájlja.
+     * @param mapped    Igaz, ha az átszállások tábláját a fájlra kell leképezni.
+     * @return Az útvonaltervező.
+     * @throws IOException Ha a gyorsítótár nem írható vagy nem képezhető le.
+     */
+    public static TripBasedRouter buildOrLoad(RoutePatternIndex patterns, List<Pathway> pathways, RoutingProfile profile,
+                                              FootpathCache walks, Path cacheFile, boolean mapped) throws IOException {
+        TripBasedRouter router = new TripBasedRouter(patterns, footpaths(patterns.getStopIndex(), pathways, profile, walks), profile);
+        if (Files.isRegularFile(cacheFile) && router.readTransfers(cacheFile, mapped)) {
+            return router;
+        }
+        router.computeTransfers();
+        router.save(cacheFile);
+        if (mapped && !router.readTransfers(cacheFile, true)) {
+            throw new IOException("Could not map transfer cache " + cacheFile);
+        }
+        return router;
+    }
+
+    /**
+     * Az útvonaltervező frissítése a menetrendi minták lépésenkénti frissítése után. Egy járat átszállásai csak a
+     * saját járatából, a gyalogos kapcsolatokból és az elérhető megállók mintáiból adódnak, ezért csak azok a
+     * járatok számolódnak újra, amelyek mintája újraépült, vagy amelyek leszállási megállójából egy újraépült
+     * vagy megszűnt minta megállója elérhető; a többi járat átszállásai a cél járatok új sorszámával kerülnek át.
+     * A megállóknak és az aluljáróknak változatlannak kell lenniük.
+     *
+     * @param previous A korábbi útvonaltervező.
+     * @param update   A minták frissítése.
+     * @return Az új útvonaltervező.
+     */
+    public static TripBasedRouter update(TripBasedRouter previous, RoutePatternIndex.Update update) {
+        RoutePatternIndex patterns = update.index();
+        RoutePatternIndex oldPatterns = previous.patterns;
+        int[] previousIds = update.previousIds();
+        TripBasedRouter router = new TripBasedRouter(patterns, previous.footpaths, previous.buildProfile);
+
+        int[] newIds = new int[oldPatterns.patternCount()];
+        Arrays.fill(newIds, -1);
+        for (int p = 0; p < previousIds.length; p++) {
+            if (previousIds[p] >= 0) {
+                newIds[previousIds[p]] = p;
+            }
+        }
+
+        // Az újraépült vagy megszűnt minták megállói, és azok a megállók, ahonnan ezek gyalog elérhetők
+        boolean[] changedStops = new boolean[router.stopIndex.size()];
+        for (RoutePattern pattern : patterns.getPatterns()) {
+            if (previousIds[pattern.getId()] < 0) {
+                markStops(pattern, changedStops);
+            }
+        }
+        for (RoutePattern pattern : oldPatterns.getPatterns()) {
+            if (newIds[pattern.getId()] < 0) {
+                markStops(pattern, changedStops);
+            }
+        }
+        boolean[] nearChanged = new boolean[changedStops.length];
+        for (int stop = 0; stop < changedStops.length; stop++) {
+            nearChanged[stop] = changedStops[stop];
+            for (int k = router.footpaths.start(stop); k < router.footpaths.end(stop) && !nearChanged[stop]; k++) {
+                nearChanged[stop] = changedStops[router.footpaths.target(k)];
+            }
+        }
+
+        boolean[] recompute = new boolean[patterns.patternCount()];
+        int recomputedTrips = 0;
+        for (RoutePattern pattern : patterns.getPatterns()) {
+            boolean affected = previousIds[pattern.getId()] < 0;
+            for (int i = 1; i < pattern.stopCount() && !affected; i++) {
+                affected = pattern.canAlight(i) && nearChanged[pattern.stop(i)];
+            }
+            recompute[pattern.getId()] = affected;
+            recomputedTrips += affected ? pattern.tripCount() : 0;
+        }
+
+        int[][] perTrip = new int[patterns.tripCount()][];
+        ThreadLocal<int[]> scratch = router.scratch();
+        IntStream.range(0, patterns.patternCount()).parallel().forEach(p -> {
+            int offset = patterns.tripOffset(p);
+            int oldOffset = recompute[p] ? -1 : oldPatterns.tripOffset(previousIds[p]);
+            for (int k = 0; k < patterns.getPattern(p).tripCount(); k++) {
+                perTrip[offset + k] = recompute[p]
+                        ? router.tripTransfers(offset + k, scratch.get())
+                        : previous.remappedTransfers(oldOffset + k, newIds, patterns);
+            }
+        });
+        router.setTransfers(perTrip);
+        router.recomputedTrips = recomputedTrips;
+        return router;
+    }
+
+    /**
+     * Egy minta megállóinak megjelölése.
+     *
+     * @param pattern A minta.
+     * @param marked  Megállónként a jelölés.
+     */
+    private static void markStops(RoutePattern pattern, boolean[] marked) {
+        for (int j = 0; j < pattern.stopCount(); j++) {
+            marked[pattern.stop(j)] = true;
+        }
+    }
+
+    /**
+     * Egy járat tárolt átszállásai a cél járatok frissített mintákbeli sorszámával.
+     *
+     * @param t           A járat korábbi globális sorszáma.
+     * @param newIds      Korábbi minta sorszám szerint az új sorszám, vagy -1, ha a minta nem került át.
+     * @param newPatterns A frissített minták.
+     * @return Hármasok (leszállási pozíció, cél járat, felszállási pozíció) egy tömbben.
+     * @throws IllegalStateException Ha egy átszállás át nem került mintára mutat.
+     */
+    private int[] remappedTransfers(int t, int[] newIds, RoutePatternIndex newPatterns) {
+        int events = eventOffsets[t];
+        int[] result = new int[3 * (transfers.end(eventOffsets[t + 1] - 1) - transfers.start(events))];
+        int n = 0;
+        for (int i = 0; i < eventOffsets[t + 1] - events; i++) {
+            for (int k = transfers.start(events + i); k < transfers.end(events + i); k++) {
+                int target = transfers.trip(k);
+                int pattern = tripPattern[target];
+                if (newIds[pattern] < 0) {
+                    throw new IllegalStateException("Transfer to rebuilt pattern " + pattern + " was not recomputed");
+                }
+                result[n++] = i;
+                result[n++] = newPatterns.tripOffset(newIds[pattern]) + target - patterns.tripOffset(pattern);
+                result[n++] = transfers.position(k);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A gyalogos átszállások felépítése a profil gyaloglási távolságával, legfeljebb az alapértelmezett sugárig.
+     *
+     * @param stopIndex A megállók indexe.
+     * @param pathways  Az aluljárók listája.
+     * @param profile   A tervezési profil.
+     * @param walks     Az előre kiszámolt megállópárok, vagy null.
+     * @return A gyalogos kapcsolatok.
+     */
+    private static Footpaths footpaths(StopIndex stopIndex, List<Pathway> pathways, RoutingProfile profile, FootpathCache walks) {
+        return Footpaths.build(stopIndex, pathways, footpathRadius(profile), profile, walks);
+    }
+
+    /**
+     * @param profile A tervezési profil.
+     * @return A gyalogos átszállások sugara: a profil séta távolsága, legfeljebb az alapértelmezett sugár.
+     */
+    private static double footpathRadius(RoutingProfile profile) {
+        return Math.min(DEFAULT_FOOTPATH_RADIUS, profile.getMaxWalkDistance());
+    }
+
+    /**
+     * Az átszállások mentése bináris fájlba. A fájl egy ideiglenes fájlba íródik, majd átnevezéssel cseréli a régit,
+     * így egy korábbi tervező leképezett táblája a régi tartalmat látja tovább, nem egy helyben felülírt fájlt.
+     *
+     * @param file A cél fájl.
+     * @throws IOException Ha a fájl nem írható.
+     */
+    public void save(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(fingerprint);
+                transfers.write(out);
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Az átszállások beolvasása vagy leképezése, ha a fájl ugyanahhoz a menetrendhez készült.
+     *
+     * @param file   A forrás fájl.
+     * @param mapped Igaz, ha a táblát a heapre olvasás helyett a fájlra kell leképezni.
+     * @return Igaz, ha a betöltés sikerült.
+     */
+    private boolean readTransfers(Path file, boolean mapped) {
+        int eventCount = eventOffsets[tripPattern.length];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != fingerprint) {
+                return false;
+            }
+            TransferTable table = mapped ? TransferTable.map(file, HEADER_BYTES, eventCount) : TransferTable.read(in, eventCount);
+            if (table == null) {
+                return false;
+            }
+            this.transfers = table;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not read transfer cache " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return A tárolt átszállások száma.
+     */
+    public int getTransferCount() {
+        return transfers.size();
+    }
+
+    /**
+     * @return Az átszállások utolsó számításakor újraszámolt járatok száma (betöltött gyorsítótárnál 0).
+     */
+    public int getRecomputedTripCount() {
+        return recomputedTrips;
+    }
+
+    /**
+     * @return Igaz, ha az átszállások táblája fájlra leképezett, heapen kívüli memóriában van.
+     */
+    public boolean isTransferTableMapped() {
+        return transfers.isMapped();
+    }
+
+    /**
+     * @return Az indexelt járatok száma.
+     */
+    public int getTripCount() {
+        return tripPattern.length;
+    }
+
+    /**
+     * Legkorábbi érkezés keresése a járatszakaszok szintenkénti bejárásával.
+     *
+     * @param startStopId      Az induló megálló azonosítója.
+     * @param endStopId        Az érkező megálló azonosítója.
+     * @param date             A dátum.
+     * @param departureSeconds Az indulási idő a nap kezdetétől másodpercben.
+     * @param profile          A tervezési profil (átszállások száma és időhorizont).
+     * @param trace            A kérés mérési adatai.
+     * @return Az útvonal cél csomópontja, vagy null, ha nincs elérhető útvonal.
+     */
+    TripPlanner.NodeEntry query(String startStopId, String endStopId, LocalDate date, int departureSeconds,
+                                RoutingProfile profile, QueryTrace trace) {
+        int source = stopIndex.indexOf(startStopId);
+        int target = stopIndex.indexOf(endStopId);
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        TripPlanner.NodeEntry startEntry = new TripPlanner.NodeEntry(startStopId, departureSeconds, null, 0, null, null, 0);
+        if (source == target) {
+            return startEntry;
+        }
+
+        long phaseStart = System.nanoTime();
+        BitSet active = activeTrips(date);
+        trace.recordPhase(PlannerPhase.ACTIVE_TRIPS, System.nanoTime() - phaseStart);
+        phaseStart = System.nanoTime();
+
+        long latestBoarding = departureSeconds + profile.getSearchHorizon().getSeconds();
+        int[] egress = new int[stopIndex.size()];
+        Arrays.fill(egress, -1);
+        egress[target] = 0;
+        for (int k = incomingFootpaths.start(target); k < incomingFootpaths.end(target); k++) {
+            egress[incomingFootpaths.target(k)] = incomingFootpaths.duration(k);
+        }
+        int[] reached = new int[tripPattern.length];
+        Arrays.fill(reached, Integer.MAX_VALUE);
+
+        // Csak gyalogos útvonal
+        long best = egress[source] >= 0 ? (long) departureSeconds + egress[source] : Long.MAX_VALUE;
+        Segment bestSegment = null;
+        int bestAlight = -1;
+
+        List<Segment> queue = new ArrayList<>();
+        enqueueBoardings(source, departureSeconds, active, latestBoarding, reached, queue);
+        for (int k = footpaths.start(source); k < footpaths.end(source); k++) {
+            enqueueBoardings(footpaths.target(k), departureSeconds + footpaths.duration(k), active, latestBoarding, reached, queue);
+        }
+
+        long segmentsScanned = 0;
+        long segmentsQueued = queue.size();
+        for (int level = 0; level <= profile.getMaxTransfers() && !queue.isEmpty(); level++) {
+            for (Segment segment : queue) {
+                segmentsScanned++;
+                RoutePattern pattern = patterns.getPattern(tripPattern[segment.trip]);
+                int local = segment.trip - patterns.tripOffset(pattern.getId());
+                for (int i = segment.from + 1; i <= segment.to && pattern.arrival(local, i) < best; i++) {
+                    int walk = egress[pattern.stop(i)];
+                    if (walk >= 0 && pattern.canAlight(i) && pattern.arrival(local, i) + walk < best) {
+                        best = pattern.arrival(local, i) + walk;
+                        bestSegment = segment;
+                        bestAlight = i;
+                    }
+                }
+            }
+            if (level == profile.getMaxTransfers()) {
+                break;
+            }
+
+            List<Segment> next = new ArrayList<>();
+            for (Segment segment : queue) {
+                RoutePattern pattern = patterns.getPattern(tripPattern[segment.trip]);
+                int local = segment.trip - patterns.tripOffset(pattern.getId());
+                int events = eventOffsets[segment.trip];
+                for (int i = segment.from + 1; i <= segment.to && pattern.arrival(local, i) + minTransferTime < best; i++) {
+                    for (int k = transfers.start(events + i); k < transfers.end(events + i); k++) {
+                        int trip = firstActive(transfers.trip(k), active);
+                        int position = transfers.position(k);
+                        if (trip >= 0 && departure(trip, position) <= latestBoarding) {
+                            enqueue(trip, position, segment, i, reached, next);
+                        }
+                    }
+                }
+            }
+            segmentsQueued += next.size();
+            queue = next;
+        }
+
+        trace.setNodesSettled(segmentsScanned);
+        trace.setQueuePushes(segmentsQueued);
+        trace.recordPhase(PlannerPhase.SHORTEST_PATH, System.nanoTime() - phaseStart);
+
+        if (best == Long.MAX_VALUE) {
+            return null;
+        }
+        if (bestSegment == null) {
+            return walkEntry(startEntry, source, target, departureSeconds);
+        }
+        return toNodeEntries(startEntry, source, target, bestSegment, bestAlight);
+    }
+
+    /**
+     * Az adott megállóban adott időtől elérhető vonalak első aznap közlekedő járatainak felvétele.
+     *
+     * @param stop           A megálló indexe.
+     * @param time           Az érkezés ideje a megállóba.
+     * @param active         Az aznap közlekedő járatok.
+     * @param latestBoarding A legkésőbbi felszállási idő.
+     * @param reached        Járatonként a legkorábbi elért megállási pozíció.
+     * @param queue          A szakaszok sora.
+     */
+    private void enqueueBoardings(int stop, int time, BitSet active, long latestBoarding, int[] reached, List<Segment> queue) {
+        int[] patternsAtStop = patterns.patternsAt(stop);
+        int[] positionsAtStop = patterns.positionsAt(stop);
+        for (int k = 0; k < patternsAtStop.length; k++) {
+            RoutePattern pattern = patterns.getPattern(patternsAtStop[k]);
+            int position = positionsAtStop[k];
+            if (!pattern.canBoard(position)) {
+                continue;
+            }
+            int local = pattern.earliestTrip(position, time + minTransferTime);
+            if (local < 0) {
+                continue;
+            }
+            int trip = firstActive(patterns.tripOffset(pattern.getId()) + local, active);
+            if (trip >= 0 && departure(trip, position) <= latestBoarding) {
+                enqueue(trip, position, null, -1, reached, queue);
+            }
+        }
+    }
+
+    /**
+     * Egy járatszakasz felvétele, ha a járat ezen a pozíción még nem volt elérve; a vonal későbbi járatait is
+     * elértnek jelöli (a minta későbbi járatai a globális sorszámban is utána következnek), mert azokkal nem lehet korábban érkezni.
+     *
+     * @param trip         A járat indexe.
+     * @param position     A felszállás pozíciója.
+     * @param parent       Az előző szakasz (vagy null az első felszálláskor).
+     * @param parentAlight A leszállás pozíciója az előző szakaszon.
+     * @param reached      Járatonként a legkorábbi elért megállási pozíció.
+     * @param queue        A szakaszok sora.
+     */
+    private void enqueue(int trip, int position, Segment parent, int parentAlight, int[] reached, List<Segment> queue) {
+        int lastPosition = patterns.getPattern(tripPattern[trip]).stopCount() - 1;
+        if (position >= reached[trip] || position >= lastPosition) {
+            return;
+        }
+        queue.add(new Segment(trip, position, Math.min(reached[trip], lastPosition), parent, parentAlight));
+        int end = patterns.tripOffset(tripPattern[trip] + 1);
+        for (int t = trip; t < end && reached[t] > position; t++) {
+            reached[t] = position;
+        }
+    }
+
+    /**
+     * @param trip     A járat globális sorszáma.
+     * @param position A megálló pozíciója.
+     * @return A járat indulási ideje a pozíción.
+     */
+    private int departure(int trip, int position) {
+        return patterns.getPattern(tripPattern[trip]).departure(trip - patterns.tripOffset(tripPattern[trip]), position);
+    }
+
+    /**
+     * Az adott járattól kezdve a minta első aznap közlekedő járata.
+     *
+     * @param trip   A járat indexe.
+     * @param active Az aznap közlekedő járatok.
+     * @return A járat indexe, vagy -1, ha nincs ilyen.
+     */
+    private int firstActive(int trip, BitSet active) {
+        int next = active.nextSetBit(trip);
+        return next >= 0 && next < patterns.tripOffset(tripPattern[trip] + 1) ? next : -1;
+    }
+
+    /**
+     * Az adott napon közlekedő járatok halmaza, dátumonként gyorsítótárazva.
+     *
+     * @param date A dátum.
+     * @return A közlekedő járatok indexei.
+     */
+    private BitSet activeTrips(LocalDate date) {
+        return activeTripsByDate.computeIfAbsent(date, d -> {
+            BitSet active = new BitSet(tripPattern.length);
+            for (RoutePattern pattern : patterns.getPatterns()) {
+                int offset = patterns.tripOffset(pattern.getId());
+                for (int k = 0; k < pattern.tripCount(); k++) {
+                    if (pattern.trip(k).getServiceDates().contains(d)) {
+                        active.set(offset + k);
+                    }
+                }
+            }
+            return active;
+        });
+    }
+
+    /**
+     * Az összes járat átszállásainak kiszámítása párhuzamosan.
+     */
+    private void computeTransfers() {
+        int tripCount = tripPattern.length;
+        int[][] perTrip = new int[tripCount][];
+        ThreadLocal<int[]> scratch = scratch();
+        IntStream.range(0, tripCount).parallel().forEach(t -> perTrip[t] = tripTransfers(t, scratch.get()));
+        setTransfers(perTrip);
+        recomputedTrips = tripCount;
+    }
+
+    /**
+     * @return Szálanként egy munkaterület a {@link #tripTransfers(int, int[])} számára.
+     */
+    private ThreadLocal<int[]> scratch() {
+        return ThreadLocal.withInitial(() -> {
+            int[] earliest = new int[stopIndex.size()];
+            Arrays.fill(earliest, Integer.MAX_VALUE);
+            return earliest;
+        });
+    }
+
+    /**
+     * Az átszállások táblájának összeállítása a járatonkénti eredményekből.
+     *
+     * @param perTrip Járatonként hármasok (leszállási pozíció, cél járat, felszállási pozíció), leszállási pozíció szerint rendezve.
+     */
+    private void setTransfers(int[][] perTrip) {
+        int tripCount = tripPattern.length;
+        int eventCount = eventOffsets[tripCount];
+        int[] offsets = new int[eventCount + 1];
+        int total = 0;
+        for (int t = 0; t < tripCount; t++) {
+            int[] transfers = perTrip[t];
+            int k = 0;
+            for (int i = 0; i < eventOffsets[t + 1] - eventOffsets[t]; i++) {
+                int event = eventOffsets[t] + i;
+                offsets[event] = total;
+                while (k < transfers.length && transfers[k] == i) {
+                    total++;
+                    k += 3;
+                }
+            }
+        }
+        offsets[eventCount] = total;
+        int[] pairs = new int[2 * total];
+        int n = 0;
+        for (int[] transfers : perTrip) {
+            for (int k = 0; k < transfers.length; k += 3) {
+                pairs[n++] = transfers[k + 1];
+                pairs[n++] = transfers[k + 2];
+            }
+        }
+        this.transfers = TransferTable.onHeap(offsets, pairs);
+    }
+
+    /**
+     * Egy járat hasznos átszállásai, leszállási pozíció szerint növekvő sorrendben.
+     *
+     * @param t        A járat indexe.
+     * @param earliest Megállónként a járaton maradva elérhető legkorábbi idő (munkaterület, végig MAX_VALUE marad).
+     * @return Hármasok (leszállási pozíció, cél járat, felszállási pozíció) egy tömbben.
+     */
+    private int[] tripTransfers(int t, int[] earliest) {
+        RoutePattern own = patterns.getPattern(tripPattern[t]);
+        int ownTrip = t - patterns.tripOffset(own.getId());
+        List<Integer> touched = new ArrayList<>();
+        List<int[]> found = new ArrayList<>();
+
+        for (int i = own.stopCount() - 1; i >= 1; i--) {
+            int stop = own.stop(i);
+            int arrival = own.arrival(ownTrip, i);
+            if (!own.canAlight(i)) {
+                continue;
+            }
+            improve(earliest, touched, stop, arrival);
+            for (int k = footpaths.start(stop); k < footpaths.end(stop); k++) {
+                improve(earliest, touched, footpaths.target(k), arrival + footpaths.duration(k));
+            }
+
+            for (int k = footpaths.start(stop) - 1; k < footpaths.end(stop); k++) {
+                int toStop = k < footpaths.start(stop) ? stop : footpaths.target(k);
+                int walk = k < footpaths.start(stop) ? 0 : footpaths.duration(k);
+                int[] patternsAtStop = patterns.patternsAt(toStop);
+                int[] positionsAtStop = patterns.positionsAt(toStop);
+                for (int r = 0; r < patternsAtStop.length; r++) {
+                    RoutePattern pattern = patterns.getPattern(patternsAtStop[r]);
+                    int j = positionsAtStop[r];
+                    if (j == pattern.stopCount() - 1 || !pattern.canBoard(j)) {
+                        continue;
+                    }
+                    int u = pattern.earliestTrip(j, arrival + walk + minTransferTime);
+                    if (u < 0) {
+                        continue;
+                    }
+                    // Ugyanazon minta saját vagy későbbi járatára csak visszafelé (korábbi megállóba) van értelme átszállni
+                    if (pattern == own && u >= ownTrip && j >= i) {
+                        continue;
+                    }
+                    // Visszaforduló átszállás: az előző megállóban is át lehetett volna szállni
+                    if (own.stop(i - 1) == pattern.stop(j + 1) && own.canAlight(i - 1) && pattern.canBoard(j + 1)
+                            && own.arrival(ownTrip, i - 1) + minTransferTime <= pattern.departure(u, j + 1)) {
+                        continue;
+                    }
+                    if (improvesArrival(pattern, u, j, earliest)) {
+                        found.add(new int[]{i, patterns.tripOffset(pattern.getId()) + u, j});
+                    }
+                }
+            }
+        }
+
+        for (int stop : touched) {
+            earliest[stop] = Integer.MAX_VALUE;
+        }
+        found.sort(Comparator.comparingInt(transfer -> transfer[0]));
+        int[] result = new int[found.size() * 3];
+        for (int k = 0; k < found.size(); k++) {
+            result[3 * k] = found.get(k)[0];
+            result[3 * k + 1] = found.get(k)[1];
+            result[3 * k + 2] = found.get(k)[2];
+        }
+        return result;
+    }
+
+    /**
+     * Megvizsgálja, hogy a járat a felszállás után eljut-e valamelyik megállóba korábban, mint a munkaterület ideje.
+     *
+     * @param pattern  A cél járat mintája.
+     * @param u        A cél járat sorszáma a mintán belül.
+     * @param j        A felszállás pozíciója.
+     * @param earliest Megállónként a járaton maradva elérhető legkorábbi idő.
+     * @return Igaz, ha az átszállás javít valamelyik megálló érkezési idején.
+     */
+    private boolean improvesArrival(RoutePattern pattern, int u, int j, int[] earliest) {
+        for (int k = j + 1; k < pattern.stopCount(); k++) {
+            if (!pattern.canAlight(k)) {
+                continue;
+            }
+            int stop = pattern.stop(k);
+            int arrival = pattern.arrival(u, k);
+            if (arrival < earliest[stop]) {
+                return true;
+            }
+            for (int f = footpaths.start(stop); f < footpaths.end(stop); f++) {
+                if (arrival + footpaths.duration(f) < earliest[footpaths.target(f)]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A munkaterület egy megállójának javítása.
+     *
+     * @param earliest A munkaterület.
+     * @param touched  A módosított megállók listája.
+     * @param stop     A megálló indexe.
+     * @param time     Az érkezési idő.
+     */
+    private static void improve(int[] earliest, List<Integer> touched, int stop, int time) {
+        if (time < earliest[stop]) {
+            if (earliest[stop] == Integer.MAX_VALUE) {
+                touched.add(stop);
+            }
+            earliest[stop] = time;
+        }
+    }
+
+    /**
+     * A talált szakaszlánc átalakítása a tervező csomópont láncává.
+     *
+     * @param startEntry  A kiinduló csomópont.
+     * @param source      Az induló megálló indexe.
+     * @param target      Az érkező megálló indexe.
+     * @param last        Az utolsó járatszakasz.
+     * @param lastAlight  A leszállás pozíciója az utolsó szakaszon.
+     * @return A cél csomópont.
+     */
+    private TripPlanner.NodeEntry toNodeEntries(TripPlanner.NodeEntry startEntry, int source, int target, Segment last, int lastAlight) {
+        Deque<Segment> segments = new ArrayDeque<>();
+        Deque<Integer> alights = new ArrayDeque<>();
+        int alight = lastAlight;
+        for (Segment segment = last; segment != null; segment = segment.parent) {
+            segments.push(segment);
+            alights.push(alight);
+            alight = segment.parentAlight;
+        }
+
+        TripPlanner.NodeEntry node = startEntry;
+        int stop = source;
+        int boardings = 0;
+        while (!segments.isEmpty()) {
+            Segment segment = segments.pop();
+            int segmentAlight = alights.pop();
+            RoutePattern pattern = patterns.getPattern(tripPattern[segment.trip]);
+            int local = segment.trip - patterns.tripOffset(pattern.getId());
+            String tripId = pattern.trip(local).getTripId();
+            node = walkEntry(node, stop, pattern.stop(segment.from), node.earliestArrivalTime);
+            boardings++;
+            for (int k = segment.from; k < segmentAlight; k++) {
+                int departure = pattern.departure(local, k);
+                int arrival = pattern.arrival(local, k + 1);
+                String toStopId = stopIndex.get(pattern.stop(k + 1)).getStopId();
+                TripPlanner.Edge edge = new TripPlanner.Edge(toStopId, arrival - departure, EdgeType.TRANSIT,
+                        LocalTime.ofSecondOfDay(departure % 86400), tripId);
+                node = new TripPlanner.NodeEntry(toStopId, arrival, node, boardings, tripId, edge, departure - node.earliestArrivalTime);
+            }
+            stop = pattern.stop(segmentAlight);
+        }
+        return walkEntry(node, stop, target, node.earliestArrivalTime);
+    }
+
+    /**
+     * Gyalogos csomópont a két megálló között, ha azok különböznek.
+     *
+     * @param previous Az előző csomópont.
+     * @param from     A kiinduló megálló indexe.
+     * @param to       A cél megálló indexe.
+     * @param time     Az indulás ideje.
+     * @return Az új csomópont, vagy az előző, ha a két megálló azonos.
+     */
+    private TripPlanner.NodeEntry walkEntry(TripPlanner.NodeEntry previous, int from, int to, long time) {
+        if (from == to) {
+            return previous;
+        }
+        for (int k = footpaths.start(from); k < footpaths.end(from); k++) {
+            if (footpaths.target(k) == to) {
+                String toStopId = stopIndex.get(to).getStopId();
+                TripPlanner.Edge edge = new TripPlanner.Edge(toStopId, footpaths.duration(k), EdgeType.WALK, footpaths.distance(k));
+                return new TripPlanner.NodeEntry(toStopId, time + footpaths.duration(k), previous, previous.transfers, null, edge, 0);
+            }
+        }
+        throw new IllegalStateException("No footpath between " + stopIndex.get(from).getStopId() + " and " + stopIndex.get(to).getStopId());
+    }
+
+    /**
+     * Egy járatszakasz: a felszállási pozíciótól a járat akkor elért legkorábbi pozíciójáig.
+     *
+     * @param trip         A járat indexe.
+     * @param from         A felszállás pozíciója.
+     * @param to           Az utolsó vizsgálandó leszállási pozíció (a járat akkor már elért pozíciója is).
+     * @param parent       Az előző szakasz (vagy null).
+     * @param parentAlight A leszállás pozíciója az előző szakaszon.
+     */
+    private record Segment(int trip, int from, int to, Segment parent, int parentAlight) {
+    }
+}
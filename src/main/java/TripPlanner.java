@@ -1,10 +1,14 @@
 import model.*;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 /**
@@ -18,6 +22,81 @@ public class TripPlanner {
     final List<Trip> trips;
     final List<Route> routes;
 
+    /**
+     * A megállók azonosító szerint indexelve.
+     */
+    private final Map<String, Stop> stopsById = new HashMap<>();
+
+    /**
+     * A megállók sűrű indexe a tömb alapú keresésekhez.
+     */
+    private final StopIndex stopIndex;
+
+    /**
+     * A megállók rácsos térbeli indexe a koordinátás kérésekhez.
+     */
+    private final StopSpatialIndex spatialIndex;
+
+    /**
+     * A koordinátás kérés kiinduló és cél pontjához illesztett megállók legnagyobb száma.
+     */
+    private static final int SNAP_STOP_COUNT = 8;
+
+    /**
+     * A menetrend időfelbontása másodpercben: a percre kerekített megállóközök valós ideje ennyivel is eltérhet.
+     */
+    private static final long TIME_RESOLUTION = 60;
+
+    /**
+     * A hálózat legnagyobb sebessége m/s-ban, az első A* kéréskor számolva (addig negatív).
+     */
+    private volatile double maxNetworkSpeed = -1;
+
+    /**
+     * A tervezési kérések összesített mérései.
+     */
+    private final PlannerMetrics metrics;
+
+    /**
+     * A menetrendi minták, első használatkor felépítve.
+     */
+    private volatile RoutePatternIndex routePatterns;
+
+    /**
+     * A Trip-Based útvonaltervező, az első ilyen kéréskor felépítve (vagy kívülről beállítva).
+     */
+    private volatile TripBasedRouter tripBasedRouter;
+
+    /**
+     * A Trip-Based átszállások gyorsítótár fájlja, vagy null, ha az átszállások csak a memóriában készülnek.
+     */
+    private volatile Path transferCacheFile;
+
+    /**
+     * Igaz, ha a gyorsítótárból betöltött átszállások táblája a fájlra leképezve, a heapen kívül marad.
+     */
+    private volatile boolean transferCacheMapped;
+
+    /**
+     * Az állomások (azonos nevű, közeli megállók és peronjaik csoportjai), első használatkor felépítve.
+     */
+    private volatile StationClusters stationClusters;
+
+    /**
+     * A megállók közötti séták előre kiszámolt halmaza, első használatkor kiszámolva (vagy a gyorsítótár fájlból betöltve).
+     */
+    private volatile FootpathCache footpathCache;
+
+    /**
+     * A menetrend fölötti valós idejű módosítások (késések, törlések, kihagyott megállók).
+     */
+    private volatile RealtimeOverlay realtime = new RealtimeOverlay();
+
+    /**
+     * Az utoljára kért szolgálati nap menetrendi gráfja, amíg a nap és a valós idejű módosításai nem változnak.
+     */
+    private volatile TimetableGraph timetableGraph;
+
     /**
      * Konstruktor, amely inicializálja az utazástervezőt a szükséges adatokkal.
      *
@@ -28,11 +107,113 @@ public class TripPlanner {
      * @param routes    A vonalak listája.
      */
     public TripPlanner(List<Stop> stops, List<StopTime> stopTimes, List<Pathway> pathways, List<Trip> trips, List<Route> routes) {
+        this(stops, stopTimes, pathways, trips, routes, new PlannerMetrics());
+    }
+
+    /**
+     * Konstruktor megosztott mérésekkel, hogy egy feed cseréje után is ugyanoda gyűljenek a kérések mérései.
+     *
+     * @param stops     A megállók listája.
+     * @param stopTimes A megállóidők listája.
+     * @param pathways  Az aluljárók listája.
+     * @param trips     A járatok listája.
+     * @param routes    A vonalak listája.
+     * @param metrics   Az összesített mérések.
+     */
+    public TripPlanner(List<Stop> stops, List<StopTime> stopTimes, List<Pathway> pathways, List<Trip> trips, List<Route> routes,
+                       PlannerMetrics metrics) {
         this.stops = stops;
         this.stopTimes = stopTimes;
         this.pathways = pathways;
         this.trips = trips;
         this.routes = routes;
+        for (Stop stop : stops) {
+            stopsById.put(stop.getStopId(), stop);
+        }
+        this.stopIndex = new StopIndex(stops);
+        this.spatialIndex = new StopSpatialIndex(stopIndex);
+        this.metrics = metrics;
+    }
+
+    /**
+     * A lustán felépülő indexek előzetes felépítése (menetrendi minták, hálózati sebesség, megállók közötti séták,
+     * kérésre a Trip-Based átszállások), hogy egy frissen betöltött feed első kérése ne várjon rájuk.
+     *
+     * @param tripBased Igaz, ha a Trip-Based útvonaltervezőt is fel kell építeni.
+     */
+    public void warmUp(boolean tripBased) {
+        getRoutePatterns();
+        getMaxNetworkSpeed();
+        getStationClusters();
+        getFootpathCache();
+        if (tripBased) {
+            getTripBasedRouter();
+        }
+    }
+
+    /**
+     * A korábbi tervező már felépített indexeinek átvétele egy feed különbség alapján: a menetrendi minták közül
+     * csak az érintett csoportok, a Trip-Based átszállások közül csak az érintett járatokéi számolódnak újra.
+     * A hálózati sebesség a korábbi érték és a hozzáadott vagy módosult járatok sebességének maximuma; törölt
+     * járatok után felülbecslés maradhat, ami az A* heurisztikát nem rontja el. A megállók nem változtak, így a
+     * séták halmaza változatlanul átvehető.
+     *
+     * @param previous A korábbi feed tervezője.
+     * @param diff     A korábbi és az új feed különbsége.
+     * @throws IllegalArgumentException Ha a különbség teljes újraépítést igényel.
+     */
+    public void applyDiff(TripPlanner previous, FeedDiff diff) {
+        if (diff.requiresFullRebuild()) {
+            throw new IllegalArgumentException("Feed diff changes the network: " + diff);
+        }
+        Set<String> affected = diff.affectedTrips();
+        footpathCache = previous.footpathCache;
+        RoutePatternIndex previousPatterns = previous.routePatterns;
+        if (previousPatterns != null) {
+            RoutePatternIndex.Update update = RoutePatternIndex.update(previousPatterns, stopTimes, trips, affected);
+            routePatterns = update.index();
+            TripBasedRouter previousRouter = previous.tripBasedRouter;
+            if (previousRouter != null) {
+                tripBasedRouter = TripBasedRouter.update(previousRouter, update);
+            }
+        }
+        double previousSpeed = previous.maxNetworkSpeed;
+        if (previousSpeed >= 0) {
+            List<StopTime> changedStopTimes = stopTimes.stream()
+                    .filter(stopTime -> affected.contains(stopTime.getTripId()))
+                    .toList();
+            maxNetworkSpeed = Math.max(previousSpeed, computeMaxNetworkSpeed(changedStopTimes));
+        }
+    }
+
+    /**
+     * A valós idejű módosítások forrásának beállítása, például a feed cseréi között megosztott példányra.
+     *
+     * @param realtime A valós idejű módosítások.
+     */
+    public void setRealtimeOverlay(RealtimeOverlay realtime) {
+        this.realtime = realtime;
+    }
+
+    /**
+     * @return A valós idejű módosítások.
+     */
+    public RealtimeOverlay getRealtimeOverlay() {
+        return realtime;
+    }
+
+    /**
+     * @return A tervező adatai feedként, például egy újabb feeddel való összehasonlításhoz.
+     */
+    public GtfsFeed getFeed() {
+        return new GtfsFeed(stops, stopTimes, pathways, trips, routes);
+    }
+
+    /**
+     * @return Igaz, ha a Trip-Based útvonaltervező már fel van építve.
+     */
+    public boolean hasTripBasedRouter() {
+        return tripBasedRouter != null;
     }
 
     /**
@@ -45,17 +226,623 @@ public class TripPlanner {
      * @return Az utazási terv lépéseinek listája.
      */
     public List<TripPlanLeg> findOptimalPath(String startStopId, String endStopId, LocalDate date, LocalTime departureTime) {
+        return findOptimalPath(startStopId, endStopId, date, departureTime, RoutingProfile.DEFAULT);
+    }
+
+    /**
+     * Megkeresi az optimális útvonalat két megálló között a megadott tervezési profillal.
+     *
+     * @param startStopId   Az induló megálló azonosítója.
+     * @param endStopId     Az érkező megálló azonosítója.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @param profile       A tervezési profil.
+     * @return Az utazási terv lépéseinek listája.
+     */
+    public List<TripPlanLeg> findOptimalPath(String startStopId, String endStopId, LocalDate date, LocalTime departureTime, RoutingProfile profile) {
+        return findOptimalPathWithTrace(startStopId, endStopId, date, departureTime, profile).legs();
+    }
+
+    /**
+     * Megkeresi az optimális útvonalat, és a kérés mérési adatait is visszaadja.
+     *
+     * @param startStopId   Az induló megálló azonosítója.
+     * @param endStopId     Az érkező megálló azonosítója.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @return Az utazási terv és a kérés mérési adatai.
+     */
+    public TracedPlan findOptimalPathWithTrace(String startStopId, String endStopId, LocalDate date, LocalTime departureTime) {
+        return findOptimalPathWithTrace(startStopId, endStopId, date, departureTime, RoutingProfile.DEFAULT);
+    }
+
+    /**
+     * Megkeresi az optimális útvonalat a megadott tervezési profillal, és a kérés mérési adatait is visszaadja.
+     *
+     * @param startStopId   Az induló megálló azonosítója.
+     * @param endStopId     Az érkező megálló azonosítója.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @param profile       A tervezési profil.
+     * @return Az utazási terv és a kérés mérési adatai.
+     */
+    public TracedPlan findOptimalPathWithTrace(String startStopId, String endStopId, LocalDate date, LocalTime departureTime, RoutingProfile profile) {
+        return findOptimalPathWithTrace(List.of(StopAccess.at(startStopId)), List.of(StopAccess.at(endStopId)), date, departureTime, profile);
+    }
+
+    /**
+     * Megkeresi az optimális útvonalat kiinduló és cél megállók halmazai között (például két állomás összes
+     * megállója között). Egyetlen keresés indul az összes kiinduló megállóból, és a legkorábban a tényleges célba
+     * (a cél megálló eljutási idejével együtt) érkező útvonal az eredmény.
+     *
+     * @param origins       A kiinduló megállók az indulástól számított eljutási idejükkel.
+     * @param destinations  A cél megállók a tényleges célig tartó eljutási idejükkel.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @return Az utazási terv lépéseinek listája (üres, ha nincs elérhető útvonal).
+     */
+    public List<TripPlanLeg> findOptimalPath(List<StopAccess> origins, List<StopAccess> destinations, LocalDate date, LocalTime departureTime) {
+        return findOptimalPath(origins, destinations, date, departureTime, RoutingProfile.DEFAULT);
+    }
+
+    /**
+     * Megkeresi az optimális útvonalat kiinduló és cél megállók halmazai között a megadott tervezési profillal.
+     *
+     * @param origins       A kiinduló megállók az indulástól számított eljutási idejükkel.
+     * @param destinations  A cél megállók a tényleges célig tartó eljutási idejükkel.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @param profile       A tervezési profil.
+     * @return Az utazási terv lépéseinek listája (üres, ha nincs elérhető útvonal).
+     */
+    public List<TripPlanLeg> findOptimalPath(List<StopAccess> origins, List<StopAccess> destinations, LocalDate date, LocalTime departureTime,
+                                             RoutingProfile profile) {
+        return findOptimalPathWithTrace(origins, destinations, date, departureTime, profile).legs();
+    }
+
+    /**
+     * Megkeresi az optimális útvonalat kiinduló és cél megállók halmazai között, és a kérés mérési adatait is visszaadja.
+     *
+     * @param origins       A kiinduló megállók az indulástól számított eljutási idejükkel.
+     * @param destinations  A cél megállók a tényleges célig tartó eljutási idejükkel.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @param profile       A tervezési profil.
+     * @return Az utazási terv és a kérés mérési adatai.
+     */
+    public TracedPlan findOptimalPathWithTrace(List<StopAccess> origins, List<StopAccess> destinations, LocalDate date, LocalTime departureTime,
+                                               RoutingProfile profile) {
+        QueryTrace trace = new QueryTrace();
+        Map<String, TripUpdate> updates = realtime.snapshot().updatesOn(date);
+
+        // 1-2. lépés: A szolgálati nap menetrendi gráfja a valós idejű módosításokkal (csak ezek változásakor épül újra)
+        TransitGraph timetable = getTimetableGraph(date, updates, trace);
+
+        // 3. lépés: A kérés gyalogos éleinek hozzáadása
+        long phaseStart = System.nanoTime();
+        TransitGraph graph = withFootEdges(timetable, origins.stream().map(StopAccess::stopId).toList(),
+                destinations.stream().map(StopAccess::stopId).toList(), profile);
+        trace.setEdgesBuilt(graph.edgeCount());
+        phaseStart = endPhase(trace, PlannerPhase.BUILD_GRAPH, phaseStart);
+
+        // 4. lépés: A legrövidebb út algoritmus futtatása
+        List<TripPlanLeg> tripPlan = shortestPath(graph, origins, destinations, departureTime, profile, trace);
+        trace.setResultLegs(tripPlan.size());
+        endPhase(trace, PlannerPhase.SHORTEST_PATH, phaseStart);
+
+        metrics.record(trace);
+        return new TracedPlan(tripPlan, trace);
+    }
+
+    /**
+     * Megkeresi az optimális útvonalat két koordináta között.
+     *
+     * @param originLatitude       A kiinduló pont szélessége.
+     * @param originLongitude      A kiinduló pont hosszúsága.
+     * @param destinationLatitude  A cél pont szélessége.
+     * @param destinationLongitude A cél pont hosszúsága.
+     * @param date                 A dátum.
+     * @param departureTime        Az indulási idő.
+     * @return Az utazási terv lépéseinek listája, a kezdő és záró gyaloglással (üres, ha nincs elérhető útvonal).
+     */
+    public List<TripPlanLeg> findOptimalPath(double originLatitude, double originLongitude, double destinationLatitude,
+                                             double destinationLongitude, LocalDate date, LocalTime departureTime) {
+        return findOptimalPath(originLatitude, originLongitude, destinationLatitude, destinationLongitude, date, departureTime, RoutingProfile.DEFAULT);
+    }
+
+    /**
+     * Megkeresi az optimális útvonalat két koordináta között a megadott tervezési profillal.
+     *
+     * @param originLatitude       A kiinduló pont szélessége.
+     * @param originLongitude      A kiinduló pont hosszúsága.
+     * @param destinationLatitude  A cél pont szélessége.
+     * @param destinationLongitude A cél pont hosszúsága.
+     * @param date                 A dátum.
+     * @param departureTime        Az indulási idő.
+     * @param profile              A tervezési profil.
+     * @return Az utazási terv lépéseinek listája, a kezdő és záró gyaloglással (üres, ha nincs elérhető útvonal).
+     */
+    public List<TripPlanLeg> findOptimalPath(double originLatitude, double originLongitude, double destinationLatitude,
+                                             double destinationLongitude, LocalDate date, LocalTime departureTime, RoutingProfile profile) {
+        return findOptimalPathWithTrace(originLatitude, originLongitude, destinationLatitude, destinationLongitude, date, departureTime, profile).legs();
+    }
+
+    /**
+     * Megkeresi az optimális útvonalat két koordináta között, és a kérés mérési adatait is visszaadja.
+     * Mindkét pont a térbeli index szerinti legközelebbi, séta távolságon belüli megállókhoz illeszkedik, amelyek
+     * a gyaloglási idejükkel egyetlen keresésbe kerülnek; az eredmény elejére és végére a ponttól, illetve a pontig
+     * tartó gyaloglás kerül. Ha a két pont között közvetlenül gyalogolni sem tart tovább, az eredmény egyetlen séta.
+     *
+     * @param originLatitude       A kiinduló pont szélessége.
+     * @param originLongitude      A kiinduló pont hosszúsága.
+     * @param destinationLatitude  A cél pont szélessége.
+     * @param destinationLongitude A cél pont hosszúsága.
+     * @param date                 A dátum.
+     * @param departureTime        Az indulási idő.
+     * @param profile              A tervezési profil.
+     * @return Az utazási terv és a kérés mérési adatai.
+     */
+    public TracedPlan findOptimalPathWithTrace(double originLatitude, double originLongitude, double destinationLatitude,
+                                               double destinationLongitude, LocalDate date, LocalTime departureTime, RoutingProfile profile) {
+        Stop origin = locationStop("origin", "Origin", originLatitude, originLongitude);
+        Stop destination = locationStop("destination", "Destination", destinationLatitude, destinationLongitude);
+        List<StopAccess> origins = nearestStops(originLatitude, originLongitude, profile);
+        List<StopAccess> destinations = nearestStops(destinationLatitude, destinationLongitude, profile);
+        TracedPlan plan = findOptimalPathWithTrace(origins, destinations, date, departureTime, profile);
+
+        List<TripPlanLeg> tripPlan = new ArrayList<>(plan.legs());
+        long transitDuration = Long.MAX_VALUE;
+        if (!tripPlan.isEmpty()) {
+            Stop firstStop = tripPlan.getFirst().getFromStop();
+            Stop lastStop = tripPlan.getLast().getToStop();
+            long egressTime = accessTime(destinations, lastStop.getStopId());
+            transitDuration = Math.floorMod(tripPlan.getLast().getEndTime().toSecondOfDay() - departureTime.toSecondOfDay(), 86400) + egressTime;
+            long accessTime = accessTime(origins, firstStop.getStopId());
+            if (accessTime > 0) {
+                tripPlan.addFirst(walkLeg(origin, firstStop, departureTime, accessTime));
+            }
+            if (egressTime > 0) {
+                tripPlan.add(walkLeg(lastStop, destination, tripPlan.getLast().getEndTime(), egressTime));
+            }
+        }
+
+        // Közvetlen gyaloglás, ha belefér a séta korlátba és nem lassabb
+        double directDistance = haversine(originLatitude, originLongitude, destinationLatitude, destinationLongitude);
+        if (directDistance <= profile.getMaxWalkDistance() && profile.walkingTime(directDistance) <= transitDuration) {
+            tripPlan = new ArrayList<>(List.of(walkLeg(origin, destination, departureTime, profile.walkingTime(directDistance))));
+        }
+        return new TracedPlan(tripPlan, plan.trace());
+    }
+
+    /**
+     * A ponthoz legközelebbi, séta távolságon belüli megállók a gyaloglási idejükkel.
+     *
+     * @param latitude  A pont szélessége.
+     * @param longitude A pont hosszúsága.
+     * @param profile   A tervezési profil (séta korlát és sebesség).
+     * @return Legfeljebb {@link #SNAP_STOP_COUNT} megálló, a legközelebbivel kezdve.
+     */
+    private List<StopAccess> nearestStops(double latitude, double longitude, RoutingProfile profile) {
+        List<StopAccess> access = new ArrayList<>();
+        for (StopSpatialIndex.Neighbor neighbor : spatialIndex.nearest(latitude, longitude, SNAP_STOP_COUNT, profile.getMaxWalkDistance())) {
+            access.add(new StopAccess(neighbor.stop().getStopId(), profile.walkingTime(neighbor.distance())));
+        }
+        return access;
+    }
+
+    /**
+     * @param access A megállók az eljutási idejükkel.
+     * @param stopId Egy megálló azonosítója.
+     * @return A megálló eljutási ideje, vagy 0, ha nincs a listában.
+     */
+    private static long accessTime(List<StopAccess> access, String stopId) {
+        for (StopAccess stopAccess : access) {
+            if (stopAccess.stopId().equals(stopId)) {
+                return stopAccess.accessTime();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Egy koordinátát megállóként ábrázoló objektum a kezdő és záró gyaloglás szakaszaihoz.
+     *
+     * @param stopId    Az azonosító.
+     * @param name      A megjelenített név.
+     * @param latitude  A pont szélessége.
+     * @param longitude A pont hosszúsága.
+     * @return A pontot jelölő megálló.
+     */
+    private static Stop locationStop(String stopId, String name, double latitude, double longitude) {
+        return new Stop(stopId, name, latitude, longitude, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * Egy gyaloglási szakasz két pont között.
+     *
+     * @param from      A kiinduló pont.
+     * @param to        A cél pont.
+     * @param startTime Az indulás ideje.
+     * @param duration  A gyaloglás ideje másodpercben.
+     * @return A szakasz.
+     */
+    private static TripPlanLeg walkLeg(Stop from, Stop to, LocalTime startTime, long duration) {
+        double distance = haversine(from.getStopLat(), from.getStopLon(), to.getStopLat(), to.getStopLon());
+        return new TripPlanLeg(TripPlanLeg.LegType.WALK, from, to, startTime, startTime.plusSeconds(duration),
+                null, null, null, null, distance, duration);
+    }
+
+    /**
+     * Megkeresi a Pareto-optimális útvonalakat az érkezési idő, az átszállások száma és a gyaloglási távolság szerint.
+     * Egyetlen kereséssel ad vissza egymást nem dominánsan felülmúló alternatívákat, érkezési idő szerint rendezve.
+     *
+     * @param startStopId   Az induló megálló azonosítója.
+     * @param endStopId     Az érkező megálló azonosítója.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @return Az alternatív utazási tervek listája (üres, ha nincs elérhető útvonal).
+     */
+    public List<List<TripPlanLeg>> findParetoPaths(String startStopId, String endStopId, LocalDate date, LocalTime departureTime) {
+        return findParetoPaths(startStopId, endStopId, date, departureTime, RoutingProfile.DEFAULT);
+    }
+
+    /**
+     * Megkeresi a Pareto-optimális útvonalakat a megadott tervezési profillal.
+     *
+     * @param startStopId   Az induló megálló azonosítója.
+     * @param endStopId     Az érkező megálló azonosítója.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @param profile       A tervezési profil.
+     * @return Az alternatív utazási tervek listája (üres, ha nincs elérhető útvonal).
+     */
+    public List<List<TripPlanLeg>> findParetoPaths(String startStopId, String endStopId, LocalDate date, LocalTime departureTime, RoutingProfile profile) {
+        QueryTrace trace = new QueryTrace();
+        Map<String, TripUpdate> updates = realtime.snapshot().updatesOn(date);
+        Map<String, List<Edge>> graph = prepareGraph(startStopId, endStopId, date, updates,
+                activeTripIds -> filterStopTimes(activeTripIds, departureTime, profile.getSearchHorizon(), updates), profile, trace);
+        long phaseStart = System.nanoTime();
+
+        ParetoSearch search = new ParetoSearch(graph, profile);
+        List<NodeEntry> targetLabels = search.run(startStopId, endStopId, departureTime.toSecondOfDay());
+        List<List<TripPlanLeg>> alternatives = new ArrayList<>();
+        for (NodeEntry label : targetLabels) {
+            alternatives.add(reconstructTripPlan(label));
+        }
+        trace.setNodesSettled(search.getLabelsSettled());
+        trace.setQueuePushes(search.getQueuePushes());
+        trace.setResultLegs(alternatives.stream().mapToInt(List::size).sum());
+        endPhase(trace, PlannerPhase.SHORTEST_PATH, phaseStart);
+
+        metrics.record(trace);
+        return alternatives;
+    }
+
+    /**
+     * Megkeresi azt az útvonalat, amellyel a legkésőbb lehet elindulni úgy, hogy adott időre a célba érjünk.
+     *
+     * @param startStopId Az induló megálló azonosítója.
+     * @param endStopId   Az érkező megálló azonosítója.
+     * @param date        A dátum.
+     * @param arrivalTime A legkésőbbi érkezési idő.
+     * @return Az utazási terv lépéseinek listája (üres, ha nincs elérhető útvonal).
+     */
+    public List<TripPlanLeg> findArriveByPath(String startStopId, String endStopId, LocalDate date, LocalTime arrivalTime) {
+        return findArriveByPath(startStopId, endStopId, date, arrivalTime, RoutingProfile.DEFAULT);
+    }
+
+    /**
+     * Érkezési időhöz kötött tervezés a megadott tervezési profillal.
+     * Egyetlen visszafelé irányuló keresés az érkezési időt megelőző időablak menetrendjén.
+     *
+     * @param startStopId Az induló megálló azonosítója.
+     * @param endStopId   Az érkező megálló azonosítója.
+     * @param date        A dátum.
+     * @param arrivalTime A legkésőbbi érkezési idő.
+     * @param profile     A tervezési profil.
+     * @return Az utazási terv lépéseinek listája (üres, ha nincs elérhető útvonal).
+     */
+    public List<TripPlanLeg> findArriveByPath(String startStopId, String endStopId, LocalDate date, LocalTime arrivalTime, RoutingProfile profile) {
+        QueryTrace trace = new QueryTrace();
+        LocalTime windowStart = LocalTime.ofSecondOfDay(Math.max(0, arrivalTime.toSecondOfDay() - profile.getSearchHorizon().getSeconds()));
+        Map<String, TripUpdate> updates = realtime.snapshot().updatesOn(date);
+        Map<String, List<Edge>> graph = prepareGraph(startStopId, endStopId, date, updates,
+                activeTripIds -> filterStopTimesBefore(activeTripIds, windowStart, arrivalTime, updates), profile, trace);
+        long phaseStart = System.nanoTime();
+
+        ReverseSearch search = new ReverseSearch(graph, profile);
+        NodeEntry targetNode = search.run(startStopId, endStopId, arrivalTime.toSecondOfDay());
+        List<TripPlanLeg> tripPlan = targetNode == null ? new ArrayList<>() : reconstructTripPlan(targetNode);
+        trace.setNodesSettled(search.getLabelsSettled());
+        trace.setQueuePushes(search.getQueuePushes());
+        trace.setResultLegs(tripPlan.size());
+        endPhase(trace, PlannerPhase.SHORTEST_PATH, phaseStart);
+
+        metrics.record(trace);
+        return tripPlan;
+    }
+
+    /**
+     * Legkorábbi érkezés keresése az előre kiszámolt járat-járat átszállásokkal (Trip-Based útvonaltervezés).
+     *
+     * @param startStopId   Az induló megálló azonosítója.
+     * @param endStopId     Az érkező megálló azonosítója.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @return Az utazási terv lépéseinek listája (üres, ha nincs elérhető útvonal).
+     */
+    public List<TripPlanLeg> findTripBasedPath(String startStopId, String endStopId, LocalDate date, LocalTime departureTime) {
+        return findTripBasedPath(startStopId, endStopId, date, departureTime, RoutingProfile.DEFAULT);
+    }
+
+    /**
+     * Trip-Based tervezés a megadott profillal. A profilból az átszállások száma és az időhorizont számít;
+     * a gyaloglási sebesség és a legrövidebb átszállási idő az útvonaltervező felépítésekor rögzül.
+     *
+     * @param startStopId   Az induló megálló azonosítója.
+     * @param endStopId     Az érkező megálló azonosítója.
+     * @param date          A dátum.
+     * @param departureTime Az indulási idő.
+     * @param profile       A tervezési profil.
+     * @return Az utazási terv lépéseinek listája (üres, ha nincs elérhető útvonal).
+     */
+    public List<TripPlanLeg> findTripBasedPath(String startStopId, String endStopId, LocalDate date, LocalTime departureTime, RoutingProfile profile) {
+        QueryTrace trace = new QueryTrace();
+        TripBasedRouter router = getTripBasedRouter();
+        NodeEntry targetNode = router.query(startStopId, endStopId, date, departureTime.toSecondOfDay(), profile, trace);
+        List<TripPlanLeg> tripPlan = targetNode == null ? new ArrayList<>() : reconstructTripPlan(targetNode);
+        trace.setResultLegs(tripPlan.size());
+        metrics.record(trace);
+        return tripPlan;
+    }
+
+    /**
+     * Visszaadja a Trip-Based útvonaltervezőt; ha még nincs, az alapértelmezett profillal felépíti.
+     *
+     * @return Az útvonaltervező.
+     */
+    TripBasedRouter getTripBasedRouter() {
+        TripBasedRouter router = tripBasedRouter;
+        if (router == null) {
+            synchronized (this) {
+                router = tripBasedRouter;
+                if (router == null) {
+                    router = buildTripBasedRouter();
+                    tripBasedRouter = router;
+                }
+            }
+        }
+        return router;
+    }
+
+    /**
+     * A Trip-Based útvonaltervező felépítése, vagy betöltése a gyorsítótár fájlból, ha az be van állítva.
+     * Ha a gyorsítótár nem írható, a felépített tervező ettől még használható.
+     *
+     * @return Az útvonaltervező.
+     */
+    private TripBasedRouter buildTripBasedRouter() {
+        Path cacheFile = transferCacheFile;
+        if (cacheFile != null) {
+            try {
+                return TripBasedRouter.buildOrLoad(getRoutePatterns(), pathways, RoutingProfile.DEFAULT, getFootpathCache(), cacheFile,
+                        transferCacheMapped);
+            } catch (IOException e) {
+                System.err.println("Could not load or save transfer cache " + cacheFile + ": " + e.getMessage());
+            }
+        }
+        return TripBasedRouter.build(getRoutePatterns(), pathways, RoutingProfile.DEFAULT, getFootpathCache());
+    }
+
+    /**
+     * A Trip-Based átszállások gyorsítótár fájljának beállítása: a tervező első felépítésekor az átszállások innen
+     * töltődnek be, ha a fájl ugyanehhez a menetrendhez és profilhoz készült, egyébként kiszámolódnak és felülírják.
+     *
+     * @param cacheFile A gyorsítótár fájl, vagy null, ha az átszállások csak a memóriában készüljenek.
+     * @param mapped    Igaz, ha az átszállások táblája a fájlra leképezve, a heapen kívül maradjon.
+     */
+    public void setTransferCache(Path cacheFile, boolean mapped) {
+        this.transferCacheFile = cacheFile;
+        this.transferCacheMapped = mapped;
+    }
+
+    /**
+     * Visszaadja a menetrendi mintákat (azonos megállósorrendű járatok csoportjait); első hívásra felépíti.
+     *
+     * @return A menetrendi minták indexe.
+     */
+    public RoutePatternIndex getRoutePatterns() {
+        RoutePatternIndex patterns = routePatterns;
+        if (patterns == null) {
+            synchronized (this) {
+                patterns = routePatterns;
+                if (patterns == null) {
+                    patterns = RoutePatternIndex.build(stopIndex, stopTimes, trips);
+                    routePatterns = patterns;
+                }
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * Visszaadja a megállók közötti séták halmazát az alapértelmezett sugárral; első hívásra párhuzamosan kiszámolja.
+     *
+     * @return A megállópárok halmaza.
+     */
+    public FootpathCache getFootpathCache() {
+        FootpathCache cache = footpathCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = footpathCache;
+                if (cache == null) {
+                    cache = FootpathCache.compute(stopIndex, FootpathCache.DEFAULT_RADIUS);
+                    footpathCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * A megállók közötti séták betöltése a gyorsítótár fájlból, ha az ugyanezekhez a megállókhoz és sugárhoz készült;
+     * egyébként kiszámítás és a fájl felülírása. Ha a sugár kisebb egy kérés profiljának séta távolságánál, az a kérés
+     * a sétákat a releváns megállók között számolja ki.
+     *
+     * @param cacheFile A gyorsítótár fájl.
+     * @param radius    A legnagyobb séta távolság méterben.
+     * @throws IOException Ha a gyorsítótár nem írható.
+     */
+    public void loadFootpaths(Path cacheFile, double radius) throws IOException {
+        footpathCache = FootpathCache.loadOrCompute(stopIndex, radius, cacheFile);
+    }
+
+    /**
+     * Visszaadja az állomásokat (állomás → hozzá tartozó megállók); első hívásra felépíti.
+     *
+     * @return Az állomások.
+     */
+    public StationClusters getStationClusters() {
+        StationClusters clusters = stationClusters;
+        if (clusters == null) {
+            synchronized (this) {
+                clusters = stationClusters;
+                if (clusters == null) {
+                    clusters = StationClusters.build(stops);
+                    stationClusters = clusters;
+                }
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Egy megálló állomásának összes megállója kiinduló vagy cél megállóként, eljutási idő nélkül
+     * (az állomás megállói közötti gyaloglást az aluljárók és a séta élek adják).
+     *
+     * @param stopId Az állomás egy megállójának (például a képviselőjének) azonosítója.
+     * @return Az állomás megállói, vagy csak a megálló, ha nincs állomása.
+     */
+    public List<StopAccess> stationAccess(String stopId) {
+        return getStationClusters().memberIds(stopId).stream().map(StopAccess::at).toList();
+    }
+
+    /**
+     * Egy pont adott sugarú környékének megállói kiinduló vagy cél megállóként, a ponttól mért gyaloglási idővel.
+     *
+     * @param latitude  A pont szélessége.
+     * @param longitude A pont hosszúsága.
+     * @param radius    A legnagyobb gyaloglási távolság méterben.
+     * @param profile   A tervezési profil (a gyaloglási sebességhez).
+     * @return A környék megállói a gyaloglási idejükkel, a legközelebbivel kezdve.
+     */
+    public List<StopAccess> stopsWithin(double latitude, double longitude, double radius, RoutingProfile profile) {
+        List<StopAccess> access = new ArrayList<>();
+        for (StopSpatialIndex.Neighbor neighbor : spatialIndex.within(latitude, longitude, radius)) {
+            access.add(new StopAccess(neighbor.stop().getStopId(), profile.walkingTime(neighbor.distance())));
+        }
+        return access;
+    }
+
+    /**
+     * Kívülről (például gyorsítótár fájlból) betöltött Trip-Based útvonaltervező beállítása.
+     *
+     * @param router Az útvonaltervező.
+     */
+    public void setTripBasedRouter(TripBasedRouter router) {
+        this.tripBasedRouter = router;
+    }
+
+    /**
+     * Az aktív járatok és megállóidők szűrése, majd a gráf felépítése, fázisonkénti méréssel.
+     *
+     * @param startStopId   Az induló megálló azonosítója.
+     * @param endStopId     Az érkező megálló azonosítója.
+     * @param date           A dátum.
+     * @param updates        Az aznapi valós idejű módosítások járatonként.
+     * @param stopTimeFilter Az aktív járatok megállóidőit a kérés időablakára szűrő függvény.
+     * @param profile        A tervezési profil.
+     * @param trace          A kérés mérési adatai.
+     * @return A kéréshez felépített gráf.
+     */
+    private Map<String, List<Edge>> prepareGraph(String startStopId, String endStopId, LocalDate date,
+                                                 Map<String, TripUpdate> updates,
+                                                 Function<Set<String>, List<StopTime>> stopTimeFilter,
+                                                 RoutingProfile profile, QueryTrace trace) {
+        // 1-2. lépés: A járatok és megállóidők szűrése
+        List<StopTime> filteredStopTimes = prepareStopTimes(date, updates, stopTimeFilter, trace);
+
+        // 3. lépés: A gráf felépítése
+        long phaseStart = System.nanoTime();
+        Map<String, List<Edge>> graph = buildGraph(filteredStopTimes, startStopId, endStopId, profile);
+        trace.setEdgesBuilt(countEdges(graph));
+        endPhase(trace, PlannerPhase.BUILD_GRAPH, phaseStart);
+        return graph;
+    }
+
+    /**
+     * Az aktív járatok és a kérés időablakába eső megállóidőik szűrése, fázisonkénti méréssel.
+     * A valós időben törölt járatok nem számítanak aktívnak.
+     *
+     * @param date           A dátum.
+     * @param updates        Az aznapi valós idejű módosítások járatonként.
+     * @param stopTimeFilter Az aktív járatok megállóidőit a kérés időablakára szűrő függvény.
+     * @param trace          A kérés mérési adatai.
+     * @return A szűrt megállóidők.
+     */
+    private List<StopTime> prepareStopTimes(LocalDate date, Map<String, TripUpdate> updates,
+                                            Function<Set<String>, List<StopTime>> stopTimeFilter, QueryTrace trace) {
         // 1. lépés: Az adott dátumon közlekedő járatok szűrése
+        long phaseStart = System.nanoTime();
         Set<String> activeTripIds = getActiveTripIds(date);
+        for (TripUpdate update : updates.values()) {
+            if (update.canceled()) {
+                activeTripIds.remove(update.tripId());
+            }
+        }
+        phaseStart = endPhase(trace, PlannerPhase.ACTIVE_TRIPS, phaseStart);
 
         // 2. lépés: A megállóidők szűrése egy időablakra
-        List<StopTime> filteredStopTimes = filterStopTimes(activeTripIds, departureTime);
+        List<StopTime> filteredStopTimes = stopTimeFilter.apply(activeTripIds);
+        endPhase(trace, PlannerPhase.FILTER_STOP_TIMES, phaseStart);
+        return filteredStopTimes;
+    }
+
+    /**
+     * Visszaadja a tervező összesített méréseit (JMX regisztrációhoz és figyelők hozzáadásához).
+     *
+     * @return A mérések objektuma.
+     */
+    public PlannerMetrics getMetrics() {
+        return metrics;
+    }
 
-        // 3. lépés: A gráf felépítése
-        Map<String, List<Edge>> graph = buildGraph(filteredStopTimes, startStopId, endStopId);
+    /**
+     * Lezár egy mérési fázist.
+     *
+     * @param trace      A kérés mérési adatai.
+     * @param phase      A lezárt fázis.
+     * @param phaseStart A fázis kezdete nanoszekundumban.
+     * @return A következő fázis kezdete.
+     */
+    private static long endPhase(QueryTrace trace, PlannerPhase phase, long phaseStart) {
+        long now = System.nanoTime();
+        trace.recordPhase(phase, now - phaseStart);
+        return now;
+    }
 
-        // 4. lépés: A legrövidebb út algoritmus futtatása
-        return shortestPath(graph, startStopId, endStopId, departureTime);
+    /**
+     * Megszámolja a gráf éleit.
+     *
+     * @param graph A gráf.
+     * @return Az élek száma.
+     */
+    private static long countEdges(Map<String, List<Edge>> graph) {
+        long count = 0;
+        for (List<Edge> edges : graph.values()) {
+            count += edges.size();
+        }
+        return count;
     }
 
     /**
@@ -82,15 +869,48 @@ public class TripPlanner {
      * @return A szűrt megállóidők listája.
      */
     List<StopTime> filterStopTimes(Set<String> activeTripIds, LocalTime departureTime) {
+        return filterStopTimes(activeTripIds, departureTime, RoutingProfile.DEFAULT.getSearchHorizon());
+    }
+
+    /**
+     * Szűri a megállóidőket a megadott hosszúságú időablakra.
+     *
+     * @param activeTripIds   Az aktív járatok azonosítói.
+     * @param departureTime   Az indulási idő.
+     * @param horizon         Az időablak hossza.
+     * @return A szűrt megállóidők listája.
+     */
+    List<StopTime> filterStopTimes(Set<String> activeTripIds, LocalTime departureTime, Duration horizon) {
+        return filterStopTimes(activeTripIds, departureTime, horizon, Map.of());
+    }
+
+    /**
+     * Szűri a megállóidőket a megadott hosszúságú időablakra, a valós idejű módosításokkal: a módosított járatok
+     * megállóidői a késésekkel eltolva kerülnek be (az ablakot is ezek alapján vizsgálva), a kihagyott megállók nem.
+     * Az ablak a nap kezdetétől mért másodpercekben, átfordulás nélkül értendő, így az éjfél előtti indulás ablaka
+     * nem üresedik ki, és a legalább egy napos ablak sem rövidül meg.
+     *
+     * @param activeTripIds   Az aktív járatok azonosítói.
+     * @param departureTime   Az indulási idő.
+     * @param horizon         Az időablak hossza.
+     * @param updates         A valós idejű módosítások járatonként.
+     * @return A szűrt megállóidők listája.
+     */
+    List<StopTime> filterStopTimes(Set<String> activeTripIds, LocalTime departureTime, Duration horizon, Map<String, TripUpdate> updates) {
         List<StopTime> filteredStopTimes = new ArrayList<>();
-        LocalTime endTime = departureTime.plusHours(2); // 2 órás ablak
+        long startSeconds = departureTime.toSecondOfDay();
+        long endSeconds = startSeconds + horizon.getSeconds();
 
-        for (StopTime stopTime : stopTimes) {
-            if (activeTripIds.contains(stopTime.getTripId())) {
+        for (StopTime scheduled : stopTimes) {
+            if (activeTripIds.contains(scheduled.getTripId())) {
+                StopTime stopTime = realtimeStopTime(scheduled, updates);
+                if (stopTime == null) {
+                    continue;
+                }
                 Optional<LocalTime> stopDepartureTime = stopTime.getDepartureTime();
                 if (stopDepartureTime.isPresent()) {
-                    LocalTime time = stopDepartureTime.get();
-                    if ((time.equals(departureTime) || time.isAfter(departureTime)) && time.isBefore(endTime)) {
+                    long seconds = stopDepartureTime.get().toSecondOfDay();
+                    if (seconds >= startSeconds && seconds < endSeconds) {
                         filteredStopTimes.add(stopTime);
                     }
                 }
@@ -99,6 +919,60 @@ public class TripPlanner {
         return filteredStopTimes;
     }
 
+    /**
+     * Szűri a megállóidőket egy érkezési határidő előtti időablakra: az indulás az ablak kezdete után,
+     * az érkezés legkésőbb a határidőre esik.
+     *
+     * @param activeTripIds Az aktív járatok azonosítói.
+     * @param windowStart   Az időablak kezdete.
+     * @param arrivalTime   A legkésőbbi érkezési idő.
+     * @return A szűrt megállóidők listája.
+     */
+    List<StopTime> filterStopTimesBefore(Set<String> activeTripIds, LocalTime windowStart, LocalTime arrivalTime) {
+        return filterStopTimesBefore(activeTripIds, windowStart, arrivalTime, Map.of());
+    }
+
+    /**
+     * Szűri a megállóidőket egy érkezési határidő előtti időablakra, a valós idejű módosításokkal.
+     *
+     * @param activeTripIds Az aktív járatok azonosítói.
+     * @param windowStart   Az időablak kezdete.
+     * @param arrivalTime   A legkésőbbi érkezési idő.
+     * @param updates       A valós idejű módosítások járatonként.
+     * @return A szűrt megállóidők listája.
+     */
+    List<StopTime> filterStopTimesBefore(Set<String> activeTripIds, LocalTime windowStart, LocalTime arrivalTime,
+                                         Map<String, TripUpdate> updates) {
+        List<StopTime> filteredStopTimes = new ArrayList<>();
+
+        for (StopTime scheduled : stopTimes) {
+            StopTime stopTime = activeTripIds.contains(scheduled.getTripId()) ? realtimeStopTime(scheduled, updates) : null;
+            if (stopTime != null && stopTime.getDepartureTime().isPresent()) {
+                LocalTime departure = stopTime.getDepartureTime().get();
+                LocalTime arrival = stopTime.getArrivalTime().orElse(departure);
+                if (!departure.isBefore(windowStart) && !arrival.isAfter(arrivalTime)) {
+                    filteredStopTimes.add(stopTime);
+                }
+            }
+        }
+        return filteredStopTimes;
+    }
+
+    /**
+     * Egy megállóidő a valós idejű módosítással.
+     *
+     * @param stopTime A menetrendi megállóidő.
+     * @param updates  A valós idejű módosítások járatonként.
+     * @return A módosított vagy az eredeti megállóidő, vagy null, ha a járat a megállót kihagyja.
+     */
+    private static StopTime realtimeStopTime(StopTime stopTime, Map<String, TripUpdate> updates) {
+        if (updates.isEmpty()) {
+            return stopTime;
+        }
+        TripUpdate update = updates.get(stopTime.getTripId());
+        return update == null ? stopTime : update.apply(stopTime);
+    }
+
     /**
      * A gráf felépítése az adott megállóidőkből.
      *
@@ -108,6 +982,19 @@ public class TripPlanner {
      * @return A gráf, ahol a csomópontok megállók és az élek a megállóidők, séta lehetőségek és aluljárók.
      */
     Map<String, List<Edge>> buildGraph(List<StopTime> filteredStopTimes, String startStopId, String endStopId) {
+        return buildGraph(filteredStopTimes, startStopId, endStopId, RoutingProfile.DEFAULT);
+    }
+
+    /**
+     * A gráf felépítése az adott megállóidőkből, a profil séta korlátjával.
+     *
+     * @param filteredStopTimes A szűrt megállóidők.
+     * @param startStopId       Az induló megálló azonosítója.
+     * @param endStopId         Az érkező megálló azonosítója.
+     * @param profile           A tervezési profil.
+     * @return A gráf, ahol a csomópontok megállók és az élek a megállóidők, séta lehetőségek és aluljárók.
+     */
+    Map<String, List<Edge>> buildGraph(List<StopTime> filteredStopTimes, String startStopId, String endStopId, RoutingProfile profile) {
 
         Map<String, List<Edge>> graph = Collections.synchronizedMap(new HashMap<>());
 
@@ -116,7 +1003,7 @@ public class TripPlanner {
 
         addStopTimeEdges(filteredStopTimes, graph);
 
-        addWalkEdges(startStopId, endStopId, graph);
+        addWalkEdges(startStopId, endStopId, graph, profile);
 
         addPathWayEdges(graph);
 
@@ -124,20 +1011,109 @@ public class TripPlanner {
     }
 
     /**
-     * Élek hozzáadása a gráfhoz a megállóidőkből.
+     * A gráf felépítése tömörített (CSR) formában, ugyanazokkal az élekkel, mint a {@link #buildGraph} esetén.
+     * A tervezés a nap menetrendi gráfját használja újra ({@link #getTimetableGraph}); ez a szűrt megállóidőkből
+     * egyben építi fel a gráfot.
      *
      * @param filteredStopTimes A szűrt megállóidők.
-     * @param graph             A gráf.
+     * @param startStopId       Az induló megálló azonosítója.
+     * @param endStopId         Az érkező megálló azonosítója.
+     * @param profile           A tervezési profil.
+     * @return A tömörített gráf.
      */
-    static void addStopTimeEdges(List<StopTime> filteredStopTimes, Map<String, List<Edge>> graph) {
-        // Élek felépítése a megállóidőkből
+    TransitGraph buildTransitGraph(List<StopTime> filteredStopTimes, String startStopId, String endStopId, RoutingProfile profile) {
+        return buildTransitGraph(filteredStopTimes, List.of(startStopId), List.of(endStopId), profile, Map.of());
+    }
+
+    /**
+     * A tömörített gráf felépítése valós idejű módosításokkal. A késő járat megelőzheti a mintája többi járatát,
+     * ezért a módosított járatok élei nem kerülnek mintacsoportba, és mindig jelöltek maradnak.
+     *
+     * @param filteredStopTimes A szűrt (már módosított) megállóidők.
+     * @param startStopIds      A kiinduló megállók azonosítói.
+     * @param endStopIds        A cél megállók azonosítói.
+     * @param profile           A tervezési profil.
+     * @param updates           A valós idejű módosítások járatonként.
+     * @return A tömörített gráf.
+     */
+    TransitGraph buildTransitGraph(List<StopTime> filteredStopTimes, Collection<String> startStopIds, Collection<String> endStopIds,
+                                   RoutingProfile profile, Map<String, TripUpdate> updates) {
+        TransitGraph.Builder builder = new TransitGraph.Builder(stopIndex).addStopTimes(filteredStopTimes);
+        forEachWalkEdge(startStopIds, endStopIds, profile, builder::addFootEdge);
+        forEachPathwayEdge(builder::addFootEdge);
+        return builder.build(tripId -> updates.containsKey(tripId) ? -1 : patternOfTrip(tripId));
+    }
+
+    /**
+     * A szolgálati nap menetrendi gráfja (gyalogos élek nélkül), a nap összes ismert indulási idejű megállóidejéből.
+     * Az időablakot a keresés érkezési korlátja adja, így a gráf a nap minden kérésére használható; a legutóbbi nap
+     * gráfja addig marad meg, amíg a nap valós idejű módosításainak táblázata ugyanaz (a pillanatkép frissítése csak az
+     * érintett napok táblázatát cseréli). Gyorsítótárból jövő gráfnál a szűrési fázisok nulla idővel kerülnek a mérésbe.
+     *
+     * @param date    A dátum.
+     * @param updates Az aznapi valós idejű módosítások járatonként.
+     * @param trace   A kérés mérési adatai.
+     * @return A menetrendi gráf.
+     */
+    TransitGraph getTimetableGraph(LocalDate date, Map<String, TripUpdate> updates, QueryTrace trace) {
+        TimetableGraph cached = timetableGraph;
+        if (cached != null && cached.date().equals(date) && cached.updates() == updates) {
+            trace.recordPhase(PlannerPhase.ACTIVE_TRIPS, 0);
+            trace.recordPhase(PlannerPhase.FILTER_STOP_TIMES, 0);
+            return cached.graph();
+        }
+        List<StopTime> dayStopTimes = prepareStopTimes(date, updates,
+                activeTripIds -> filterStopTimes(activeTripIds, LocalTime.MIDNIGHT, Duration.ofDays(1), updates), trace);
+        long phaseStart = System.nanoTime();
+        TransitGraph graph = new TransitGraph.Builder(stopIndex).addStopTimes(dayStopTimes)
+                .build(tripId -> updates.containsKey(tripId) ? -1 : patternOfTrip(tripId));
+        endPhase(trace, PlannerPhase.BUILD_GRAPH, phaseStart);
+        timetableGraph = new TimetableGraph(date, updates, graph);
+        return graph;
+    }
+
+    /**
+     * A menetrendi gráf kiegészítése a kérés séta és aluljáró éleivel.
+     *
+     * @param timetable    A szolgálati nap menetrendi gráfja.
+     * @param startStopIds A kiinduló megállók azonosítói.
+     * @param endStopIds   A cél megállók azonosítói.
+     * @param profile      A tervezési profil.
+     * @return A kérés gráfja.
+     */
+    private TransitGraph withFootEdges(TransitGraph timetable, Collection<String> startStopIds, Collection<String> endStopIds,
+                                       RoutingProfile profile) {
+        TransitGraph.Builder footEdges = new TransitGraph.Builder(stopIndex);
+        forEachWalkEdge(startStopIds, endStopIds, profile, footEdges::addFootEdge);
+        forEachPathwayEdge(footEdges::addFootEdge);
+        return timetable.withFootEdges(footEdges);
+    }
+
+    /**
+     * A megállóidők járatonként csoportosítva, megállási sorrendben.
+     *
+     * @param filteredStopTimes A szűrt megállóidők.
+     * @return Járatonként a megállóidők listája.
+     */
+    static Collection<List<StopTime>> stopTimesByTrip(List<StopTime> filteredStopTimes) {
         Map<String, List<StopTime>> stopTimesByTrip = new HashMap<>();
         filteredStopTimes.forEach(stopTime ->
                 stopTimesByTrip.computeIfAbsent(stopTime.getTripId(), _ -> new ArrayList<>()).add(stopTime)
         );
+        stopTimesByTrip.values().parallelStream().forEach(tripStopTimes -> tripStopTimes.sort(Comparator.comparingInt(StopTime::getStopSequence)));
+        return stopTimesByTrip.values();
+    }
 
-        stopTimesByTrip.values().parallelStream().forEach(tripStopTimes -> {
-            tripStopTimes.sort(Comparator.comparingInt(StopTime::getStopSequence));
+    /**
+     * Élek hozzáadása a gráfhoz a megállóidőkből.
+     *
+     * @param filteredStopTimes A szűrt megállóidők.
+     * @param graph             A gráf.
+     */
+    static void addStopTimeEdges(List<StopTime> filteredStopTimes, Map<String, List<Edge>> graph) {
+        // Élek felépítése a megállóidőkből
+        stopTimesByTrip(filteredStopTimes).parallelStream().forEach(tripStopTimes -> {
+            Edge previousEdge = null;
             for (int i = 0; i < tripStopTimes.size() - 1; i++) {
                 StopTime currentStopTime = tripStopTimes.get(i);
                 StopTime nextStopTime = tripStopTimes.get(i + 1);
@@ -155,6 +1131,12 @@ public class TripPlanner {
                     // Él létrehozása
                     Edge edge = new Edge(toStopId, travelTime, EdgeType.TRANSIT, currentStopTime.getDepartureTime().get(), currentStopTime.getTripId());
                     graph.get(fromStopId).add(edge);
+                    if (previousEdge != null) {
+                        previousEdge.nextInTrip = edge;
+                    }
+                    previousEdge = edge;
+                } else {
+                    previousEdge = null;
                 }
             }
         });
@@ -166,23 +1148,48 @@ public class TripPlanner {
      * @param graph A gráf.
      */
     void addPathWayEdges(Map<String, List<Edge>> graph) {
+        forEachPathwayEdge((fromStopId, toStopId, travelTime, type, distance) ->
+                graph.get(fromStopId).add(new Edge(toStopId, travelTime, type, distance)));
+    }
+
+    /**
+     * Az aluljárók gyalogos éleinek felsorolása (párhuzamosan, így a fogadónak szálbiztosnak kell lennie).
+     *
+     * @param consumer Az éleket fogadó függvény.
+     */
+    private void forEachPathwayEdge(FootEdgeConsumer consumer) {
         pathways.parallelStream().forEach(pathway -> {
             String fromStopId = pathway.getFromStopId();
             String toStopId = pathway.getToStopId();
             long traversalTime = pathway.getTraversalTime().orElse(0);
+            double distance = distanceBetween(fromStopId, toStopId);
 
             // Él létrehozása
-            Edge edge = new Edge(toStopId, traversalTime, EdgeType.PATHWAY, null, null);
-            graph.get(fromStopId).add(edge);
+            consumer.accept(fromStopId, toStopId, traversalTime, EdgeType.PATHWAY, distance);
 
             // Ha kétirányú, akkor a fordított él hozzáadása
             if (pathway.getIsBidirectional() == 1) {
-                Edge reverseEdge = new Edge(fromStopId, traversalTime, EdgeType.PATHWAY, null, null);
-                graph.get(toStopId).add(reverseEdge);
+                consumer.accept(toStopId, fromStopId, traversalTime, EdgeType.PATHWAY, distance);
             }
         });
     }
 
+    /**
+     * Két megálló légvonalbeli távolsága.
+     *
+     * @param stopIdA Az első megálló azonosítója.
+     * @param stopIdB A második megálló azonosítója.
+     * @return A távolság méterben, vagy 0, ha valamelyik megálló ismeretlen.
+     */
+    double distanceBetween(String stopIdA, String stopIdB) {
+        Stop stopA = getStopById(stopIdA);
+        Stop stopB = getStopById(stopIdB);
+        if (stopA == null || stopB == null) {
+            return 0.0;
+        }
+        return haversine(stopA.getStopLat(), stopA.getStopLon(), stopB.getStopLat(), stopB.getStopLon());
+    }
+
     /**
      * Séta élek hozzáadása a gráfhoz a közeli megállók között.
      *
@@ -191,58 +1198,103 @@ public class TripPlanner {
      * @param graph       A gráf.
      */
     void addWalkEdges(String startStopId, String endStopId, Map<String, List<Edge>> graph) {
-        // Gyalogló élek létrehozása a 3000 méteren belüli megállók között
-        Set<String> relevantStopIds = getRelevantStopIds(startStopId, endStopId);
+        addWalkEdges(startStopId, endStopId, graph, RoutingProfile.DEFAULT);
+    }
+
+    /**
+     * Séta élek hozzáadása a gráfhoz a profil szerinti legnagyobb séta távolságon belüli megállók között.
+     * A megállókat séta távolság méretű rácscellákba osztjuk, és csak a szomszédos cellákat vetjük össze,
+     * így kisebb séta korlát kevesebb összehasonlítást és kevesebb élt jelent.
+     *
+     * @param startStopId Az induló megálló azonosítója.
+     * @param endStopId   Az érkező megálló azonosítója.
+     * @param graph       A gráf.
+     * @param profile     A tervezési profil.
+     */
+    void addWalkEdges(String startStopId, String endStopId, Map<String, List<Edge>> graph, RoutingProfile profile) {
+        forEachWalkEdge(List.of(startStopId), List.of(endStopId), profile, (fromStopId, toStopId, travelTime, type, distance) ->
+                graph.get(fromStopId).add(new Edge(toStopId, travelTime, type, distance)));
+    }
 
+    /**
+     * A séta élek felsorolása a profil szerinti legnagyobb séta távolságon belüli releváns megállók között
+     * (párhuzamosan, így a fogadónak szálbiztosnak kell lennie). Az előre kiszámolt séták sugarán belüli párok a
+     * gyorsítótárból jönnek; ha a profil ennél messzebb is enged gyalogolni, csak a sugáron túli párok számolódnak
+     * a megállók térbeli indexével.
+     *
+     * @param startStopIds A kiinduló megállók azonosítói.
+     * @param endStopIds   A cél megállók azonosítói.
+     * @param profile      A tervezési profil.
+     * @param consumer     Az éleket fogadó függvény.
+     */
+    private void forEachWalkEdge(Collection<String> startStopIds, Collection<String> endStopIds, RoutingProfile profile, FootEdgeConsumer consumer) {
+        double maxWalkDistance = profile.getMaxWalkDistance();
+        if (maxWalkDistance <= 0) {
+            return;
+        }
+        Set<String> relevantStopIds = getRelevantStopIds(startStopIds, endStopIds);
+        FootpathCache cache = getFootpathCache();
+        double cachedRadius = cache.radius();
         relevantStopIds.parallelStream().forEach(stopIdA -> {
-            Stop stopA = getStopById(stopIdA);
-            relevantStopIds.parallelStream().forEach(stopIdB -> {
-                if (!stopIdA.equals(stopIdB)) {
-                    Stop stopB = getStopById(stopIdB);
-                    assert stopA != null;
-                    assert stopB != null;
-                    double distance = haversine(
-                            stopA.getStopLat(), stopA.getStopLon(),
-                            stopB.getStopLat(), stopB.getStopLon()
-                    );
-                    if (distance <= 3000) {
-                        // Séta idő becslése (átlagos sebesség 5 km/h)
-                        long walkingTime = (long) (((distance / 1000) / 5 * 3600));
-                        Edge edge = new Edge(stopIdB, walkingTime, EdgeType.WALK, null, null);
-                        graph.get(stopIdA).add(edge);
-                    }
+            int a = stopIndex.indexOf(stopIdA);
+            for (int k = cache.start(a); k < cache.end(a); k++) {
+                double distance = cache.distance(k);
+                String stopIdB = stopIndex.get(cache.target(k)).getStopId();
+                if (distance <= maxWalkDistance && relevantStopIds.contains(stopIdB)) {
+                    consumer.accept(stopIdA, stopIdB, profile.walkingTime(distance), EdgeType.WALK, distance);
+                }
+            }
+            if (maxWalkDistance <= cachedRadius) {
+                return;
+            }
+            // A gyorsítótár sugarán túli séták
+            Stop stopA = stopIndex.get(a);
+            for (StopSpatialIndex.Neighbor neighbor : spatialIndex.within(stopA.getStopLat(), stopA.getStopLon(), maxWalkDistance)) {
+                String stopIdB = neighbor.stop().getStopId();
+                if (neighbor.distance() > cachedRadius && relevantStopIds.contains(stopIdB)) {
+                    consumer.accept(stopIdA, stopIdB, profile.walkingTime(neighbor.distance()), EdgeType.WALK, neighbor.distance());
                 }
-            });
+            }
         });
     }
 
     /**
-     * Releváns megállóazonosítók lekérése (megállók a kezdő és végállomás 3 kilométeres körzetében).
+     * Releváns megállóazonosítók lekérése: a kiinduló és cél megállók, valamint a két halmaz középpontja közötti
+     * szakasz felezőpontja körül a szakasz hosszánál (a halmazok kiterjedésével növelve) legfeljebb 1 kilométerrel
+     * távolabbi megállók. Egy-egy megállónál ez a kezdő és végállomás körüli korábbi körzet.
      *
-     * @param startStopId Az induló megálló azonosítója.
-     * @param endStopId   Az érkező megálló azonosítója.
+     * @param startStopIds A kiinduló megállók azonosítói.
+     * @param endStopIds   A cél megállók azonosítói.
      * @return A releváns megállóazonosítók halmaza.
      */
-    private Set<String> getRelevantStopIds(String startStopId, String endStopId) {
+    private Set<String> getRelevantStopIds(Collection<String> startStopIds, Collection<String> endStopIds) {
+        Set<String> endpointIds = new HashSet<>();
+        for (String stopId : startStopIds) {
+            if (getStopById(stopId) != null) {
+                endpointIds.add(stopId);
+            }
+        }
+        for (String stopId : endStopIds) {
+            if (getStopById(stopId) != null) {
+                endpointIds.add(stopId);
+            }
+        }
         Set<String> relevantStopIds = ConcurrentHashMap.newKeySet();
-        relevantStopIds.add(startStopId);
-        relevantStopIds.add(endStopId);
+        relevantStopIds.addAll(endpointIds);
 
-        Stop startStop = getStopById(startStopId);
-        Stop endStop = getStopById(endStopId);
-        assert startStop != null;
-        assert endStop != null;
+        double[] start = centroid(startStopIds);
+        double[] end = centroid(endStopIds);
+        if (start == null || end == null) {
+            return relevantStopIds;
+        }
 
-        double distance = haversine(
-                startStop.getStopLat(), startStop.getStopLon(),
-                endStop.getStopLat(), endStop.getStopLon()
-        );
+        double distance = haversine(start[0], start[1], end[0], end[1]) + Math.max(start[2], end[2]);
 
-        double centerLat = (startStop.getStopLat() + endStop.getStopLat()) / 2;
-        double centerLon = (startStop.getStopLon() + endStop.getStopLon()) / 2;
+        double centerLat = (start[0] + end[0]) / 2;
+        double centerLon = (start[1] + end[1]) / 2;
 
         stops.parallelStream()
-                .filter(stop -> !stop.getStopId().equals(startStopId) && !stop.getStopId().equals(endStopId))
+                .filter(stop -> !endpointIds.contains(stop.getStopId()))
                 .forEach(stop -> {
                     double distanceFromCenter = haversine(centerLat, centerLon, stop.getStopLat(), stop.getStopLon()) - 1000;
                     if (distanceFromCenter <= distance) {
@@ -253,68 +1305,144 @@ public class TripPlanner {
         return relevantStopIds;
     }
 
+    /**
+     * Ismert megállók középpontja és kiterjedése.
+     *
+     * @param stopIds A megállók azonosítói (az ismeretleneket kihagyja).
+     * @return A középpont szélessége, hosszúsága és a tőle legtávolabbi megálló távolsága méterben,
+     *         vagy null, ha egyik megálló sem ismert.
+     */
+    private double[] centroid(Collection<String> stopIds) {
+        double latitude = 0;
+        double longitude = 0;
+        int count = 0;
+        for (String stopId : stopIds) {
+            Stop stop = getStopById(stopId);
+            if (stop != null) {
+                latitude += stop.getStopLat();
+                longitude += stop.getStopLon();
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        latitude /= count;
+        longitude /= count;
+        double spread = 0;
+        for (String stopId : stopIds) {
+            Stop stop = getStopById(stopId);
+            if (stop != null) {
+                spread = Math.max(spread, haversine(latitude, longitude, stop.getStopLat(), stop.getStopLon()));
+            }
+        }
+        return new double[]{latitude, longitude, spread};
+    }
+
     /**
      * Egy megálló objektum lekérése azonosító alapján.
      *
      * @param stopId A megálló azonosítója.
      * @return A megálló objektum vagy null, ha nem található.
      */
-    private Stop getStopById(String stopId) {
-        for (Stop stop : stops) {
-            if (stop.getStopId().equals(stopId)) {
-                return stop;
-            }
-        }
-        return null;
+    Stop getStopById(String stopId) {
+        return stopsById.get(stopId);
     }
 
     /**
-     * Legrövidebb út algoritmus futtatása az útvonal megtalálásához.
+     * Legrövidebb út algoritmus futtatása az útvonal megtalálásához. A keresés egyszerre indul az összes kiinduló
+     * megállóból (az indulási idő és az eljutási idő összegével), és addig fut, amíg a kupac legkisebb kulcsa el nem
+     * éri a legjobb célba érkezést (a cél megálló eljutási idejével együtt).
      *
-     * @param graph          A gráf.
-     * @param startStopId    Az induló megálló azonosítója.
-     * @param endStopId      Az érkező megálló azonosítója.
+     * @param graph          A tömörített gráf.
+     * @param origins        A kiinduló megállók az eljutási idejükkel.
+     * @param destinations   A cél megállók az eljutási idejükkel.
      * @param departureTime  Az indulási idő.
+     * @param profile        A tervezési profil (átszállási idők, átszállások száma, időablak).
+     * @param trace          A kérés mérési adatai, amelybe a keresési számlálók kerülnek.
      * @return Az utazási terv lépéseinek listája.
      */
-    private List<TripPlanLeg> shortestPath(Map<String, List<Edge>> graph, String startStopId, String endStopId, LocalTime departureTime) {
-        PriorityQueue<NodeEntry> queue = new PriorityQueue<>(Comparator.comparingLong(ne -> ne.earliestArrivalTime));
-        queue.add(new NodeEntry(startStopId, departureTime.toSecondOfDay(), null, 0, null, null, 0));
+    private List<TripPlanLeg> shortestPath(TransitGraph graph, List<StopAccess> origins, List<StopAccess> destinations, LocalTime departureTime,
+                                           RoutingProfile profile, QueryTrace trace) {
+        long latestArrival = departureTime.toSecondOfDay() + profile.getSearchHorizon().getSeconds();
+        ToLongFunction<String> estimate = profile.getSearchAlgorithm() == SearchAlgorithm.A_STAR
+                ? remainingTimeEstimator(destinations, profile)
+                : _ -> 0L;
+
+        // Cél megállónként a legkisebb hátralévő eljutási idő
+        Map<Integer, Long> egressTimes = new HashMap<>();
+        for (StopAccess destination : destinations) {
+            int index = stopIndex.indexOf(destination.stopId());
+            if (index >= 0) {
+                egressTimes.merge(index, destination.accessTime(), Math::min);
+            }
+        }
 
-        Map<String, Long> earliestArrivalTimes = new HashMap<>();
-        earliestArrivalTimes.put(startStopId, (long) departureTime.toSecondOfDay());
+        // Megállónként a legjobb címke; a kupac megálló indexeket tárol, így egy megálló legfeljebb egyszer szerepel benne
+        IndexedMinHeap queue = new IndexedMinHeap(stopIndex.size());
+        NodeEntry[] labels = new NodeEntry[stopIndex.size()];
+        long nodesSettled = 0;
+        long queuePushes = 0;
+        for (StopAccess origin : origins) {
+            int index = stopIndex.indexOf(origin.stopId());
+            long arrival = departureTime.toSecondOfDay() + origin.accessTime();
+            if (index >= 0 && (labels[index] == null || arrival < labels[index].earliestArrivalTime)) {
+                NodeEntry startEntry = new NodeEntry(origin.stopId(), arrival, null, 0, null, null, 0);
+                startEntry.priority = arrival + estimate.applyAsLong(origin.stopId());
+                labels[index] = startEntry;
+                queue.insertOrDecrease(index, startEntry.priority);
+                queuePushes++;
+            }
+        }
+        if (queue.isEmpty() || egressTimes.isEmpty()) {
+            System.out.println("Nem található elérhető útvonal.");
+            return new ArrayList<>();
+        }
+        NodeEntry bestTarget = null;
+        long bestTotal = Long.MAX_VALUE;
 
-        Map<String, NodeEntry> previousNodes = new HashMap<>();
+        int[] candidates = new int[graph.maxDegree() + 1];
+        Deque<NodeEntry> replacedOnTrip = new ArrayDeque<>();
 
         while (!queue.isEmpty()) {
-            NodeEntry current = queue.poll();
-            String currentStopId = current.stopId;
-
-            if (currentStopId.equals(endStopId)) {
+            int currentIndex = queue.poll();
+            NodeEntry current = labels[currentIndex];
+            nodesSettled++;
+
+            Long egressTime = egressTimes.get(currentIndex);
+            if (egressTime != null && current.earliestArrivalTime + egressTime < bestTotal) {
+                bestTotal = current.earliestArrivalTime + egressTime;
+                bestTarget = current;
+            }
+            if (current.priority >= bestTotal) {
                 break;
             }
 
-            for (Edge edge : graph.getOrDefault(currentStopId, new ArrayList<>())) {
-                String neighborStopId = edge.toStopId;
+            // Csak a jelenlegi járat folytatása, mintánként az első elérhető indulás és a gyalogos élek
+            int currentTrip = current.tripId != null ? graph.trip(current.edgeIndex) : -1;
+            int candidateCount = graph.collectCandidates(currentIndex, currentTrip >= 0 ? current.edgeIndex : -1,
+                    current.earliestArrivalTime + profile.getMinTransferTime(), candidates);
+            for (int c = 0; c < candidateCount; c++) {
+                int edge = candidates[c];
                 long arrivalTimeAtNeighbor;
                 int transfers = current.transfers;
                 String currentTripId = current.tripId;
                 long waitTime = 0;
 
-                if (edge.type == EdgeType.TRANSIT) {
-                    if (edge.departureTime != null && edge.departureTime.toSecondOfDay() >= current.earliestArrivalTime) {
-                        boolean sameTrip = currentTripId != null && currentTripId.equals(edge.tripId);
-                        long waitTimeOn = edge.departureTime.toSecondOfDay() - current.earliestArrivalTime;
+                if (graph.trip(edge) >= 0) {
+                    if (graph.departure(edge) >= current.earliestArrivalTime) {
+                        long waitTimeOn = graph.departure(edge) - current.earliestArrivalTime;
 
-                        if (sameTrip) {
+                        if (currentTrip == graph.trip(edge)) {
                             // Ugyanazon az járaton folytatás
-                            arrivalTimeAtNeighbor = edge.departureTime.toSecondOfDay() + edge.travelTime;
+                            arrivalTimeAtNeighbor = graph.departure(edge) + graph.duration(edge);
                         } else {
-                            // Átszállási időkorlátok betartása
-                            if (waitTimeOn >= 60 && waitTimeOn <= 1200) { // 1 és 20 perc között
-                                arrivalTimeAtNeighbor = edge.departureTime.toSecondOfDay() + edge.travelTime;
+                            // Átszállási időkorlátok és az átszállások számának betartása
+                            if (waitTimeOn >= profile.getMinTransferTime() && waitTimeOn <= profile.getMaxTransferTime()
+                                    && transfers <= profile.getMaxTransfers()) {
+                                arrivalTimeAtNeighbor = graph.departure(edge) + graph.duration(edge);
                                 transfers += 1;
-                                currentTripId = edge.tripId;
+                                currentTripId = graph.tripId(edge);
                                 waitTime = waitTimeOn;
                             } else {
                                 continue; // Nem lehet átszállni
@@ -325,31 +1453,218 @@ public class TripPlanner {
                     }
                 } else {
                     // Séta és járat élek esetén
-                    arrivalTimeAtNeighbor = current.earliestArrivalTime + edge.travelTime;
-                    if (currentTripId != null) {
-                        transfers += 1;
-                        currentTripId = null;
-                    }
+                    arrivalTimeAtNeighbor = current.earliestArrivalTime + graph.duration(edge);
+                    currentTripId = null;
+                }
+
+                if (arrivalTimeAtNeighbor > latestArrival) {
+                    continue; // Az időablakon kívül esik
                 }
 
-                if (arrivalTimeAtNeighbor < earliestArrivalTimes.getOrDefault(neighborStopId, Long.MAX_VALUE)) {
-                    earliestArrivalTimes.put(neighborStopId, arrivalTimeAtNeighbor);
-                    NodeEntry neighborEntry = new NodeEntry(neighborStopId, arrivalTimeAtNeighbor, current, transfers, currentTripId, edge, waitTime);
-                    previousNodes.put(neighborStopId, neighborEntry);
-                    queue.add(neighborEntry);
+                int neighborIndex = graph.target(edge);
+                NodeEntry previousLabel = labels[neighborIndex];
+                if (previousLabel == null || arrivalTimeAtNeighbor < previousLabel.earliestArrivalTime) {
+                    Edge edgeObject = graph.edge(edge);
+                    NodeEntry neighborEntry = new NodeEntry(edgeObject.toStopId, arrivalTimeAtNeighbor, current, transfers, currentTripId, edgeObject, waitTime);
+                    neighborEntry.edgeIndex = edge;
+                    neighborEntry.priority = arrivalTimeAtNeighbor + estimate.applyAsLong(edgeObject.toStopId);
+                    rememberReplacedOnTrip(graph, previousLabel, queue.contains(neighborIndex), replacedOnTrip);
+                    labels[neighborIndex] = neighborEntry;
+                    queue.insertOrDecrease(neighborIndex, neighborEntry.priority);
+                    queuePushes++;
+                }
+            }
+
+            // A felülírt, még ki nem terjesztett járatos címkék járatának folytatása, hogy ne vesszen el a járaton maradás lehetősége
+            while (!replacedOnTrip.isEmpty()) {
+                NodeEntry replaced = replacedOnTrip.poll();
+                int edge = graph.nextInTrip(replaced.edgeIndex);
+                long arrivalTimeAtNeighbor = graph.departure(edge) + graph.duration(edge);
+                if (arrivalTimeAtNeighbor > latestArrival) {
+                    continue;
+                }
+                int neighborIndex = graph.target(edge);
+                NodeEntry previousLabel = labels[neighborIndex];
+                if (previousLabel == null || arrivalTimeAtNeighbor < previousLabel.earliestArrivalTime) {
+                    Edge edgeObject = graph.edge(edge);
+                    NodeEntry neighborEntry = new NodeEntry(edgeObject.toStopId, arrivalTimeAtNeighbor, replaced, replaced.transfers, replaced.tripId, edgeObject, 0);
+                    neighborEntry.edgeIndex = edge;
+                    neighborEntry.priority = arrivalTimeAtNeighbor + estimate.applyAsLong(edgeObject.toStopId);
+                    rememberReplacedOnTrip(graph, previousLabel, queue.contains(neighborIndex), replacedOnTrip);
+                    labels[neighborIndex] = neighborEntry;
+                    queue.insertOrDecrease(neighborIndex, neighborEntry.priority);
+                    queuePushes++;
                 }
             }
         }
+        trace.setNodesSettled(nodesSettled);
+        trace.setQueuePushes(queuePushes);
 
-        // Útvonal visszafejtése
-        List<TripPlanLeg> tripPlan = new ArrayList<>();
-        NodeEntry currentNode = previousNodes.get(endStopId);
+        // Útvonal visszafejtése (ha egy kiinduló megálló egyben cél is, nincs mit tervezni)
+        NodeEntry currentNode = bestTarget == null || bestTarget.previousNode == null ? null : bestTarget;
 
         if (currentNode == null) {
             System.out.println("Nem található elérhető útvonal.");
             return new ArrayList<>();
         }
 
+        return reconstructTripPlan(currentNode);
+    }
+
+    /**
+     * Egy felülírt címke megjegyzése, ha még nem volt kiterjesztve és járaton érkezett, amely továbbhalad.
+     * A kupac megállónként egy bejegyzést tart, így a régi címke járatának folytatását külön kell relaxálni.
+     *
+     * @param graph          A tömörített gráf.
+     * @param label          A felülírt címke (vagy null).
+     * @param unexpanded     Igaz, ha a címke megállója még a kupacban van.
+     * @param replacedOnTrip A feldolgozandó felülírt címkék.
+     */
+    private static void rememberReplacedOnTrip(TransitGraph graph, NodeEntry label, boolean unexpanded, Deque<NodeEntry> replacedOnTrip) {
+        if (label != null && unexpanded && label.tripId != null && graph.nextInTrip(label.edgeIndex) >= 0) {
+            replacedOnTrip.add(label);
+        }
+    }
+
+    /**
+     * Visszaadja a járat menetrendi mintájának indexét.
+     *
+     * @param tripId A járat azonosítója.
+     * @return A minta indexe, vagy -1, ha a járat nincs egyik mintában sem.
+     */
+    private int patternOfTrip(String tripId) {
+        RoutePatternIndex patterns = getRoutePatterns();
+        int globalTrip = patterns.globalTrip(tripId);
+        return globalTrip < 0 ? -1 : patterns.patternOf(globalTrip);
+    }
+
+    /**
+     * Az A* keresés heurisztikája: a cél megállókig hátralévő légvonalbeli távolság osztva a hálózat és a profil
+     * gyaloglási sebessége közül a nagyobbal, a cél megálló eljutási idejével növelve, a cél megállók közül a legkisebb.
+     * A hálózat sebessége a nulla idejű megállóközöket egy perces (a menetrend felbontása szerinti) idővel számolja,
+     * ezért a becslés ennyivel csökkentve kerül felhasználásra: így az ugyanabban a percben induló és érkező
+     * megállóközön át sem nagyobb a valós hátralévő időnél, és az eredmény optimális marad.
+     *
+     * @param destinations A cél megállók az eljutási idejükkel.
+     * @param profile      A tervezési profil, amely a séta élek sebességét adja.
+     * @return Megállónkénti alsó becslés a célig hátralévő időre másodpercben.
+     */
+    private ToLongFunction<String> remainingTimeEstimator(List<StopAccess> destinations, RoutingProfile profile) {
+        List<Stop> targetStops = new ArrayList<>();
+        List<Long> targetEgress = new ArrayList<>();
+        for (StopAccess destination : destinations) {
+            Stop stop = getStopById(destination.stopId());
+            if (stop != null) {
+                targetStops.add(stop);
+                targetEgress.add(destination.accessTime());
+            }
+        }
+        double maxSpeed = Math.max(getMaxNetworkSpeed(), profile.getWalkSpeedKmh() / 3.6);
+        if (targetStops.isEmpty()) {
+            return _ -> 0L;
+        }
+        Map<String, Long> cache = new HashMap<>();
+        return stopId -> cache.computeIfAbsent(stopId, id -> {
+            Stop stop = getStopById(id);
+            if (stop == null) {
+                return 0L;
+            }
+            long best = Long.MAX_VALUE;
+            for (int t = 0; t < targetStops.size(); t++) {
+                Stop target = targetStops.get(t);
+                double distance = haversine(stop.getStopLat(), stop.getStopLon(), target.getStopLat(), target.getStopLon());
+                long travel = Math.max(0, (long) Math.floor(distance / maxSpeed) - TIME_RESOLUTION);
+                best = Math.min(best, travel + targetEgress.get(t));
+            }
+            return best;
+        });
+    }
+
+    /**
+     * Visszaadja a hálózat legnagyobb sebességét (m/s): a menetrend szerinti megállóközök és az aluljárók légvonalbeli
+     * sebessége közül a legnagyobb (a séta élek sebességét a kérés profilja adja). Első híváskor számolja ki.
+     * A percre kerekített menetrendben gyakori nulla idejű megállóközök a menetrend felbontásával (egy perccel)
+     * számolódnak, az éjfélen átnyúló megállóközök ideje a következő napra fordul, az idő nélküli aluljárók pedig
+     * kimaradnak (a gráfban 0 másodperces, rövid élek), így a sebesség véges marad, és az A* távolságból becsülhet.
+     *
+     * @return A legnagyobb sebesség méter/másodpercben.
+     */
+    double getMaxNetworkSpeed() {
+        double speed = maxNetworkSpeed;
+        if (speed >= 0) {
+            return speed;
+        }
+        synchronized (this) {
+            if (maxNetworkSpeed < 0) {
+                maxNetworkSpeed = computeMaxNetworkSpeed(stopTimes);
+            }
+            return maxNetworkSpeed;
+        }
+    }
+
+    /**
+     * A hálózat legnagyobb sebességének kiszámítása a megadott megállóidőkből és az aluljárókból.
+     *
+     * @param stopTimes A figyelembe vett megállóidők (a teljes menetrend vagy egy részhalmaza).
+     * @return A legnagyobb sebesség méter/másodpercben.
+     */
+    private double computeMaxNetworkSpeed(List<StopTime> stopTimes) {
+        Map<String, List<StopTime>> stopTimesByTrip = new HashMap<>();
+        for (StopTime stopTime : stopTimes) {
+            stopTimesByTrip.computeIfAbsent(stopTime.getTripId(), _ -> new ArrayList<>()).add(stopTime);
+        }
+
+        double maxSpeed = stopTimesByTrip.values().parallelStream().mapToDouble(tripStopTimes -> {
+            tripStopTimes.sort(Comparator.comparingInt(StopTime::getStopSequence));
+            double tripMax = 0;
+            for (int i = 0; i < tripStopTimes.size() - 1; i++) {
+                StopTime current = tripStopTimes.get(i);
+                StopTime next = tripStopTimes.get(i + 1);
+                if (current.getDepartureTime().isPresent() && next.getArrivalTime().isPresent()) {
+                    long seconds = Duration.between(current.getDepartureTime().get(), next.getArrivalTime().get()).getSeconds();
+                    if (seconds < 0) {
+                        seconds += Duration.ofDays(1).getSeconds(); // Éjfél átlépése
+                    }
+                    tripMax = Math.max(tripMax, speed(distanceBetween(current.getStopId(), next.getStopId()), seconds));
+                }
+            }
+            return tripMax;
+        }).max().orElse(0);
+
+        for (Pathway pathway : pathways) {
+            // Az idő nélküli aluljáró kimarad: a gráfban 0 másodperces, állomáson belüli él
+            if (pathway.getTraversalTime().isPresent()) {
+                int seconds = pathway.getTraversalTime().get();
+                maxSpeed = Math.max(maxSpeed, speed(distanceBetween(pathway.getFromStopId(), pathway.getToStopId()), seconds));
+            }
+        }
+        return maxSpeed;
+    }
+
+    /**
+     * Egy él légvonalbeli sebessége.
+     *
+     * @param distance A távolság méterben.
+     * @param seconds  Az él ideje másodpercben.
+     * @return A sebesség méter/másodpercben, legalább a menetrend felbontásának megfelelő idővel számolva.
+     */
+    private static double speed(double distance, long seconds) {
+        if (distance <= 0) {
+            return 0;
+        }
+        return distance / Math.max(seconds, TIME_RESOLUTION);
+    }
+
+    /**
+     * Az utazási terv visszafejtése a cél csomópont bejegyzéséből az előző csomópontokon keresztül.
+     *
+     * @param targetNode A cél megálló bejegyzése.
+     * @return Az utazási terv lépéseinek listája.
+     */
+    List<TripPlanLeg> reconstructTripPlan(NodeEntry targetNode) {
+        List<TripPlanLeg> tripPlan = new ArrayList<>();
+        NodeEntry currentNode = targetNode;
+
         // Útvonal visszafelé történő összeállítása
         List<NodeEntry> pathNodes = new ArrayList<>();
         while (currentNode.previousNode != null) {
@@ -369,7 +1684,7 @@ public class TripPlanner {
      * @param pathNodes Az útvonal csomópontjai.
      * @param tripPlan  Az utazási terv, amelybe a lépéseket hozzáadjuk.
      */
-    private void buildTripPlanFromPath(List<NodeEntry> pathNodes, List<TripPlanLeg> tripPlan) {
+    void buildTripPlanFromPath(List<NodeEntry> pathNodes, List<TripPlanLeg> tripPlan) {
         Map<String, Stop> stopMap = stops.parallelStream().collect(Collectors.toConcurrentMap(Stop::getStopId, stop -> stop));
         Map<String, Trip> tripMap = trips.parallelStream().collect(Collectors.toConcurrentMap(Trip::getTripId, trip -> trip));
         Map<String, Route> routeMap = routes.parallelStream().collect(Collectors.toConcurrentMap(Route::getRouteId, route -> route));
@@ -458,6 +1773,42 @@ public class TripPlanner {
         }
     }
 
+    /**
+     * Egy utazási terv a hozzá tartozó mérési adatokkal.
+     *
+     * @param legs  Az utazási terv lépései.
+     * @param trace A kérés mérési adatai.
+     */
+    public record TracedPlan(List<TripPlanLeg> legs, QueryTrace trace) {
+    }
+
+    /**
+     * Egy szolgálati nap menetrendi gráfja azzal a módosítási táblázattal, amelyből készült.
+     *
+     * @param date    A dátum.
+     * @param updates Az aznapi valós idejű módosítások járatonként.
+     * @param graph   A menetrendi gráf.
+     */
+    private record TimetableGraph(LocalDate date, Map<String, TripUpdate> updates, TransitGraph graph) {
+    }
+
+    /**
+     * Gyalogos (séta vagy aluljáró) élek fogadója, hogy ugyanaz a felsorolás a térképes és a tömörített gráfot is építhesse.
+     */
+    @FunctionalInterface
+    interface FootEdgeConsumer {
+        /**
+         * Egy gyalogos él fogadása.
+         *
+         * @param fromStopId A kiinduló megálló azonosítója.
+         * @param toStopId   A cél megálló azonosítója.
+         * @param travelTime Az időtartam másodpercben.
+         * @param type       Az él típusa.
+         * @param distance   A gyaloglási távolság méterben.
+         */
+        void accept(String fromStopId, String toStopId, long travelTime, EdgeType type, double distance);
+    }
+
     /**
      * Az él osztály a megállók közötti kapcsolatokat reprezentálja.
      */
@@ -467,6 +1818,8 @@ public class TripPlanner {
         EdgeType type;
         LocalTime departureTime; // Csak a menetrend szerinti élekhez
         String tripId; // Csak a menetrend szerinti élekhez
+        double distance; // Gyaloglási távolság méterben, csak séta és aluljáró élekhez
+        Edge nextInTrip; // Ugyanazon járat következő éle, csak a menetrend szerinti élekhez
 
         /**
          * Él konstruktor.
@@ -484,19 +1837,34 @@ public class TripPlanner {
             this.departureTime = departureTime;
             this.tripId = tripId;
         }
+
+        /**
+         * Él konstruktor gyalogos élekhez, a gyaloglási távolsággal.
+         *
+         * @param toStopId   Cél megálló azonosítója.
+         * @param travelTime Utazási idő másodpercekben.
+         * @param type       Az él típusa.
+         * @param distance   Gyaloglási távolság méterben.
+         */
+        Edge(String toStopId, long travelTime, EdgeType type, double distance) {
+            this(toStopId, travelTime, type, null, null);
+            this.distance = distance;
+        }
     }
 
     /**
      * A csomópont bejegyzés az algoritmusban.
      */
-    private static class NodeEntry {
+    static class NodeEntry {
         String stopId;
         long earliestArrivalTime;
         NodeEntry previousNode;
-        int transfers;
+        int transfers; // A felszállások száma
         String tripId;
         Edge edge;
         long waitTimeBefore;
+        long priority; // Prioritási sor kulcsa: érkezési idő, A* esetén a becsült hátralévő idővel növelve
+        int edgeIndex = -1; // Az él indexe a tömörített gráfban, ha a címke abban készült
 
         /**
          * Csomópont bejegyzés konstruktor.
@@ -504,7 +1872,7 @@ public class TripPlanner {
          * @param stopId             A megálló azonosítója.
          * @param earliestArrivalTime A legkorábbi érkezési idő.
          * @param previousNode       Előző csomópont.
-         * @param transfers          Átszállások száma.
+         * @param transfers          Felszállások száma.
          * @param tripId             Utazás azonosítója.
          * @param edge               Él objektum.
          * @param waitTimeBefore     Várakozási idő az él előtt.
@@ -517,6 +1885,7 @@ public class TripPlanner {
             this.tripId = tripId;
             this.edge = edge;
             this.waitTimeBefore = waitTimeBefore;
+            this.priority = earliestArrivalTime;
         }
     }
 
@@ -1,7 +1,10 @@
 import model.*;
 
+import javax.management.JMException;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
@@ -11,6 +14,9 @@ import java.util.List;
 import java.io.*;
 import java.net.URL;
 import java.nio.file.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -22,12 +28,12 @@ public class TripPlannerUI extends JFrame {
     /**
      * A kezdő megálló kiválasztásához használt legördülő lista.
      */
-    private final JComboBox<Stop> startStopComboBox;
+    private final AutoCompleteComboBox startStopComboBox;
 
     /**
      * A cél megálló kiválasztásához használt legördülő lista.
      */
-    private final JComboBox<Stop> endStopComboBox;
+    private final AutoCompleteComboBox endStopComboBox;
 
     /**
      * Az utazás megtervezéséhez használt gomb.
@@ -45,58 +51,99 @@ public class TripPlannerUI extends JFrame {
     private final JSpinner timeSpinner;
 
     /**
-     * A TripPlanner példány, amely az útvonaltervezésért felelős.
+     * A betöltés állapotát mutató felirat.
      */
-    private final TripPlanner tripPlanner;
+    private final JLabel statusLabel;
 
-    private final List<Route> routes;
-    private final List<Trip> trips;
+    /**
+     * A GTFS feed könyvtára.
+     */
+    private static final String GTFS_FOLDER_PATH = "./budapest_gtfs/";
+
+    /**
+     * A megállók közötti séták gyorsítótár fájlja; változatlan megállólistánál a következő indítás innen tölti be őket.
+     */
+    private static final String FOOTPATH_CACHE_PATH = GTFS_FOLDER_PATH + "footpaths.bin";
+
+    /**
+     * Az előre kiszámolt séták sugara méterben; a hosszabb séták kéréskor számolódnak.
+     */
+    private static final double FOOTPATH_RADIUS = TripBasedRouter.DEFAULT_FOOTPATH_RADIUS;
+
+    /**
+     * A feed betöltött fájljai (a készültség számításához).
+     */
+    private static final String[] FEED_FILES = {"stops.txt", "stop_times.txt", "pathways.txt", "trips.txt", "routes.txt", "calendar_dates.txt"};
+
+    /**
+     * A valós idejű (GTFS-Realtime JSON) módosítások figyelt könyvtára; ha nem létezik, csak a menetrend érvényes.
+     */
+    private static final String REALTIME_FOLDER_PATH = "./budapest_realtime/";
+
+    /**
+     * Az aktuális útvonaltervezőt tartó és a feed újratöltését végző objektum.
+     */
+    private final FeedManager feedManager;
+
+    /**
+     * A feed újratöltését indító menüpont.
+     */
+    private final JMenuItem reloadFeedMenuItem;
+
+    /**
+     * A valós idejű módosítások figyelője, vagy null, ha nem indult el.
+     */
+    private volatile RealtimeWatcher realtimeWatcher;
 
     /**
-     * Konstruktor, amely inicializálja a felhasználói felületet és a szükséges adatokat.
+     * Konstruktor, amely inicializálja a felhasználói felületet. Ha a feed még nincs betöltve, a megállóválasztók
+     * üresek és a tervezés tiltott, amíg a {@link #startLoading()} be nem tölti.
      *
-     * @param stops     A rendelkezésre álló megállók listája.
-     * @param stopTimes A megállóidők listája.
-     * @param pathways  Az aluljárók listája.
-     * @param trips     A járatok listája.
-     * @param routes    A vonalak listája.
+     * @param feedManager Az aktuális útvonaltervezőt tartó objektum.
      * @throws RuntimeException ha a feed_info nem beolvasható.
      */
-    public TripPlannerUI(List<Stop> stops, List<StopTime> stopTimes, List<Pathway> pathways, List<Trip> trips, List<Route> routes) {
-        // Csak a szülő állomásokat tartalmazó megállók szűrése
-        List<Stop> parentStations = new ArrayList<>();
-        for (Stop stop : stops) {
-            if (stop.getParentStation().isEmpty()) {
-                if (parentStations.stream().anyMatch(ps ->
-                        ps.getStopName().equals(stop.getStopName()) && TripPlanner.haversine(ps.getStopLat(), ps.getStopLon(), stop.getStopLat(), stop.getStopLon()) < 200)) {
-                    continue;
-                }
-                parentStations.add(stop);
-            }
+    public TripPlannerUI(FeedManager feedManager) {
+        this.feedManager = feedManager;
+        List<Stop> parentStations = feedManager.isLoaded() ? feedManager.current().getStationClusters().representatives() : List.of();
+        try {
+            feedManager.getMetrics().registerMBean("default");
+        } catch (JMException e) {
+            System.err.println("Could not register planner metrics: " + e.getMessage());
         }
 
-        parentStations.sort(Comparator.comparing(Stop::getStopName, String.CASE_INSENSITIVE_ORDER));
-
-        // TripPlanner inicializálása
-        this.tripPlanner = new TripPlanner(stops, stopTimes, pathways, trips, routes);
-        this.routes = routes;
-        this.trips = trips;
-
         // Keret beállítása
         setTitle("GTFS Trip Planner");
         setSize(400, 300);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                stopRealtimeWatcher();
+            }
+        });
         setLocationRelativeTo(null);
         setResizable(false);
 
         ImageIcon img = new ImageIcon("icon.png");
         setIconImage(img.getImage());
 
+        // Menü a feed újratöltéséhez
+        JMenuBar menuBar = new JMenuBar();
+        JMenu feedMenu = new JMenu("Feed");
+        reloadFeedMenuItem = new JMenuItem("Reload Feed");
+        reloadFeedMenuItem.addActionListener(_ -> reloadFeed());
+        reloadFeedMenuItem.setEnabled(feedManager.isLoaded());
+        feedMenu.add(reloadFeedMenuItem);
+        menuBar.add(feedMenu);
+        setJMenuBar(menuBar);
+
         // Komponensek inicializálása
         startStopComboBox = new AutoCompleteComboBox(parentStations);
         endStopComboBox = new AutoCompleteComboBox(parentStations);
 
         planTripButton = new JButton("Plan Trip");
+        planTripButton.setEnabled(feedManager.isLoaded());
+        statusLabel = new JLabel();
 
         dateSpinner = new JSpinner(new SpinnerDateModel());
         timeSpinner = new JSpinner(new SpinnerDateModel());
@@ -121,7 +168,7 @@ public class TripPlannerUI extends JFrame {
         panel.add(new JLabel("Departure Time:"));
         panel.add(timeSpinner);
 
-        panel.add(new JLabel()); // Üres cella
+        panel.add(statusLabel); // A betöltés állapota
         panel.add(planTripButton);
 
         add(panel);
@@ -135,6 +182,121 @@ public class TripPlannerUI extends JFrame {
         });
     }
 
+    /**
+     * A feed aszinkron betöltése a már megjelenített ablakhoz: letöltés és kicsomagolás, majd a megállók és a vonalak,
+     * amelyek után a megállóválasztók már használhatók, végül a háttérben a menetrend és a tervező felépítése,
+     * amely után a tervezés is elérhető. A megállóválasztók ekkor a telepített (ellenőrzött) feed állomásaira
+     * frissülnek, mert az ellenőrzés megállókat hagyhatott ki. Az eseménykezelő szálon kell hívni.
+     */
+    private void startLoading() {
+        statusLabel.setText("Loading feed...");
+        LoadReport loadReport = new LoadReport();
+        CompletableFuture.runAsync(() -> {
+            try {
+                downloadAndExtractGtfsData();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }).thenCompose(_ -> {
+            LoadProgressListener progress = loadReport.andThen(feedProgressListener(statusLabel, feedSize(GTFS_FOLDER_PATH)));
+            GtfsLoader.StagedFeed staged = feedManager.loadAsync(GTFS_FOLDER_PATH, progress);
+
+            // A megállóválasztók a menetrend betöltése közben már használhatók
+            staged.stops().thenAccept(stops -> {
+                List<Stop> parentStations = StationClusters.build(stops).representatives();
+                SwingUtilities.invokeLater(() -> setStopPickerItems(parentStations));
+            });
+            return feedManager.installAsync(staged.feed());
+        }).thenApply(planner -> {
+            System.out.println(loadReport);
+            System.out.println(feedManager.getLastValidation());
+            startRealtimeWatcher();
+            return planner;
+        }).whenComplete((planner, error) -> {
+            List<Stop> parentStations = error == null ? planner.getStationClusters().representatives() : null;
+            SwingUtilities.invokeLater(() -> {
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    statusLabel.setText("Loading failed");
+                    JOptionPane.showMessageDialog(this, "Could not load the feed: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                setStopPickerItems(parentStations);
+                statusLabel.setText("");
+                planTripButton.setEnabled(true);
+                reloadFeedMenuItem.setEnabled(true);
+            });
+        });
+    }
+
+    /**
+     * A megállóválasztók elemeinek cseréje; a már kiválasztott megálló megmarad, ha az új listában is szerepel.
+     * Az eseménykezelő szálon kell hívni.
+     *
+     * @param parentStations Az állomások reprezentáns megállói.
+     */
+    private void setStopPickerItems(List<Stop> parentStations) {
+        for (AutoCompleteComboBox comboBox : List.of(startStopComboBox, endStopComboBox)) {
+            Object selected = comboBox.getSelectedItem();
+            comboBox.setItems(parentStations);
+            if (selected instanceof Stop selectedStop) {
+                parentStations.stream()
+                        .filter(stop -> stop.getStopId().equals(selectedStop.getStopId()))
+                        .findFirst()
+                        .ifPresent(comboBox::setSelectedItem);
+            }
+        }
+    }
+
+    /**
+     * A valós idejű módosítások figyelésének indítása, ha a könyvtáruk létezik.
+     */
+    private void startRealtimeWatcher() {
+        if (Files.isDirectory(Path.of(REALTIME_FOLDER_PATH))) {
+            try {
+                realtimeWatcher = RealtimeWatcher.start(Path.of(REALTIME_FOLDER_PATH), feedManager.getRealtimeOverlay());
+            } catch (IOException e) {
+                System.err.println("Could not watch realtime updates: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A valós idejű módosítások figyelésének leállítása, ha elindult.
+     */
+    private void stopRealtimeWatcher() {
+        RealtimeWatcher watcher = realtimeWatcher;
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                System.err.println("Could not stop watching realtime updates: " + e.getMessage());
+            }
+            realtimeWatcher = null;
+        }
+    }
+
+    /**
+     * A feed újratöltése a háttérben. A csere alatt a tervezés tovább működik a régi feeddel;
+     * sikeres csere után a megállók listája frissül, hiba esetén a régi feed marad.
+     */
+    private void reloadFeed() {
+        reloadFeedMenuItem.setEnabled(false);
+        feedManager.reload(GTFS_FOLDER_PATH, LoadProgressListener.NONE).whenComplete((planner, error) -> {
+            List<Stop> parentStations = error == null ? planner.getStationClusters().representatives() : null;
+            SwingUtilities.invokeLater(() -> {
+                reloadFeedMenuItem.setEnabled(true);
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    JOptionPane.showMessageDialog(this, "Could not reload the feed: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                setStopPickerItems(parentStations);
+                JOptionPane.showMessageDialog(this, "Feed reloaded.", "Info", JOptionPane.INFORMATION_MESSAGE);
+            });
+        });
+    }
+
     /**
      * Betölti a GTFS adatcsomag `feed_info.txt` fájljából a feed kezdési és záró dátumát.
      *
@@ -198,6 +360,9 @@ public class TripPlannerUI extends JFrame {
         // Gomb letiltása a többszöri kattintás megelőzésére
         planTripButton.setEnabled(false);
 
+        // A kérés végig a most aktuális tervezőt használja, akkor is, ha közben új feed töltődik be
+        TripPlanner tripPlanner = feedManager.current();
+
         // Betöltő ablak megjelenítése
         LoadingDialog loadingDialog = new LoadingDialog(this);
         SwingUtilities.invokeLater(() -> loadingDialog.setVisible(true));
@@ -206,8 +371,9 @@ public class TripPlannerUI extends JFrame {
         SwingWorker<List<TripPlanLeg>, Void> worker = new SwingWorker<>() {
             @Override
             protected List<TripPlanLeg> doInBackground() {
-                // Utazástervező meghívása
-                return tripPlanner.findOptimalPath(startStop.getStopId(), endStop.getStopId(), date, departureTime);
+                // Utazástervező meghívása a két állomás összes megállója között
+                return tripPlanner.findOptimalPath(tripPlanner.stationAccess(startStop.getStopId()),
+                        tripPlanner.stationAccess(endStop.getStopId()), date, departureTime);
             }
 
             @Override
@@ -223,11 +389,11 @@ public class TripPlannerUI extends JFrame {
                         JOptionPane.showMessageDialog(TripPlannerUI.this, "No available path found.", "Info", JOptionPane.INFORMATION_MESSAGE);
                     } else {
                         Map<String, Route> routeMap = new HashMap<>();
-                        for (Route route : routes) {
+                        for (Route route : tripPlanner.routes) {
                             routeMap.put(route.getRouteId(), route);
                         }
                         Map<String, Trip> tripMap = new HashMap<>();
-                        for (Trip trip : trips) {
+                        for (Trip trip : tripPlanner.trips) {
                             tripMap.put(trip.getTripId(), trip);
                         }
                         TransitItineraryWithLines itineraryView = new TransitItineraryWithLines(tripPlan, routeMap, tripMap);
@@ -338,33 +504,50 @@ public class TripPlannerUI extends JFrame {
     }
 
     /**
-     * A fő metódus, amely elindítja a felhasználói felületet.
+     * A feed fájljainak együttes mérete.
      *
-     * @param args Parancssori argumentumok.
-     * @throws Exception Ha hiba történik a GTFS adatok betöltése során.
+     * @param folderPath A feed könyvtárának elérési útja.
+     * @return A méret bájtban.
      */
-    public static void main(String[] args) throws Exception {
-        downloadAndExtractGtfsData();
-        // GTFS adatok betöltése
-        String gtfsFolderPath = "./budapest_gtfs/";
-
-        List<Stop> stops = GtfsLoader.loadStops(gtfsFolderPath + "stops.txt");
-        List<StopTime> stopTimes = GtfsLoader.loadStopTimes(gtfsFolderPath + "stop_times.txt");
-        List<Pathway> pathways = GtfsLoader.loadPathways(gtfsFolderPath + "pathways.txt");
-        List<Trip> trips = GtfsLoader.loadTrips(gtfsFolderPath + "trips.txt");
-        List<Route> routes = GtfsLoader.loadRoutes(gtfsFolderPath + "routes.txt");
-        Map<String, List<LocalDate>> serviceDatesMap = GtfsLoader.loadCalendarDates(gtfsFolderPath + "calendar_dates.txt");
-
-        // Szolgáltatási dátumok hozzárendelése az utazásokhoz
-        for (Trip trip : trips) {
-            List<LocalDate> serviceDates = serviceDatesMap.getOrDefault(trip.getServiceId(), new ArrayList<>());
-            trip.setServiceDates(serviceDates);
+    private static long feedSize(String folderPath) {
+        long totalBytes = 0;
+        for (String feedFile : FEED_FILES) {
+            totalBytes += new File(folderPath + feedFile).length();
         }
+        return totalBytes;
+    }
 
-        // Felhasználói felület létrehozása és megjelenítése
+    /**
+     * Olyan (szálbiztos) figyelő létrehozása, amely a teljes feed betöltési készültségét jeleníti meg az állapotfeliratban.
+     *
+     * @param label      Az állapotfelirat.
+     * @param totalBytes Az összes betöltendő fájl együttes mérete.
+     * @return A betöltési figyelő.
+     */
+    private static LoadProgressListener feedProgressListener(JLabel label, long totalBytes) {
+        // A fájlok párhuzamosan töltődnek, ezért fájlonként tartjuk a beolvasott bájtokat
+        Map<String, Long> bytesByFile = new ConcurrentHashMap<>();
+        return event -> {
+            bytesByFile.put(event.file(), event.finished() ? event.totalBytes() : event.bytesRead());
+            long done = bytesByFile.values().stream().mapToLong(Long::longValue).sum();
+            double fraction = totalBytes == 0 ? 1.0 : done / (double) totalBytes;
+            String message = String.format("Loading feed %.0f%%", Math.min(1.0, fraction) * 100);
+            SwingUtilities.invokeLater(() -> label.setText(message));
+        };
+    }
+
+    /**
+     * A fő metódus, amely azonnal megjeleníti a felhasználói felületet, és a feedet a háttérben tölti be.
+     *
+     * @param args Parancssori argumentumok.
+     */
+    public static void main(String[] args) {
+        FeedManager feedManager = new FeedManager(new PlannerMetrics());
+        feedManager.setFootpathCache(Path.of(FOOTPATH_CACHE_PATH), FOOTPATH_RADIUS);
         SwingUtilities.invokeLater(() -> {
-            TripPlannerUI ui = new TripPlannerUI(stops, stopTimes, pathways, trips, routes);
+            TripPlannerUI ui = new TripPlannerUI(feedManager);
             ui.setVisible(true);
+            ui.startLoading();
         });
     }
 }
@@ -0,0 +1,125 @@
+import model.StopTime;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Egy járat valós idejű módosítása egy forgalmi napon (a GTFS-Realtime TripUpdate megfelelője): törlés, vagy
+ * megállási sorszámok szerint rendezett késések és kihagyott megállók.
+ * <p>
+ * Egy megadott késés a GTFS-Realtime szabálya szerint a következő megadott megállóig minden megállóra érvényes;
+ * a kihagyás csak a saját megállóját érinti. A menetrendi megállóidőket nem módosítja, hanem kéréskor ad
+ * belőlük módosított példányt.
+ *
+ * @param tripId          A járat azonosítója.
+ * @param serviceDate     A forgalmi nap.
+ * @param canceled        Igaz, ha a járat aznap nem közlekedik.
+ * @param stopSequences   A módosított megállók sorszámai növekvő sorrendben.
+ * @param arrivalDelays   Az érkezési késések másodpercben.
+ * @param departureDelays Az indulási késések másodpercben.
+ * @param skipped         Megállónként, hogy a járat kihagyja-e.
+ */
+public record TripUpdate(String tripId, LocalDate serviceDate, boolean canceled, int[] stopSequences,
+                         int[] arrivalDelays, int[] departureDelays, boolean[] skipped) {
+
+    private static final int SECONDS_PER_DAY = 86_400;
+
+    /**
+     * Egy teljes járat törlése.
+     *
+     * @param tripId      A járat azonosítója.
+     * @param serviceDate A forgalmi nap.
+     * @return A módosítás.
+     */
+    public static TripUpdate canceled(String tripId, LocalDate serviceDate) {
+        return new TripUpdate(tripId, serviceDate, true, new int[0], new int[0], new int[0], new boolean[0]);
+    }
+
+    /**
+     * Egy megállóidő módosított példánya.
+     *
+     * @param stopTime A menetrendi megállóidő.
+     * @return A késésekkel eltolt megállóidő, ugyanaz a példány, ha nincs rá vonatkozó késés, vagy null, ha a járat
+     * a megállót kihagyja, vagy a késés a megállóidőt a forgalmi napon kívülre (éjfél utánra vagy elé) tolja: a
+     * tervezés egy forgalmi napon belül keres, így az ilyen megállóidő nem kerülhet a nap elejére.
+     */
+    public StopTime apply(StopTime stopTime) {
+        int k = lastUpdateAtOrBefore(stopTime.getStopSequence());
+        if (k < 0) {
+            return stopTime;
+        }
+        boolean exact = stopSequences[k] == stopTime.getStopSequence();
+        if (exact && skipped[k]) {
+            return null;
+        }
+        // Korábbi megálló késése: a járat onnantól azzal a késéssel közlekedik
+        int arrivalDelay = exact ? arrivalDelays[k] : departureDelays[k];
+        int departureDelay = departureDelays[k];
+        if (arrivalDelay == 0 && departureDelay == 0) {
+            return stopTime;
+        }
+        if (leavesServiceDay(stopTime.getArrivalTime(), arrivalDelay) || leavesServiceDay(stopTime.getDepartureTime(), departureDelay)) {
+            return null;
+        }
+        return new StopTime(stopTime.getTripId(), stopTime.getStopId(),
+                shift(stopTime.getArrivalTime(), arrivalDelay), shift(stopTime.getDepartureTime(), departureDelay),
+                stopTime.getStopSequence(), Optional.empty(), stopTime.getPickupType(), stopTime.getDropOffType(), Optional.empty());
+    }
+
+    /**
+     * Az utolsó módosítás, amelynek sorszáma legfeljebb a megadott (bináris kereséssel).
+     *
+     * @param stopSequence A megálló sorszáma.
+     * @return A módosítás indexe, vagy -1, ha nincs ilyen.
+     */
+    private int lastUpdateAtOrBefore(int stopSequence) {
+        int low = 0;
+        int high = stopSequences.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (stopSequences[mid] <= stopSequence) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Megvizsgálja, hogy az eltolt időpont a nap kezdetétől mért másodpercekben a forgalmi napon kívül esik-e.
+     *
+     * @param time  Az időpont.
+     * @param delay A késés másodpercben.
+     * @return Igaz, ha az eltolt időpont napeltolása nem nulla.
+     */
+    private static boolean leavesServiceDay(Optional<LocalTime> time, int delay) {
+        return time.map(t -> Math.floorDiv(t.toSecondOfDay() + delay, SECONDS_PER_DAY) != 0).orElse(false);
+    }
+
+    /**
+     * Egy időpont eltolása a nap kezdetétől mért másodpercekben. Csak forgalmi napon belül maradó eltolásra hívható.
+     *
+     * @param time  Az időpont.
+     * @param delay A késés másodpercben.
+     * @return Az eltolt időpont.
+     */
+    private static Optional<LocalTime> shift(Optional<LocalTime> time, int delay) {
+        return time.map(t -> LocalTime.ofSecondOfDay(t.toSecondOfDay() + delay));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof TripUpdate update && tripId.equals(update.tripId) && serviceDate.equals(update.serviceDate)
+                && canceled == update.canceled && Arrays.equals(stopSequences, update.stopSequences)
+                && Arrays.equals(arrivalDelays, update.arrivalDelays) && Arrays.equals(departureDelays, update.departureDelays)
+                && Arrays.equals(skipped, update.skipped);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * tripId.hashCode() + serviceDate.hashCode();
+    }
+}
@@ -0,0 +1,417 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * A TripUpdateReader osztály GTFS-Realtime TripUpdate üzeneteket olvas a szabvány JSON alakjából (a protobuf
+ * JSON leképezése, camelCase vagy snake_case mezőnevekkel).
+ * <p>
+ * Támogatott: a járat törlése (CANCELED), megállónkénti érkezési és indulási késés (delay), kihagyott megálló
+ * (SKIPPED), valamint megállók nélkül a járatszintű késés. A megállókat a sorszámuk (stopSequence) azonosítja;
+ * a csak megálló azonosítóval (stopId) megadott módosításokat kihagyja és megszámolja, mert a sorszámot csak az
+ * éppen érvényes menetrend tudná megadni, a módosítások viszont a feed cseréi között is megmaradnak. A csak abszolút
+ * időt tartalmazó megálló módosításokat is kihagyja. Forgalmi nap (startDate) hiányában a beolvasás napját használja.
+ */
+public class TripUpdateReader {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * A camelCase mezőnevek nagybetűi a snake_case alakhoz.
+     */
+    private static final Pattern UPPER_CASE = Pattern.compile("([A-Z])");
+
+    /**
+     * Egy beolvasott üzenet.
+     *
+     * @param updates            A járatok módosításai.
+     * @param fullDataset        Igaz, ha az üzenet a teljes állapotot írja le (nem DIFFERENTIAL).
+     * @param droppedStopUpdates A sorszám nélkül megadott, ezért kihagyott megálló módosítások száma.
+     */
+    public record Message(List<TripUpdate> updates, boolean fullDataset, int droppedStopUpdates) {
+    }
+
+    /**
+     * Egy üzenet beolvasása fájlból.
+     *
+     * @param file A fájl.
+     * @return Az üzenet.
+     * @throws IOException Ha a fájl nem olvasható vagy nem érvényes JSON.
+     */
+    public static Message read(Path file) throws IOException {
+        return parse(Files.readString(file, StandardCharsets.UTF_8), LocalDate.now());
+    }
+
+    /**
+     * Egy üzenet értelmezése.
+     *
+     * @param json        Az üzenet JSON alakban.
+     * @param defaultDate A forgalmi nap, ha a járatnál nincs megadva.
+     * @return Az üzenet.
+     * @throws IOException Ha a szöveg nem érvényes JSON, vagy egy forgalmi nap nem értelmezhető.
+     */
+    public static Message parse(String json, LocalDate defaultDate) throws IOException {
+        Map<String, Object> root = asObject(new JsonParser(json).parse());
+        Map<String, Object> header = asObject(field(root, "header"));
+        boolean fullDataset = !"DIFFERENTIAL".equals(field(header, "incrementality"));
+
+        List<TripUpdate> updates = new ArrayList<>();
+        int droppedStopUpdates = 0;
+        for (Object entity : asList(field(root, "entity"))) {
+            Map<String, Object> tripUpdate = asObject(field(asObject(entity), "tripUpdate"));
+            Map<String, Object> trip = asObject(field(tripUpdate, "trip"));
+            Object tripId = field(trip, "tripId");
+            if (!(tripId instanceof String)) {
+                continue;
+            }
+            Object startDate = field(trip, "startDate");
+            LocalDate date = defaultDate;
+            if (startDate instanceof String text) {
+                try {
+                    date = LocalDate.parse(text, DATE_FORMAT);
+                } catch (DateTimeParseException e) {
+                    throw new IOException("Invalid start date " + text + " for trip " + tripId, e);
+                }
+            }
+            if ("CANCELED".equals(field(trip, "scheduleRelationship"))) {
+                updates.add(TripUpdate.canceled((String) tripId, date));
+            } else {
+                updates.add(toTripUpdate((String) tripId, date, tripUpdate));
+                droppedStopUpdates += countWithoutSequence(tripUpdate);
+            }
+        }
+        return new Message(updates, fullDataset, droppedStopUpdates);
+    }
+
+    /**
+     * Egy nem törölt járat módosításainak összeállítása sorszám szerint rendezve. A hiányzó érkezési késés az
+     * indulásival egyezik és fordítva; ha egyik sincs megadva, az előző megálló késése érvényes tovább.
+     *
+     * @param tripId     A járat azonosítója.
+     * @param date       A forgalmi nap.
+     * @param tripUpdate A TripUpdate üzenetrész.
+     * @return A módosítás.
+     */
+    private static TripUpdate toTripUpdate(String tripId, LocalDate date, Map<String, Object> tripUpdate) {
+        TreeMap<Integer, Map<String, Object>> bySequence = new TreeMap<>();
+        for (Object stopTimeUpdate : asList(field(tripUpdate, "stopTimeUpdate"))) {
+            Map<String, Object> update = asObject(stopTimeUpdate);
+            Integer sequence = asInteger(field(update, "stopSequence"));
+            if (sequence != null) {
+                bySequence.put(sequence, update);
+            }
+        }
+        Integer tripDelay = asInteger(field(tripUpdate, "delay"));
+        if (bySequence.isEmpty() && tripDelay != null) {
+            return new TripUpdate(tripId, date, false, new int[]{0}, new int[]{tripDelay}, new int[]{tripDelay}, new boolean[]{false});
+        }
+
+        int n = bySequence.size();
+        int[] sequences = new int[n];
+        int[] arrivalDelays = new int[n];
+        int[] departureDelays = new int[n];
+        boolean[] skipped = new boolean[n];
+        int previousDelay = 0;
+        int k = 0;
+        for (Map.Entry<Integer, Map<String, Object>> entry : bySequence.entrySet()) {
+            Map<String, Object> update = entry.getValue();
+            Integer arrival = asInteger(field(asObject(field(update, "arrival")), "delay"));
+            Integer departure = asInteger(field(asObject(field(update, "departure")), "delay"));
+            sequences[k] = entry.getKey();
+            arrivalDelays[k] = arrival != null ? arrival : departure != null ? departure : previousDelay;
+            departureDelays[k] = departure != null ? departure : arrivalDelays[k];
+            skipped[k] = "SKIPPED".equals(field(update, "scheduleRelationship"));
+            previousDelay = departureDelays[k];
+            k++;
+        }
+        return new TripUpdate(tripId, date, false, sequences, arrivalDelays, departureDelays, skipped);
+    }
+
+    /**
+     * @param tripUpdate A TripUpdate üzenetrész.
+     * @return A sorszám nélküli (csak megálló azonosítóval megadott) megálló módosítások száma.
+     */
+    private static int countWithoutSequence(Map<String, Object> tripUpdate) {
+        int count = 0;
+        for (Object stopTimeUpdate : asList(field(tripUpdate, "stopTimeUpdate"))) {
+            if (asInteger(field(asObject(stopTimeUpdate), "stopSequence")) == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Egy mező értéke camelCase vagy snake_case névvel.
+     *
+     * @param object Az objektum (lehet üres).
+     * @param name   A mező camelCase neve.
+     * @return Az érték, vagy null, ha nincs ilyen mező.
+     */
+    private static Object field(Map<String, Object> object, String name) {
+        Object value = object.get(name);
+        if (value == null) {
+            value = object.get(UPPER_CASE.matcher(name).replaceAll("_$1").toLowerCase(Locale.ROOT));
+        }
+        return value;
+    }
+
+    /**
+     * @param value Az érték.
+     * @return Az érték objektumként, vagy üres objektum, ha nem az.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : Map.of();
+    }
+
+    /**
+     * @param value Az érték.
+     * @return Az érték tömbként, vagy üres tömb, ha nem az.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> asList(Object value) {
+        return value instanceof List ? (List<Object>) value : List.of();
+    }
+
+    /**
+     * Egész érték számból vagy (a protobuf JSON 64 bites számaihoz hasonlóan) szövegből.
+     *
+     * @param value Az érték.
+     * @return Az egész, vagy null, ha az érték hiányzik vagy nem szám.
+     */
+    private static Integer asInteger(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Egyszerű JSON elemző: objektumok {@link Map}, tömbök {@link List}, számok {@link Double} vagy {@link Long},
+     * szövegek {@link String}, logikai értékek {@link Boolean} alakban.
+     */
+    private static class JsonParser {
+        private final String text;
+        private int position;
+
+        /**
+         * Konstruktor.
+         *
+         * @param text Az elemzendő szöveg.
+         */
+        JsonParser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * A teljes szöveg elemzése egyetlen értékként.
+         *
+         * @return Az érték.
+         * @throws IOException Ha a szöveg nem érvényes JSON.
+         */
+        Object parse() throws IOException {
+            Object value = value();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("Unexpected trailing content");
+            }
+            return value;
+        }
+
+        /**
+         * @return A következő érték.
+         * @throws IOException Ha a szöveg nem érvényes JSON.
+         */
+        private Object value() throws IOException {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            char c = text.charAt(position);
+            return switch (c) {
+                case '{' -> object();
+                case '[' -> array();
+                case '"' -> string();
+                case 't' -> literal("true", Boolean.TRUE);
+                case 'f' -> literal("false", Boolean.FALSE);
+                case 'n' -> literal("null", null);
+                default -> number();
+            };
+        }
+
+        /**
+         * @return A következő objektum.
+         * @throws IOException Ha a szöveg nem érvényes JSON.
+         */
+        private Map<String, Object> object() throws IOException {
+            Map<String, Object> object = new HashMap<>();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("Expected field name");
+                }
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                object.put(name, value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    return object;
+                }
+            }
+        }
+
+        /**
+         * @return A következő tömb.
+         * @throws IOException Ha a szöveg nem érvényes JSON.
+         */
+        private List<Object> array() throws IOException {
+            List<Object> array = new ArrayList<>();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            while (true) {
+                array.add(value());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    return array;
+                }
+            }
+        }
+
+        /**
+         * @return A következő szöveg, a feloldott escape szekvenciákkal.
+         * @throws IOException Ha a szöveg nem érvényes JSON.
+         */
+        private String string() throws IOException {
+            StringBuilder builder = new StringBuilder();
+            position++;
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n' -> builder.append('\n');
+                    case 't' -> builder.append('\t');
+                    case 'r' -> builder.append('\r');
+                    case 'b' -> builder.append('\b');
+                    case 'f' -> builder.append('\f');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> builder.append(escaped);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        /**
+         * @return A következő szám.
+         * @throws IOException Ha a szöveg nem érvényes JSON.
+         */
+        private Object number() throws IOException {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            String number = text.substring(start, position);
+            try {
+                return number.contains(".") || number.contains("e") || number.contains("E")
+                        ? (Object) Double.parseDouble(number) : (Object) Long.parseLong(number);
+            } catch (NumberFormatException e) {
+                throw error("Invalid value");
+            }
+        }
+
+        /**
+         * @param word  A várt kulcsszó.
+         * @param value A kulcsszó értéke.
+         * @return Az érték.
+         * @throws IOException Ha a kulcsszó nem egyezik.
+         */
+        private Object literal(String word, Object value) throws IOException {
+            if (!text.startsWith(word, position)) {
+                throw error("Invalid literal");
+            }
+            position += word.length();
+            return value;
+        }
+
+        /**
+         * @param c A várt karakter.
+         * @throws IOException Ha a következő karakter más.
+         */
+        private void expect(char c) throws IOException {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            position++;
+        }
+
+        /**
+         * @return A következő karakter, vagy 0 a szöveg végén.
+         */
+        private char peek() {
+            return position < text.length() ? text.charAt(position) : '\0';
+        }
+
+        /**
+         * A szóközök átlépése.
+         */
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        /**
+         * @param message A hiba leírása.
+         * @return A kivétel a hiba helyével.
+         */
+        private IOException error(String message) {
+            return new IOException(message + " at offset " + position);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * A LazyColumns osztály egy memóriába leképezett GTFS fájl, amelynek ritkán használt oszlopait a modell objektumok
+ * csak a soruk kezdetének bájtpozíciójaként tárolják, és csak lekérdezéskor dekódolják (útiterv megjelenítéshez,
+ * exporthoz). A leképezés csak olvasható, a dekódolás abszolút pozíciókkal olvas, így több szálból is használható.
+ * <p>
+ * A leképezés a fájl tartalmára hivatkozik: a fájlt a feed használata közben nem szabad helyben felülírni
+ * (cserélni csak átnevezéssel lehet), különben a dekódolás hibás adatot ad vagy kivételt dob.
+ */
+public final class LazyColumns {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Konstruktor.
+     *
+     * @param buffer A fájl tartalma.
+     */
+    private LazyColumns(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Egy már beolvasott vagy leképezett fájl tartalmának használata (a sorok kezdetei erre vonatkoznak).
+     *
+     * @param buffer A fájl teljes tartalma.
+     * @return A fájl oszlopainak dekódolója.
+     */
+    public static LazyColumns wrap(ByteBuffer buffer) {
+        return new LazyColumns(buffer.asReadOnlyBuffer());
+    }
+
+    /**
+     * @return A leképezett fájl mérete bájtban.
+     */
+    public int size() {
+        return buffer.limit();
+    }
+
+    /**
+     * Egy mező szöveges értéke.
+     *
+     * @param rowOffset A sor kezdete.
+     * @param column    Az oszlop indexe.
+     * @return A mező értéke, vagy üres, ha a mező üres vagy hiányzik.
+     */
+    public Optional<String> text(int rowOffset, int column) {
+        return Optional.ofNullable(field(rowOffset, column));
+    }
+
+    /**
+     * Egy mező egész értéke.
+     *
+     * @param rowOffset A sor kezdete.
+     * @param column    Az oszlop indexe.
+     * @return A mező értéke, vagy üres, ha a mező üres vagy hiányzik.
+     * @throws NumberFormatException Ha a mező nem egész szám.
+     */
+    public Optional<Integer> integer(int rowOffset, int column) {
+        return text(rowOffset, column).map(Integer::parseInt);
+    }
+
+    /**
+     * Egy mező tizedes értéke.
+     *
+     * @param rowOffset A sor kezdete.
+     * @param column    Az oszlop indexe.
+     * @return A mező értéke, vagy üres, ha a mező üres vagy hiányzik.
+     * @throws NumberFormatException Ha a mező nem szám.
+     */
+    public Optional<Double> decimal(int rowOffset, int column) {
+        return text(rowOffset, column).map(Double::parseDouble);
+    }
+
+    /**
+     * Egy mező dekódolása: az oszlop megkeresése az idézőjelen kívüli vesszők alapján, majd a bájtok UTF-8
+     * szöveggé alakítása (a kettőzött idézőjel egy idézőjelet jelent).
+     *
+     * @param rowOffset A sor kezdete.
+     * @param column    Az oszlop indexe.
+     * @return A mező értéke, vagy null, ha a mező üres vagy hiányzik.
+     */
+    private String field(int rowOffset, int column) {
+        int limit = buffer.limit();
+        int i = rowOffset;
+        // Az oszlop elejének megkeresése
+        for (int c = 0; c < column; c++) {
+            boolean quoted = false;
+            for (; i < limit; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (!quoted && (b == ',' || b == '\n' || b == '\r')) {
+                    break;
+                }
+            }
+            if (i >= limit || buffer.get(i) != ',') {
+                return null;
+            }
+            i++;
+        }
+
+        byte[] bytes = new byte[16];
+        int length = 0;
+        boolean quoted = false;
+        for (; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                if (quoted && i + 1 < limit && buffer.get(i + 1) == '"') {
+                    i++;
+                } else {
+                    quoted = !quoted;
+                    continue;
+                }
+            } else if (!quoted && (b == ',' || b == '\n' || b == '\r')) {
+                break;
+            }
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = b;
+        }
+        return length == 0 ? null : new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
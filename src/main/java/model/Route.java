@@ -48,6 +48,18 @@ public class Route {
      */
     private Optional<Integer> routeSortOrder;
 
+    /**
+     * A routes.txt leképezése, ha a ritkán használt mezők lustán töltődnek, különben null.
+     */
+    private LazyColumns lazyColumns;
+
+    /**
+     * A sor kezdete a leképezett fájlban (csak lusta betöltésnél).
+     */
+    private int rowOffset;
+
+    private static final int ROUTE_DESC_COLUMN = 5;
+
     /**
      * Konstruktor, amely minden mezőt inicializál, beleértve az opcionálisakat.
      *
@@ -75,6 +87,29 @@ public class Route {
         this.routeSortOrder = routeSortOrder;
     }
 
+    /**
+     * Konstruktor lusta betöltéshez: a vonal leírása a leképezett fájlban marad, és csak lekérdezéskor dekódolódik.
+     *
+     * @param agencyId        Az agency azonosítója.
+     * @param routeId         A vonal egyedi azonosítója.
+     * @param routeShortName  A vonal rövid neve.
+     * @param routeLongName   A vonal hosszú neve.
+     * @param routeType       A vonal típusa.
+     * @param routeColor      A vonal színe.
+     * @param routeTextColor  A vonal szöveg színe.
+     * @param routeSortOrder  A vonal rendezési sorrendje.
+     * @param lazyColumns     A routes.txt leképezése.
+     * @param rowOffset       A sor kezdete a leképezett fájlban.
+     */
+    public Route(Optional<String> agencyId, String routeId, String routeShortName,
+                 Optional<String> routeLongName, int routeType, Optional<String> routeColor,
+                 Optional<String> routeTextColor, Optional<Integer> routeSortOrder,
+                 LazyColumns lazyColumns, int rowOffset) {
+        this(agencyId, routeId, routeShortName, routeLongName, routeType, null, routeColor, routeTextColor, routeSortOrder);
+        this.lazyColumns = lazyColumns;
+        this.rowOffset = rowOffset;
+    }
+
     /**
      * Visszaadja a vonal egyedi azonosítóját.
      *
@@ -111,6 +146,15 @@ public class Route {
         return routeType;
     }
 
+    /**
+     * Visszaadja a vonal leírását (lusta betöltésnél a leképezett fájlból dekódolva).
+     *
+     * @return A vonal leírása, ha meg van adva.
+     */
+    public Optional<String> getRouteDesc() {
+        return lazyColumns == null ? routeDesc : lazyColumns.text(rowOffset, ROUTE_DESC_COLUMN);
+    }
+
     /**
      * Visszaadja a vonal szöveg színét Color objektumként.
      * Ha a szöveg színe nincs megadva, alapértelmezett fehér színt használ.
@@ -52,6 +52,19 @@ public class StopTime {
      */
     private Optional<Double> shapeDistTraveled;
 
+    /**
+     * A stop_times.txt leképezése, ha a ritkán használt mezők lustán töltődnek, különben null.
+     */
+    private LazyColumns lazyColumns;
+
+    /**
+     * A sor kezdete a leképezett fájlban (csak lusta betöltésnél).
+     */
+    private int rowOffset;
+
+    private static final int STOP_HEADSIGN_COLUMN = 5;
+    private static final int SHAPE_DIST_TRAVELED_COLUMN = 8;
+
     /**
      * Konstruktor, amely minden mezőt inicializál, beleértve az opcionálisakat.
      *
@@ -79,6 +92,42 @@ public class StopTime {
         this.shapeDistTraveled = shapeDistTraveled;
     }
 
+    /**
+     * Konstruktor lusta betöltéshez: a megálló fejléce és a megtett távolság a leképezett fájlban marad, és csak
+     * lekérdezéskor dekódolódik.
+     *
+     * @param tripId        Az utazás egyedi azonosítója.
+     * @param stopId        A megálló egyedi azonosítója.
+     * @param arrivalTime   Az érkezési idő.
+     * @param departureTime A távozási idő.
+     * @param stopSequence  A megálló sorrendje az utazásban.
+     * @param pickupType    A felvételi típus.
+     * @param dropOffType   A leszállítási típus.
+     * @param lazyColumns   A stop_times.txt leképezése.
+     * @param rowOffset     A sor kezdete a leképezett fájlban.
+     */
+    public StopTime(String tripId, String stopId, Optional<LocalTime> arrivalTime, Optional<LocalTime> departureTime,
+                    int stopSequence, Optional<Integer> pickupType, Optional<Integer> dropOffType,
+                    LazyColumns lazyColumns, int rowOffset) {
+        this(tripId, stopId, arrivalTime, departureTime, stopSequence, null, pickupType, dropOffType, null);
+        this.lazyColumns = lazyColumns;
+        this.rowOffset = rowOffset;
+    }
+
+    /**
+     * Másolat más érkezési és indulási idővel (a többi mező, lusta betöltésnél a leképezés is, változatlan).
+     *
+     * @param arrivalTime   Az új érkezési idő.
+     * @param departureTime Az új távozási idő.
+     * @return A módosított megállóidő.
+     */
+    public StopTime withTimes(Optional<LocalTime> arrivalTime, Optional<LocalTime> departureTime) {
+        StopTime copy = new StopTime(tripId, stopId, arrivalTime, departureTime, stopSequence, stopHeadsign, pickupType, dropOffType, shapeDistTraveled);
+        copy.lazyColumns = lazyColumns;
+        copy.rowOffset = rowOffset;
+        return copy;
+    }
+
     /**
      * Visszaadja az utazás azonosítóját.
      *
@@ -124,4 +173,40 @@ public class StopTime {
     public int getStopSequence() {
         return stopSequence;
     }
+
+    /**
+     * Visszaadja a felvételi típust.
+     *
+     * @return A felvételi típus, ha meg van adva.
+     */
+    public Optional<Integer> getPickupType() {
+        return pickupType;
+    }
+
+    /**
+     * Visszaadja a leszállítási típust.
+     *
+     * @return A leszállítási típus, ha meg van adva.
+     */
+    public Optional<Integer> getDropOffType() {
+        return dropOffType;
+    }
+
+    /**
+     * Visszaadja a megálló fejlécét (lusta betöltésnél a leképezett fájlból dekódolva).
+     *
+     * @return A megálló fejléce, ha meg van adva.
+     */
+    public Optional<String> getStopHeadsign() {
+        return lazyColumns == null ? stopHeadsign : lazyColumns.text(rowOffset, STOP_HEADSIGN_COLUMN);
+    }
+
+    /**
+     * Visszaadja a vonal mentén megtett távolságot (lusta betöltésnél a leképezett fájlból dekódolva).
+     *
+     * @return A megtett távolság, ha meg van adva.
+     */
+    public Optional<Double> getShapeDistTraveled() {
+        return lazyColumns == null ? shapeDistTraveled : lazyColumns.decimal(rowOffset, SHAPE_DIST_TRAVELED_COLUMN);
+    }
 }
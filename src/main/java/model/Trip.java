@@ -58,6 +58,19 @@ public class Trip {
      */
     private Optional<Integer> bikesAllowed;
 
+    /**
+     * A trips.txt leképezése, ha a ritkán használt mezők lustán töltődnek, különben null.
+     */
+    private LazyColumns lazyColumns;
+
+    /**
+     * A sor kezdete a leképezett fájlban (csak lusta betöltésnél).
+     */
+    private int rowOffset;
+
+    private static final int BLOCK_ID_COLUMN = 5;
+    private static final int BIKES_ALLOWED_COLUMN = 8;
+
     /**
      * Konstruktor, amely inicializálja minden mezőt, beleértve az opcionálisakat.
      *
@@ -86,6 +99,28 @@ public class Trip {
         this.bikesAllowed = bikesAllowed;
     }
 
+    /**
+     * Konstruktor lusta betöltéshez: a blokk azonosítója és a kerékpárszállítás a leképezett fájlban marad, és csak
+     * lekérdezéskor dekódolódik.
+     *
+     * @param routeId              A járat vonalának egyedi azonosítója.
+     * @param tripId               A járat egyedi azonosítója.
+     * @param serviceId            A szolgáltatás egyedi azonosítója.
+     * @param tripHeadsign         A járat fejléce.
+     * @param directionId          Az irány azonosítója.
+     * @param shapeId              A shape egyedi azonosítója.
+     * @param wheelchairAccessible Információ a kerekesszékkel való hozzáférhetőségről.
+     * @param lazyColumns          A trips.txt leképezése.
+     * @param rowOffset            A sor kezdete a leképezett fájlban.
+     */
+    public Trip(String routeId, String tripId, String serviceId,
+                Optional<String> tripHeadsign, Optional<Integer> directionId, Optional<String> shapeId,
+                Optional<Integer> wheelchairAccessible, LazyColumns lazyColumns, int rowOffset) {
+        this(routeId, tripId, serviceId, tripHeadsign, directionId, null, shapeId, wheelchairAccessible, null);
+        this.lazyColumns = lazyColumns;
+        this.rowOffset = rowOffset;
+    }
+
     /**
      * Visszaadja a szolgáltatási napok listáját.
      *
@@ -140,4 +175,22 @@ public class Trip {
     public Optional<String> getTripHeadsign() {
         return tripHeadsign;
     }
+
+    /**
+     * Visszaadja a blokk azonosítóját (lusta betöltésnél a leképezett fájlból dekódolva).
+     *
+     * @return A blokk azonosítója, ha meg van adva.
+     */
+    public Optional<String> getBlockId() {
+        return lazyColumns == null ? blockId : lazyColumns.text(rowOffset, BLOCK_ID_COLUMN);
+    }
+
+    /**
+     * Visszaadja a kerékpárszállítás információt (lusta betöltésnél a leképezett fájlból dekódolva).
+     *
+     * @return A kerékpárszállítás információ, ha meg van adva.
+     */
+    public Optional<Integer> getBikesAllowed() {
+        return lazyColumns == null ? bikesAllowed : lazyColumns.integer(rowOffset, BIKES_ALLOWED_COLUMN);
+    }
 }
@@ -3,11 +3,21 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -89,6 +99,163 @@ public class GtfsLoaderTest {
         assertEquals("Route 1", routes.get(0).getRouteShortName());
     }
 
+    @Test
+    public void testLoadProgressReport() throws Exception {
+        List<LoadProgressEvent> events = new ArrayList<>();
+        LoadReport report = new LoadReport();
+        List<StopTime> stopTimes = GtfsLoader.loadStopTimes(stopTimesFile.getAbsolutePath(), report.andThen(events::add));
+
+        assertEquals(1, stopTimes.size());
+        LoadProgressEvent last = events.get(events.size() - 1);
+        assertTrue(last.finished());
+        assertEquals(1, last.rowsParsed());
+        assertEquals(stopTimesFile.length(), last.bytesRead());
+        assertEquals(1.0, last.fraction(), 0.0);
+        assertEquals(1, report.getFiles().size());
+        assertEquals(1, report.getTotalRows());
+    }
+
+    @Test
+    public void testLoadFeed() throws Exception {
+        Path folder = createFeedFolder();
+
+        LoadReport report = new LoadReport();
+        GtfsFeed feed = GtfsLoader.loadFeed(folder.toString(), report);
+        assertEquals(1, feed.stops().size());
+        assertEquals(1, feed.stopTimes().size());
+        assertEquals(1, feed.routes().size());
+        assertEquals(List.of(LocalDate.of(2024, 10, 7), LocalDate.of(2024, 10, 8)), feed.trips().get(0).getServiceDates());
+        assertEquals(6, report.getFiles().size());
+
+        // Hiba esetén az eredeti kivétel jön vissza, nem a párhuzamos betöltés burkolója
+        Files.delete(folder.resolve("trips.txt"));
+        assertThrows(FileNotFoundException.class, () -> GtfsLoader.loadFeed(folder.toString(), LoadProgressListener.NONE));
+    }
+
+    @Test
+    public void testLoadFeedAsync() throws Exception {
+        Path folder = createFeedFolder();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            GtfsLoader.StagedFeed staged = GtfsLoader.loadFeedAsync(folder.toString(), LoadProgressListener.NONE, executor);
+            assertEquals("ST1", staged.stops().get().get(0).getStopId());
+            assertEquals(1, staged.routes().get().size());
+            GtfsFeed feed = staged.feed().get();
+            assertSame(staged.stops().get(), feed.stops());
+            assertEquals(List.of(LocalDate.of(2024, 10, 7), LocalDate.of(2024, 10, 8)), feed.trips().get(0).getServiceDates());
+
+            // Hiányzó menetrend esetén a megállók elérhetők, a feed hibával zárul
+            Files.delete(folder.resolve("stop_times.txt"));
+            GtfsLoader.StagedFeed broken = GtfsLoader.loadFeedAsync(folder.toString(), LoadProgressListener.NONE, executor);
+            assertEquals(1, broken.stops().get().size());
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> broken.feed().get());
+            assertInstanceOf(IOException.class, failure.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testLoadLazyColumns() throws Exception {
+        File stopTimes = createTemporaryFile("trip_id,stop_id,arrival_time,departure_time,stop_sequence,stop_headsign,pickup_type,drop_off_type,shape_dist_traveled\r\n"
+                + "TR1,ST1,08:00:00,08:00:00,1,\"Körtér, \"\"B\"\"\",0,0,12.5\r\n"
+                + "TR1,ST2,08:05:00,08:05:00,2,,0,0,\r\n"
+                + "TR1,ST3,08:10:00,08:10:00,3,\"Két\nsor\",0,1,30.123456789");
+        List<StopTime> eager = GtfsLoader.loadStopTimes(stopTimes.getAbsolutePath(), LoadProgressListener.NONE, LoadMode.EAGER);
+        List<StopTime> lazy = GtfsLoader.loadStopTimes(stopTimes.getAbsolutePath(), LoadProgressListener.NONE, LoadMode.LAZY);
+        assertEquals(3, lazy.size());
+        for (int i = 0; i < eager.size(); i++) {
+            assertEquals(eager.get(i).getStopId(), lazy.get(i).getStopId());
+            assertEquals(eager.get(i).getDropOffType(), lazy.get(i).getDropOffType());
+            assertEquals(eager.get(i).getStopHeadsign(), lazy.get(i).getStopHeadsign());
+            assertEquals(eager.get(i).getShapeDistTraveled(), lazy.get(i).getShapeDistTraveled());
+        }
+        assertEquals("Körtér, \"B\"", lazy.get(0).getStopHeadsign().orElse(null));
+        assertEquals(12.5, lazy.get(0).getShapeDistTraveled().orElse(null));
+        // A hét tizedesjegynél pontosabb távolság sem csonkolódik egyik módban sem
+        assertEquals(30.123456789, eager.get(2).getShapeDistTraveled().orElse(null));
+        assertTrue(lazy.get(1).getStopHeadsign().isEmpty());
+        assertEquals("Két\nsor", lazy.get(2).getStopHeadsign().orElse(null));
+
+        // Üres sor és többsoros mező után is a saját sorára mutat a lusta oszlop
+        File trips = createTemporaryFile("route_id,trip_id,service_id,trip_headsign,direction_id,block_id,shape_id,wheelchair_accessible,bikes_allowed\n"
+                + "RT1,TR1,SV1,Trip 1,0,B7,Shape1,1,2\n"
+                + "\n"
+                + "RT1,TR2,SV1,Trip 2,1,,Shape1,1,\r\n"
+                + "RT1,TR3,SV1,\"Két\nsor\",1,B9,Shape1,1,1");
+        List<Trip> lazyTrips = GtfsLoader.loadTrips(trips.getAbsolutePath(), LoadProgressListener.NONE, LoadMode.LAZY);
+        assertEquals(3, lazyTrips.size());
+        assertEquals("Trip 2", lazyTrips.get(1).getTripHeadsign().orElse(null));
+        assertEquals("B7", lazyTrips.get(0).getBlockId().orElse(null));
+        assertEquals(Optional.of(2), lazyTrips.get(0).getBikesAllowed());
+        assertTrue(lazyTrips.get(1).getBlockId().isEmpty());
+        assertTrue(lazyTrips.get(1).getBikesAllowed().isEmpty());
+        assertEquals("Két\nsor", lazyTrips.get(2).getTripHeadsign().orElse(null));
+        assertEquals("B9", lazyTrips.get(2).getBlockId().orElse(null));
+        List<Trip> eagerTrips = GtfsLoader.loadTrips(trips.getAbsolutePath(), LoadProgressListener.NONE, LoadMode.EAGER);
+        assertEquals(Optional.of(1), eagerTrips.get(2).getBikesAllowed());
+
+        File routes = createTemporaryFile("agency_id,route_id,route_short_name,route_long_name,route_type,route_desc,route_color,route_text_color,route_sort_order\n"
+                + "AG1,RT1,Route 1,,3,Éjszakai járat,009EE3,FFFFFF,1");
+        Route route = GtfsLoader.loadRoutes(routes.getAbsolutePath(), LoadProgressListener.NONE, LoadMode.LAZY).get(0);
+        assertEquals("Route 1", route.getRouteShortName());
+        assertEquals("Éjszakai járat", route.getRouteDesc().orElse(null));
+
+        GtfsFeed feed = GtfsLoader.loadFeed(createFeedFolder().toString(), LoadProgressListener.NONE, Runnable::run, LoadMode.LAZY);
+        assertEquals(0.0, feed.stopTimes().get(0).getShapeDistTraveled().orElse(null));
+        assertTrue(feed.trips().get(0).getBlockId().isEmpty());
+        assertEquals(Optional.of(1), feed.trips().get(0).getBikesAllowed());
+    }
+
+    @Test
+    public void testGtfsTokenizer() throws Exception {
+        byte[] content = ("\uFEFFtrip_id,stop_id,arrival_time,stop_sequence,stop_lat,stop_headsign\r\n"
+                + "TR1,ST1,08:00:00,1,47.500366,\"Körtér, \"\"B\"\"\"\r\n"
+                + "\r\n"
+                + "TR1,ST2,25:10:30,-2,-19.1,\"Két\nsor\"\n"
+                + "TR2,ST3,7:05:09,3,19").getBytes(StandardCharsets.UTF_8);
+        List<String> fields = new ArrayList<>();
+        List<Integer> times = new ArrayList<>();
+        List<Long> coordinates = new ArrayList<>();
+        GtfsTokenizer tokenizer = new GtfsTokenizer(ByteBuffer.wrap(content));
+        tokenizer.forEachRow(row -> {
+            fields.add(row.getString(0) + "|" + row.getString(5));
+            times.add(row.getTime(2));
+            coordinates.add(row.getFixed(4, 7));
+            assertTrue(row.contentEquals(0, row.getString(0)));
+            assertFalse(row.contentEquals(1, "TR1"));
+        });
+        assertEquals(List.of("TR1|Körtér, \"B\"", "TR1|Két\nsor", "TR2|"), fields);
+        assertEquals(List.of(8 * 3600, 25 * 3600 + 10 * 60 + 30, 7 * 3600 + 5 * 60 + 9), times);
+        assertEquals(List.of(475_003_660L, -191_000_000L, 190_000_000L), coordinates);
+        assertEquals(47.500366, coordinates.get(0) / 1e7);
+        assertEquals(content.length, tokenizer.position());
+
+        // Exponenses alak
+        List<Long> exponents = new ArrayList<>();
+        new GtfsTokenizer(ByteBuffer.wrap("a,b\nx,4.75e1\nx,-1.9E1\nx,4.7500366e1\n".getBytes(StandardCharsets.UTF_8)))
+                .forEachRow(row -> exponents.add(row.getFixed(1, 7)));
+        assertEquals(List.of(475_000_000L, -190_000_000L, 475_003_660L), exponents);
+        GtfsTokenizer badExponent = new GtfsTokenizer(ByteBuffer.wrap("a,b\nx,4.75e\n".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(NumberFormatException.class, () -> badExponent.forEachRow(row -> row.getFixed(1, 7)));
+
+        GtfsTokenizer invalid = new GtfsTokenizer(ByteBuffer.wrap("a,b\nx,8:0:00\n".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(NumberFormatException.class, () -> invalid.forEachRow(row -> row.getInt(0)));
+        GtfsTokenizer badTime = new GtfsTokenizer(ByteBuffer.wrap("a,b\nx,8:0:00\n".getBytes(StandardCharsets.UTF_8)));
+        assertThrows(NumberFormatException.class, () -> badTime.forEachRow(row -> row.getTime(1)));
+    }
+
+    private Path createFeedFolder() throws Exception {
+        Path folder = Files.createTempDirectory("gtfs_feed");
+        Files.copy(stopsFile.toPath(), folder.resolve("stops.txt"));
+        Files.copy(stopTimesFile.toPath(), folder.resolve("stop_times.txt"));
+        Files.copy(pathwaysFile.toPath(), folder.resolve("pathways.txt"));
+        Files.copy(tripsFile.toPath(), folder.resolve("trips.txt"));
+        Files.copy(routesFile.toPath(), folder.resolve("routes.txt"));
+        Files.copy(calendarDatesFile.toPath(), folder.resolve("calendar_dates.txt"));
+        return folder;
+    }
+
     private File createTemporaryFile(String content) throws Exception {
         File tempFile = Files.createTempFile("gtfs_test", ".csv").toFile();
         tempFile.deleteOnExit();
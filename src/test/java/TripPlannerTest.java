@@ -4,10 +4,16 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -82,6 +88,571 @@ public class TripPlannerTest {
         assertEquals(60, leg2.getDuration());
     }
 
+    @Test
+    public void testFindOptimalPathWithTrace() {
+        List<QueryTrace> received = new ArrayList<>();
+        tripPlanner.getMetrics().addListener(received::add);
+
+        TripPlanner.TracedPlan plan = tripPlanner.findOptimalPathWithTrace("ST1", "ST2", LocalDate.of(2024, 10, 7), LocalTime.of(7, 54));
+        QueryTrace trace = plan.trace();
+        assertEquals(2, plan.legs().size());
+        assertEquals(2, trace.getResultLegs());
+        assertTrue(trace.getEdgesBuilt() > 0);
+        assertTrue(trace.getNodesSettled() > 0);
+        assertTrue(trace.getQueuePushes() >= trace.getNodesSettled());
+        assertEquals(PlannerPhase.values().length, trace.getPhaseNanos().size());
+
+        assertEquals(1, received.size());
+        assertSame(trace, received.get(0));
+        assertEquals(1, tripPlanner.getMetrics().getQueryCount());
+        assertEquals(1, tripPlanner.getMetrics().getHistogram(PlannerPhase.SHORTEST_PATH).getCount());
+    }
+
+    @Test
+    public void testFindParetoPaths() {
+        List<List<TripPlanLeg>> alternatives = tripPlanner.findParetoPaths("ST1", "ST2", LocalDate.of(2024, 10, 7), LocalTime.of(7, 54));
+        assertEquals(2, alternatives.size());
+
+        // Leggyorsabb: a járat, gyaloglás nélkül
+        List<TripPlanLeg> fastest = alternatives.get(0);
+        assertEquals(TripPlanLeg.LegType.TRANSIT, fastest.getLast().getLegType());
+        assertEquals("TR1", fastest.getLast().getTripId());
+
+        // Átszállás nélküli alternatíva: az aluljárón át gyalog
+        List<TripPlanLeg> walking = alternatives.get(1);
+        assertEquals(1, walking.size());
+        assertEquals(TripPlanLeg.LegType.WALK, walking.get(0).getLegType());
+        assertEquals(1000, walking.get(0).getDuration());
+    }
+
+    @Test
+    public void testRoutingProfileLimits() {
+        LocalDate date = LocalDate.of(2024, 10, 7);
+
+        // Túl rövid átszállási ablak: a 6 perces várakozás nem fér bele, csak az aluljáró marad
+        RoutingProfile shortWait = RoutingProfile.DEFAULT.withTransferWindow(60, 300);
+        List<TripPlanLeg> tripPlan = tripPlanner.findOptimalPath("ST1", "ST2", date, LocalTime.of(7, 54), shortWait);
+        assertEquals(1, tripPlan.size());
+        assertEquals(TripPlanLeg.LegType.WALK, tripPlan.get(0).getLegType());
+
+        // Rövid időablak: az aluljárós érkezés (08:10:40) már kívül esik
+        RoutingProfile shortHorizon = shortWait.withSearchHorizon(Duration.ofMinutes(10));
+        assertTrue(tripPlanner.findOptimalPath("ST1", "ST2", date, LocalTime.of(7, 54), shortHorizon).isEmpty());
+    }
+
+    @Test
+    public void testAddWalkEdgesWithProfile() {
+        Map<String, List<TripPlanner.Edge>> graph = new HashMap<>();
+        graph.put("ST1", new ArrayList<>());
+        graph.put("ST2", new ArrayList<>());
+        tripPlanner.addWalkEdges("ST1", "ST2", graph, RoutingProfile.DEFAULT.withMaxWalkDistance(500));
+        assertTrue(graph.get("ST1").isEmpty());
+
+        tripPlanner.addWalkEdges("ST1", "ST2", graph, RoutingProfile.DEFAULT.withWalkSpeedKmh(2.5));
+        assertEquals(2522, graph.get("ST1").getFirst().travelTime);
+    }
+
+    @Test
+    public void testFindArriveByPath() {
+        LocalDate date = LocalDate.of(2024, 10, 7);
+
+        // 08:05-re a 08:00-s járattal lehet a legkésőbb indulni, a felszállás előtt a minimális tartalékkal
+        List<TripPlanLeg> tripPlan = tripPlanner.findArriveByPath("ST1", "ST2", date, LocalTime.of(8, 5));
+        assertEquals(2, tripPlan.size());
+        assertEquals(TripPlanLeg.LegType.WAIT, tripPlan.get(0).getLegType());
+        assertEquals(LocalTime.of(7, 59), tripPlan.get(0).getStartTime());
+        TripPlanLeg leg = tripPlan.get(1);
+        assertEquals(TripPlanLeg.LegType.TRANSIT, leg.getLegType());
+        assertEquals("TR1", leg.getTripId());
+        assertEquals(LocalTime.of(8, 0), leg.getStartTime());
+        assertEquals(LocalTime.of(8, 1), leg.getEndTime());
+
+        // Az előre irányuló keresés a visszafelé talált indulási időtől ugyanazt a járatot éri el
+        List<TripPlanLeg> forward = tripPlanner.findOptimalPath("ST1", "ST2", date, tripPlan.get(0).getStartTime());
+        assertEquals("TR1", forward.getLast().getTripId());
+        assertEquals(leg.getEndTime(), forward.getLast().getEndTime());
+
+        // 08:00:30-ra már csak gyalog, az aluljárón át
+        tripPlan = tripPlanner.findArriveByPath("ST1", "ST2", date, LocalTime.of(8, 0, 30));
+        assertEquals(1, tripPlan.size());
+        assertEquals(TripPlanLeg.LegType.WALK, tripPlan.get(0).getLegType());
+        assertEquals(LocalTime.of(7, 43, 50), tripPlan.get(0).getStartTime());
+    }
+
+    @Test
+    public void testFindArriveByPathStaysOnTrip() {
+        // Z C-ből később indul, mint X, de X-ről C-ben a két perces tartalékkal nem lehet rá átszállni
+        List<Stop> stops = List.of(namedStop("A", "A"), namedStop("B", "B"), namedStop("C", "C"), namedStop("D", "D"));
+        List<Trip> trips = List.of(trip("X"), trip("Z"));
+        trips.forEach(trip -> trip.setServiceDates(List.of(LocalDate.of(2024, 10, 7))));
+        List<StopTime> stopTimes = List.of(
+                stopTime("X", "A", LocalTime.of(10, 0), 1), stopTime("X", "B", LocalTime.of(10, 10), 2),
+                stopTime("X", "C", LocalTime.of(10, 20), 3), stopTime("X", "D", LocalTime.of(10, 40), 4),
+                stopTime("Z", "C", LocalTime.of(10, 21), 1), stopTime("Z", "D", LocalTime.of(10, 30), 2));
+        TripPlanner planner = new TripPlanner(stops, stopTimes, List.of(), trips, tripPlanner.routes);
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        RoutingProfile profile = RoutingProfile.DEFAULT.withMaxWalkDistance(0).withTransferWindow(120, 1200);
+
+        List<TripPlanLeg> forward = planner.findOptimalPath("A", "D", date, LocalTime.of(9, 55), profile);
+        assertEquals("X", forward.getLast().getTripId());
+        List<TripPlanLeg> reverse = planner.findArriveByPath("A", "D", date, LocalTime.of(10, 45), profile);
+        assertFalse(reverse.isEmpty());
+        assertEquals("X", reverse.getLast().getTripId());
+        assertEquals(LocalTime.of(10, 40), reverse.getLast().getEndTime());
+        assertEquals(LocalTime.of(9, 58), reverse.getFirst().getStartTime());
+    }
+
+    @Test
+    public void testAStarMatchesDijkstra() {
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        RoutingProfile aStar = RoutingProfile.DEFAULT.withSearchAlgorithm(SearchAlgorithm.A_STAR);
+        TripPlanner.TracedPlan dijkstraPlan = tripPlanner.findOptimalPathWithTrace("ST1", "ST2", date, LocalTime.of(7, 54));
+        TripPlanner.TracedPlan aStarPlan = tripPlanner.findOptimalPathWithTrace("ST1", "ST2", date, LocalTime.of(7, 54), aStar);
+
+        assertEquals(dijkstraPlan.legs().size(), aStarPlan.legs().size());
+        assertEquals(dijkstraPlan.legs().getLast().getEndTime(), aStarPlan.legs().getLast().getEndTime());
+        assertTrue(aStarPlan.trace().getNodesSettled() <= dijkstraPlan.trace().getNodesSettled());
+
+        // TR1: kb. 1751 m egy perc alatt
+        assertEquals(29.2, tripPlanner.getMaxNetworkSpeed(), 0.1);
+    }
+
+    @Test
+    public void testAStarWithSameMinuteHop() {
+        // TF X és D között ugyanabban a percben érkezik, ahogy indul; TS lassabb, de közvetlen járat (séta nélkül).
+        // TW korán ér a céllal ellentétes irányú W-be, amelyet a Dijkstra még kiterjeszt, az A* már nem
+        List<Stop> stops = List.of(
+                new Stop("O", "Origin", 47.5, 19.0, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("X", "Middle", 47.5, 19.1, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("D", "Destination", 47.5, 19.113, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("W", "West", 47.5, 18.9, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+        List<Trip> trips = List.of(trip("TF"), trip("TS"), trip("TW"));
+        trips.forEach(trip -> trip.setServiceDates(List.of(LocalDate.of(2024, 10, 7))));
+        List<StopTime> stopTimes = List.of(
+                stopTime("TF", "O", LocalTime.of(8, 0), 1), stopTime("TF", "X", LocalTime.of(8, 10), 2),
+                stopTime("TF", "D", LocalTime.of(8, 10), 3),
+                stopTime("TS", "O", LocalTime.of(8, 0), 1), stopTime("TS", "D", LocalTime.of(8, 30), 2),
+                stopTime("TW", "O", LocalTime.of(8, 0), 1), stopTime("TW", "W", LocalTime.of(8, 5), 2));
+        TripPlanner planner = new TripPlanner(stops, stopTimes, List.of(), trips, tripPlanner.routes);
+        LocalDate date = LocalDate.of(2024, 10, 7);
+
+        // A nulla idejű X-D megállóköz egy perccel számol: a sebesség véges (TW: kb. 7,5 km 5 perc alatt)
+        assertTrue(Double.isFinite(planner.getMaxNetworkSpeed()));
+        assertEquals(25.1, planner.getMaxNetworkSpeed(), 0.1);
+        RoutingProfile noWalk = RoutingProfile.DEFAULT.withMaxWalkDistance(0);
+        TripPlanner.TracedPlan dijkstra = planner.findOptimalPathWithTrace("O", "D", date, LocalTime.of(7, 55), noWalk);
+        TripPlanner.TracedPlan aStar = planner.findOptimalPathWithTrace("O", "D", date, LocalTime.of(7, 55),
+                noWalk.withSearchAlgorithm(SearchAlgorithm.A_STAR));
+        assertEquals(LocalTime.of(8, 10), dijkstra.legs().getLast().getEndTime());
+        assertEquals(dijkstra.legs().getLast().getEndTime(), aStar.legs().getLast().getEndTime());
+        assertEquals("TF", aStar.legs().getLast().getTripId());
+        assertTrue(aStar.trace().getNodesSettled() < dijkstra.trace().getNodesSettled());
+    }
+
+    @Test
+    public void testFindTripBasedPath() throws Exception {
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        List<TripPlanLeg> tripPlan = tripPlanner.findTripBasedPath("ST1", "ST2", date, LocalTime.of(7, 54));
+        assertEquals(2, tripPlan.size());
+        assertEquals(TripPlanLeg.LegType.WAIT, tripPlan.get(0).getLegType());
+        assertEquals(360, tripPlan.get(0).getDuration());
+        assertEquals(TripPlanLeg.LegType.TRANSIT, tripPlan.get(1).getLegType());
+        assertEquals("TR1", tripPlan.get(1).getTripId());
+        assertEquals(LocalTime.of(8, 1), tripPlan.get(1).getEndTime());
+
+        // A járat után csak az aluljáró marad
+        List<TripPlanLeg> walkPlan = tripPlanner.findTripBasedPath("ST1", "ST2", date, LocalTime.of(8, 30));
+        assertEquals(1, walkPlan.size());
+        assertEquals(TripPlanLeg.LegType.WALK, walkPlan.get(0).getLegType());
+        assertTrue(tripPlanner.findTripBasedPath("ST1", "ST2", LocalDate.of(2024, 10, 9), LocalTime.of(7, 54)).size() <= 1);
+
+        // Gyorsítótár mentése és visszatöltése
+        File cacheFile = Files.createTempFile("transfers", ".bin").toFile();
+        cacheFile.deleteOnExit();
+        StopIndex stopIndex = new StopIndex(tripPlanner.stops);
+        TripBasedRouter built = TripBasedRouter.build(stopIndex, tripPlanner.stopTimes, tripPlanner.trips, tripPlanner.pathways, RoutingProfile.DEFAULT);
+        built.save(cacheFile.toPath());
+        TripBasedRouter loaded = TripBasedRouter.buildOrLoad(stopIndex, tripPlanner.stopTimes, tripPlanner.trips, tripPlanner.pathways,
+                RoutingProfile.DEFAULT, cacheFile.toPath());
+        assertEquals(built.getTripCount(), loaded.getTripCount());
+        assertEquals(built.getTransferCount(), loaded.getTransferCount());
+        assertEquals(0, loaded.getRecomputedTripCount());
+        assertFalse(loaded.isTransferTableMapped());
+
+        // Más profillal vagy más időtartamú aluljáróval készült gyorsítótár nem használható
+        TripBasedRouter fasterWalk = TripBasedRouter.buildOrLoad(stopIndex, tripPlanner.stopTimes, tripPlanner.trips, tripPlanner.pathways,
+                RoutingProfile.DEFAULT.withWalkSpeedKmh(6), cacheFile.toPath());
+        assertTrue(fasterWalk.getRecomputedTripCount() > 0);
+        built.save(cacheFile.toPath());
+        List<Pathway> slowerPathways = List.of(new Pathway("P1", 1, 1, "ST1", "ST2", Optional.of(1200)));
+        TripBasedRouter slowerPathway = TripBasedRouter.buildOrLoad(stopIndex, tripPlanner.stopTimes, tripPlanner.trips, slowerPathways,
+                RoutingProfile.DEFAULT, cacheFile.toPath());
+        assertTrue(slowerPathway.getRecomputedTripCount() > 0);
+        built.save(cacheFile.toPath());
+
+        TripBasedRouter mapped = TripBasedRouter.buildOrLoad(stopIndex, tripPlanner.stopTimes, tripPlanner.trips, tripPlanner.pathways,
+                RoutingProfile.DEFAULT, cacheFile.toPath(), true);
+        assertTrue(mapped.isTransferTableMapped());
+        assertEquals(built.getTransferCount(), mapped.getTransferCount());
+    }
+
+    @Test
+    public void testFeedManagerReload() throws Exception {
+        GtfsFeed feed = new GtfsFeed(tripPlanner.stops, tripPlanner.stopTimes, tripPlanner.pathways, tripPlanner.trips, tripPlanner.routes);
+        try (FeedManager feedManager = new FeedManager(new PlannerMetrics())) {
+            assertFalse(feedManager.isLoaded());
+            TripPlanner first = feedManager.install(feed);
+            assertSame(first, feedManager.current());
+
+            // Hibás feed esetén a régi tervező marad
+            GtfsFeed empty = new GtfsFeed(List.of(), List.of(), List.of(), List.of(), List.of());
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> feedManager.reload(() -> empty).get());
+            assertInstanceOf(IllegalStateException.class, failure.getCause());
+            assertSame(first, feedManager.current());
+
+            // Sikeres csere után a régi tervező is kiszolgálja a még futó kéréseket
+            TripPlanner second = feedManager.reload(() -> feed).get();
+            assertNotSame(first, second);
+            assertSame(second, feedManager.current());
+            LocalDate date = LocalDate.of(2024, 10, 7);
+            assertEquals(2, first.findOptimalPath("ST1", "ST2", date, LocalTime.of(7, 54)).size());
+            assertEquals(2, second.findOptimalPath("ST1", "ST2", date, LocalTime.of(7, 54)).size());
+            assertEquals(2, feedManager.getMetrics().getQueryCount());
+        }
+    }
+
+    @Test
+    public void testFeedManagerTransferCache() throws Exception {
+        GtfsFeed feed = new GtfsFeed(tripPlanner.stops, tripPlanner.stopTimes, tripPlanner.pathways, tripPlanner.trips, tripPlanner.routes);
+        Path cacheFile = Files.createTempDirectory("transfer_cache").resolve("transfers.bin");
+        cacheFile.toFile().deleteOnExit();
+        try (FeedManager feedManager = new FeedManager(new PlannerMetrics())) {
+            feedManager.setTransferCache(cacheFile);
+            TripBasedRouter built = feedManager.install(feed).getTripBasedRouter();
+            assertTrue(built.getRecomputedTripCount() > 0);
+            assertTrue(Files.isRegularFile(cacheFile));
+        }
+
+        // Újraindítás után az átszállások a gyorsítótárból töltődnek be
+        try (FeedManager feedManager = new FeedManager(new PlannerMetrics())) {
+            feedManager.setTransferCache(cacheFile);
+            TripPlanner planner = feedManager.install(feed);
+            assertEquals(0, planner.getTripBasedRouter().getRecomputedTripCount());
+            assertEquals(2, planner.findTripBasedPath("ST1", "ST2", LocalDate.of(2024, 10, 7), LocalTime.of(7, 54)).size());
+        }
+
+        // Leképezett módban a tábla a fájlból, a heapen kívül olvasódik
+        try (FeedManager feedManager = new FeedManager(new PlannerMetrics())) {
+            feedManager.setTransferCache(cacheFile, true);
+            TripPlanner planner = feedManager.install(feed);
+            assertTrue(planner.getTripBasedRouter().isTransferTableMapped());
+            assertEquals(2, planner.findTripBasedPath("ST1", "ST2", LocalDate.of(2024, 10, 7), LocalTime.of(7, 54)).size());
+        }
+    }
+
+    @Test
+    public void testFeedValidator() {
+        List<LocalDate> dates = List.of(LocalDate.of(2024, 10, 7), LocalDate.of(2024, 10, 8));
+        Stop a = namedStop("A", "A");
+        List<Stop> stops = List.of(a, namedStop("B", "B"),
+                new Stop("C", "C", 47.5, 19.0, Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("X"), Optional.empty()),
+                namedStop("A", "A again"));
+        List<Route> routes = List.of(new Route(Optional.empty(), "RT1", "1", Optional.empty(), 3, Optional.empty(),
+                Optional.empty(), Optional.empty(), Optional.empty()));
+        Trip t1 = trip("T1");
+        Trip t2 = new Trip("RT9", "T2", "SV1", Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        Trip t3 = trip("T3");
+        Trip duplicate = trip("T1");
+        t1.setServiceDates(dates);
+        t2.setServiceDates(dates);
+        t3.setServiceDates(List.of());
+        duplicate.setServiceDates(dates);
+        StopTime missingDeparture = new StopTime("T1", "B", Optional.of(LocalTime.of(8, 10)), Optional.empty(), 2,
+                Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        StopTime departsEarly = new StopTime("T2", "C", Optional.of(LocalTime.of(0, 20)), Optional.of(LocalTime.of(0, 15)), 3,
+                Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        List<StopTime> stopTimes = List.of(
+                stopTime("T1", "A", LocalTime.of(8, 0), 1), missingDeparture,
+                stopTime("T1", "C", LocalTime.of(8, 5), 3), stopTime("T1", "Z", LocalTime.of(8, 20), 4),
+                stopTime("T1", "B", LocalTime.of(8, 12), 2),
+                stopTime("T2", "A", LocalTime.of(23, 50), 1), stopTime("T2", "B", LocalTime.of(0, 10), 2), departsEarly,
+                stopTime("T3", "A", LocalTime.of(9, 0), 1), stopTime("T3", "B", LocalTime.of(9, 10), 2),
+                stopTime("T9", "A", LocalTime.of(9, 0), 1));
+        List<Pathway> pathways = List.of(new Pathway("P1", 1, 1, "A", "Q", Optional.empty()));
+
+        FeedValidator.Result result = new FeedValidator().validate(new GtfsFeed(stops, stopTimes, pathways, List.of(t1, t2, t3, duplicate), routes));
+        FeedValidationReport report = result.report();
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.DUPLICATE_STOP));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.UNKNOWN_PARENT_STATION));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.DUPLICATE_TRIP));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.UNKNOWN_ROUTE));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.NO_SERVICE_DATES));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.UNKNOWN_TRIP));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.UNKNOWN_STOP));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.DUPLICATE_STOP_SEQUENCE));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.MISSING_TIME));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.NON_MONOTONIC_TIME));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.DEPARTURE_BEFORE_ARRIVAL));
+        assertEquals(1, report.getCount(FeedValidationReport.Issue.UNKNOWN_PATHWAY_STOP));
+        assertEquals(List.of("trip T1 seq 3 (stop C) arrives 08:05"), report.getSamples(FeedValidationReport.Issue.NON_MONOTONIC_TIME));
+        assertEquals(Optional.of(LocalDate.of(2024, 10, 7)), report.getFirstServiceDate());
+        assertEquals(Optional.of(LocalDate.of(2024, 10, 8)), report.getLastServiceDate());
+
+        // A hibás sorok kimaradnak, a javítottak a helyükön, az éjfélt átlépő járat érintetlen
+        GtfsFeed feed = result.feed();
+        assertEquals(3, feed.stops().size());
+        assertSame(a, feed.stops().getFirst());
+        assertEquals(List.of(t1, t2), feed.trips());
+        assertTrue(feed.pathways().isEmpty());
+        assertEquals(List.of("T1:A", "T1:B", "T2:A", "T2:B", "T2:C"),
+                feed.stopTimes().stream().map(stopTime -> stopTime.getTripId() + ":" + stopTime.getStopId()).toList());
+        assertEquals(Optional.of(LocalTime.of(8, 10)), feed.stopTimes().get(1).getDepartureTime());
+        assertEquals(Optional.of(LocalTime.of(0, 20)), feed.stopTimes().get(4).getDepartureTime());
+
+        // Csak jelentett hiba esetén (ST1 szülő állomása egy szóköz) a feed változatlanul megy tovább
+        GtfsFeed clean = new GtfsFeed(tripPlanner.stops, tripPlanner.stopTimes, tripPlanner.pathways, tripPlanner.trips, tripPlanner.routes);
+        FeedValidator.Result unchanged = new FeedValidator().validate(clean);
+        assertEquals(1, unchanged.report().getCount(FeedValidationReport.Action.REPORTED));
+        assertEquals(0, unchanged.report().getCount(FeedValidationReport.Action.PRUNED));
+        assertSame(clean, unchanged.feed());
+    }
+
+    @Test
+    public void testRealtimeOverlay() throws Exception {
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        RealtimeOverlay overlay = new RealtimeOverlay(Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+        tripPlanner.setRealtimeOverlay(overlay);
+
+        // 5 perc késés az első megállóban, amely a következő megállóra is érvényes
+        TripUpdateReader.Message delayed = TripUpdateReader.parse("""
+                {"header": {"gtfsRealtimeVersion": "2.0", "incrementality": "FULL_DATASET"},
+                 "entity": [{"id": "1", "tripUpdate": {"trip": {"tripId": "TR1", "startDate": "20241007"},
+                   "stopTimeUpdate": [{"stopSequence": 1, "departure": {"delay": 300}}]}}]}
+                """, date);
+        assertTrue(delayed.fullDataset());
+        assertEquals(0, delayed.droppedStopUpdates());
+        overlay.apply(delayed.updates(), delayed.fullDataset());
+        List<TripPlanLeg> tripPlan = tripPlanner.findOptimalPath("ST1", "ST2", date, LocalTime.of(7, 54));
+        assertEquals(2, tripPlan.size());
+        assertEquals(660, tripPlan.get(0).getDuration());
+        assertEquals(LocalTime.of(8, 5), tripPlan.get(1).getStartTime());
+        assertEquals(LocalTime.of(8, 6), tripPlan.get(1).getEndTime());
+
+        // Más napon a menetrend érvényes
+        assertEquals(LocalTime.of(8, 0), tripPlanner.findOptimalPath("ST1", "ST2", date.plusDays(1), LocalTime.of(7, 54)).get(1).getStartTime());
+
+        // Különbségi üzenetben törölt járat: csak az aluljáró marad
+        TripUpdateReader.Message canceled = TripUpdateReader.parse("""
+                {"header": {"incrementality": "DIFFERENTIAL"},
+                 "entity": [{"id": "2", "trip_update": {"trip": {"trip_id": "TR1", "schedule_relationship": "CANCELED"}}}]}
+                """, date);
+        assertFalse(canceled.fullDataset());
+        overlay.apply(canceled.updates(), canceled.fullDataset());
+        assertEquals(1, overlay.snapshot().size());
+        tripPlan = tripPlanner.findOptimalPath("ST1", "ST2", date, LocalTime.of(7, 54));
+        assertEquals(1, tripPlan.size());
+        assertEquals(TripPlanLeg.LegType.WALK, tripPlan.get(0).getLegType());
+
+        // Kihagyott megálló
+        TripUpdate skipped = new TripUpdate("TR1", date, false, new int[]{2}, new int[]{0}, new int[]{0}, new boolean[]{true});
+        assertNull(skipped.apply(tripPlanner.stopTimes.get(1)));
+        assertSame(tripPlanner.stopTimes.get(0), skipped.apply(tripPlanner.stopTimes.get(0)));
+        assertThrows(IOException.class, () -> TripUpdateReader.parse("{\"entity\": [", date));
+
+        // Éjfélen átnyúló késés: a megállóidő nem fordul át a nap elejére, hanem kimarad
+        StopTime late = stopTime("TR1", "ST2", LocalTime.of(23, 50), 2);
+        assertNull(new TripUpdate("TR1", date, false, new int[]{1}, new int[]{0}, new int[]{1200}, new boolean[]{false}).apply(late));
+        assertNull(new TripUpdate("TR1", date, false, new int[]{2}, new int[]{-86_000}, new int[]{0}, new boolean[]{false}).apply(late));
+        assertEquals(Optional.of(LocalTime.of(23, 59, 59)),
+                new TripUpdate("TR1", date, false, new int[]{1}, new int[]{0}, new int[]{599}, new boolean[]{false}).apply(late).getDepartureTime());
+
+        // Sorszám nélküli megálló módosítás: kimarad, de megszámolva
+        TripUpdateReader.Message byStopId = TripUpdateReader.parse("""
+                {"entity": [{"id": "3", "tripUpdate": {"trip": {"tripId": "TR1"},
+                   "stopTimeUpdate": [{"stopId": "ST2", "arrival": {"delay": 60}}, {"stopSequence": 1, "departure": {"delay": 30}}]}}]}
+                """, date);
+        assertEquals(1, byStopId.droppedStopUpdates());
+        assertArrayEquals(new int[]{1}, byStopId.updates().getFirst().stopSequences());
+
+        // Az elmúlt forgalmi napok módosításai a következő közzétételkor kimaradnak
+        RealtimeOverlay.Snapshot snapshot = overlay.apply(List.of(TripUpdate.canceled("TR1", date.minusDays(1)),
+                TripUpdate.canceled("TR2", date.plusDays(1))), false);
+        assertEquals(Set.of(date, date.plusDays(1)), snapshot.updatesByDate().keySet());
+        RealtimeOverlay later = new RealtimeOverlay(Clock.offset(Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC), Duration.ofDays(1)));
+        later.apply(snapshot.updatesOn(date).values(), true);
+        assertEquals(0, later.snapshot().size());
+    }
+
+    @Test
+    public void testIncrementalFeedUpdate() {
+        List<Stop> stops = new ArrayList<>(tripPlanner.stops);
+        stops.add(new Stop("ST3", "Stop 3", 47.600000, 19.000000, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+        stops.add(new Stop("ST4", "Stop 4", 47.601000, 19.010000, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+        Trip far = new Trip("RT2", "X", "SV1", Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+        List<Trip> trips = List.of(trip("A"), trip("B"), trip("C"), far);
+        trips.forEach(trip -> trip.setServiceDates(List.of(LocalDate.of(2024, 10, 7))));
+        List<StopTime> stopTimes = List.of(
+                stopTime("A", "ST1", LocalTime.of(8, 0), 1), stopTime("A", "ST2", LocalTime.of(8, 10), 2),
+                stopTime("B", "ST2", LocalTime.of(8, 20), 1), stopTime("B", "ST1", LocalTime.of(8, 30), 2),
+                stopTime("C", "ST1", LocalTime.of(8, 40), 1), stopTime("C", "ST2", LocalTime.of(8, 50), 2),
+                stopTime("X", "ST3", LocalTime.of(8, 0), 1), stopTime("X", "ST4", LocalTime.of(8, 5), 2));
+        GtfsFeed feed = new GtfsFeed(stops, stopTimes, tripPlanner.pathways, trips, tripPlanner.routes);
+        TripPlanner previous = feed.newPlanner(new PlannerMetrics());
+        previous.warmUp(true);
+
+        // A késik, C megszűnik, D új; az X járat megállóit a változás nem érinti
+        List<Trip> nextTrips = List.of(trip("A"), trip("B"), trip("D"), far);
+        nextTrips.forEach(trip -> trip.setServiceDates(List.of(LocalDate.of(2024, 10, 7))));
+        List<StopTime> nextStopTimes = List.of(
+                stopTime("A", "ST1", LocalTime.of(8, 5), 1), stopTime("A", "ST2", LocalTime.of(8, 15), 2),
+                stopTime("B", "ST2", LocalTime.of(8, 20), 1), stopTime("B", "ST1", LocalTime.of(8, 30), 2),
+                stopTime("D", "ST1", LocalTime.of(9, 0), 1), stopTime("D", "ST2", LocalTime.of(9, 10), 2),
+                stopTime("X", "ST3", LocalTime.of(8, 0), 1), stopTime("X", "ST4", LocalTime.of(8, 5), 2));
+        GtfsFeed nextFeed = new GtfsFeed(stops, nextStopTimes, tripPlanner.pathways, nextTrips, tripPlanner.routes);
+
+        FeedDiff diff = GtfsLoader.diff(feed, nextFeed);
+        assertEquals(Set.of("D"), diff.addedTrips());
+        assertEquals(Set.of("C"), diff.removedTrips());
+        assertEquals(Set.of("A"), diff.changedTrips());
+        assertEquals(4, diff.changedStopTimes());
+        assertFalse(diff.requiresFullRebuild());
+
+        TripPlanner next = nextFeed.newPlanner(new PlannerMetrics());
+        next.applyDiff(previous, diff);
+        RoutePatternIndex full = RoutePatternIndex.build(new StopIndex(stops), nextStopTimes, nextTrips);
+        assertEquals(full.patternCount(), next.getRoutePatterns().patternCount());
+        assertEquals(full.tripCount(), next.getRoutePatterns().tripCount());
+        assertEquals(-1, next.getRoutePatterns().globalTrip("C"));
+
+        // Csak az A-D vonal járatai és a velük közös megállókat érintő B számolódik újra, az X átkerül
+        TripBasedRouter router = next.getTripBasedRouter();
+        assertEquals(3, router.getRecomputedTripCount());
+        assertEquals(TripBasedRouter.build(full, tripPlanner.pathways, RoutingProfile.DEFAULT).getTransferCount(), router.getTransferCount());
+        List<TripPlanLeg> legs = next.findTripBasedPath("ST1", "ST2", LocalDate.of(2024, 10, 7), LocalTime.of(8, 0), RoutingProfile.DEFAULT);
+        assertEquals(LocalTime.of(8, 15), legs.getLast().getEndTime());
+
+        // Megálló változásakor teljes újraépítés kell
+        FeedDiff networkDiff = GtfsLoader.diff(feed, new GtfsFeed(tripPlanner.stops, stopTimes, tripPlanner.pathways, trips, tripPlanner.routes));
+        assertTrue(networkDiff.requiresFullRebuild());
+        assertThrows(IllegalArgumentException.class, () -> next.applyDiff(previous, networkDiff));
+    }
+
+    @Test
+    public void testMultiStopOriginAndDestination() {
+        List<Stop> stops = List.of(
+                new Stop("O1", "Origin", 47.50, 19.00, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("O2", "Origin 2", 47.55, 19.00, Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("O1"), Optional.empty()),
+                new Stop("D1", "Destination", 47.60, 19.10, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("D2", "Destination 2", 47.65, 19.10, Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("D1"), Optional.empty()));
+        List<Trip> trips = List.of(trip("TA"), trip("TB"));
+        trips.forEach(trip -> trip.setServiceDates(List.of(LocalDate.of(2024, 10, 7))));
+        List<StopTime> stopTimes = List.of(
+                stopTime("TA", "O1", LocalTime.of(8, 15), 1), stopTime("TA", "D1", LocalTime.of(8, 40), 2),
+                stopTime("TB", "O2", LocalTime.of(8, 5), 1), stopTime("TB", "D2", LocalTime.of(8, 20), 2));
+        TripPlanner planner = new TripPlanner(stops, stopTimes, List.of(), trips, tripPlanner.routes);
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        LocalTime departure = LocalTime.of(8, 0);
+
+        assertEquals(LocalTime.of(8, 40), planner.findOptimalPath("O1", "D1", date, departure).getLast().getEndTime());
+
+        // Az állomás összes megállójából egyszerre indul a keresés
+        assertEquals(List.of(StopAccess.at("O1"), StopAccess.at("O2")), planner.stationAccess("O1"));
+        List<TripPlanLeg> legs = planner.findOptimalPath(planner.stationAccess("O1"), planner.stationAccess("D1"), date, departure);
+        assertEquals("O2", legs.getFirst().getFromStop().getStopId());
+        assertEquals("D2", legs.getLast().getToStop().getStopId());
+        assertEquals(LocalTime.of(8, 20), legs.getLast().getEndTime());
+
+        // Az eljutási idők számítanak: a hosszú ráhordás vagy elhordás miatt a másik megálló jobb
+        List<StopAccess> slowEgress = List.of(StopAccess.at("D1"), new StopAccess("D2", 1800));
+        assertEquals("D1", planner.findOptimalPath(planner.stationAccess("O1"), slowEgress, date, departure).getLast().getToStop().getStopId());
+        List<StopAccess> slowAccess = List.of(StopAccess.at("O1"), new StopAccess("O2", 600));
+        assertEquals(LocalTime.of(8, 40), planner.findOptimalPath(slowAccess, planner.stationAccess("D1"), date, departure,
+                RoutingProfile.DEFAULT.withSearchAlgorithm(SearchAlgorithm.A_STAR)).getLast().getEndTime());
+
+        assertEquals(List.of(StopAccess.at("O1")), planner.stopsWithin(47.50, 19.00, 100, RoutingProfile.DEFAULT));
+        assertTrue(planner.findOptimalPath(List.of(StopAccess.at("X")), planner.stationAccess("D1"), date, departure).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new StopAccess("O1", -1));
+    }
+
+    @Test
+    public void testStopSpatialIndex() {
+        Random random = new Random(42);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            stops.add(new Stop("S" + i, "Stop " + i, 47.4 + random.nextDouble() * 0.2, 19.0 + random.nextDouble() * 0.2,
+                    Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+        }
+        StopSpatialIndex index = new StopSpatialIndex(new StopIndex(stops));
+
+        // A rácsos keresés ugyanazt adja, mint a teljes végigjárás
+        for (int q = 0; q < 20; q++) {
+            double latitude = 47.38 + random.nextDouble() * 0.24;
+            double longitude = 18.98 + random.nextDouble() * 0.24;
+            List<Stop> byDistance = new ArrayList<>(stops);
+            byDistance.sort(Comparator.comparingDouble(stop -> TripPlanner.haversine(latitude, longitude, stop.getStopLat(), stop.getStopLon())));
+            assertEquals(byDistance.subList(0, 5), index.nearest(latitude, longitude, 5, Double.MAX_VALUE).stream().map(StopSpatialIndex.Neighbor::stop).toList());
+            List<Stop> within = byDistance.stream()
+                    .filter(stop -> TripPlanner.haversine(latitude, longitude, stop.getStopLat(), stop.getStopLon()) <= 1500).toList();
+            assertEquals(within, index.within(latitude, longitude, 1500).stream().map(StopSpatialIndex.Neighbor::stop).toList());
+        }
+        assertTrue(index.nearest(40.0, 10.0, 3, 1000).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new StopSpatialIndex(new StopIndex(stops), 0));
+    }
+
+    @Test
+    public void testFindOptimalPathBetweenCoordinates() {
+        LocalDate date = LocalDate.of(2024, 10, 7);
+
+        // Az ST1 és ST2 melletti pontok között: gyaloglás a megállóig, várakozás, járat, gyaloglás a célig
+        List<TripPlanLeg> legs = tripPlanner.findOptimalPath(47.501000, 19.135700, 47.501600, 19.159000, date, LocalTime.of(7, 55));
+        assertEquals(TripPlanLeg.LegType.WALK, legs.getFirst().getLegType());
+        assertEquals("origin", legs.getFirst().getFromStop().getStopId());
+        assertEquals("ST1", legs.getFirst().getToStop().getStopId());
+        assertEquals(LocalTime.of(7, 55), legs.getFirst().getStartTime());
+        assertTrue(legs.stream().anyMatch(leg -> "TR1".equals(leg.getTripId())));
+        assertEquals(TripPlanLeg.LegType.WALK, legs.getLast().getLegType());
+        assertEquals("ST2", legs.getLast().getFromStop().getStopId());
+        assertEquals("destination", legs.getLast().getToStop().getStopId());
+        assertTrue(legs.getLast().getEndTime().isAfter(LocalTime.of(8, 1)) && legs.getLast().getEndTime().isBefore(LocalTime.of(8, 3)));
+
+        // Közeli pontok között egyetlen séta
+        List<TripPlanLeg> walk = tripPlanner.findOptimalPath(47.501000, 19.135700, 47.501500, 19.136000, date, LocalTime.of(7, 55));
+        assertEquals(1, walk.size());
+        assertEquals(TripPlanLeg.LegType.WALK, walk.getFirst().getLegType());
+
+        assertEquals(List.of(StopAccess.at("ST1")), tripPlanner.stopsWithin(47.500366, 19.135700, 10, RoutingProfile.DEFAULT));
+    }
+
+    @Test
+    public void testRoutePatterns() {
+        RoutePatternIndex patterns = tripPlanner.getRoutePatterns();
+        assertEquals(1, patterns.patternCount());
+        RoutePattern pattern = patterns.getPattern(0);
+        assertEquals("RT1", pattern.getRouteId());
+        assertEquals(2, pattern.stopCount());
+        assertEquals(1, pattern.tripCount());
+        assertEquals(LocalTime.of(8, 1).toSecondOfDay(), pattern.arrival(0, 1));
+        assertEquals(LocalTime.of(8, 10).toSecondOfDay(), pattern.departure(0, 1));
+        assertEquals(0, pattern.earliestTrip(0, LocalTime.of(7, 0).toSecondOfDay()));
+        assertEquals(-1, pattern.earliestTrip(0, LocalTime.of(8, 1).toSecondOfDay()));
+
+        // Azonos megállósorrend: egy minta, indulás szerint rendezve; az előző járatot megelőző járat külön mintába kerül
+        StopIndex stopIndex = new StopIndex(tripPlanner.stops);
+        List<Trip> trips = List.of(trip("A"), trip("B"), trip("C"));
+        List<StopTime> stopTimes = List.of(
+                stopTime("A", "ST1", LocalTime.of(9, 0), 1), stopTime("A", "ST2", LocalTime.of(9, 10), 2),
+                stopTime("B", "ST1", LocalTime.of(8, 0), 1), stopTime("B", "ST2", LocalTime.of(8, 10), 2),
+                stopTime("C", "ST1", LocalTime.of(8, 30), 1), stopTime("C", "ST2", LocalTime.of(9, 20), 2));
+        RoutePatternIndex index = RoutePatternIndex.build(stopIndex, stopTimes, trips);
+        assertEquals(2, index.patternCount());
+        assertEquals(3, index.tripCount());
+        assertEquals("B", index.getPattern(0).trip(0).getTripId());
+        assertEquals("C", index.getPattern(0).trip(1).getTripId());
+        assertEquals("A", index.getPattern(1).trip(0).getTripId());
+        assertEquals(1, index.patternOf(index.globalTrip("A")));
+        assertEquals(2, index.patternsAt(stopIndex.indexOf("ST1")).length);
+    }
+
     @Test
     public void testGetActiveTripIds() {
         LocalDate date = LocalDate.of(2024, 10, 7);
@@ -99,6 +670,20 @@ public class TripPlannerTest {
         assertEquals(2, filteredStopTimes.size());
     }
 
+    @Test
+    public void testFilterStopTimesNearMidnight() {
+        List<Stop> stops = List.of(namedStop("A", "A"), namedStop("B", "B"));
+        List<StopTime> stopTimes = List.of(stopTime("TN", "A", LocalTime.of(23, 30), 1), stopTime("TN", "B", LocalTime.of(23, 45), 2));
+        TripPlanner planner = new TripPlanner(stops, stopTimes, List.of(), List.of(trip("TN")), tripPlanner.routes);
+
+        // Az éjfélen átnyúló ablak nem fordul át
+        assertEquals(2, planner.filterStopTimes(Set.of("TN"), LocalTime.of(23, 0), Duration.ofHours(2)).size());
+        assertEquals(1, planner.filterStopTimes(Set.of("TN"), LocalTime.of(23, 40), Duration.ofHours(2)).size());
+        // A legalább egy napos ablak sem rövidül meg
+        assertEquals(2, planner.filterStopTimes(Set.of("TN"), LocalTime.MIDNIGHT, Duration.ofHours(24)).size());
+        assertEquals(2, planner.filterStopTimes(Set.of("TN"), LocalTime.of(1, 0), Duration.ofHours(25)).size());
+    }
+
     @Test
     public void testBuildGraph() {
         List<StopTime> filteredStopTimes = tripPlanner.filterStopTimes(Set.of("TR1"), LocalTime.of(8, 0));
@@ -119,6 +704,241 @@ public class TripPlannerTest {
         assertFalse(graph.get("ST1").isEmpty());
     }
 
+    @Test
+    public void testTransitGraph() {
+        StopIndex stopIndex = new StopIndex(tripPlanner.stops);
+        List<Trip> trips = List.of(trip("A"), trip("B"), trip("C"));
+        List<StopTime> stopTimes = List.of(
+                stopTime("A", "ST1", LocalTime.of(8, 0), 1), stopTime("A", "ST2", LocalTime.of(8, 10), 2),
+                stopTime("B", "ST1", LocalTime.of(8, 20), 1), stopTime("B", "ST2", LocalTime.of(8, 30), 2),
+                stopTime("C", "ST1", LocalTime.of(8, 40), 1), stopTime("C", "ST2", LocalTime.of(8, 50), 2));
+        RoutePatternIndex patterns = RoutePatternIndex.build(stopIndex, stopTimes, trips);
+        TransitGraph.Builder builder = new TransitGraph.Builder(stopIndex).addStopTimes(stopTimes);
+        builder.addFootEdge("ST1", "ST2", 300, EdgeType.WALK, 350.0);
+        TransitGraph graph = builder.build(tripId -> patterns.patternOf(patterns.globalTrip(tripId)));
+        assertEquals(4, graph.edgeCount());
+
+        int[] candidates = new int[graph.maxDegree() + 1];
+        int count = graph.collectCandidates(stopIndex.indexOf("ST1"), -1, LocalTime.of(8, 6).toSecondOfDay(), candidates);
+
+        // Csak a mintán belüli első elérhető indulás, majd a séta él
+        assertEquals(2, count);
+        assertEquals("B", graph.tripId(candidates[0]));
+        assertEquals(LocalTime.of(8, 20).toSecondOfDay(), graph.departure(candidates[0]));
+        assertEquals(EdgeType.WALK, graph.type(candidates[1]));
+        assertEquals("ST2", graph.edge(candidates[1]).toStopId);
+    }
+
+    @Test
+    public void testTimetableGraphIsReused() {
+        // A nap menetrendi gráfja a kérések között közös, csak a nap vagy a módosítási táblázat változásakor épül újra
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        Map<String, TripUpdate> noUpdates = Map.of();
+        TransitGraph graph = tripPlanner.getTimetableGraph(date, noUpdates, new QueryTrace());
+        assertEquals(1, graph.edgeCount());
+        assertSame(graph, tripPlanner.getTimetableGraph(date, noUpdates, new QueryTrace()));
+        TransitGraph nextDay = tripPlanner.getTimetableGraph(date.plusDays(1), noUpdates, new QueryTrace());
+        assertNotSame(graph, nextDay);
+        assertNotSame(nextDay, tripPlanner.getTimetableGraph(date.plusDays(1), new HashMap<>(), new QueryTrace()));
+
+        // A kérések gyalogos élei nem kerülnek a közös gráfba, és gyorsítótárazott gráffal is minden fázis mérve van
+        TripPlanner.TracedPlan first = tripPlanner.findOptimalPathWithTrace("ST1", "ST2", date, LocalTime.of(7, 54));
+        TripPlanner.TracedPlan second = tripPlanner.findOptimalPathWithTrace("ST1", "ST2", date, LocalTime.of(7, 58));
+        assertEquals(2, first.legs().size());
+        assertEquals(2, second.legs().size());
+        assertTrue(second.trace().getEdgesBuilt() > 1);
+        assertEquals(PlannerPhase.values().length, second.trace().getPhaseNanos().size());
+        assertEquals(1, tripPlanner.getTimetableGraph(date, noUpdates, new QueryTrace()).edgeCount());
+    }
+
+    @Test
+    public void testTransitGraphCandidatesMatchLinearScan() {
+        // Véletlen hálózatokon a mintánkénti bináris keresés célonként ugyanazt a legkorábbi érkezést adja,
+        // mint ugyanazon élek teljes végigjárása
+        Random random = new Random(34);
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        RoutingProfile profile = RoutingProfile.DEFAULT.withMaxWalkDistance(500);
+        for (int network = 0; network < 25; network++) {
+            TripPlanner planner = randomPlanner(random, date);
+            List<StopTime> filteredStopTimes = planner.filterStopTimes(planner.getActiveTripIds(date), LocalTime.of(7, 0), Duration.ofHours(6));
+            TransitGraph graph = planner.buildTransitGraph(filteredStopTimes, "S0", "S1", profile);
+            Map<String, List<TripPlanner.Edge>> linear = planner.buildGraph(filteredStopTimes, "S0", "S1", profile);
+            StopIndex stopIndex = graph.getStopIndex();
+            int[] candidates = new int[graph.maxDegree() + 1];
+            for (Stop stop : planner.stops) {
+                for (int q = 0; q < 5; q++) {
+                    long earliestBoarding = LocalTime.of(7, 50).toSecondOfDay() + random.nextInt(100 * 60);
+                    Map<String, Long> expected = new HashMap<>();
+                    int expectedFootEdges = 0;
+                    for (TripPlanner.Edge edge : linear.get(stop.getStopId())) {
+                        if (edge.type != EdgeType.TRANSIT) {
+                            expectedFootEdges++;
+                        } else if (edge.departureTime.toSecondOfDay() >= earliestBoarding) {
+                            expected.merge(edge.toStopId, edge.departureTime.toSecondOfDay() + edge.travelTime, Math::min);
+                        }
+                    }
+                    Map<String, Long> actual = new HashMap<>();
+                    int actualFootEdges = 0;
+                    int count = graph.collectCandidates(stopIndex.indexOf(stop.getStopId()), -1, earliestBoarding, candidates);
+                    for (int c = 0; c < count; c++) {
+                        int edge = candidates[c];
+                        if (graph.trip(edge) < 0) {
+                            actualFootEdges++;
+                        } else if (graph.departure(edge) >= earliestBoarding) {
+                            actual.merge(graph.edge(edge).toStopId, (long) graph.departure(edge) + graph.duration(edge), Math::min);
+                        }
+                    }
+                    assertEquals(expected, actual);
+                    assertEquals(expectedFootEdges, actualFootEdges);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testShortestPathMatchesReferenceSearch() {
+        // Véletlen hálózatokon a megállónként egy címkét tartó keresés ugyanakkor ér célba, mint a korábbi,
+        // minden címkét kiterjesztő keresés az élek teljes végigjárásával
+        Random random = new Random(35);
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        RoutingProfile profile = RoutingProfile.DEFAULT.withMaxWalkDistance(500);
+        int reachable = 0;
+        for (int network = 0; network < 25; network++) {
+            TripPlanner planner = randomPlanner(random, date);
+            for (int q = 0; q < 10; q++) {
+                String start = "S" + random.nextInt(12);
+                String end = "S" + random.nextInt(12);
+                LocalTime departureTime = LocalTime.of(7, 50).plusMinutes(random.nextInt(60));
+                if (start.equals(end)) {
+                    continue;
+                }
+                List<StopTime> filteredStopTimes = planner.filterStopTimes(planner.getActiveTripIds(date), departureTime, profile.getSearchHorizon());
+                long expected = referenceSearch(planner.buildGraph(filteredStopTimes, start, end, profile), start, end,
+                        departureTime.toSecondOfDay(), profile)[0];
+                List<TripPlanLeg> plan = planner.findOptimalPath(start, end, date, departureTime, profile);
+                assertEquals(expected, plan.isEmpty() ? -1L : plan.getLast().getEndTime().toSecondOfDay(), start + "-" + end + " " + departureTime);
+                reachable += plan.isEmpty() ? 0 : 1;
+            }
+        }
+        assertTrue(reachable > 100);
+    }
+
+    @Test
+    public void testShortestPathKeepsReplacedTrip() {
+        // A X-be 08:10-kor ér és továbbmegy Y-ba; B 08:09-kor ér X-be, így X címkéjét felülírja. A korábbi keresés
+        // B-ről A-ra átszállva ért Y-ba, most a felülírt A-címke járata folytatódik: ugyanaz az érkezés egy felszállással
+        List<Stop> stops = List.of(namedStop("O", "O"), namedStop("X", "X"), namedStop("Y", "Y"));
+        List<Trip> trips = List.of(trip("A"), trip("B"));
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        trips.forEach(trip -> trip.setServiceDates(List.of(date)));
+        List<StopTime> stopTimes = List.of(
+                stopTime("A", "O", LocalTime.of(8, 0), 1), stopTime("A", "X", LocalTime.of(8, 10), 2),
+                stopTime("A", "Y", LocalTime.of(8, 20), 3),
+                stopTime("B", "O", LocalTime.of(8, 1), 1), stopTime("B", "X", LocalTime.of(8, 9), 2));
+        TripPlanner planner = new TripPlanner(stops, stopTimes, List.of(), trips, tripPlanner.routes);
+        RoutingProfile noWalk = RoutingProfile.DEFAULT.withMaxWalkDistance(0);
+        LocalTime departureTime = LocalTime.of(7, 55);
+
+        List<StopTime> filteredStopTimes = planner.filterStopTimes(planner.getActiveTripIds(date), departureTime, noWalk.getSearchHorizon());
+        long[] reference = referenceSearch(planner.buildGraph(filteredStopTimes, "O", "Y", noWalk), "O", "Y", departureTime.toSecondOfDay(), noWalk);
+        assertEquals(LocalTime.of(8, 20).toSecondOfDay(), reference[0]);
+        assertEquals(2, reference[1]);
+
+        List<TripPlanLeg> plan = planner.findOptimalPath("O", "Y", date, departureTime, noWalk);
+        assertEquals(LocalTime.of(8, 20), plan.getLast().getEndTime());
+        assertEquals(1, plan.stream().filter(leg -> leg.getLegType() == TripPlanLeg.LegType.TRANSIT).map(TripPlanLeg::getTripId).distinct().count());
+        assertEquals("A", plan.getLast().getTripId());
+    }
+
+    @Test
+    public void testDefaultProfileHasNoTransferLimit() {
+        // Tíz egymás utáni járat (kilenc átszállás) az alapértelmezett profillal is bejárható, korláttal nem
+        assertEquals(Integer.MAX_VALUE, RoutingProfile.DEFAULT.getMaxTransfers());
+        List<Stop> stops = new ArrayList<>();
+        List<Trip> trips = new ArrayList<>();
+        List<StopTime> stopTimes = new ArrayList<>();
+        LocalDate date = LocalDate.of(2024, 10, 7);
+        stops.add(namedStop("C0", "C0"));
+        for (int i = 0; i < 10; i++) {
+            stops.add(namedStop("C" + (i + 1), "C" + (i + 1)));
+            Trip trip = trip("T" + i);
+            trip.setServiceDates(List.of(date));
+            trips.add(trip);
+            stopTimes.add(stopTime("T" + i, "C" + i, LocalTime.of(8, 5 * i), 1));
+            stopTimes.add(stopTime("T" + i, "C" + (i + 1), LocalTime.of(8, 5 * i + 3), 2));
+        }
+        TripPlanner planner = new TripPlanner(stops, stopTimes, List.of(), trips, tripPlanner.routes);
+        RoutingProfile noWalk = RoutingProfile.DEFAULT.withMaxWalkDistance(0);
+
+        List<TripPlanLeg> plan = planner.findOptimalPath("C0", "C10", date, LocalTime.of(7, 55), noWalk);
+        assertEquals(LocalTime.of(8, 48), plan.getLast().getEndTime());
+        assertEquals(10, transitTrips(plan));
+        assertEquals(10, transitTrips(planner.findArriveByPath("C0", "C10", date, LocalTime.of(9, 0), noWalk)));
+        assertFalse(planner.findParetoPaths("C0", "C10", date, LocalTime.of(7, 55), noWalk).isEmpty());
+
+        RoutingProfile limited = noWalk.withMaxTransfers(8);
+        assertTrue(planner.findOptimalPath("C0", "C10", date, LocalTime.of(7, 55), limited).isEmpty());
+        assertTrue(planner.findArriveByPath("C0", "C10", date, LocalTime.of(9, 0), limited).isEmpty());
+        assertTrue(planner.findParetoPaths("C0", "C10", date, LocalTime.of(7, 55), limited).isEmpty());
+    }
+
+    @Test
+    public void testIndexedMinHeap() {
+        IndexedMinHeap heap = new IndexedMinHeap(4);
+        assertTrue(heap.insertOrDecrease(0, 50));
+        assertTrue(heap.insertOrDecrease(1, 30));
+        assertTrue(heap.insertOrDecrease(2, 40));
+        assertFalse(heap.insertOrDecrease(1, 35));
+        assertTrue(heap.insertOrDecrease(0, 10));
+        assertEquals(3, heap.size());
+
+        assertEquals(0, heap.poll());
+        assertFalse(heap.contains(0));
+        assertEquals(1, heap.poll());
+        assertEquals(2, heap.poll());
+        assertTrue(heap.isEmpty());
+        assertThrows(IllegalStateException.class, heap::poll);
+    }
+
+    @Test
+    public void testStopNameIndex() {
+        List<Stop> stops = List.of(namedStop("A", "Széll Kálmán tér M"), namedStop("B", "Széll Kálmán tér"),
+                namedStop("C", "Kálvin tér"), namedStop("D", "Örs vezér tere"), namedStop("E", "Batthyány tér"));
+        StopNameIndex index = new StopNameIndex(stops);
+        assertEquals("szell kalman ter", StopNameIndex.normalize("  Széll   Kálmán tér "));
+
+        // Teljes egyezés előre, ékezet nélkül is
+        assertEquals(List.of(stops.get(1), stops.get(0)), index.search("szell kalman ter", 10));
+        // Szókezdet rövid kéréssel, rövidebb név előre
+        assertEquals(List.of(stops.get(2), stops.get(1), stops.get(0)), index.search("ká", 10));
+        // Szó belsejében csak legalább három karakterrel
+        assertEquals(List.of(stops.get(3)), index.search("vez", 10));
+        assertEquals(List.of(stops.get(2), stops.get(4), stops.get(3)), index.search("TÉR", 3));
+        assertEquals(List.of(stops.get(4)), index.search("thyan", 10));
+        assertTrue(index.search("xyz", 10).isEmpty());
+        assertTrue(index.search(" ", 10).isEmpty());
+    }
+
+    @Test
+    public void testStationClusters() {
+        List<Stop> stops = List.of(
+                new Stop("A1", "Deák tér", 47.4970, 19.0540, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("A2", "Deak ter", 47.4975, 19.0545, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("A3", "Deák tér", 47.5100, 19.0540, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("P1", "Deák tér peron", 47.4971, 19.0541, Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("A2"), Optional.empty()),
+                new Stop("B1", "Astoria", 47.4935, 19.0610, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+        StationClusters clusters = StationClusters.build(stops);
+
+        // A 200 méteren belüli azonos nevű megállók egy állomás, a távoli külön; a peron a szülője állomásához tartozik
+        assertEquals(3, clusters.stations().size());
+        assertEquals(List.of("B1", "A1", "A3"), clusters.representatives().stream().map(Stop::getStopId).toList());
+        assertEquals(List.of("A1", "A2", "P1"), clusters.memberIds("P1"));
+        assertEquals("A1", clusters.stationOf("A2").representative().getStopId());
+        assertEquals(List.of("A3"), clusters.memberIds("A3"));
+        assertEquals(List.of("X"), clusters.memberIds("X"));
+        assertNull(clusters.stationOf("X"));
+    }
+
     @Test
     public void testAddPathWayEdges() {
         Map<String, List<TripPlanner.Edge>> graph = Collections.synchronizedMap(new HashMap<>());
@@ -145,6 +965,156 @@ public class TripPlannerTest {
         assertEquals(1261, graph.get("ST2").getFirst().travelTime);
     }
 
+    @Test
+    public void testFootpathCache() throws Exception {
+        StopIndex stopIndex = new StopIndex(tripPlanner.stops);
+        double radius = 3000;
+        FootpathCache computed = FootpathCache.compute(stopIndex, radius);
+        assertEquals(2, computed.size());
+        assertEquals(stopIndex.indexOf("ST2"), computed.target(computed.start(stopIndex.indexOf("ST1"))));
+        assertEquals(tripPlanner.distanceBetween("ST1", "ST2"), computed.distance(0), 0.01);
+        assertEquals(0, FootpathCache.compute(stopIndex, 1000).size());
+
+        // Alapértelmezés szerint csak az átszállási sugáron belüli párok készülnek el, a hosszabb séta kéréskor számolódik
+        assertEquals(TripBasedRouter.DEFAULT_FOOTPATH_RADIUS, tripPlanner.getFootpathCache().radius());
+        assertEquals(0, tripPlanner.getFootpathCache().size());
+
+        // Mentés és visszatöltés, majd más sugárnál újraszámolás
+        File cacheFile = Files.createTempFile("footpaths", ".bin").toFile();
+        cacheFile.deleteOnExit();
+        computed.save(cacheFile.toPath());
+        FootpathCache loaded = FootpathCache.loadOrCompute(stopIndex, radius, cacheFile.toPath());
+        assertEquals(computed.size(), loaded.size());
+        assertEquals(computed.distance(1), loaded.distance(1));
+        FootpathCache smaller = FootpathCache.loadOrCompute(stopIndex, 1000, cacheFile.toPath());
+        assertEquals(0, smaller.size());
+        assertEquals(0, FootpathCache.loadOrCompute(stopIndex, 1000, cacheFile.toPath()).size());
+
+        // A tervező a betöltött sétákból is ugyanazokat az éleket adja
+        tripPlanner.loadFootpaths(cacheFile.toPath(), radius);
+        assertEquals(radius, tripPlanner.getFootpathCache().radius());
+        Map<String, List<TripPlanner.Edge>> graph = new HashMap<>();
+        graph.put("ST1", new ArrayList<>());
+        graph.put("ST2", new ArrayList<>());
+        tripPlanner.addWalkEdges("ST1", "ST2", graph);
+        assertEquals(1261, graph.get("ST1").getFirst().travelTime);
+
+        // Alapértelmezett profil az alapértelmezett (400 m-es) sétákkal: a közeli pár a gyorsítótárból, csak a
+        // sugáron túli pár számolódik kéréskor
+        List<Stop> stops = List.of(
+                new Stop("A", "A", 47.5, 19.0, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("N", "Near", 47.5, 19.002, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()),
+                new Stop("F", "Far", 47.5, 19.02, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+        TripPlanner planner = new TripPlanner(stops, List.of(), List.of(), List.of(), tripPlanner.routes);
+        assertTrue(planner.getFootpathCache().radius() < RoutingProfile.DEFAULT.getMaxWalkDistance());
+        assertEquals(2, planner.getFootpathCache().size());
+        Map<String, List<TripPlanner.Edge>> walks = new HashMap<>();
+        stops.forEach(stop -> walks.put(stop.getStopId(), Collections.synchronizedList(new ArrayList<>())));
+        planner.addWalkEdges("A", "F", walks, RoutingProfile.DEFAULT);
+        Map<String, Long> fromA = new HashMap<>();
+        walks.get("A").forEach(edge -> fromA.put(edge.toStopId, edge.travelTime));
+        assertEquals(Map.of("N", RoutingProfile.DEFAULT.walkingTime(planner.distanceBetween("A", "N")),
+                "F", RoutingProfile.DEFAULT.walkingTime(planner.distanceBetween("A", "F"))), fromA);
+        assertEquals(2, walks.get("N").size());
+        assertEquals(2, walks.get("F").size());
+    }
+
+    // A korábbi keresés: minden javuló címke a sorba kerül és kiterjesztődik, a megálló összes éle végigjárva.
+    // Visszaadja a célba érkezést (vagy -1) és a felszállások számát.
+    private static long[] referenceSearch(Map<String, List<TripPlanner.Edge>> graph, String start, String end, long departure, RoutingProfile profile) {
+        record Label(String stopId, long time, String tripId, int boardings) {
+        }
+        PriorityQueue<Label> queue = new PriorityQueue<>(Comparator.comparingLong(Label::time));
+        Map<String, Long> earliest = new HashMap<>(Map.of(start, departure));
+        queue.add(new Label(start, departure, null, 0));
+        long latestArrival = departure + profile.getSearchHorizon().getSeconds();
+        while (!queue.isEmpty()) {
+            Label current = queue.poll();
+            if (current.stopId().equals(end)) {
+                return new long[]{current.time(), current.boardings()};
+            }
+            for (TripPlanner.Edge edge : graph.get(current.stopId())) {
+                long arrival;
+                String tripId = null;
+                int boardings = current.boardings();
+                if (edge.type == EdgeType.TRANSIT) {
+                    long edgeDeparture = edge.departureTime.toSecondOfDay();
+                    long wait = edgeDeparture - current.time();
+                    if (wait < 0) {
+                        continue;
+                    }
+                    if (!edge.tripId.equals(current.tripId())) {
+                        if (wait < profile.getMinTransferTime() || wait > profile.getMaxTransferTime() || boardings > profile.getMaxTransfers()) {
+                            continue;
+                        }
+                        boardings++;
+                    }
+                    tripId = edge.tripId;
+                    arrival = edgeDeparture + edge.travelTime;
+                } else {
+                    arrival = current.time() + edge.travelTime;
+                }
+                if (arrival <= latestArrival && arrival < earliest.getOrDefault(edge.toStopId, Long.MAX_VALUE)) {
+                    earliest.put(edge.toStopId, arrival);
+                    queue.add(new Label(edge.toStopId, arrival, tripId, boardings));
+                }
+            }
+        }
+        return new long[]{-1, 0};
+    }
+
+    // Véletlen hálózat: 12 megálló kb. 2 km-es körzetben, 6 vonal 3-6 megállóval, vonalanként azonos menetidőkkel
+    private TripPlanner randomPlanner(Random random, LocalDate date) {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            stops.add(new Stop("S" + i, "Stop " + i, 47.5 + random.nextDouble() * 0.02, 19.0 + random.nextDouble() * 0.03,
+                    Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+        }
+        List<Trip> trips = new ArrayList<>();
+        List<StopTime> stopTimes = new ArrayList<>();
+        for (int r = 0; r < 6; r++) {
+            List<Stop> line = new ArrayList<>(stops);
+            Collections.shuffle(line, random);
+            line = line.subList(0, 3 + random.nextInt(4));
+            int[] hops = random.ints(line.size(), 0, 5).toArray();
+            int[] dwells = random.ints(line.size(), 0, 2).toArray();
+            int start = 8 * 60 + random.nextInt(20);
+            int headway = 5 + random.nextInt(11);
+            int tripCount = 4 + random.nextInt(5);
+            for (int k = 0; k < tripCount; k++) {
+                String tripId = "R" + r + "T" + k;
+                trips.add(trip(tripId));
+                int minute = start + k * headway;
+                for (int i = 0; i < line.size(); i++) {
+                    minute += i == 0 ? 0 : hops[i];
+                    LocalTime arrival = LocalTime.of(minute / 60, minute % 60);
+                    minute += dwells[i];
+                    LocalTime departure = LocalTime.of(minute / 60, minute % 60);
+                    stopTimes.add(new StopTime(tripId, line.get(i).getStopId(), Optional.of(arrival), Optional.of(departure), i + 1,
+                            Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty()));
+                }
+            }
+        }
+        trips.forEach(trip -> trip.setServiceDates(List.of(date)));
+        return new TripPlanner(stops, stopTimes, List.of(), trips, tripPlanner.routes);
+    }
+
+    private static long transitTrips(List<TripPlanLeg> plan) {
+        return plan.stream().filter(leg -> leg.getLegType() == TripPlanLeg.LegType.TRANSIT).map(TripPlanLeg::getTripId).distinct().count();
+    }
+
+    private static Trip trip(String tripId) {
+        return new Trip("RT1", tripId, "SV1", Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    private static Stop namedStop(String stopId, String name) {
+        return new Stop(stopId, name, 47.5, 19.0, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
+    private static StopTime stopTime(String tripId, String stopId, LocalTime time, int sequence) {
+        return new StopTime(tripId, stopId, Optional.of(time), Optional.of(time), sequence, Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+    }
+
     private File createTemporaryFile(String content) throws Exception {
         File tempFile = Files.createTempFile("gtfs_test", ".csv").toFile();
         tempFile.deleteOnExit();